@@ -0,0 +1,9 @@
+package android.content;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public abstract class BroadcastReceiver {
+
+    public abstract void onReceive(Context context, Intent intent);
+}
@@ -0,0 +1,34 @@
+package android.content;
+
+import android.os.Handler;
+
+import java.io.File;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ * <p>Only the members used by the library,the benchmarks provide the implementation.
+ */
+public abstract class Context {
+
+    public static final String CONNECTIVITY_SERVICE = "connectivity";
+    public static final String WIFI_SERVICE = "wifi";
+    public static final String TELEPHONY_SERVICE = "phone";
+
+    public abstract Context getApplicationContext();
+
+    public abstract Object getSystemService(String name);
+
+    public abstract File getFilesDir();
+
+    public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter);
+
+    public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, String broadcastPermission, Handler scheduler);
+
+    public abstract void unregisterReceiver(BroadcastReceiver receiver);
+
+    public abstract void sendBroadcast(Intent intent);
+
+    public abstract void sendStickyBroadcast(Intent intent);
+
+    public abstract void removeStickyBroadcast(Intent intent);
+}
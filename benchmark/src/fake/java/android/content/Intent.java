@@ -0,0 +1,91 @@
+package android.content;
+
+import android.os.Parcelable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public class Intent {
+
+    private String mAction;
+    private final Map<String, Object> mExtras = new HashMap<>();
+
+    public Intent() {
+    }
+
+    public Intent(String action) {
+        mAction = action;
+    }
+
+    public String getAction() {
+        return mAction;
+    }
+
+    public Intent setAction(String action) {
+        mAction = action;
+        return this;
+    }
+
+    public Intent putExtra(String name, boolean value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, int value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, long value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, String value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, Parcelable value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public boolean hasExtra(String name) {
+        return mExtras.containsKey(name);
+    }
+
+    public boolean getBooleanExtra(String name, boolean defaultValue) {
+        Object value = mExtras.get(name);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    public int getIntExtra(String name, int defaultValue) {
+        Object value = mExtras.get(name);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public long getLongExtra(String name, long defaultValue) {
+        Object value = mExtras.get(name);
+        return value instanceof Long ? (Long) value : defaultValue;
+    }
+
+    public String getStringExtra(String name) {
+        Object value = mExtras.get(name);
+        return value instanceof String ? (String) value : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T getParcelableExtra(String name) {
+        Object value = mExtras.get(name);
+        return value instanceof Parcelable ? (T) value : null;
+    }
+
+    @Override
+    public String toString() {
+        return "Intent{act=" + mAction + " extras=" + mExtras + "}";
+    }
+}
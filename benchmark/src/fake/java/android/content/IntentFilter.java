@@ -0,0 +1,41 @@
+package android.content;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public class IntentFilter {
+
+    private final List<String> mActions = new ArrayList<>();
+
+    public IntentFilter() {
+    }
+
+    public IntentFilter(String action) {
+        addAction(action);
+    }
+
+    public final void addAction(String action) {
+        if (!mActions.contains(action)) {
+            mActions.add(action);
+        }
+    }
+
+    public final int countActions() {
+        return mActions.size();
+    }
+
+    public final String getAction(int index) {
+        return mActions.get(index);
+    }
+
+    public final boolean hasAction(String action) {
+        return action != null && mActions.contains(action);
+    }
+
+    public final boolean matchAction(String action) {
+        return hasAction(action);
+    }
+}
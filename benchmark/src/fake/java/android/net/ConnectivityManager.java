@@ -0,0 +1,77 @@
+package android.net;
+
+import android.os.Handler;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ * <p>Reports no network,the benchmarks override the methods with the simulated state.
+ */
+public class ConnectivityManager {
+
+    public static final String CONNECTIVITY_ACTION = "android.net.conn.CONNECTIVITY_CHANGE";
+
+    public static final int TYPE_NONE = -1;
+    public static final int TYPE_MOBILE = 0;
+    public static final int TYPE_WIFI = 1;
+    public static final int TYPE_ETHERNET = 9;
+
+    public NetworkInfo getActiveNetworkInfo() {
+        return null;
+    }
+
+    public NetworkInfo getNetworkInfo(Network network) {
+        return null;
+    }
+
+    public NetworkInfo[] getAllNetworkInfo() {
+        return new NetworkInfo[0];
+    }
+
+    public Network[] getAllNetworks() {
+        return new Network[0];
+    }
+
+    public NetworkCapabilities getNetworkCapabilities(Network network) {
+        return null;
+    }
+
+    public LinkProperties getLinkProperties(Network network) {
+        return null;
+    }
+
+    public void registerNetworkCallback(NetworkRequest request, NetworkCallback networkCallback) {
+    }
+
+    public void registerNetworkCallback(NetworkRequest request, NetworkCallback networkCallback, Handler handler) {
+    }
+
+    public void registerDefaultNetworkCallback(NetworkCallback networkCallback) {
+    }
+
+    public void registerDefaultNetworkCallback(NetworkCallback networkCallback, Handler handler) {
+    }
+
+    public void unregisterNetworkCallback(NetworkCallback networkCallback) {
+    }
+
+    public static class NetworkCallback {
+
+        public void onAvailable(Network network) {
+        }
+
+        public void onLosing(Network network, int maxMsToLive) {
+        }
+
+        public void onLost(Network network) {
+        }
+
+        public void onUnavailable() {
+        }
+
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
+        }
+
+        public void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
+        }
+    }
+}
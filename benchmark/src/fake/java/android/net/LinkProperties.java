@@ -0,0 +1,65 @@
+package android.net;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public final class LinkProperties implements android.os.Parcelable {
+
+    private String mIfaceName;
+    private final ArrayList<InetAddress> mDnses = new ArrayList<>();
+
+    public LinkProperties() {
+    }
+
+    public LinkProperties(LinkProperties source) {
+        if (source != null) {
+            mIfaceName = source.mIfaceName;
+            mDnses.addAll(source.mDnses);
+        }
+    }
+
+    public void setInterfaceName(String iface) {
+        mIfaceName = iface;
+    }
+
+    public String getInterfaceName() {
+        return mIfaceName;
+    }
+
+    public boolean addDnsServer(InetAddress dnsServer) {
+        if (dnsServer != null && !mDnses.contains(dnsServer)) {
+            mDnses.add(dnsServer);
+            return true;
+        }
+        return false;
+    }
+
+    public List<InetAddress> getDnsServers() {
+        return Collections.unmodifiableList(mDnses);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof LinkProperties)) {
+            return false;
+        }
+        LinkProperties other = (LinkProperties) obj;
+        return (mIfaceName == null ? other.mIfaceName == null : mIfaceName.equals(other.mIfaceName))
+                && mDnses.equals(other.mDnses);
+    }
+
+    @Override
+    public int hashCode() {
+        return (mIfaceName == null ? 0 : mIfaceName.hashCode()) * 31 + mDnses.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "{InterfaceName: " + mIfaceName + " DnsAddresses: " + mDnses + "}";
+    }
+}
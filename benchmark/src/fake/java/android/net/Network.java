@@ -0,0 +1,63 @@
+package android.net;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+
+import javax.net.SocketFactory;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ * <p>Identified by the net id,sockets are not bound to any interface.
+ */
+public class Network implements android.os.Parcelable {
+
+    private final int mNetId;
+
+    public Network(int netId) {
+        mNetId = netId;
+    }
+
+    /**
+     * Same encoding as the framework: the net id in the high 32 bits and a magic number in the low 32 bits.
+     */
+    private static final long HANDLE_MAGIC = 0xcafed00dL;
+
+    public long getNetworkHandle() {
+        return mNetId == 0 ? 0 : ((long) mNetId << 32) | HANDLE_MAGIC;
+    }
+
+    public static Network fromNetworkHandle(long networkHandle) {
+        if (networkHandle == 0 || (networkHandle & 0xffffffffL) != HANDLE_MAGIC) {
+            throw new IllegalArgumentException("Network.fromNetworkHandle refusing to instantiate NETID_UNSET Network.");
+        }
+        return new Network((int) (networkHandle >>> 32));
+    }
+
+    public SocketFactory getSocketFactory() {
+        return SocketFactory.getDefault();
+    }
+
+    public void bindSocket(Socket socket) throws IOException {
+    }
+
+    public InetAddress[] getAllByName(String host) throws UnknownHostException {
+        return InetAddress.getAllByName(host);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Network && ((Network) obj).mNetId == mNetId;
+    }
+
+    @Override
+    public int hashCode() {
+        return mNetId * 11;
+    }
+
+    @Override
+    public String toString() {
+        return Integer.toString(mNetId);
+    }
+}
@@ -0,0 +1,107 @@
+package android.net;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public final class NetworkCapabilities implements android.os.Parcelable {
+
+    public static final int TRANSPORT_CELLULAR = 0;
+    public static final int TRANSPORT_WIFI = 1;
+    public static final int TRANSPORT_BLUETOOTH = 2;
+    public static final int TRANSPORT_ETHERNET = 3;
+    public static final int TRANSPORT_VPN = 4;
+
+    public static final int NET_CAPABILITY_NOT_METERED = 11;
+    public static final int NET_CAPABILITY_INTERNET = 12;
+    public static final int NET_CAPABILITY_NOT_RESTRICTED = 13;
+    public static final int NET_CAPABILITY_VALIDATED = 16;
+
+    private long mTransportTypes;
+    private long mNetworkCapabilities;
+    private int mLinkUpBandwidthKbps;
+    private int mLinkDownBandwidthKbps;
+
+    public NetworkCapabilities() {
+    }
+
+    public NetworkCapabilities(NetworkCapabilities other) {
+        if (other != null) {
+            mTransportTypes = other.mTransportTypes;
+            mNetworkCapabilities = other.mNetworkCapabilities;
+            mLinkUpBandwidthKbps = other.mLinkUpBandwidthKbps;
+            mLinkDownBandwidthKbps = other.mLinkDownBandwidthKbps;
+        }
+    }
+
+    public NetworkCapabilities addTransportType(int transportType) {
+        mTransportTypes |= 1L << transportType;
+        return this;
+    }
+
+    public boolean hasTransport(int transportType) {
+        return (mTransportTypes & (1L << transportType)) != 0;
+    }
+
+    public NetworkCapabilities addCapability(int capability) {
+        mNetworkCapabilities |= 1L << capability;
+        return this;
+    }
+
+    public NetworkCapabilities removeCapability(int capability) {
+        mNetworkCapabilities &= ~(1L << capability);
+        return this;
+    }
+
+    public boolean hasCapability(int capability) {
+        return (mNetworkCapabilities & (1L << capability)) != 0;
+    }
+
+    public void setLinkUpstreamBandwidthKbps(int upKbps) {
+        mLinkUpBandwidthKbps = upKbps;
+    }
+
+    public int getLinkUpstreamBandwidthKbps() {
+        return mLinkUpBandwidthKbps;
+    }
+
+    public void setLinkDownstreamBandwidthKbps(int downKbps) {
+        mLinkDownBandwidthKbps = downKbps;
+    }
+
+    public int getLinkDownstreamBandwidthKbps() {
+        return mLinkDownBandwidthKbps;
+    }
+
+    /**
+     * Return is every transport and capability of the request satisfied,fake only.
+     *
+     * @param request NetworkCapabilities of the request
+     * @return satisfied
+     */
+    public boolean satisfiedBy(NetworkCapabilities request) {
+        return (request.mTransportTypes == 0 || (mTransportTypes & request.mTransportTypes) != 0)
+                && (mNetworkCapabilities & request.mNetworkCapabilities) == request.mNetworkCapabilities;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof NetworkCapabilities)) {
+            return false;
+        }
+        NetworkCapabilities other = (NetworkCapabilities) obj;
+        return mTransportTypes == other.mTransportTypes && mNetworkCapabilities == other.mNetworkCapabilities
+                && mLinkUpBandwidthKbps == other.mLinkUpBandwidthKbps && mLinkDownBandwidthKbps == other.mLinkDownBandwidthKbps;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (mTransportTypes * 31 + mNetworkCapabilities) * 31 + mLinkDownBandwidthKbps;
+    }
+
+    @Override
+    public String toString() {
+        return "[ Transports: " + Long.toBinaryString(mTransportTypes)
+                + " Capabilities: " + Long.toBinaryString(mNetworkCapabilities)
+                + " LinkUpBandwidth>=" + mLinkUpBandwidthKbps + "Kbps LinkDnBandwidth>=" + mLinkDownBandwidthKbps + "Kbps]";
+    }
+}
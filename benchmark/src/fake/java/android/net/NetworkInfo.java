@@ -0,0 +1,54 @@
+package android.net;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public class NetworkInfo implements android.os.Parcelable {
+
+    public enum State {
+        CONNECTING, CONNECTED, SUSPENDED, DISCONNECTING, DISCONNECTED, UNKNOWN
+    }
+
+    private final int mType;
+    private final String mTypeName;
+    private volatile State mState = State.UNKNOWN;
+
+    public NetworkInfo(int type, String typeName) {
+        mType = type;
+        mTypeName = typeName;
+    }
+
+    public NetworkInfo(int type, String typeName, State state) {
+        this(type, typeName);
+        mState = state;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public String getTypeName() {
+        return mTypeName;
+    }
+
+    public State getState() {
+        return mState;
+    }
+
+    public void setState(State state) {
+        mState = state;
+    }
+
+    public boolean isConnected() {
+        return mState == State.CONNECTED;
+    }
+
+    public boolean isConnectedOrConnecting() {
+        return mState == State.CONNECTED || mState == State.CONNECTING;
+    }
+
+    @Override
+    public String toString() {
+        return "[type: " + mTypeName + ", state: " + mState + "]";
+    }
+}
@@ -0,0 +1,46 @@
+package android.net;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public class NetworkRequest {
+
+    private final NetworkCapabilities mCapabilities;
+
+    private NetworkRequest(NetworkCapabilities capabilities) {
+        mCapabilities = capabilities;
+    }
+
+    /**
+     * Return the requested capabilities,fake only.
+     *
+     * @return NetworkCapabilities
+     */
+    public NetworkCapabilities getCapabilities() {
+        return mCapabilities;
+    }
+
+    public static class Builder {
+
+        private final NetworkCapabilities mCapabilities = new NetworkCapabilities();
+
+        public Builder addTransportType(int transportType) {
+            mCapabilities.addTransportType(transportType);
+            return this;
+        }
+
+        public Builder addCapability(int capability) {
+            mCapabilities.addCapability(capability);
+            return this;
+        }
+
+        public Builder removeCapability(int capability) {
+            mCapabilities.removeCapability(capability);
+            return this;
+        }
+
+        public NetworkRequest build() {
+            return new NetworkRequest(new NetworkCapabilities(mCapabilities));
+        }
+    }
+}
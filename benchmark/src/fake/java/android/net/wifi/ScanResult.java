@@ -0,0 +1,32 @@
+package android.net.wifi;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public class ScanResult implements android.os.Parcelable {
+
+    public String SSID;
+    public String BSSID;
+    public String capabilities;
+    public int level;
+    public int frequency;
+    public long timestamp;
+
+    public ScanResult() {
+    }
+
+    public ScanResult(String ssid, String bssid, String capabilities, int level, int frequency, long timestamp) {
+        SSID = ssid;
+        BSSID = bssid;
+        this.capabilities = capabilities;
+        this.level = level;
+        this.frequency = frequency;
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "SSID: " + SSID + ", BSSID: " + BSSID + ", capabilities: " + capabilities
+                + ", level: " + level + ", frequency: " + frequency;
+    }
+}
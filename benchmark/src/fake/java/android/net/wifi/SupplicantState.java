@@ -0,0 +1,20 @@
+package android.net.wifi;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public enum SupplicantState implements android.os.Parcelable {
+    DISCONNECTED,
+    INTERFACE_DISABLED,
+    INACTIVE,
+    SCANNING,
+    AUTHENTICATING,
+    ASSOCIATING,
+    ASSOCIATED,
+    FOUR_WAY_HANDSHAKE,
+    GROUP_HANDSHAKE,
+    COMPLETED,
+    DORMANT,
+    UNINITIALIZED,
+    INVALID
+}
@@ -0,0 +1,36 @@
+package android.net.wifi;
+
+import java.util.BitSet;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public class WifiConfiguration implements android.os.Parcelable {
+
+    public int networkId = -1;
+    public String SSID;
+    public String BSSID;
+    public String preSharedKey;
+    public String[] wepKeys = new String[4];
+    public boolean hiddenSSID;
+    public BitSet allowedKeyManagement = new BitSet();
+    public BitSet allowedAuthAlgorithms = new BitSet();
+
+    public static class KeyMgmt {
+        public static final int NONE = 0;
+        public static final int WPA_PSK = 1;
+        public static final int WPA_EAP = 2;
+        public static final int IEEE8021X = 3;
+    }
+
+    public static class AuthAlgorithm {
+        public static final int OPEN = 0;
+        public static final int SHARED = 1;
+        public static final int LEAP = 2;
+    }
+
+    @Override
+    public String toString() {
+        return "ID: " + networkId + " SSID: " + SSID + " KeyMgmt: " + allowedKeyManagement;
+    }
+}
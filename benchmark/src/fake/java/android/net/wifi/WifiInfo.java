@@ -0,0 +1,51 @@
+package android.net.wifi;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public class WifiInfo implements android.os.Parcelable {
+
+    private final String mSSID;
+    private final String mBSSID;
+    private final int mRssi;
+    private final int mFrequency;
+    private final int mNetworkId;
+
+    public WifiInfo(String ssid, String bssid, int rssi, int frequency, int networkId) {
+        mSSID = ssid;
+        mBSSID = bssid;
+        mRssi = rssi;
+        mFrequency = frequency;
+        mNetworkId = networkId;
+    }
+
+    /**
+     * Return the SSID quoted as the framework does.
+     *
+     * @return SSID
+     */
+    public String getSSID() {
+        return mSSID == null ? "<unknown ssid>" : "\"" + mSSID + "\"";
+    }
+
+    public String getBSSID() {
+        return mBSSID;
+    }
+
+    public int getRssi() {
+        return mRssi;
+    }
+
+    public int getFrequency() {
+        return mFrequency;
+    }
+
+    public int getNetworkId() {
+        return mNetworkId;
+    }
+
+    @Override
+    public String toString() {
+        return "SSID: " + getSSID() + ", BSSID: " + mBSSID + ", RSSI: " + mRssi + ", Frequency: " + mFrequency;
+    }
+}
@@ -0,0 +1,65 @@
+package android.net.wifi;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ * <p>Reports WiFi disabled,the benchmarks override the methods with the simulated state.
+ */
+public class WifiManager {
+
+    public static final String SCAN_RESULTS_AVAILABLE_ACTION = "android.net.wifi.SCAN_RESULTS";
+    public static final String SUPPLICANT_STATE_CHANGED_ACTION = "android.net.wifi.supplicant.STATE_CHANGE";
+    public static final String EXTRA_NEW_STATE = "newState";
+    public static final String EXTRA_SUPPLICANT_ERROR = "supplicantError";
+    public static final int ERROR_AUTHENTICATING = 1;
+
+    public boolean isWifiEnabled() {
+        return false;
+    }
+
+    public boolean setWifiEnabled(boolean enabled) {
+        return false;
+    }
+
+    public WifiInfo getConnectionInfo() {
+        return null;
+    }
+
+    public List<ScanResult> getScanResults() {
+        return Collections.emptyList();
+    }
+
+    public boolean startScan() {
+        return false;
+    }
+
+    public List<WifiConfiguration> getConfiguredNetworks() {
+        return Collections.emptyList();
+    }
+
+    public int addNetwork(WifiConfiguration config) {
+        return -1;
+    }
+
+    public int updateNetwork(WifiConfiguration config) {
+        return -1;
+    }
+
+    public boolean removeNetwork(int netId) {
+        return false;
+    }
+
+    public boolean enableNetwork(int netId, boolean attemptConnect) {
+        return false;
+    }
+
+    public boolean saveConfiguration() {
+        return false;
+    }
+
+    public boolean reconnect() {
+        return false;
+    }
+}
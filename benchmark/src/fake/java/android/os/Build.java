@@ -0,0 +1,23 @@
+package android.os;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ * <p>The SDK level is read from the system property {@code fake.sdk.int},android O by default,
+ * so the legacy broadcast paths could be measured too.
+ */
+public class Build {
+
+    public static class VERSION {
+        public static final int SDK_INT = Integer.getInteger("fake.sdk.int", VERSION_CODES.O);
+    }
+
+    public static class VERSION_CODES {
+        public static final int JELLY_BEAN_MR1 = 17;
+        public static final int JELLY_BEAN_MR2 = 18;
+        public static final int LOLLIPOP = 21;
+        public static final int M = 23;
+        public static final int N = 24;
+        public static final int O = 26;
+        public static final int P = 28;
+    }
+}
@@ -0,0 +1,32 @@
+package android.os;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public class Handler {
+
+    private final Looper mLooper;
+
+    public Handler(Looper looper) {
+        if (looper == null) {
+            throw new NullPointerException("Looper should not be null!");
+        }
+        mLooper = looper;
+    }
+
+    public final Looper getLooper() {
+        return mLooper;
+    }
+
+    public final boolean post(Runnable task) {
+        return mLooper.enqueue(this, task, SystemClock.uptimeMillis());
+    }
+
+    public final boolean postDelayed(Runnable task, long delayMillis) {
+        return mLooper.enqueue(this, task, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+    }
+
+    public final void removeCallbacks(Runnable task) {
+        mLooper.remove(this, task);
+    }
+}
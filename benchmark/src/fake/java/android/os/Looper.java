@@ -0,0 +1,136 @@
+package android.os;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ * <p>A message queue ordered by due time then by post order,run by {@link HandlerThread}.
+ */
+public final class Looper {
+
+    private static final ThreadLocal<Looper> sThreadLocal = new ThreadLocal<>();
+
+    private final PriorityQueue<Message> mQueue = new PriorityQueue<>();
+    private long mSequence;
+    private boolean mQuitting;
+    private boolean mQuitSafely;
+
+    private Looper() {
+    }
+
+    public static void prepare() {
+        if (sThreadLocal.get() != null) {
+            throw new RuntimeException("Only one Looper may be created per thread");
+        }
+        sThreadLocal.set(new Looper());
+    }
+
+    public static Looper myLooper() {
+        return sThreadLocal.get();
+    }
+
+    public static void loop() {
+        Looper looper = myLooper();
+        if (looper == null) {
+            throw new RuntimeException("No Looper; Looper.prepare() wasn't called on this thread.");
+        }
+        while (true) {
+            Runnable task = looper.next();
+            if (task == null) {
+                return;
+            }
+            task.run();
+        }
+    }
+
+    synchronized boolean enqueue(Handler handler, Runnable task, long uptimeMillis) {
+        if (mQuitting) {
+            return false;
+        }
+        mQueue.add(new Message(handler, task, uptimeMillis, mSequence++));
+        notifyAll();
+        return true;
+    }
+
+    synchronized void remove(Handler handler, Runnable task) {
+        Iterator<Message> iterator = mQueue.iterator();
+        while (iterator.hasNext()) {
+            Message message = iterator.next();
+            if (message.mHandler == handler && message.mTask == task) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void quit() {
+        mQuitting = true;
+        mQueue.clear();
+        notifyAll();
+    }
+
+    public synchronized void quitSafely() {
+        mQuitting = true;
+        mQuitSafely = true;
+        Iterator<Message> iterator = mQueue.iterator();
+        long now = SystemClock.uptimeMillis();
+        while (iterator.hasNext()) {
+            if (iterator.next().mWhen > now) {
+                iterator.remove();
+            }
+        }
+        notifyAll();
+    }
+
+    private synchronized Runnable next() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                Message head = mQueue.peek();
+                long now = SystemClock.uptimeMillis();
+                if (head != null && head.mWhen <= now) {
+                    mQueue.poll();
+                    return head.mTask;
+                }
+                if (mQuitting && (!mQuitSafely || head == null)) {
+                    return null;
+                }
+                try {
+                    if (head == null) {
+                        wait();
+                    } else {
+                        wait(head.mWhen - now);
+                    }
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Message implements Comparable<Message> {
+        private final Handler mHandler;
+        private final Runnable mTask;
+        private final long mWhen;
+        private final long mSequence;
+
+        Message(Handler handler, Runnable task, long when, long sequence) {
+            mHandler = handler;
+            mTask = task;
+            mWhen = when;
+            mSequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Message other) {
+            if (mWhen != other.mWhen) {
+                return mWhen < other.mWhen ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package android.os;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ * <p>Only a marker,nothing is parceled in process.
+ */
+public interface Parcelable {
+}
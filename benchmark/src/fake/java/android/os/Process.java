@@ -0,0 +1,11 @@
+package android.os;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public class Process {
+
+    public static int myUid() {
+        return 10000;
+    }
+}
@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public final class SystemClock {
+
+    private SystemClock() {
+    }
+
+    public static long elapsedRealtime() {
+        return System.nanoTime() / 1000000;
+    }
+
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000;
+    }
+}
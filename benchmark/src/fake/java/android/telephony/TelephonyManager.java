@@ -0,0 +1,7 @@
+package android.telephony;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ */
+public class TelephonyManager {
+}
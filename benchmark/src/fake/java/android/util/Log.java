@@ -0,0 +1,47 @@
+package android.util;
+
+/**
+ * JVM fake of the framework class for the benchmarks.
+ * <p>Drops the messages,set the system property {@code fake.log} to print them.
+ */
+public final class Log {
+
+    private static final boolean ENABLED = Boolean.getBoolean("fake.log");
+
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) {
+        return println("D", tag, msg, null);
+    }
+
+    public static int i(String tag, String msg) {
+        return println("I", tag, msg, null);
+    }
+
+    public static int w(String tag, String msg) {
+        return println("W", tag, msg, null);
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return println("W", tag, msg, tr);
+    }
+
+    public static int e(String tag, String msg) {
+        return println("E", tag, msg, null);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return println("E", tag, msg, tr);
+    }
+
+    private static int println(String level, String tag, String msg, Throwable tr) {
+        if (ENABLED) {
+            System.out.println(level + "/" + tag + ": " + msg);
+            if (tr != null) {
+                tr.printStackTrace(System.out);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,198 @@
+package com.seagle.android.net.monitor;
+
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Fake connectivity service of the benchmarks.
+ * <p>Holds the simulated networks in memory,the benchmarks change them directly and
+ * the queries of the monitor are answered without any IPC.
+ * The callbacks are called synchronously on the caller thread,a callback registered receives the current networks
+ * right away and since android O onAvailable is followed by onCapabilitiesChanged and onLinkPropertiesChanged,
+ * as the system does.
+ */
+class FakeConnectivityManager extends ConnectivityManager {
+
+    private final Map<Network, NetworkInfo> mNetworkInfos = new ConcurrentHashMap<>();
+    private final Map<Network, NetworkCapabilities> mCapabilities = new ConcurrentHashMap<>();
+    private final Map<Network, LinkProperties> mLinkProperties = new ConcurrentHashMap<>();
+    private final Map<NetworkCallback, NetworkRequest> mCallbacks = new ConcurrentHashMap<>();
+    private final Set<NetworkCallback> mDefaultCallbacks = new CopyOnWriteArraySet<>();
+    private volatile NetworkInfo mActiveNetworkInfo;
+    private volatile Network mDefaultNetwork;
+
+    /**
+     * Add or replace a simulated network.
+     *
+     * @param network        Network
+     * @param networkInfo    NetworkInfo
+     * @param capabilities   NetworkCapabilities
+     * @param linkProperties LinkProperties
+     */
+    void putNetwork(Network network, NetworkInfo networkInfo, NetworkCapabilities capabilities, LinkProperties linkProperties) {
+        mNetworkInfos.put(network, networkInfo);
+        mCapabilities.put(network, capabilities);
+        mLinkProperties.put(network, linkProperties);
+    }
+
+    void removeNetwork(Network network) {
+        mNetworkInfos.remove(network);
+        mCapabilities.remove(network);
+        mLinkProperties.remove(network);
+    }
+
+    /**
+     * Change the capabilities of a network and report them to the callbacks whose request it satisfies.
+     *
+     * @param network      Network
+     * @param capabilities NetworkCapabilities
+     */
+    void notifyCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+        mCapabilities.put(network, capabilities);
+        for (Map.Entry<NetworkCallback, NetworkRequest> entry : mCallbacks.entrySet()) {
+            if (capabilities.satisfiedBy(entry.getValue().getCapabilities())) {
+                entry.getKey().onCapabilitiesChanged(network, capabilities);
+            }
+        }
+    }
+
+    /**
+     * Change the default network,the active network info follows it and the default network callbacks are notified.
+     *
+     * @param network Network,null for no default network
+     */
+    void setDefaultNetwork(Network network) {
+        Network previous = mDefaultNetwork;
+        mDefaultNetwork = network;
+        mActiveNetworkInfo = network == null ? null : mNetworkInfos.get(network);
+        for (NetworkCallback callback : mDefaultCallbacks) {
+            if (network != null) {
+                deliverAvailable(callback, network);
+            } else if (previous != null) {
+                callback.onLost(previous);
+            }
+        }
+    }
+
+    int getCallbackCount() {
+        return mCallbacks.size() + mDefaultCallbacks.size();
+    }
+
+    /**
+     * Report the network available to the callbacks whose request it satisfies.
+     *
+     * @param network Network
+     */
+    void notifyAvailable(Network network) {
+        NetworkCapabilities capabilities = mCapabilities.get(network);
+        for (Map.Entry<NetworkCallback, NetworkRequest> entry : mCallbacks.entrySet()) {
+            if (capabilities != null && capabilities.satisfiedBy(entry.getValue().getCapabilities())) {
+                deliverAvailable(entry.getKey(), network);
+            }
+        }
+    }
+
+    private void deliverAvailable(NetworkCallback callback, Network network) {
+        callback.onAvailable(network);
+        NetworkCapabilities capabilities = mCapabilities.get(network);
+        LinkProperties linkProperties = mLinkProperties.get(network);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            if (capabilities != null) {
+                callback.onCapabilitiesChanged(network, capabilities);
+            }
+            if (linkProperties != null) {
+                callback.onLinkPropertiesChanged(network, linkProperties);
+            }
+        }
+    }
+
+    /**
+     * Report the network lost to the callbacks whose request it satisfied.
+     *
+     * @param network      Network
+     * @param capabilities the capabilities of the lost network
+     */
+    void notifyLost(Network network, NetworkCapabilities capabilities) {
+        for (Map.Entry<NetworkCallback, NetworkRequest> entry : mCallbacks.entrySet()) {
+            if (capabilities.satisfiedBy(entry.getValue().getCapabilities())) {
+                entry.getKey().onLost(network);
+            }
+        }
+    }
+
+    @Override
+    public NetworkInfo getActiveNetworkInfo() {
+        return mActiveNetworkInfo;
+    }
+
+    @Override
+    public NetworkInfo getNetworkInfo(Network network) {
+        return mNetworkInfos.get(network);
+    }
+
+    @Override
+    public NetworkInfo[] getAllNetworkInfo() {
+        return mNetworkInfos.values().toArray(new NetworkInfo[0]);
+    }
+
+    @Override
+    public Network[] getAllNetworks() {
+        return mNetworkInfos.keySet().toArray(new Network[0]);
+    }
+
+    @Override
+    public NetworkCapabilities getNetworkCapabilities(Network network) {
+        return mCapabilities.get(network);
+    }
+
+    @Override
+    public LinkProperties getLinkProperties(Network network) {
+        return mLinkProperties.get(network);
+    }
+
+    @Override
+    public void registerNetworkCallback(NetworkRequest request, NetworkCallback networkCallback) {
+        mCallbacks.put(networkCallback, request);
+        for (Map.Entry<Network, NetworkCapabilities> entry : mCapabilities.entrySet()) {
+            if (entry.getValue().satisfiedBy(request.getCapabilities())) {
+                deliverAvailable(networkCallback, entry.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void registerNetworkCallback(NetworkRequest request, NetworkCallback networkCallback, Handler handler) {
+        registerNetworkCallback(request, networkCallback);
+    }
+
+    @Override
+    public void registerDefaultNetworkCallback(NetworkCallback networkCallback) {
+        mDefaultCallbacks.add(networkCallback);
+        Network network = mDefaultNetwork;
+        if (network != null) {
+            deliverAvailable(networkCallback, network);
+        }
+    }
+
+    @Override
+    public void registerDefaultNetworkCallback(NetworkCallback networkCallback, Handler handler) {
+        registerDefaultNetworkCallback(networkCallback);
+    }
+
+    @Override
+    public void unregisterNetworkCallback(NetworkCallback networkCallback) {
+        mCallbacks.remove(networkCallback);
+        mDefaultCallbacks.remove(networkCallback);
+    }
+}
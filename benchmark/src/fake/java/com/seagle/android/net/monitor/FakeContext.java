@@ -0,0 +1,120 @@
+package com.seagle.android.net.monitor;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fake application context of the benchmarks.
+ * <p>Hands out the fake system services and delivers the broadcasts synchronously on the sender thread,
+ * so a benchmark measures the receiver path without the cost of a thread handoff.
+ */
+class FakeContext extends Context {
+
+    private final Map<String, Object> mServices = new HashMap<>();
+    private final CopyOnWriteArrayList<Registration> mReceivers = new CopyOnWriteArrayList<>();
+    private final Map<String, Intent> mStickyBroadcasts = new HashMap<>();
+    private final File mFilesDir;
+
+    FakeContext(FakeConnectivityManager connectivityManager, FakeWifiManager wifiManager) {
+        mServices.put(CONNECTIVITY_SERVICE, connectivityManager);
+        mServices.put(WIFI_SERVICE, wifiManager);
+        mFilesDir = new File(System.getProperty("java.io.tmpdir"), "netmonitor-benchmark");
+        mFilesDir.mkdirs();
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public Object getSystemService(String name) {
+        return mServices.get(name);
+    }
+
+    @Override
+    public File getFilesDir() {
+        return mFilesDir;
+    }
+
+    @Override
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        return registerReceiver(receiver, filter, null, null);
+    }
+
+    @Override
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, String broadcastPermission, Handler scheduler) {
+        mReceivers.add(new Registration(receiver, filter));
+        synchronized (mStickyBroadcasts) {
+            for (int i = 0; i < filter.countActions(); i++) {
+                Intent sticky = mStickyBroadcasts.get(filter.getAction(i));
+                if (sticky != null) {
+                    return sticky;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+        for (Registration registration : mReceivers) {
+            if (registration.mReceiver == receiver) {
+                mReceivers.remove(registration);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Receiver not registered: " + receiver);
+    }
+
+    @Override
+    public void sendBroadcast(Intent intent) {
+        for (Registration registration : mReceivers) {
+            if (registration.mFilter.hasAction(intent.getAction())) {
+                registration.mReceiver.onReceive(this, intent);
+            }
+        }
+    }
+
+    @Override
+    public void sendStickyBroadcast(Intent intent) {
+        synchronized (mStickyBroadcasts) {
+            mStickyBroadcasts.put(intent.getAction(), intent);
+        }
+        sendBroadcast(intent);
+    }
+
+    @Override
+    public void removeStickyBroadcast(Intent intent) {
+        synchronized (mStickyBroadcasts) {
+            mStickyBroadcasts.remove(intent.getAction());
+        }
+    }
+
+    /**
+     * Return the count of registered receivers.
+     *
+     * @return receiver count
+     */
+    int getReceiverCount() {
+        return mReceivers.size();
+    }
+
+    private static class Registration {
+        private final BroadcastReceiver mReceiver;
+        private final IntentFilter mFilter;
+
+        Registration(BroadcastReceiver receiver, IntentFilter filter) {
+            mReceiver = receiver;
+            mFilter = filter;
+        }
+    }
+}
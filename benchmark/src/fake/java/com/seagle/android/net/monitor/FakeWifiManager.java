@@ -0,0 +1,99 @@
+package com.seagle.android.net.monitor;
+
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fake WiFi service of the benchmarks.
+ * <p>Keeps the configured networks in memory.New networks are rejected unless enabled,
+ * so a benchmark building configurations in a loop does not grow the configured network list.
+ */
+class FakeWifiManager extends WifiManager {
+
+    private final CopyOnWriteArrayList<WifiConfiguration> mConfigs = new CopyOnWriteArrayList<>();
+    private volatile boolean mAddEnabled;
+    private volatile WifiInfo mConnectionInfo;
+    private int mNextNetId = 1;
+
+    void setAddEnabled(boolean enabled) {
+        mAddEnabled = enabled;
+    }
+
+    void setConnectionInfo(WifiInfo wifiInfo) {
+        mConnectionInfo = wifiInfo;
+    }
+
+    /**
+     * Add a configured network,as if it was saved before the monitor started.
+     *
+     * @param ssid SSID,not quoted
+     * @return network id
+     */
+    synchronized int putConfiguredNetwork(String ssid) {
+        WifiConfiguration config = new WifiConfiguration();
+        config.SSID = WiFiConnector.convertToQuotedString(ssid);
+        config.networkId = mNextNetId++;
+        mConfigs.add(config);
+        return config.networkId;
+    }
+
+    @Override
+    public boolean isWifiEnabled() {
+        return true;
+    }
+
+    @Override
+    public WifiInfo getConnectionInfo() {
+        return mConnectionInfo;
+    }
+
+    @Override
+    public List<WifiConfiguration> getConfiguredNetworks() {
+        return new ArrayList<>(mConfigs);
+    }
+
+    @Override
+    public synchronized int addNetwork(WifiConfiguration config) {
+        if (!mAddEnabled) {
+            return -1;
+        }
+        config.networkId = mNextNetId++;
+        mConfigs.add(config);
+        return config.networkId;
+    }
+
+    @Override
+    public int updateNetwork(WifiConfiguration config) {
+        return config.networkId;
+    }
+
+    @Override
+    public boolean removeNetwork(int netId) {
+        for (WifiConfiguration config : mConfigs) {
+            if (config.networkId == netId) {
+                return mConfigs.remove(config);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean enableNetwork(int netId, boolean attemptConnect) {
+        return true;
+    }
+
+    @Override
+    public boolean saveConfiguration() {
+        return true;
+    }
+
+    @Override
+    public boolean reconnect() {
+        return true;
+    }
+}
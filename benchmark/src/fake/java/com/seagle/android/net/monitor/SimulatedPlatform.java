@@ -0,0 +1,417 @@
+package com.seagle.android.net.monitor;
+
+import android.content.BroadcastReceiver;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Handler;
+import android.telephony.TelephonyManager;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory connectivity stack.
+ * <p>Plays the connectivity service,the WiFi service and the broadcast dispatcher for the monitor:
+ * the simulation methods change the networks and deliver the network callbacks and broadcasts
+ * on the handlers the monitor registered with,in the order the system does.
+ * A callback registered receives the current networks right away,since android O onAvailable is
+ * followed by onCapabilitiesChanged and onLinkPropertiesChanged,the default network callbacks follow the active network.
+ * The simulation methods should be called on one thread,the queries could be called on any thread.
+ */
+class SimulatedPlatform implements Platform {
+
+    private static final String[] TYPE_NAMES = {"WIFI", "MOBILE", "ETHERNET"};
+    private static final int[] TYPES = {ConnectivityManager.TYPE_WIFI, ConnectivityManager.TYPE_MOBILE, ConnectivityManager.TYPE_ETHERNET};
+    private static final int[] CAPABILITY_TRANSPORTS = {
+            NetworkCapabilities.TRANSPORT_WIFI, NetworkCapabilities.TRANSPORT_CELLULAR, NetworkCapabilities.TRANSPORT_ETHERNET};
+    private static final String[] INTERFACE_NAMES = {"wlan", "rmnet", "eth"};
+
+    private final Map<Network, SimNetwork> mNetworks = new LinkedHashMap<>();
+    private final CopyOnWriteArrayList<CallbackRegistration> mCallbacks = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<ReceiverRegistration> mReceivers = new CopyOnWriteArrayList<>();
+    private final FakeWifiManager mWifiManager = new FakeWifiManager();
+    private final File mFilesDir;
+    private Network mActiveNetwork;
+
+    SimulatedPlatform() {
+        mWifiManager.setAddEnabled(true);
+        mFilesDir = new File(System.getProperty("java.io.tmpdir"), "netmonitor-simulation");
+        mFilesDir.mkdirs();
+    }
+
+    /**
+     * A network connected,the callbacks whose request it satisfies receive onAvailable,
+     * followed by onCapabilitiesChanged and onLinkPropertiesChanged since android O.
+     *
+     * @param transport transport,such as {@link NetworkMonitor#TRANSPORT_WIFI}
+     * @param netId     net id
+     * @param ssid      SSID of a WiFi network,not quoted
+     */
+    void connect(int transport, int netId, String ssid) {
+        final Network network = new Network(netId);
+        NetworkInfo networkInfo = new NetworkInfo(TYPES[transport], TYPE_NAMES[transport], NetworkInfo.State.CONNECTED);
+        NetworkCapabilities capabilities = new NetworkCapabilities()
+                .addTransportType(CAPABILITY_TRANSPORTS[transport])
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        if (transport != NetworkMonitor.TRANSPORT_MOBILE) {
+            capabilities.addCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        }
+        LinkProperties linkProperties = new LinkProperties();
+        linkProperties.setInterfaceName(INTERFACE_NAMES[transport] + netId);
+        linkProperties.addDnsServer(toAddress(netId));
+        synchronized (this) {
+            mNetworks.put(network, new SimNetwork(transport, networkInfo, capabilities, linkProperties));
+        }
+        if (transport == NetworkMonitor.TRANSPORT_WIFI) {
+            mWifiManager.setConnectionInfo(new WifiInfo(ssid, "02:00:00:00:00:" + Integer.toHexString(netId & 0xff), -55, 5180, netId));
+        }
+        for (CallbackRegistration registration : mCallbacks) {
+            if (registration.mRequest != null && capabilities.satisfiedBy(registration.mRequest.getCapabilities())) {
+                registration.postAvailable(network, capabilities, linkProperties);
+            }
+        }
+    }
+
+    /**
+     * A network lost,the callbacks whose request it satisfied receive onLost.
+     * If it is the active network,there is no active network anymore,the default network callbacks receive onLost
+     * and the connectivity broadcast is sent.
+     *
+     * @param netId net id
+     */
+    void disconnect(int netId) {
+        final Network network = new Network(netId);
+        SimNetwork lost;
+        boolean active;
+        synchronized (this) {
+            lost = mNetworks.remove(network);
+            active = network.equals(mActiveNetwork);
+            if (active) {
+                mActiveNetwork = null;
+            }
+        }
+        if (lost == null) {
+            return;
+        }
+        if (lost.mTransport == NetworkMonitor.TRANSPORT_WIFI && getNetworks(NetworkMonitor.TRANSPORT_WIFI).isEmpty()) {
+            mWifiManager.setConnectionInfo(null);
+        }
+        for (CallbackRegistration registration : mCallbacks) {
+            boolean matched = registration.mRequest == null ? active
+                    : lost.mCapabilities.satisfiedBy(registration.mRequest.getCapabilities());
+            if (matched) {
+                registration.postLost(network);
+            }
+        }
+        if (active) {
+            sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        }
+    }
+
+    /**
+     * Change the active network,notify the default network callbacks and send the connectivity broadcast.
+     *
+     * @param netId net id,-1 for no active network
+     */
+    void setActive(int netId) {
+        Network previous;
+        Network current;
+        SimNetwork simNetwork;
+        synchronized (this) {
+            previous = mActiveNetwork;
+            Network network = new Network(netId);
+            mActiveNetwork = netId < 0 || !mNetworks.containsKey(network) ? null : network;
+            current = mActiveNetwork;
+            simNetwork = current == null ? null : mNetworks.get(current);
+        }
+        if (current != null ? !current.equals(previous) : previous != null) {
+            for (CallbackRegistration registration : mCallbacks) {
+                if (registration.mRequest != null) {
+                    continue;
+                }
+                if (current != null) {
+                    registration.postAvailable(current, simNetwork.mCapabilities, simNetwork.mLinkProperties);
+                } else {
+                    registration.postLost(previous);
+                }
+            }
+        }
+        sendBroadcast(new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    /**
+     * Report the supplicant state change.
+     *
+     * @param state     SupplicantState
+     * @param authError authentication failed
+     */
+    void setSupplicantState(SupplicantState state, boolean authError) {
+        Intent intent = new Intent(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
+        intent.putExtra(WifiManager.EXTRA_NEW_STATE, state);
+        if (authError) {
+            intent.putExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, WifiManager.ERROR_AUTHENTICATING);
+        }
+        sendBroadcast(intent);
+    }
+
+    /**
+     * Return the connected networks of the transport,in connect order.
+     *
+     * @param transport transport
+     * @return networks
+     */
+    synchronized List<Network> getNetworks(int transport) {
+        List<Network> networks = new ArrayList<>();
+        for (Map.Entry<Network, SimNetwork> entry : mNetworks.entrySet()) {
+            if (entry.getValue().mTransport == transport) {
+                networks.add(entry.getKey());
+            }
+        }
+        return networks;
+    }
+
+    /**
+     * Return the transport of the active network.
+     *
+     * @return transport or {@link NetworkMonitor#TRANSPORT_NONE}
+     */
+    synchronized int getActiveTransport() {
+        SimNetwork network = mActiveNetwork == null ? null : mNetworks.get(mActiveNetwork);
+        return network == null ? NetworkMonitor.TRANSPORT_NONE : network.mTransport;
+    }
+
+    @Override
+    public synchronized NetworkInfo getActiveNetworkInfo() {
+        SimNetwork network = mActiveNetwork == null ? null : mNetworks.get(mActiveNetwork);
+        return network == null ? null : network.mNetworkInfo;
+    }
+
+    @Override
+    public synchronized NetworkInfo getNetworkInfo(Network network) {
+        SimNetwork simNetwork = mNetworks.get(network);
+        return simNetwork == null ? null : simNetwork.mNetworkInfo;
+    }
+
+    @Override
+    public synchronized NetworkCapabilities getNetworkCapabilities(Network network) {
+        SimNetwork simNetwork = mNetworks.get(network);
+        return simNetwork == null ? null : simNetwork.mCapabilities;
+    }
+
+    @Override
+    public synchronized LinkProperties getLinkProperties(Network network) {
+        SimNetwork simNetwork = mNetworks.get(network);
+        return simNetwork == null ? null : simNetwork.mLinkProperties;
+    }
+
+    @Override
+    public synchronized Network[] getAllNetworks() {
+        return mNetworks.keySet().toArray(new Network[0]);
+    }
+
+    @Override
+    public synchronized NetworkInfo[] getAllNetworkInfo() {
+        NetworkInfo[] networkInfos = new NetworkInfo[mNetworks.size()];
+        int index = 0;
+        for (SimNetwork network : mNetworks.values()) {
+            networkInfos[index++] = network.mNetworkInfo;
+        }
+        return networkInfos;
+    }
+
+    @Override
+    public void registerNetworkCallback(NetworkRequest request, ConnectivityManager.NetworkCallback callback, Handler handler) {
+        CallbackRegistration registration = new CallbackRegistration(request, callback, handler);
+        mCallbacks.add(registration);
+        synchronized (this) {
+            for (Map.Entry<Network, SimNetwork> entry : mNetworks.entrySet()) {
+                SimNetwork simNetwork = entry.getValue();
+                if (simNetwork.mCapabilities.satisfiedBy(request.getCapabilities())) {
+                    registration.postAvailable(entry.getKey(), simNetwork.mCapabilities, simNetwork.mLinkProperties);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void registerDefaultNetworkCallback(ConnectivityManager.NetworkCallback callback, Handler handler) {
+        CallbackRegistration registration = new CallbackRegistration(null, callback, handler);
+        mCallbacks.add(registration);
+        synchronized (this) {
+            if (mActiveNetwork != null) {
+                SimNetwork simNetwork = mNetworks.get(mActiveNetwork);
+                registration.postAvailable(mActiveNetwork, simNetwork.mCapabilities, simNetwork.mLinkProperties);
+            }
+        }
+    }
+
+    @Override
+    public void unregisterNetworkCallback(ConnectivityManager.NetworkCallback callback) {
+        for (CallbackRegistration registration : mCallbacks) {
+            if (registration.mCallback == callback) {
+                mCallbacks.remove(registration);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void registerReceiver(BroadcastReceiver receiver, IntentFilter filter, Handler handler) {
+        mReceivers.add(new ReceiverRegistration(receiver, filter, handler));
+    }
+
+    @Override
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+        for (ReceiverRegistration registration : mReceivers) {
+            if (registration.mReceiver == receiver) {
+                mReceivers.remove(registration);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Receiver not registered: " + receiver);
+    }
+
+    @Override
+    public void sendBroadcast(final Intent intent) {
+        for (final ReceiverRegistration registration : mReceivers) {
+            if (registration.mFilter.hasAction(intent.getAction())) {
+                Runnable delivery = new Runnable() {
+                    @Override
+                    public void run() {
+                        registration.mReceiver.onReceive(null, intent);
+                    }
+                };
+                if (registration.mHandler == null) {
+                    delivery.run();
+                } else {
+                    registration.mHandler.post(delivery);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sendStickyBroadcast(Intent intent) {
+        sendBroadcast(intent);
+    }
+
+    @Override
+    public void removeStickyBroadcast(Intent intent) {
+    }
+
+    @Override
+    public ConnectivityManager getConnectivityManager() {
+        return null;
+    }
+
+    @Override
+    public WifiManager getWifiManager() {
+        return mWifiManager;
+    }
+
+    @Override
+    public TelephonyManager getTelephonyManager() {
+        return null;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return mFilesDir;
+    }
+
+    private static InetAddress toAddress(int netId) {
+        try {
+            return InetAddress.getByAddress(new byte[]{10, (byte) (netId >> 8), (byte) netId, 1});
+        } catch (UnknownHostException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static class SimNetwork {
+        private final int mTransport;
+        private final NetworkInfo mNetworkInfo;
+        private final NetworkCapabilities mCapabilities;
+        private final LinkProperties mLinkProperties;
+
+        SimNetwork(int transport, NetworkInfo networkInfo, NetworkCapabilities capabilities, LinkProperties linkProperties) {
+            mTransport = transport;
+            mNetworkInfo = networkInfo;
+            mCapabilities = capabilities;
+            mLinkProperties = linkProperties;
+        }
+    }
+
+    /**
+     * The registration of a network callback,the request is null for a default network callback.
+     */
+    private static class CallbackRegistration {
+        private final NetworkRequest mRequest;
+        private final ConnectivityManager.NetworkCallback mCallback;
+        private final Handler mHandler;
+
+        CallbackRegistration(NetworkRequest request, ConnectivityManager.NetworkCallback callback, Handler handler) {
+            mRequest = request;
+            mCallback = callback;
+            mHandler = handler;
+        }
+
+        void postAvailable(final Network network, final NetworkCapabilities capabilities, final LinkProperties linkProperties) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mCallback.onAvailable(network);
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                        mCallback.onCapabilitiesChanged(network, capabilities);
+                        mCallback.onLinkPropertiesChanged(network, linkProperties);
+                    }
+                }
+            });
+        }
+
+        void postLost(final Network network) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    mCallback.onLost(network);
+                }
+            });
+        }
+
+        private void post(Runnable delivery) {
+            if (mHandler == null) {
+                delivery.run();
+            } else {
+                mHandler.post(delivery);
+            }
+        }
+    }
+
+    private static class ReceiverRegistration {
+        private final BroadcastReceiver mReceiver;
+        private final IntentFilter mFilter;
+        private final Handler mHandler;
+
+        ReceiverRegistration(BroadcastReceiver receiver, IntentFilter filter, Handler handler) {
+            mReceiver = receiver;
+            mFilter = filter;
+            mHandler = handler;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.seagle.android.net.monitor;
+
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.wifi.WifiInfo;
+
+/**
+ * The monitor running on the fake platform services.
+ * <p>WiFi and mobile are connected and WiFi is the active network,as a handset at home.
+ */
+class MonitorFixture {
+
+    static final Network WIFI_NETWORK = new Network(100);
+    static final Network MOBILE_NETWORK = new Network(101);
+
+    final FakeConnectivityManager mConnectivityManager = new FakeConnectivityManager();
+    final FakeWifiManager mWifiManager = new FakeWifiManager();
+    final FakeContext mContext = new FakeContext(mConnectivityManager, mWifiManager);
+    final NetworkInfo mWifiInfo = newNetworkInfo(ConnectivityManager.TYPE_WIFI, "WIFI");
+    final NetworkInfo mMobileInfo = newNetworkInfo(ConnectivityManager.TYPE_MOBILE, "MOBILE");
+    final NetworkCapabilities mWifiCapabilities = new NetworkCapabilities()
+            .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+            .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+            .addCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)
+            .addCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+    final NetworkMonitor mMonitor = NetworkMonitor.getInstance();
+
+    /**
+     * Start the monitor and the transport monitors,wait the connected networks published.
+     */
+    void start() {
+        NetworkCapabilities mobileCapabilities = new NetworkCapabilities()
+                .addTransportType(NetworkCapabilities.TRANSPORT_CELLULAR)
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+        mConnectivityManager.putNetwork(WIFI_NETWORK, mWifiInfo, mWifiCapabilities, newLinkProperties("wlan0"));
+        mConnectivityManager.putNetwork(MOBILE_NETWORK, mMobileInfo, mobileCapabilities, newLinkProperties("rmnet0"));
+        mConnectivityManager.setDefaultNetwork(WIFI_NETWORK);
+        mWifiManager.setConnectionInfo(new WifiInfo("benchmark", "02:00:00:00:00:01", -55, 5180, 1));
+
+        mMonitor.startMonitoring(mContext);
+        // The transport monitors start on the first read and the registration reports the connected networks.
+        if (mMonitor.getWiFiNetworkMonitor().getNetwork() == null || mMonitor.getMobileNetworkMonitor().getNetwork() == null) {
+            throw new IllegalStateException("Networks not published: " + mMonitor.getSnapshot());
+        }
+    }
+
+    void stop() {
+        mMonitor.stopMonitoring();
+    }
+
+    static NetworkInfo newNetworkInfo(int type, String typeName) {
+        return new NetworkInfo(type, typeName, NetworkInfo.State.CONNECTED);
+    }
+
+    static LinkProperties newLinkProperties(String interfaceName) {
+        LinkProperties linkProperties = new LinkProperties();
+        linkProperties.setInterfaceName(interfaceName);
+        return linkProperties;
+    }
+}
@@ -0,0 +1,59 @@
+package com.seagle.android.net.monitor;
+
+import android.net.Network;
+import android.net.NetworkInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The getters called by the app on every request,answered from the published snapshot.
+ */
+@State(Scope.Benchmark)
+public class SnapshotReadBenchmark {
+
+    private MonitorFixture mFixture;
+    private NetworkMonitor mMonitor;
+    private WiFiNetworkMonitor mWifiMonitor;
+
+    @Setup
+    public void setUp() {
+        mFixture = new MonitorFixture();
+        mFixture.start();
+        mMonitor = mFixture.mMonitor;
+        mWifiMonitor = mMonitor.getWiFiNetworkMonitor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFixture.stop();
+    }
+
+    @Benchmark
+    public boolean isConnected() {
+        return mMonitor.isConnected();
+    }
+
+    @Benchmark
+    public NetworkInfo getNetworkInfo() {
+        return mMonitor.getNetworkInfo();
+    }
+
+    @Benchmark
+    public Network getNetwork() {
+        return mWifiMonitor.getNetwork();
+    }
+
+    @Benchmark
+    public boolean isWiFiConnected() {
+        return mWifiMonitor.isConnected();
+    }
+
+    @Benchmark
+    public NetworkSnapshot getSnapshot() {
+        return mMonitor.getSnapshot();
+    }
+}
@@ -0,0 +1,118 @@
+package com.seagle.android.net.monitor;
+
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * One net transition from the platform signal to the listener.
+ * <p>Every invocation flips the state,so each one publishes a snapshot and dispatches an event.
+ * The coalesce window is 0 and the listener is called on the dispatch thread,
+ * which is the monitor thread for the platform callbacks and the benchmark thread otherwise.
+ */
+@State(Scope.Thread)
+public class TransitionDispatchBenchmark {
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private MonitorFixture mFixture;
+    private MobileNetworkMonitor mMobileMonitor;
+    private WiFiNetworkMonitor mWifiMonitor;
+    private Runnable mDefaultNetworkSwitch;
+    private Runnable mValidationChange;
+    private NetworkInfo mMobileInfo;
+    private boolean mFlip;
+    private Blackhole mBlackhole;
+
+    private final NetworkListener mListener = new NetworkListener() {
+        @Override
+        public void onNetworkEvent(NetworkEvent event) {
+            mBlackhole.consume(event);
+        }
+    };
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        mBlackhole = blackhole;
+        mFixture = new MonitorFixture();
+        mFixture.start();
+        mFixture.mMonitor.setMetricsEnabled(metrics);
+        mFixture.mMonitor.addListener(mListener, null);
+        mMobileMonitor = mFixture.mMonitor.getMobileNetworkMonitor();
+        mMobileMonitor.addListener(mListener, null);
+        mWifiMonitor = mFixture.mMonitor.getWiFiNetworkMonitor();
+        mWifiMonitor.addListener(mListener, null, NetworkEvent.FIELD_VALIDATED);
+        final NetworkCapabilities validated = mFixture.mWifiCapabilities;
+        final NetworkCapabilities notValidated = new NetworkCapabilities(validated)
+                .removeCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        mValidationChange = new Runnable() {
+            @Override
+            public void run() {
+                mFlip = !mFlip;
+                mFixture.mConnectivityManager.notifyCapabilitiesChanged(MonitorFixture.WIFI_NETWORK, mFlip ? notValidated : validated);
+            }
+        };
+        mDefaultNetworkSwitch = new Runnable() {
+            @Override
+            public void run() {
+                mFlip = !mFlip;
+                mFixture.mConnectivityManager.setDefaultNetwork(mFlip ? MonitorFixture.MOBILE_NETWORK : MonitorFixture.WIFI_NETWORK);
+            }
+        };
+        mMobileInfo = mFixture.mMobileInfo;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFixture.mMonitor.removeListener(mListener);
+        mMobileMonitor.removeListener(mListener);
+        mWifiMonitor.removeListener(mListener);
+        mFixture.mMonitor.setMetricsEnabled(false);
+        mFixture.stop();
+    }
+
+    /**
+     * Active network handover between WiFi and mobile,delivered by the default network callback.
+     * The callback is delivered on the monitor thread as the system does,
+     * so the result includes the handoff from the benchmark thread to the monitor thread and back.
+     *
+     * @return the published snapshot
+     */
+    @Benchmark
+    public NetworkSnapshot defaultNetworkSwitch() {
+        mFixture.mMonitor.getEventLoop().runSync(mDefaultNetworkSwitch);
+        return mFixture.mMonitor.getSnapshot();
+    }
+
+    /**
+     * WiFi validation lost/regained,delivered by onCapabilitiesChanged as an incremental properties change.
+     * Like the default network switch it includes the handoff to the monitor thread.
+     *
+     * @return the published snapshot
+     */
+    @Benchmark
+    public NetworkSnapshot capabilitiesChanged() {
+        mFixture.mMonitor.getEventLoop().runSync(mValidationChange);
+        return mFixture.mMonitor.getSnapshot();
+    }
+
+    /**
+     * Mobile transport connected/disconnected as driven by the broadcast below android LOLLIPOP.
+     *
+     * @return the published snapshot
+     */
+    @Benchmark
+    public NetworkSnapshot notifyNetworkState() {
+        mFlip = !mFlip;
+        mMobileMonitor.notifyNetworkState(mFlip, mFlip ? mMobileInfo : null);
+        return mFixture.mMonitor.getSnapshot();
+    }
+}
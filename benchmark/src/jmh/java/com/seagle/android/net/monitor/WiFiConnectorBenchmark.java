@@ -0,0 +1,63 @@
+package com.seagle.android.net.monitor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Build the WiFi configuration of a connect request.
+ * <p>The configured network index is loaded once at setup,so the benchmarks measure the lookup
+ * and the configuration building,not the configured network list query.
+ */
+@State(Scope.Thread)
+public class WiFiConnectorBenchmark {
+
+    private static final String SAVED_SSID = "saved";
+    private static final String NEW_SSID = "new";
+
+    @Param({"[WPA2-PSK-CCMP][ESS]", "[WEP][ESS]", "[ESS]"})
+    public String capabilities;
+
+    @Param({"benchmark-password"})
+    public String password;
+
+    private EventLoop mLoop;
+    private WiFiConfigStore mConfigStore;
+
+    @Setup
+    public void setUp() {
+        FakeWifiManager wifiManager = new FakeWifiManager();
+        wifiManager.putConfiguredNetwork(SAVED_SSID);
+        mLoop = new EventLoop("WiFiConnectorBenchmark");
+        mConfigStore = new WiFiConfigStore(wifiManager, mLoop, new MonitorMetrics());
+        mConfigStore.get(SAVED_SSID);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mLoop.quit();
+    }
+
+    /**
+     * A saved network with new password: look up the index and update the configuration.
+     *
+     * @return network id
+     */
+    @Benchmark
+    public int prepareSaved() {
+        return new WiFiConnector(SAVED_SSID, capabilities, password, mConfigStore).prepare();
+    }
+
+    /**
+     * A network never saved: build a new configuration,the fake service rejects adding it.
+     *
+     * @return network id
+     */
+    @Benchmark
+    public int prepareNew() {
+        return new WiFiConnector(NEW_SSID, capabilities, password, mConfigStore).prepare();
+    }
+}
@@ -0,0 +1,78 @@
+package com.seagle.android.net.monitor;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * End-to-end notification latency of the replay.
+ * <p>Each slot,one per transport plus the active network,remembers the injection time of its first signal
+ * not notified yet,the next notification of the slot records the latency since then.
+ * So a flap absorbed by coalescing is charged to the notification that finally reports it.
+ */
+final class LatencyRecorder {
+
+    /**
+     * The slot of the active network changes.
+     */
+    static final int SLOT_ACTIVE = NetworkSnapshot.TRANSPORT_COUNT;
+
+    private final AtomicLongArray mPending = new AtomicLongArray(NetworkSnapshot.TRANSPORT_COUNT + 1);
+    private final long[] mSamples;
+    private int mCount;
+    private long mNotifications;
+
+    LatencyRecorder(int capacity) {
+        mSamples = new long[capacity];
+    }
+
+    /**
+     * A signal of the slot injected.
+     * Called on the replay thread.
+     *
+     * @param slot transport or {@link #SLOT_ACTIVE}
+     */
+    void onSignal(int slot) {
+        mPending.compareAndSet(slot, 0, System.nanoTime());
+    }
+
+    /**
+     * A notification of the slot delivered.
+     * Called on the monitor thread.
+     *
+     * @param slot transport or {@link #SLOT_ACTIVE}
+     */
+    void onNotified(int slot) {
+        long now = System.nanoTime();
+        long start = mPending.getAndSet(slot, 0);
+        synchronized (this) {
+            mNotifications++;
+            if (start != 0 && mCount < mSamples.length) {
+                mSamples[mCount++] = now - start;
+            }
+        }
+    }
+
+    synchronized long getNotificationCount() {
+        return mNotifications;
+    }
+
+    synchronized int getSampleCount() {
+        return mCount;
+    }
+
+    /**
+     * Return the latency percentile.
+     *
+     * @param percent percent,100 for max
+     * @return latency in microseconds,0 if no sample
+     */
+    synchronized long getPercentileMicros(int percent) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(mSamples, mCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percent / 100.0 * mCount) - 1;
+        return sorted[Math.max(0, Math.min(mCount - 1, index))] / 1000;
+    }
+}
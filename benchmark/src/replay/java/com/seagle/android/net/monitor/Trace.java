@@ -0,0 +1,323 @@
+package com.seagle.android.net.monitor;
+
+import android.net.wifi.SupplicantState;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Connectivity event trace.
+ * <p>A trace file has one event per line,offset in milliseconds then the command,'#' starts a comment:
+ * <pre>
+ * 0   up wifi 100 home          # network 100 of the transport connected,SSID for WiFi
+ * 0   active 100                # active network changed,none for no active network
+ * 15  down 100                  # network lost
+ * 20  supplicant ASSOCIATED     # supplicant state,auth_error to report a wrong password
+ * 30  connect home [WPA2-PSK] secret   # connectWiFiAsync by the app
+ * </pre>
+ * Synthetic traces of the pathological scenarios are created by the factory methods.
+ */
+final class Trace {
+
+    static final int OP_UP = 1;
+    static final int OP_DOWN = 2;
+    static final int OP_ACTIVE = 3;
+    static final int OP_SUPPLICANT = 4;
+    static final int OP_CONNECT = 5;
+
+    private final String mName;
+    private final List<Event> mEvents;
+
+    private Trace(String name, List<Event> events) {
+        mName = name;
+        mEvents = Collections.unmodifiableList(events);
+    }
+
+    String getName() {
+        return mName;
+    }
+
+    List<Event> getEvents() {
+        return mEvents;
+    }
+
+    /**
+     * Return the count of the events which change the connectivity,the app connect requests are excluded.
+     *
+     * @return signal count
+     */
+    int getSignalCount() {
+        int count = 0;
+        for (Event event : mEvents) {
+            if (event.mOp != OP_CONNECT) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Parse the trace file.
+     *
+     * @param file trace file
+     * @return Trace
+     * @throws IOException read failed or malformed line
+     */
+    static Trace load(File file) throws IOException {
+        List<Event> events = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    events.add(parse(line.split("\\s+")));
+                } catch (RuntimeException ex) {
+                    throw new IOException(file + ":" + lineNumber + ": " + ex.getMessage(), ex);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new Trace(file.getName(), events);
+    }
+
+    private static Event parse(String[] tokens) {
+        if (tokens.length < 2) {
+            throw new IllegalArgumentException("Missing command");
+        }
+        long time = Long.parseLong(tokens[0]);
+        String command = tokens[1];
+        if ("up".equals(command)) {
+            return Event.up(time, parseTransport(tokens[2]), Integer.parseInt(tokens[3]), tokens.length > 4 ? tokens[4] : null);
+        } else if ("down".equals(command)) {
+            return Event.down(time, Integer.parseInt(tokens[2]));
+        } else if ("active".equals(command)) {
+            return Event.active(time, "none".equals(tokens[2]) ? -1 : Integer.parseInt(tokens[2]));
+        } else if ("supplicant".equals(command)) {
+            return Event.supplicant(time, SupplicantState.valueOf(tokens[2]), tokens.length > 3 && "auth_error".equals(tokens[3]));
+        } else if ("connect".equals(command)) {
+            return Event.connect(time, tokens[2], tokens[3], tokens.length > 4 ? tokens[4] : null);
+        }
+        throw new IllegalArgumentException("Unknown command: " + command);
+    }
+
+    private static int parseTransport(String name) {
+        if ("wifi".equals(name)) {
+            return NetworkMonitor.TRANSPORT_WIFI;
+        } else if ("mobile".equals(name)) {
+            return NetworkMonitor.TRANSPORT_MOBILE;
+        } else if ("ethernet".equals(name)) {
+            return NetworkMonitor.TRANSPORT_ETHERNET;
+        }
+        throw new IllegalArgumentException("Unknown transport: " + name);
+    }
+
+    /**
+     * WiFi flaps up and down every few milliseconds while mobile stays connected,
+     * the active network follows WiFi,such as a weak access point at the edge of coverage.
+     *
+     * @param count  flap count
+     * @param random jitter source
+     * @return Trace
+     */
+    static Trace flap(int count, Random random) {
+        List<Event> events = new ArrayList<>();
+        long time = 0;
+        events.add(Event.up(time, NetworkMonitor.TRANSPORT_MOBILE, 200, null));
+        events.add(Event.active(time, 200));
+        for (int i = 0; i < count; i++) {
+            int netId = 1000 + i;
+            time += random.nextInt(3);
+            events.add(Event.up(time, NetworkMonitor.TRANSPORT_WIFI, netId, "edge"));
+            events.add(Event.active(time, netId));
+            time += random.nextInt(3);
+            events.add(Event.down(time, netId));
+            events.add(Event.active(time, 200));
+        }
+        return new Trace("flap", events);
+    }
+
+    /**
+     * WiFi roams between access points: the new network connects before the old one is lost.
+     *
+     * @param count  roam count
+     * @param random jitter source
+     * @return Trace
+     */
+    static Trace roam(int count, Random random) {
+        List<Event> events = new ArrayList<>();
+        long time = 0;
+        int current = 1000;
+        events.add(Event.up(time, NetworkMonitor.TRANSPORT_WIFI, current, "campus"));
+        events.add(Event.active(time, current));
+        for (int i = 1; i <= count; i++) {
+            int next = 1000 + i;
+            time += random.nextInt(5);
+            events.add(Event.up(time, NetworkMonitor.TRANSPORT_WIFI, next, "campus"));
+            events.add(Event.active(time, next));
+            time += random.nextInt(3);
+            events.add(Event.down(time, current));
+            current = next;
+        }
+        return new Trace("roam", events);
+    }
+
+    /**
+     * Both WiFi and mobile stay connected and the active network hands over between them,
+     * WiFi drops and comes back every few handovers.
+     *
+     * @param count  handover count
+     * @param random jitter source
+     * @return Trace
+     */
+    static Trace handover(int count, Random random) {
+        List<Event> events = new ArrayList<>();
+        long time = 0;
+        int wifi = 1000;
+        events.add(Event.up(time, NetworkMonitor.TRANSPORT_MOBILE, 200, null));
+        events.add(Event.up(time, NetworkMonitor.TRANSPORT_WIFI, wifi, "home"));
+        events.add(Event.active(time, wifi));
+        for (int i = 1; i <= count; i++) {
+            time += random.nextInt(4);
+            if (i % 4 == 0) {
+                events.add(Event.down(time, wifi));
+                events.add(Event.active(time, 200));
+                wifi++;
+                time += random.nextInt(4);
+                events.add(Event.up(time, NetworkMonitor.TRANSPORT_WIFI, wifi, "home"));
+            } else {
+                events.add(Event.active(time, i % 2 == 0 ? wifi : 200));
+            }
+        }
+        return new Trace("handover", events);
+    }
+
+    /**
+     * A dual SIM handset: the data SIM stays connected while the network of the other SIM connects and drops,
+     * every fifth time the data switches to the other SIM and the previous data network drops.
+     *
+     * @param count  connect count of the other SIM
+     * @param random jitter source
+     * @return Trace
+     */
+    static Trace dualSim(int count, Random random) {
+        List<Event> events = new ArrayList<>();
+        long time = 0;
+        int data = 200;
+        events.add(Event.up(time, NetworkMonitor.TRANSPORT_MOBILE, data, null));
+        events.add(Event.active(time, data));
+        for (int i = 1; i <= count; i++) {
+            int other = 2000 + i;
+            time += random.nextInt(3);
+            events.add(Event.up(time, NetworkMonitor.TRANSPORT_MOBILE, other, null));
+            time += random.nextInt(3);
+            if (i % 5 == 0) {
+                events.add(Event.active(time, other));
+                events.add(Event.down(time, data));
+                data = other;
+            } else {
+                events.add(Event.down(time, other));
+            }
+        }
+        return new Trace("dualsim", events);
+    }
+
+    /**
+     * The app connects WiFi networks one after another,the supplicant goes through the handshake
+     * and the network connects,every third attempt fails with a wrong password.
+     *
+     * @param count  connect count
+     * @param random jitter source
+     * @return Trace
+     */
+    static Trace supplicant(int count, Random random) {
+        List<Event> events = new ArrayList<>();
+        long time = 0;
+        int previous = -1;
+        for (int i = 0; i < count; i++) {
+            String ssid = "ap" + i;
+            events.add(Event.connect(time, ssid, "[WPA2-PSK-CCMP][ESS]", "password" + i));
+            time += 1 + random.nextInt(2);
+            events.add(Event.supplicant(time, SupplicantState.ASSOCIATING, false));
+            events.add(Event.supplicant(time, SupplicantState.ASSOCIATED, false));
+            events.add(Event.supplicant(time, SupplicantState.FOUR_WAY_HANDSHAKE, false));
+            if (i % 3 == 2) {
+                events.add(Event.supplicant(time, SupplicantState.DISCONNECTED, true));
+                continue;
+            }
+            events.add(Event.supplicant(time, SupplicantState.GROUP_HANDSHAKE, false));
+            events.add(Event.supplicant(time, SupplicantState.COMPLETED, false));
+            if (previous > 0) {
+                events.add(Event.down(time, previous));
+            }
+            previous = 1000 + i;
+            events.add(Event.up(time, NetworkMonitor.TRANSPORT_WIFI, previous, ssid));
+            events.add(Event.active(time, previous));
+        }
+        return new Trace("supplicant", events);
+    }
+
+    /**
+     * One trace event.
+     */
+    static final class Event {
+        final long mTime;
+        final int mOp;
+        final int mTransport;
+        final int mNetId;
+        final String mSSID;
+        final SupplicantState mState;
+        final boolean mAuthError;
+        final String mCapabilities;
+        final String mPassword;
+
+        private Event(long time, int op, int transport, int netId, String ssid, SupplicantState state, boolean authError,
+                      String capabilities, String password) {
+            mTime = time;
+            mOp = op;
+            mTransport = transport;
+            mNetId = netId;
+            mSSID = ssid;
+            mState = state;
+            mAuthError = authError;
+            mCapabilities = capabilities;
+            mPassword = password;
+        }
+
+        static Event up(long time, int transport, int netId, String ssid) {
+            return new Event(time, OP_UP, transport, netId, ssid, null, false, null, null);
+        }
+
+        static Event down(long time, int netId) {
+            return new Event(time, OP_DOWN, NetworkMonitor.TRANSPORT_NONE, netId, null, null, false, null, null);
+        }
+
+        static Event active(long time, int netId) {
+            return new Event(time, OP_ACTIVE, NetworkMonitor.TRANSPORT_NONE, netId, null, null, false, null, null);
+        }
+
+        static Event supplicant(long time, SupplicantState state, boolean authError) {
+            return new Event(time, OP_SUPPLICANT, NetworkMonitor.TRANSPORT_WIFI, -1, null, state, authError, null, null);
+        }
+
+        static Event connect(long time, String ssid, String capabilities, String password) {
+            return new Event(time, OP_CONNECT, NetworkMonitor.TRANSPORT_WIFI, -1, ssid, null, false, capabilities, password);
+        }
+    }
+}
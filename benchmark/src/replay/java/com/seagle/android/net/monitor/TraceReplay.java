@@ -0,0 +1,310 @@
+package com.seagle.android.net.monitor;
+
+import android.net.Network;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Replay connectivity traces against the monitor on the {@link SimulatedPlatform}.
+ * <p>Usage: TraceReplay [-window ms] [-speed factor] [-count n] [-seed n] [-slow ms] [flap|roam|handover|dualsim|supplicant|all|trace file]...
+ * <br>The speed factor compresses the trace time,0 replays as fast as possible.
+ * With -slow every transport monitor also has a {@link DeliveryPolicy#CONFLATE} listener taking the given time per event,
+ * it should neither delay the other listeners nor end on a stale state.
+ * For every trace it reports the event throughput,the end-to-end notification latency from the
+ * injected signal to the listener,and checks the final state of the monitor against the simulated stack.
+ * Exits with 1 if any final state is wrong.
+ */
+public final class TraceReplay {
+
+    private static final String[] SCENARIOS = {"flap", "roam", "handover", "dualsim", "supplicant"};
+    private static final String[] TRANSPORT_NAMES = {"wifi", "mobile", "ethernet"};
+
+    private final long mWindow;
+    private final double mSpeed;
+    private final long mSlowMillis;
+
+    private TraceReplay(long window, double speed, long slowMillis) {
+        mWindow = window;
+        mSpeed = speed;
+        mSlowMillis = slowMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long window = NetworkMonitor.DEFAULT_COALESCE_WINDOW;
+        double speed = 0;
+        int count = 10000;
+        long seed = 1;
+        long slow = 0;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-window".equals(args[i])) {
+                window = Long.parseLong(args[++i]);
+            } else if ("-speed".equals(args[i])) {
+                speed = Double.parseDouble(args[++i]);
+            } else if ("-count".equals(args[i])) {
+                count = Integer.parseInt(args[++i]);
+            } else if ("-seed".equals(args[i])) {
+                seed = Long.parseLong(args[++i]);
+            } else if ("-slow".equals(args[i])) {
+                slow = Long.parseLong(args[++i]);
+            } else {
+                names.add(args[i]);
+            }
+        }
+        if (names.isEmpty()) {
+            names.add("all");
+        }
+        List<Trace> traces = new ArrayList<>();
+        for (String name : names) {
+            if ("all".equals(name)) {
+                for (String scenario : SCENARIOS) {
+                    traces.add(createTrace(scenario, count, new Random(seed)));
+                }
+            } else {
+                traces.add(createTrace(name, count, new Random(seed)));
+            }
+        }
+        TraceReplay replay = new TraceReplay(window, speed, slow);
+        boolean passed = true;
+        for (Trace trace : traces) {
+            passed &= replay.run(trace);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static Trace createTrace(String name, int count, Random random) throws IOException {
+        if ("flap".equals(name)) {
+            return Trace.flap(count, random);
+        } else if ("roam".equals(name)) {
+            return Trace.roam(count, random);
+        } else if ("handover".equals(name)) {
+            return Trace.handover(count, random);
+        } else if ("dualsim".equals(name)) {
+            return Trace.dualSim(count, random);
+        } else if ("supplicant".equals(name)) {
+            return Trace.supplicant(count, random);
+        }
+        return Trace.load(new File(name));
+    }
+
+    /**
+     * Replay the trace on a new simulated stack and print the report.
+     *
+     * @param trace Trace
+     * @return final state correct
+     */
+    private boolean run(Trace trace) throws InterruptedException {
+        final SimulatedPlatform platform = new SimulatedPlatform();
+        final LatencyRecorder latency = new LatencyRecorder(trace.getEvents().size());
+        NetworkMonitor monitor = NetworkMonitor.getInstance();
+        monitor.setCoalesceWindow(mWindow);
+        monitor.startMonitoring(platform);
+        NetStateMachine[] machines = {
+                monitor.getWiFiNetworkMonitor(), monitor.getMobileNetworkMonitor(), monitor.getEthernetNetworkMonitor()};
+        // Registered first,so the inline listeners after it would be delayed if it blocked the dispatch.
+        ExecutorService slowExecutor = null;
+        final AtomicReferenceArray<NetworkEvent> slowEvents = new AtomicReferenceArray<>(machines.length);
+        final AtomicInteger slowDelivered = new AtomicInteger();
+        if (mSlowMillis > 0) {
+            slowExecutor = Executors.newSingleThreadExecutor();
+            for (NetStateMachine machine : machines) {
+                machine.addListener(new NetworkListener() {
+                    @Override
+                    public void onNetworkEvent(NetworkEvent event) {
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(mSlowMillis);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                        slowEvents.set(event.getTransport(), event);
+                        slowDelivered.incrementAndGet();
+                    }
+                }, slowExecutor, 0, DeliveryPolicy.CONFLATE);
+            }
+        }
+        monitor.addListener(new NetworkListener() {
+            @Override
+            public void onNetworkEvent(NetworkEvent event) {
+                latency.onNotified(LatencyRecorder.SLOT_ACTIVE);
+            }
+        }, null);
+        for (NetStateMachine machine : machines) {
+            machine.addListener(new NetworkListener() {
+                @Override
+                public void onNetworkEvent(NetworkEvent event) {
+                    latency.onNotified(event.getTransport());
+                }
+            }, null);
+        }
+
+        Map<Integer, Integer> transports = new HashMap<>();
+        List<WiFiConnectFuture> connects = new ArrayList<>();
+        int activeNetId = -1;
+        long start = System.nanoTime();
+        for (Trace.Event event : trace.getEvents()) {
+            if (mSpeed > 0) {
+                long due = start + (long) (TimeUnit.MILLISECONDS.toNanos(event.mTime) / mSpeed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            switch (event.mOp) {
+                case Trace.OP_UP:
+                    transports.put(event.mNetId, event.mTransport);
+                    latency.onSignal(event.mTransport);
+                    platform.connect(event.mTransport, event.mNetId, event.mSSID);
+                    break;
+                case Trace.OP_DOWN:
+                    Integer transport = transports.remove(event.mNetId);
+                    if (transport != null) {
+                        latency.onSignal(transport);
+                        if (event.mNetId == activeNetId) {
+                            activeNetId = -1;
+                            latency.onSignal(LatencyRecorder.SLOT_ACTIVE);
+                        }
+                    }
+                    platform.disconnect(event.mNetId);
+                    break;
+                case Trace.OP_ACTIVE:
+                    activeNetId = transports.containsKey(event.mNetId) ? event.mNetId : -1;
+                    latency.onSignal(LatencyRecorder.SLOT_ACTIVE);
+                    platform.setActive(event.mNetId);
+                    break;
+                case Trace.OP_SUPPLICANT:
+                    platform.setSupplicantState(event.mState, event.mAuthError);
+                    break;
+                case Trace.OP_CONNECT:
+                    connects.add(monitor.getWiFiNetworkMonitor().connectWiFiAsync(event.mSSID, event.mCapabilities, event.mPassword));
+                    // The supplicant broadcasts reach the connect task only after it registered on the monitor thread.
+                    drainLoop(monitor);
+                    break;
+                default:
+                    break;
+            }
+        }
+        long injected = System.nanoTime() - start;
+        if (mWindow > 0) {
+            TimeUnit.MILLISECONDS.sleep(mWindow * 2);
+        }
+        drainLoop(monitor);
+        long elapsed = System.nanoTime() - start;
+
+        List<String> errors = checkFinalState(monitor, platform, machines, connects);
+        if (slowExecutor != null) {
+            slowExecutor.shutdown();
+            slowExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            for (int transport = 0; transport < machines.length; transport++) {
+                NetworkEvent event = slowEvents.get(transport);
+                if ((event != null && event.isConnected()) != machines[transport].isConnected()) {
+                    errors.add(TRANSPORT_NAMES[transport] + " slow listener ended on " + event);
+                }
+            }
+        }
+        print(trace, injected, elapsed, latency, slowExecutor == null ? -1 : slowDelivered.get(), connects, errors);
+        monitor.stopMonitoring();
+        return errors.isEmpty();
+    }
+
+    private static void drainLoop(NetworkMonitor monitor) {
+        // Twice: the first pass may post the deliveries of the callbacks it runs.
+        for (int i = 0; i < 2; i++) {
+            monitor.getEventLoop().runSync(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+    }
+
+    private static List<String> checkFinalState(NetworkMonitor monitor, SimulatedPlatform platform, NetStateMachine[] machines,
+                                                List<WiFiConnectFuture> connects) {
+        List<String> errors = new ArrayList<>();
+        for (int transport = 0; transport < machines.length; transport++) {
+            List<Network> expected = platform.getNetworks(transport);
+            NetStateMachine machine = machines[transport];
+            if (machine.isConnected() != !expected.isEmpty()) {
+                errors.add(TRANSPORT_NAMES[transport] + " connected=" + machine.isConnected() + ",expected " + expected);
+            } else if (machine.isConnected() && !expected.contains(machine.getNetwork())) {
+                errors.add(TRANSPORT_NAMES[transport] + " network=" + machine.getNetwork() + ",expected one of " + expected);
+            } else if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP
+                    && !new HashSet<>(machine.getNetworks()).equals(new HashSet<>(expected))) {
+                errors.add(TRANSPORT_NAMES[transport] + " networks=" + machine.getNetworks() + ",expected " + expected);
+            }
+        }
+        int activeTransport = monitor.getSnapshot().getActiveTransport();
+        if (activeTransport != platform.getActiveTransport()) {
+            errors.add("active transport=" + activeTransport + ",expected " + platform.getActiveTransport());
+        }
+        int pending = 0;
+        for (WiFiConnectFuture future : connects) {
+            if (!future.isDone()) {
+                pending++;
+            }
+        }
+        if (pending > 0) {
+            errors.add(pending + " WiFi connects not finished");
+        }
+        return errors;
+    }
+
+    private static int getQuietly(WiFiConnectFuture future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return WiFiNetworkMonitor.ERR_CONNECT_FAILED;
+        }
+    }
+
+    private static void print(Trace trace, long injectedNanos, long elapsedNanos, LatencyRecorder latency, int slowDelivered,
+                              List<WiFiConnectFuture> connects, List<String> errors) {
+        int signals = trace.getSignalCount();
+        System.out.println("== " + trace.getName() + ": " + trace.getEvents().size() + " events,trace time "
+                + trace.getEvents().get(trace.getEvents().size() - 1).mTime + "ms");
+        System.out.printf("  replay      %.1fms,%.0f signals/s injected,%.0f signals/s end to end%n",
+                elapsedNanos / 1e6, signals * 1e9 / injectedNanos, signals * 1e9 / elapsedNanos);
+        System.out.println("  notified    " + latency.getNotificationCount() + " events,latency samples " + latency.getSampleCount());
+        System.out.println("  latency us  p50=" + latency.getPercentileMicros(50) + " p95=" + latency.getPercentileMicros(95)
+                + " p99=" + latency.getPercentileMicros(99) + " max=" + latency.getPercentileMicros(100));
+        if (slowDelivered >= 0) {
+            System.out.println("  slow        " + slowDelivered + " events delivered to the conflating listeners");
+        }
+        if (!connects.isEmpty()) {
+            int success = 0;
+            int passwordWrong = 0;
+            for (WiFiConnectFuture future : connects) {
+                if (future.isDone() && !future.isCancelled()) {
+                    int result = getQuietly(future);
+                    if (result == WiFiNetworkMonitor.CONNECT_SUCCESS) {
+                        success++;
+                    } else if (result == WiFiNetworkMonitor.ERR_PASSWORD_WRONG) {
+                        passwordWrong++;
+                    }
+                }
+            }
+            System.out.println("  connects    " + connects.size() + ",success=" + success + " password_wrong=" + passwordWrong
+                    + " other=" + (connects.size() - success - passwordWrong));
+        }
+        if (errors.isEmpty()) {
+            System.out.println("  final state PASS");
+        } else {
+            System.out.println("  final state FAIL");
+            for (String error : errors) {
+                System.out.println("    " + error);
+            }
+        }
+    }
+}
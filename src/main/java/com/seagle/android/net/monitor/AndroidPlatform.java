@@ -0,0 +1,139 @@
+package com.seagle.android.net.monitor;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Handler;
+import android.telephony.TelephonyManager;
+
+import java.io.File;
+
+/**
+ * The platform services of the android system.
+ */
+class AndroidPlatform implements Platform {
+
+    private final Context mContext;
+    private final ConnectivityManager mConnectivityManager;
+    private final WifiManager mWifiManager;
+    private volatile TelephonyManager mTelephonyManager;
+
+    AndroidPlatform(Context context) {
+        mContext = context.getApplicationContext();
+        mConnectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (mConnectivityManager == null) {
+            throw new NullPointerException("Get system connectivity service failed!");
+        }
+        mWifiManager = (WifiManager) mContext.getSystemService(Context.WIFI_SERVICE);
+    }
+
+    @Override
+    public NetworkInfo getActiveNetworkInfo() {
+        return mConnectivityManager.getActiveNetworkInfo();
+    }
+
+    @Override
+    public NetworkInfo getNetworkInfo(Network network) {
+        return mConnectivityManager.getNetworkInfo(network);
+    }
+
+    @Override
+    public NetworkCapabilities getNetworkCapabilities(Network network) {
+        return mConnectivityManager.getNetworkCapabilities(network);
+    }
+
+    @Override
+    public LinkProperties getLinkProperties(Network network) {
+        return mConnectivityManager.getLinkProperties(network);
+    }
+
+    @Override
+    public Network[] getAllNetworks() {
+        return mConnectivityManager.getAllNetworks();
+    }
+
+    @Override
+    public NetworkInfo[] getAllNetworkInfo() {
+        return mConnectivityManager.getAllNetworkInfo();
+    }
+
+    @Override
+    public void registerNetworkCallback(NetworkRequest request, ConnectivityManager.NetworkCallback callback, Handler handler) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            mConnectivityManager.registerNetworkCallback(request, callback, handler);
+        } else {
+            mConnectivityManager.registerNetworkCallback(request, callback);
+        }
+    }
+
+    @Override
+    public void registerDefaultNetworkCallback(ConnectivityManager.NetworkCallback callback, Handler handler) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            mConnectivityManager.registerDefaultNetworkCallback(callback, handler);
+        } else {
+            mConnectivityManager.registerDefaultNetworkCallback(callback);
+        }
+    }
+
+    @Override
+    public void unregisterNetworkCallback(ConnectivityManager.NetworkCallback callback) {
+        mConnectivityManager.unregisterNetworkCallback(callback);
+    }
+
+    @Override
+    public void registerReceiver(BroadcastReceiver receiver, IntentFilter filter, Handler handler) {
+        mContext.registerReceiver(receiver, filter, null, handler);
+    }
+
+    @Override
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+        mContext.unregisterReceiver(receiver);
+    }
+
+    @Override
+    public void sendBroadcast(Intent intent) {
+        mContext.sendBroadcast(intent);
+    }
+
+    @Override
+    public void sendStickyBroadcast(Intent intent) {
+        mContext.sendStickyBroadcast(intent);
+    }
+
+    @Override
+    public void removeStickyBroadcast(Intent intent) {
+        mContext.removeStickyBroadcast(intent);
+    }
+
+    @Override
+    public ConnectivityManager getConnectivityManager() {
+        return mConnectivityManager;
+    }
+
+    @Override
+    public WifiManager getWifiManager() {
+        return mWifiManager;
+    }
+
+    @Override
+    public TelephonyManager getTelephonyManager() {
+        if (mTelephonyManager == null) {
+            mTelephonyManager = (TelephonyManager) mContext.getSystemService(Context.TELEPHONY_SERVICE);
+        }
+        return mTelephonyManager;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return mContext.getFilesDir();
+    }
+}
@@ -0,0 +1,103 @@
+package com.seagle.android.net.monitor;
+
+import android.net.wifi.ScanResult;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of {@link WiFiNetworkMonitor#connectBest}.
+ */
+public final class ConnectBestResult {
+
+    private final ScanResult mWinner;
+    private final int mResultCode;
+    private final List<Attempt> mAttempts;
+
+    ConnectBestResult(ScanResult winner, int resultCode, List<Attempt> attempts) {
+        mWinner = winner;
+        mResultCode = resultCode;
+        mAttempts = Collections.unmodifiableList(attempts);
+    }
+
+    /**
+     * Return the connected candidate or null if all failed.
+     *
+     * @return ScanResult
+     */
+    public ScanResult getWinner() {
+        return mWinner;
+    }
+
+    /**
+     * Return the result code,the code of the last attempt if all failed.
+     *
+     * @return connect result code
+     * @see WiFiNetworkMonitor#CONNECT_SUCCESS
+     */
+    public int getResultCode() {
+        return mResultCode;
+    }
+
+    /**
+     * Return the attempts in order.
+     *
+     * @return attempts
+     */
+    public List<Attempt> getAttempts() {
+        return mAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectBestResult{winner=" + (mWinner == null ? null : mWinner.SSID)
+                + ", resultCode=" + mResultCode + ", attempts=" + mAttempts + "}";
+    }
+
+    /**
+     * One connect attempt.
+     */
+    public static final class Attempt {
+        private final ScanResult mCandidate;
+        private final int mResultCode;
+        private final long mElapsedMillis;
+
+        Attempt(ScanResult candidate, int resultCode, long elapsedMillis) {
+            mCandidate = candidate;
+            mResultCode = resultCode;
+            mElapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Return the candidate of this attempt.
+         *
+         * @return ScanResult
+         */
+        public ScanResult getCandidate() {
+            return mCandidate;
+        }
+
+        /**
+         * Return the result code of this attempt.
+         *
+         * @return connect result code
+         */
+        public int getResultCode() {
+            return mResultCode;
+        }
+
+        /**
+         * Return the time this attempt takes.
+         *
+         * @return elapsed milliseconds
+         */
+        public long getElapsedMillis() {
+            return mElapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "{ssid=" + mCandidate.SSID + ", resultCode=" + mResultCode + ", elapsed=" + mElapsedMillis + "ms}";
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.seagle.android.net.monitor;
+
+import android.net.wifi.ScanResult;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connect the best one of the candidates.
+ * <p>Rank the candidates by RSSI,band and historical success,prepare all the configurations at first,
+ * then try them one by one with the short per-attempt timeouts of the policy,
+ * the next candidate is tried as soon as one fails.
+ * Every attempt is a request of its own,never shared with a connect request of the same SSID in flight,
+ * so the per-attempt timeouts always apply.
+ * All the methods except the constructor are called on the monitor thread.
+ */
+class ConnectBestTask {
+
+    private static final String TAG = "ConnectBestTask";
+
+    /**
+     * Score bonus of 5GHz band,in dBm.
+     */
+    private static final int BAND_5GHZ_BONUS = 10;
+
+    /**
+     * Score weight of historical success rate,in dBm.
+     */
+    private static final int HISTORY_WEIGHT = 20;
+
+    private final WiFiNetworkMonitor mMonitor;
+    private final WiFiConfigStore mConfigStore;
+    private final List<ScanResult> mCandidates;
+    private final Map<String, String> mCredentials;
+    private final WiFiNetworkMonitor.ConnectPolicy mPolicy;
+    private final SettableFuture<ConnectBestResult> mFuture = new SettableFuture<>();
+    private final List<WiFiConnector> mConnectors = new ArrayList<>();
+    private final List<ConnectBestResult.Attempt> mAttempts = new ArrayList<>();
+    private int mNextIndex;
+    private int mLastResultCode = WiFiNetworkMonitor.ERR_CONNECT_FAILED;
+    private WiFiConnectFuture mCurrent;
+    private boolean mFinished;
+
+    ConnectBestTask(WiFiNetworkMonitor monitor, WiFiConfigStore configStore, List<ScanResult> candidates,
+                    Map<String, String> credentials, WiFiNetworkMonitor.ConnectPolicy policy) {
+        mMonitor = monitor;
+        mConfigStore = configStore;
+        mCandidates = new ArrayList<>(candidates);
+        mCredentials = credentials == null ? Collections.<String, String>emptyMap() : new HashMap<>(credentials);
+        mPolicy = policy;
+    }
+
+    SettableFuture<ConnectBestResult> getFuture() {
+        return mFuture;
+    }
+
+    void start() {
+        if (mFuture.isDone()) {
+            return;
+        }
+        for (ScanResult candidate : rank()) {
+            WiFiConnector connector = new WiFiConnector(candidate, mCredentials.get(candidate.SSID), mConfigStore);
+            try {
+                if (connector.prepare() != -1) {
+                    mConnectors.add(connector);
+                }
+            } catch (RuntimeException ex) {
+                Log.w(TAG, "Skip candidate " + candidate.SSID + ": " + ex.getMessage());
+            }
+        }
+        next();
+    }
+
+    void cancel() {
+        WiFiConnectFuture current = mCurrent;
+        finish(null);
+        if (current != null) {
+            current.cancel(true);
+        }
+    }
+
+    /**
+     * Sort the candidates,only the best access point of each SSID is kept,
+     * the secured candidates without password or saved configuration are dropped.
+     *
+     * @return ranked candidates
+     */
+    private List<ScanResult> rank() {
+        final Map<ScanResult, Integer> scores = new HashMap<>();
+        Map<String, ScanResult> bestOfSSID = new HashMap<>();
+        for (ScanResult candidate : mCandidates) {
+            if (candidate.SSID == null || candidate.SSID.isEmpty()) {
+                continue;
+            }
+            boolean hasCredential = mCredentials.get(candidate.SSID) != null || mConfigStore.get(candidate.SSID) != null;
+            if (!hasCredential && WiFiConnector.isSecured(candidate.capabilities)) {
+                continue;
+            }
+            int score = score(candidate);
+            ScanResult best = bestOfSSID.get(candidate.SSID);
+            if (best == null || scores.get(best) < score) {
+                bestOfSSID.put(candidate.SSID, candidate);
+            }
+            scores.put(candidate, score);
+        }
+        List<ScanResult> ranked = new ArrayList<>(bestOfSSID.values());
+        Collections.sort(ranked, new Comparator<ScanResult>() {
+            @Override
+            public int compare(ScanResult left, ScanResult right) {
+                return scores.get(right) - scores.get(left);
+            }
+        });
+        return ranked;
+    }
+
+    private int score(ScanResult candidate) {
+        int score = candidate.level;
+        if (mPolicy.isPrefer5GHz() && candidate.frequency > 4900) {
+            score += BAND_5GHZ_BONUS;
+        }
+        score += (int) ((mMonitor.getConnectSuccessRate(candidate.SSID) - 0.5f) * HISTORY_WEIGHT);
+        return score;
+    }
+
+    private void next() {
+        if (mFinished) {
+            return;
+        }
+        if (mNextIndex >= mConnectors.size() || mAttempts.size() >= mPolicy.getMaxAttempts()) {
+            finish(null);
+            return;
+        }
+        final WiFiConnector connector = mConnectors.get(mNextIndex++);
+        final long startTime = SystemClock.elapsedRealtime();
+        final WiFiConnectFuture attempt = mMonitor.submitAttempt(connector, mPolicy.getAttemptTimeouts());
+        mCurrent = attempt;
+        // The attempt is cancelled without a result when the monitor stops,fail the whole task then.
+        attempt.addCancelListener(new SettableFuture.CancelListener() {
+            @Override
+            public void onCancelled() {
+                mMonitor.mLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mCurrent == attempt) {
+                            Log.i(TAG, "Attempt " + connector.getSSID() + " cancelled!");
+                            mAttempts.add(new ConnectBestResult.Attempt(connector.getScanResult(),
+                                    WiFiNetworkMonitor.ERR_CONNECT_FAILED, SystemClock.elapsedRealtime() - startTime));
+                            mLastResultCode = WiFiNetworkMonitor.ERR_CONNECT_FAILED;
+                            finish(null);
+                        }
+                    }
+                });
+            }
+        });
+        attempt.addListener(new SettableFuture.Listener<Integer>() {
+            @Override
+            public void onComplete(Integer resultCode) {
+                long elapsed = SystemClock.elapsedRealtime() - startTime;
+                mAttempts.add(new ConnectBestResult.Attempt(connector.getScanResult(), resultCode, elapsed));
+                mLastResultCode = resultCode;
+                Log.i(TAG, "Attempt " + connector.getSSID() + " result " + resultCode + " in " + elapsed + "ms");
+                if (resultCode == WiFiNetworkMonitor.CONNECT_SUCCESS) {
+                    finish(connector);
+                } else {
+                    next();
+                }
+            }
+        });
+    }
+
+    private void finish(WiFiConnector winner) {
+        if (mFinished) {
+            return;
+        }
+        mFinished = true;
+        mCurrent = null;
+        for (WiFiConnector connector : mConnectors) {
+            if (connector != winner) {
+                connector.removeIfNew();
+            }
+        }
+        if (winner != null) {
+            mFuture.complete(new ConnectBestResult(winner.getScanResult(), WiFiNetworkMonitor.CONNECT_SUCCESS, mAttempts));
+        } else {
+            mFuture.complete(new ConnectBestResult(null, mLastResultCode, mAttempts));
+        }
+    }
+}
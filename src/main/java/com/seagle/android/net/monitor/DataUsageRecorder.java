@@ -0,0 +1,278 @@
+package com.seagle.android.net.monitor;
+
+import android.net.TrafficStats;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Per-transport data usage accounting of this app.
+ * <p>Sample the UID traffic counters periodically and on every active network change,
+ * attribute the rx/tx delta to the transport active during the interval,and accumulate it into
+ * hourly and daily rollups kept in primitive ring buffers,so sampling does not allocate.
+ * The rollups are persisted to a compact binary file every hour and when stopped.
+ * <p>Sampling runs on the monitor thread,queries could be called on any thread.
+ */
+class DataUsageRecorder {
+
+    private static final String TAG = "DataUsageRecorder";
+
+    private static final int FILE_MAGIC = 0x4e4d4455;
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * Hours of hourly rollups kept.
+     */
+    static final int HOUR_CAPACITY = 48;
+
+    /**
+     * Days of daily rollups kept.
+     */
+    static final int DAY_CAPACITY = 92;
+
+    /**
+     * Default sample interval.
+     */
+    static final long DEFAULT_SAMPLE_INTERVAL = 60000;
+
+    private static final long HOUR_MILLIS = 3600000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    /**
+     * Values per slot: rx and tx of each transport.
+     */
+    private static final int SLOT_SIZE = NetworkSnapshot.TRANSPORT_COUNT * 2;
+
+    private final File mFile;
+    private final int mUid;
+    private final long[] mHourKeys = new long[HOUR_CAPACITY];
+    private final long[] mHourBytes = new long[HOUR_CAPACITY * SLOT_SIZE];
+    private final long[] mDayKeys = new long[DAY_CAPACITY];
+    private final long[] mDayBytes = new long[DAY_CAPACITY * SLOT_SIZE];
+    private long mLastRxBytes = -1;
+    private long mLastTxBytes = -1;
+    private long mLastPersistHour = -1;
+    private long mCachedHour = -1;
+    private long mCachedDay = -1;
+    private boolean mDirty;
+
+    DataUsageRecorder(File file) {
+        mFile = file;
+        mUid = Process.myUid();
+        Arrays.fill(mHourKeys, -1);
+        Arrays.fill(mDayKeys, -1);
+    }
+
+    /**
+     * Load the persisted rollups and take the first counter sample.
+     */
+    synchronized void start() {
+        load();
+        mLastRxBytes = TrafficStats.getUidRxBytes(mUid);
+        mLastTxBytes = TrafficStats.getUidTxBytes(mUid);
+        if (mLastRxBytes == TrafficStats.UNSUPPORTED || mLastTxBytes == TrafficStats.UNSUPPORTED) {
+            Log.w(TAG, "UID traffic stats not supported!");
+        }
+    }
+
+    synchronized void stop(int transport) {
+        sample(transport);
+        if (mDirty) {
+            persist(toHour(System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Sample the counters and attribute the delta since the last sample to the transport.
+     *
+     * @param transport the transport active since the last sample
+     */
+    synchronized void sample(int transport) {
+        long rxBytes = TrafficStats.getUidRxBytes(mUid);
+        long txBytes = TrafficStats.getUidTxBytes(mUid);
+        if (rxBytes == TrafficStats.UNSUPPORTED || txBytes == TrafficStats.UNSUPPORTED) {
+            return;
+        }
+        record(transport, rxBytes, txBytes, System.currentTimeMillis());
+    }
+
+    /**
+     * Attribute the delta of the counters since the last record to the transport.
+     *
+     * @param transport the transport active since the last record
+     * @param rxBytes   UID rx counter
+     * @param txBytes   UID tx counter
+     * @param now       wall clock time
+     */
+    synchronized void record(int transport, long rxBytes, long txBytes, long now) {
+        long rxDelta = mLastRxBytes < 0 ? 0 : rxBytes - mLastRxBytes;
+        long txDelta = mLastTxBytes < 0 ? 0 : txBytes - mLastTxBytes;
+        mLastRxBytes = rxBytes;
+        mLastTxBytes = txBytes;
+        long hour = toHour(now);
+        if (transport >= 0 && transport < NetworkSnapshot.TRANSPORT_COUNT && (rxDelta > 0 || txDelta > 0)) {
+            // The counters are reset on reboot,a negative delta is dropped.
+            rxDelta = Math.max(0, rxDelta);
+            txDelta = Math.max(0, txDelta);
+            int hourSlot = slotOf(mHourKeys, mHourBytes, hour);
+            mHourBytes[hourSlot * SLOT_SIZE + transport * 2] += rxDelta;
+            mHourBytes[hourSlot * SLOT_SIZE + transport * 2 + 1] += txDelta;
+            if (hour != mCachedHour) {
+                // TimeZone.getDefault() clones,resolve the local day once per hour.
+                mCachedHour = hour;
+                mCachedDay = toDay(now);
+            }
+            int daySlot = slotOf(mDayKeys, mDayBytes, mCachedDay);
+            mDayBytes[daySlot * SLOT_SIZE + transport * 2] += rxDelta;
+            mDayBytes[daySlot * SLOT_SIZE + transport * 2 + 1] += txDelta;
+            mDirty = true;
+        }
+        if (mDirty && hour != mLastPersistHour) {
+            persist(hour);
+        }
+    }
+
+    /**
+     * Return the bytes of the transport in the hour which contains the time.
+     *
+     * @param transport transport
+     * @param timeMillis wall clock time
+     * @param tx         tx or rx
+     * @return bytes,0 if no record
+     */
+    synchronized long getHourlyBytes(int transport, long timeMillis, boolean tx) {
+        return query(mHourKeys, mHourBytes, toHour(timeMillis), transport, tx);
+    }
+
+    /**
+     * Return the bytes of the transport in the local day which contains the time.
+     *
+     * @param transport transport
+     * @param timeMillis wall clock time
+     * @param tx         tx or rx
+     * @return bytes,0 if no record
+     */
+    synchronized long getDailyBytes(int transport, long timeMillis, boolean tx) {
+        return query(mDayKeys, mDayBytes, toDay(timeMillis), transport, tx);
+    }
+
+    private static long query(long[] keys, long[] bytes, long key, int transport, boolean tx) {
+        if (transport < 0 || transport >= NetworkSnapshot.TRANSPORT_COUNT) {
+            return 0;
+        }
+        int slot = (int) (key % keys.length);
+        if (keys[slot] != key) {
+            return 0;
+        }
+        return bytes[slot * SLOT_SIZE + transport * 2 + (tx ? 1 : 0)];
+    }
+
+    /**
+     * Return the slot of the key,the expired slot is recycled.
+     */
+    private static int slotOf(long[] keys, long[] bytes, long key) {
+        int slot = (int) (key % keys.length);
+        if (keys[slot] != key) {
+            keys[slot] = key;
+            Arrays.fill(bytes, slot * SLOT_SIZE, (slot + 1) * SLOT_SIZE, 0);
+        }
+        return slot;
+    }
+
+    private static long toHour(long timeMillis) {
+        return timeMillis / HOUR_MILLIS;
+    }
+
+    private static long toDay(long timeMillis) {
+        return (timeMillis + TimeZone.getDefault().getOffset(timeMillis)) / DAY_MILLIS;
+    }
+
+    private void load() {
+        if (!mFile.exists()) {
+            return;
+        }
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (inputStream.readInt() != FILE_MAGIC || inputStream.readInt() != FILE_VERSION
+                    || inputStream.readInt() != HOUR_CAPACITY || inputStream.readInt() != DAY_CAPACITY
+                    || inputStream.readInt() != SLOT_SIZE) {
+                Log.w(TAG, "Discard incompatible data usage file.");
+                return;
+            }
+            readArray(inputStream, mHourKeys);
+            readArray(inputStream, mHourBytes);
+            readArray(inputStream, mDayKeys);
+            readArray(inputStream, mDayBytes);
+        } catch (IOException ex) {
+            Log.w(TAG, "Load data usage failed!", ex);
+            Arrays.fill(mHourKeys, -1);
+            Arrays.fill(mDayKeys, -1);
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Write to a temp file and rename it,so a crash never leaves a broken file.
+     */
+    private void persist(long hour) {
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        DataOutputStream outputStream = null;
+        try {
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            outputStream.writeInt(FILE_MAGIC);
+            outputStream.writeInt(FILE_VERSION);
+            outputStream.writeInt(HOUR_CAPACITY);
+            outputStream.writeInt(DAY_CAPACITY);
+            outputStream.writeInt(SLOT_SIZE);
+            writeArray(outputStream, mHourKeys);
+            writeArray(outputStream, mHourBytes);
+            writeArray(outputStream, mDayKeys);
+            writeArray(outputStream, mDayBytes);
+            outputStream.close();
+            outputStream = null;
+            if (!tempFile.renameTo(mFile)) {
+                throw new IOException("Rename " + tempFile + " failed!");
+            }
+            mDirty = false;
+            mLastPersistHour = hour;
+        } catch (IOException ex) {
+            Log.w(TAG, "Persist data usage failed!", ex);
+        } finally {
+            closeQuietly(outputStream);
+        }
+    }
+
+    private static void readArray(DataInputStream inputStream, long[] array) throws IOException {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = inputStream.readLong();
+        }
+    }
+
+    private static void writeArray(DataOutputStream outputStream, long[] array) throws IOException {
+        for (long value : array) {
+            outputStream.writeLong(value);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.seagle.android.net.monitor;
+
+/**
+ * The delivery policy of a listener.
+ * <p>A listener registered with a policy has its own mailbox drained on its executor one event at a time,
+ * the monitor thread only puts the event into the mailbox and never waits the listener,
+ * so a slow listener falls behind alone instead of delaying the others.
+ * The policy decides what happens to the mailbox while the listener is behind.
+ */
+public final class DeliveryPolicy {
+
+    /**
+     * The mailbox capacity of {@link #STRICT}.
+     */
+    public static final int DEFAULT_STRICT_CAPACITY = 1024;
+
+    static final int MODE_CONFLATE = 1;
+    static final int MODE_DROP_OLDEST = 2;
+    static final int MODE_STRICT = 3;
+
+    /**
+     * Keep the latest event of each kind,a listener behind skips straight to the newest state.
+     * <p>The state events of a transport,{@link NetworkEvent#TYPE_CONNECTED} to {@link NetworkEvent#TYPE_PROPERTIES_CHANGED},
+     * are one kind,the {@link NetworkEvent#TYPE_NETWORK_AVAILABLE} and {@link NetworkEvent#TYPE_NETWORK_LOST} events
+     * of every network are another,so the per network events never replace the state change before them.
+     */
+    public static final DeliveryPolicy CONFLATE = new DeliveryPolicy(MODE_CONFLATE, 0);
+
+    /**
+     * Keep every event in order up to {@link #DEFAULT_STRICT_CAPACITY},see {@link #strict(int)}.
+     */
+    public static final DeliveryPolicy STRICT = new DeliveryPolicy(MODE_STRICT, DEFAULT_STRICT_CAPACITY);
+
+    private final int mMode;
+    private final int mCapacity;
+
+    private DeliveryPolicy(int mode, int capacity) {
+        mMode = mode;
+        mCapacity = capacity;
+    }
+
+    /**
+     * Keep the latest events up to the capacity,the oldest event is dropped when the mailbox is full.
+     *
+     * @param capacity mailbox capacity
+     * @return DeliveryPolicy
+     */
+    public static DeliveryPolicy dropOldest(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive!");
+        }
+        return new DeliveryPolicy(MODE_DROP_OLDEST, capacity);
+    }
+
+    /**
+     * Keep every event in order up to the capacity.
+     * <p>A listener never skips an event,so a listener the mailbox overflowed is removed instead,
+     * its pending events are dropped,the removal is counted in {@link MetricsSnapshot#getDroppedListenerCount()}
+     * and the listener has to register again to receive the events after that.
+     *
+     * @param capacity mailbox capacity
+     * @return DeliveryPolicy
+     */
+    public static DeliveryPolicy strict(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive!");
+        }
+        return capacity == DEFAULT_STRICT_CAPACITY ? STRICT : new DeliveryPolicy(MODE_STRICT, capacity);
+    }
+
+    int getMode() {
+        return mMode;
+    }
+
+    /**
+     * Return the mailbox capacity,0 for {@link #CONFLATE} which keeps one event of each kind.
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    @Override
+    public String toString() {
+        switch (mMode) {
+            case MODE_CONFLATE:
+                return "conflate";
+            case MODE_STRICT:
+                return "strict(" + mCapacity + ")";
+            default:
+                return "dropOldest(" + mCapacity + ")";
+        }
+    }
+}
@@ -1,12 +1,7 @@
 package com.seagle.android.net.monitor;
 
-import android.content.Context;
 import android.content.Intent;
-import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
-import android.net.NetworkRequest;
-import android.os.Build;
-import android.support.annotation.RequiresApi;
 import android.util.Log;
 
 import static com.seagle.android.net.monitor.NetworkMonitor.EXTRA_NETWORK_INFO;
@@ -40,44 +35,42 @@ public class EthernetNetworkMonitor extends NetStateMachine {
      */
     public static final String ACTION_ETHERNET_STATE_CHANGED = "com.seagle.android.net.monitor.ACTION_ETHERNET_STATE_CHANGED";
 
-    EthernetNetworkMonitor(Context context) {
-        super(context);
+    EthernetNetworkMonitor(Platform platform, NetworkMonitor monitor) {
+        super(platform, monitor, NetworkMonitor.TRANSPORT_ETHERNET);
     }
 
     @Override
-    protected void notifyNetworkState(boolean connected, NetworkInfo networkInfo) {
-        if (connected) {
-            mNetworkInfo = networkInfo;
-            Intent broadCastIntent = new Intent(ACTION_ETHERNET_STATE_CHANGED);
-            broadCastIntent.putExtra(EXTRA_NETWORK_STATE, true);
-            broadCastIntent.putExtra(EXTRA_NETWORK_INFO, mNetworkInfo);
-            mContext.sendStickyBroadcast(broadCastIntent);
-            Log.i(TAG, "Ethernet network connected: " + mNetworkInfo);
+    protected void notifyStateChanged(NetworkSnapshot.TransportState previous, NetworkSnapshot.TransportState current) {
+        if (current.isConnected()) {
+            NetworkInfo networkInfo = current.getNetworkInfo();
+            dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_CONNECTED, mTransport, null, networkInfo, current.getNetwork(), null));
+            if (isBroadcastEnabled()) {
+                Intent broadCastIntent = new Intent(ACTION_ETHERNET_STATE_CHANGED);
+                broadCastIntent.putExtra(EXTRA_NETWORK_STATE, true);
+                broadCastIntent.putExtra(EXTRA_NETWORK_INFO, networkInfo);
+                mPlatform.sendStickyBroadcast(broadCastIntent);
+            }
+            Log.i(TAG, "Ethernet network connected: " + networkInfo);
         } else {
-            Log.i(TAG, "Ethernet network disconnected: " + mNetworkInfo);
-            Intent broadCastIntent = new Intent(ACTION_ETHERNET_STATE_CHANGED);
-            broadCastIntent.putExtra(EXTRA_NETWORK_STATE, false);
-            if (mNetworkInfo != null) {
-                broadCastIntent.putExtra(EXTRA_PRE_NETWORK_INFO, mNetworkInfo);
+            NetworkInfo preNetworkInfo = previous.getNetworkInfo();
+            Log.i(TAG, "Ethernet network disconnected: " + preNetworkInfo);
+            dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_DISCONNECTED, mTransport, preNetworkInfo, null, null, null));
+            if (isBroadcastEnabled()) {
+                Intent broadCastIntent = new Intent(ACTION_ETHERNET_STATE_CHANGED);
+                broadCastIntent.putExtra(EXTRA_NETWORK_STATE, false);
+                if (preNetworkInfo != null) {
+                    broadCastIntent.putExtra(EXTRA_PRE_NETWORK_INFO, preNetworkInfo);
+                }
+                mPlatform.sendStickyBroadcast(broadCastIntent);
             }
-            mContext.sendStickyBroadcast(broadCastIntent);
-            mNetworkInfo = null;
         }
     }
 
-    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
-    @Override
-    protected NetworkRequest getNetRequest() {
-        NetworkRequest.Builder builder = new NetworkRequest.Builder();
-        builder.addTransportType(NetworkCapabilities.TRANSPORT_ETHERNET);
-        return builder.build();
-    }
-
     @Override
     void stop() {
-        if (mContext != null) {
+        if (isBroadcastEnabled()) {
             Intent broadCastIntent = new Intent(ACTION_ETHERNET_STATE_CHANGED);
-            mContext.removeStickyBroadcast(broadCastIntent);
+            mPlatform.removeStickyBroadcast(broadCastIntent);
         }
         super.stop();
     }
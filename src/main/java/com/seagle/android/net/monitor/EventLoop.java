@@ -0,0 +1,124 @@
+package com.seagle.android.net.monitor;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * The monitor event loop.
+ * <p>All the platform signals (broadcasts,network callbacks,supplicant state) are serialized
+ * on this single thread in arrival order,and all the monitor state is mutated here only,
+ * so binder calls never run on the UI thread and concurrent transport changes can not lose updates.
+ */
+class EventLoop implements Executor, SignalCoalescer.Scheduler {
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    EventLoop(String name) {
+        mThread = new HandlerThread(name);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    Handler getHandler() {
+        return mHandler;
+    }
+
+    /**
+     * Return is current thread the loop thread.
+     *
+     * @return in loop
+     */
+    boolean inLoop() {
+        return Looper.myLooper() == mThread.getLooper();
+    }
+
+    /**
+     * Run the task on loop,run directly if already in loop.
+     *
+     * @param task task
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (inLoop()) {
+            task.run();
+        } else {
+            mHandler.post(task);
+        }
+    }
+
+    void post(Runnable task) {
+        mHandler.post(task);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+        mHandler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public void remove(Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+
+    /**
+     * Run the task on loop and wait it finished.
+     * Return immediately without running the task if the loop has quit.
+     *
+     * @param task task
+     */
+    void runSync(final Runnable task) {
+        if (inLoop()) {
+            task.run();
+            return;
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        final RuntimeException[] error = new RuntimeException[1];
+        boolean posted = mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    error[0] = ex;
+                } finally {
+                    latch.countDown();
+                }
+            }
+        });
+        if (!posted) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+
+    /**
+     * Quit the loop after the pending tasks finished.
+     */
+    void quit() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            mThread.quitSafely();
+        } else {
+            mThread.quit();
+        }
+    }
+}
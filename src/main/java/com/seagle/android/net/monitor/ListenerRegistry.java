@@ -0,0 +1,250 @@
+package com.seagle.android.net.monitor;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Listener registry.
+ * <p>Dispatch event to every registered listener by its executor,
+ * if no executor provided the listener will be called on the dispatch thread.
+ * The events of some fields,such as {@link NetworkEvent#TYPE_PROPERTIES_CHANGED},are only dispatched to the listeners
+ * subscribed one of the fields.
+ * A listener registered with a {@link DeliveryPolicy} has its own mailbox,the dispatch thread only offers the event
+ * to the mailbox and at most one drain task of the listener is queued to its executor at a time.
+ * A {@link DeliveryPolicy#STRICT} listener the mailbox overflowed is removed by the dispatch.
+ */
+class ListenerRegistry {
+
+    private static final String TAG = "ListenerRegistry";
+
+    private final CopyOnWriteArrayList<Registration> mRegistrations = new CopyOnWriteArrayList<>();
+    private final MonitorMetrics mMetrics;
+
+    ListenerRegistry(MonitorMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    void add(NetworkListener listener, Executor executor) {
+        add(listener, executor, 0, null);
+    }
+
+    void add(NetworkListener listener, Executor executor, int fields) {
+        add(listener, executor, fields, null);
+    }
+
+    void add(NetworkListener listener, Executor executor, int fields, DeliveryPolicy policy) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener should not be null!");
+        }
+        if (policy != null && executor == null) {
+            throw new IllegalArgumentException("Executor should not be null with delivery policy!");
+        }
+        for (Registration registration : mRegistrations) {
+            if (registration.mListener == listener) {
+                return;
+            }
+        }
+        mRegistrations.add(policy == null ? new Registration(listener, executor, fields)
+                : new MailboxRegistration(listener, executor, fields, policy, mMetrics));
+    }
+
+    void remove(NetworkListener listener) {
+        for (Registration registration : mRegistrations) {
+            if (registration.mListener == listener) {
+                mRegistrations.remove(registration);
+                registration.close();
+                return;
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return mRegistrations.isEmpty();
+    }
+
+    void clear() {
+        for (Registration registration : mRegistrations) {
+            registration.close();
+        }
+        mRegistrations.clear();
+    }
+
+    /**
+     * Dispatch the event to the listeners subscribed.
+     *
+     * @param event NetworkEvent
+     * @return true if a listener was removed for the mailbox overflowed
+     */
+    boolean dispatch(NetworkEvent event) {
+        boolean removed = false;
+        for (Registration registration : mRegistrations) {
+            if (event.getChangedFields() != 0 && (registration.mFields & event.getChangedFields()) == 0) {
+                continue;
+            }
+            if (!registration.deliver(event)) {
+                mRegistrations.remove(registration);
+                mMetrics.countDroppedListener();
+                Log.w(TAG, "Listener removed for the mailbox overflowed: " + registration.mListener);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    private static class Registration {
+        final NetworkListener mListener;
+        final Executor mExecutor;
+        final int mFields;
+
+        Registration(NetworkListener listener, Executor executor, int fields) {
+            mListener = listener;
+            mExecutor = executor;
+            mFields = fields;
+        }
+
+        /**
+         * Deliver the event.
+         *
+         * @param event NetworkEvent
+         * @return false if the listener should be removed
+         */
+        boolean deliver(final NetworkEvent event) {
+            if (mExecutor == null) {
+                mListener.onNetworkEvent(event);
+            } else {
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mListener.onNetworkEvent(event);
+                    }
+                });
+            }
+            return true;
+        }
+
+        void close() {
+        }
+    }
+
+    /**
+     * The registration with a bounded or conflating mailbox.
+     * <p>The mailbox is guarded by the registration itself,offering never waits the listener.
+     */
+    private static class MailboxRegistration extends Registration implements Runnable {
+        private final int mMode;
+        private final int mCapacity;
+        private final MonitorMetrics mMetrics;
+        private final ArrayDeque<NetworkEvent> mMailbox = new ArrayDeque<>();
+        private boolean mScheduled;
+        private boolean mClosed;
+
+        MailboxRegistration(NetworkListener listener, Executor executor, int fields, DeliveryPolicy policy,
+                            MonitorMetrics metrics) {
+            super(listener, executor, fields);
+            mMode = policy.getMode();
+            mCapacity = policy.getCapacity();
+            mMetrics = metrics;
+        }
+
+        @Override
+        boolean deliver(NetworkEvent event) {
+            synchronized (this) {
+                if (mClosed) {
+                    return true;
+                }
+                if (mMode == DeliveryPolicy.MODE_CONFLATE) {
+                    removeSameKind(event);
+                } else if (mMailbox.size() >= mCapacity) {
+                    if (mMode == DeliveryPolicy.MODE_STRICT) {
+                        mMetrics.countDroppedEvents(mMailbox.size() + 1);
+                        close();
+                        return false;
+                    }
+                    mMailbox.pollFirst();
+                    mMetrics.countDroppedEvent();
+                }
+                mMailbox.addLast(event);
+                if (mScheduled) {
+                    return true;
+                }
+                mScheduled = true;
+            }
+            mExecutor.execute(this);
+            return true;
+        }
+
+        /**
+         * Drop the pending event of the same kind,the mailbox holds at most one event of each kind.
+         */
+        private void removeSameKind(NetworkEvent event) {
+            Iterator<NetworkEvent> iterator = mMailbox.iterator();
+            while (iterator.hasNext()) {
+                if (isSameKind(iterator.next(), event)) {
+                    iterator.remove();
+                    mMetrics.countDroppedEvent();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            NetworkEvent event;
+            while ((event = poll()) != null) {
+                boolean delivered = false;
+                try {
+                    mListener.onNetworkEvent(event);
+                    delivered = true;
+                } finally {
+                    if (!delivered) {
+                        // Keep draining the rest after the listener threw.
+                        mExecutor.execute(this);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Take the oldest event,clear the scheduled flag if the mailbox is drained.
+         *
+         * @return NetworkEvent or null
+         */
+        private synchronized NetworkEvent poll() {
+            NetworkEvent event = mClosed ? null : mMailbox.pollFirst();
+            if (event == null) {
+                mScheduled = false;
+            }
+            return event;
+        }
+
+        /**
+         * Return are the events of the same kind,
+         * the state events of a transport,or the per network events of a network.
+         */
+        static boolean isSameKind(NetworkEvent first, NetworkEvent second) {
+            if (first.getTransport() != second.getTransport()) {
+                return false;
+            }
+            boolean networkEvent = isNetworkEvent(first);
+            if (networkEvent != isNetworkEvent(second)) {
+                return false;
+            }
+            return !networkEvent || (first.getNetwork() == null ? second.getNetwork() == null
+                    : first.getNetwork().equals(second.getNetwork()));
+        }
+
+        private static boolean isNetworkEvent(NetworkEvent event) {
+            return event.getType() == NetworkEvent.TYPE_NETWORK_AVAILABLE || event.getType() == NetworkEvent.TYPE_NETWORK_LOST;
+        }
+
+        @Override
+        synchronized void close() {
+            mClosed = true;
+            mMailbox.clear();
+        }
+    }
+}
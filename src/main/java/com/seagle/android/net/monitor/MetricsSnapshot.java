@@ -0,0 +1,322 @@
+package com.seagle.android.net.monitor;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Immutable copy of the monitor metrics.
+ * <p>The latencies are kept in fixed power-of-two buckets in microseconds,
+ * bucket i holds the values in [2^(i-1), 2^i),so a percentile is the upper bound of its bucket.
+ */
+public final class MetricsSnapshot {
+
+    /**
+     * Signal: connectivity broadcast received.
+     */
+    public static final int SIGNAL_CONNECTIVITY_ACTION = 0;
+
+    /**
+     * Signal: network callback onAvailable.
+     */
+    public static final int SIGNAL_AVAILABLE = 1;
+
+    /**
+     * Signal: network callback onLost.
+     */
+    public static final int SIGNAL_LOST = 2;
+
+    /**
+     * Signal: default network callback onAvailable or onLost.
+     */
+    public static final int SIGNAL_DEFAULT_NETWORK = 3;
+
+    /**
+     * Signal: network callback onCapabilitiesChanged.
+     */
+    public static final int SIGNAL_CAPABILITIES_CHANGED = 4;
+
+    /**
+     * Signal: network callback onLinkPropertiesChanged.
+     */
+    public static final int SIGNAL_LINK_PROPERTIES_CHANGED = 5;
+
+    /**
+     * Binder call: ConnectivityManager#getActiveNetworkInfo.
+     */
+    public static final int BINDER_ACTIVE_NETWORK_INFO = 0;
+
+    /**
+     * Binder call: ConnectivityManager#getNetworkInfo.
+     */
+    public static final int BINDER_NETWORK_INFO = 1;
+
+    /**
+     * Binder call: ConnectivityManager#getNetworkCapabilities.
+     */
+    public static final int BINDER_NETWORK_CAPABILITIES = 2;
+
+    /**
+     * Binder call: ConnectivityManager#getAllNetworks or getAllNetworkInfo.
+     */
+    public static final int BINDER_ALL_NETWORKS = 3;
+
+    /**
+     * Binder call: WifiManager#getConnectionInfo.
+     */
+    public static final int BINDER_CONNECTION_INFO = 4;
+
+    /**
+     * Binder call: WifiManager configuration operations.
+     */
+    public static final int BINDER_WIFI_CONFIG = 5;
+
+    /**
+     * Binder call: WifiManager#startScan or getScanResults.
+     */
+    public static final int BINDER_WIFI_SCAN = 6;
+
+    /**
+     * Binder call: ConnectivityManager#getLinkProperties.
+     */
+    public static final int BINDER_LINK_PROPERTIES = 7;
+
+    /**
+     * Histogram: from the platform signal to the listeners notified.
+     */
+    public static final int HISTOGRAM_SIGNAL_TO_DISPATCH = 0;
+
+    /**
+     * Histogram: WiFi connect association phase.
+     */
+    public static final int HISTOGRAM_CONNECT_ASSOCIATING = 1;
+
+    /**
+     * Histogram: WiFi connect authentication phase.
+     */
+    public static final int HISTOGRAM_CONNECT_AUTHENTICATING = 2;
+
+    /**
+     * Histogram: WiFi connect obtaining IP phase.
+     */
+    public static final int HISTOGRAM_CONNECT_OBTAINING_IP = 3;
+
+    static final int EVENT_TYPE_COUNT = 6;
+    static final int TRANSPORT_SLOT_COUNT = NetworkSnapshot.TRANSPORT_COUNT + 1;
+    static final int SIGNAL_COUNT = 6;
+    static final int BINDER_COUNT = 8;
+    static final int HISTOGRAM_COUNT = 4;
+    static final int BUCKET_COUNT = 26;
+
+    private static final String[] EVENT_NAMES = {"connected", "disconnected", "changed", "properties_changed",
+            "network_available", "network_lost"};
+    private static final String[] TRANSPORT_NAMES = {"active", "wifi", "mobile", "ethernet"};
+    private static final String[] SIGNAL_NAMES = {"connectivity_action", "available", "lost", "default_network",
+            "capabilities_changed", "link_properties_changed"};
+    private static final String[] BINDER_NAMES = {"getActiveNetworkInfo", "getNetworkInfo", "getNetworkCapabilities",
+            "getAllNetworks", "getConnectionInfo", "wifiConfig", "wifiScan", "getLinkProperties"};
+    private static final String[] HISTOGRAM_NAMES = {"signal_to_dispatch", "connect_associating",
+            "connect_authenticating", "connect_obtaining_ip"};
+
+    private final boolean mEnabled;
+    private final long[] mEvents;
+    private final long[] mSignals;
+    private final long[] mBinderCalls;
+    private final long[] mBuckets;
+    private final long mDroppedEvents;
+    private final long mDroppedListeners;
+
+    MetricsSnapshot(boolean enabled, long[] events, long[] signals, long[] binderCalls, long[] buckets,
+                    long droppedEvents, long droppedListeners) {
+        mEnabled = enabled;
+        mEvents = events;
+        mSignals = signals;
+        mBinderCalls = binderCalls;
+        mBuckets = buckets;
+        mDroppedEvents = droppedEvents;
+        mDroppedListeners = droppedListeners;
+    }
+
+    /**
+     * Return is the metrics enabled when the snapshot was taken.
+     *
+     * @return enabled
+     */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Return the count of events dispatched.
+     *
+     * @param type      event type,such as {@link NetworkEvent#TYPE_CONNECTED}
+     * @param transport transport,{@link NetworkMonitor#TRANSPORT_NONE} for the active network events
+     * @return event count
+     */
+    public long getEventCount(int type, int transport) {
+        return mEvents[(type - 1) * TRANSPORT_SLOT_COUNT + transport + 1];
+    }
+
+    /**
+     * Return the count of all the events dispatched.
+     *
+     * @return event count
+     */
+    public long getTotalEventCount() {
+        return sum(mEvents);
+    }
+
+    /**
+     * Return the count of the events dropped from the listener mailboxes,
+     * by {@link DeliveryPolicy#CONFLATE},{@link DeliveryPolicy#dropOldest(int)} or with a listener removed.
+     *
+     * @return dropped event count
+     */
+    public long getDroppedEventCount() {
+        return mDroppedEvents;
+    }
+
+    /**
+     * Return the count of the {@link DeliveryPolicy#STRICT} listeners removed for the mailbox overflowed.
+     *
+     * @return dropped listener count
+     */
+    public long getDroppedListenerCount() {
+        return mDroppedListeners;
+    }
+
+    /**
+     * Return the count of the platform signals.
+     *
+     * @param signal signal,such as {@link #SIGNAL_AVAILABLE}
+     * @return signal count
+     */
+    public long getSignalCount(int signal) {
+        return mSignals[signal];
+    }
+
+    /**
+     * Return the count of the binder calls.
+     *
+     * @param call binder call,such as {@link #BINDER_NETWORK_INFO}
+     * @return binder call count
+     */
+    public long getBinderCallCount(int call) {
+        return mBinderCalls[call];
+    }
+
+    /**
+     * Return the count of all the binder calls.
+     *
+     * @return binder call count
+     */
+    public long getTotalBinderCallCount() {
+        return sum(mBinderCalls);
+    }
+
+    /**
+     * Return the average binder calls per dispatched event.
+     *
+     * @return binder calls per event,0 if no event
+     */
+    public float getBinderCallsPerEvent() {
+        long events = getTotalEventCount();
+        return events == 0 ? 0 : (float) getTotalBinderCallCount() / events;
+    }
+
+    /**
+     * Return the count of the values in the histogram.
+     *
+     * @param histogram histogram,such as {@link #HISTOGRAM_SIGNAL_TO_DISPATCH}
+     * @return value count
+     */
+    public long getHistogramCount(int histogram) {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mBuckets[histogram * BUCKET_COUNT + i];
+        }
+        return count;
+    }
+
+    /**
+     * Return the count of the values in one bucket of the histogram.
+     *
+     * @param histogram histogram
+     * @param bucket    bucket 0~25,the values in [2^(bucket-1), 2^bucket) microseconds
+     * @return value count
+     */
+    public long getBucketCount(int histogram, int bucket) {
+        return mBuckets[histogram * BUCKET_COUNT + bucket];
+    }
+
+    /**
+     * Return the percentile of the histogram,as the upper bound of the bucket.
+     *
+     * @param histogram histogram
+     * @param percent   percentile 1~100
+     * @return microseconds,-1 if empty
+     */
+    public long getPercentileMicros(int histogram, int percent) {
+        long count = getHistogramCount(histogram);
+        if (count == 0) {
+            return -1;
+        }
+        long rank = (count * percent + 99) / 100;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets[histogram * BUCKET_COUNT + i];
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Print the metrics in dumpsys style.
+     *
+     * @param writer PrintWriter
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("NetworkMonitor metrics (enabled=" + mEnabled + "):");
+        writer.println("  Events:");
+        for (int type = 0; type < EVENT_TYPE_COUNT; type++) {
+            for (int slot = 0; slot < TRANSPORT_SLOT_COUNT; slot++) {
+                long count = mEvents[type * TRANSPORT_SLOT_COUNT + slot];
+                if (count > 0) {
+                    writer.println("    " + EVENT_NAMES[type] + "/" + TRANSPORT_NAMES[slot] + ": " + count);
+                }
+            }
+        }
+        writer.println("  Dropped events: " + mDroppedEvents);
+        writer.println("  Dropped listeners: " + mDroppedListeners);
+        writer.println("  Signals:");
+        for (int i = 0; i < SIGNAL_COUNT; i++) {
+            writer.println("    " + SIGNAL_NAMES[i] + ": " + mSignals[i]);
+        }
+        writer.println("  Binder calls: " + getTotalBinderCallCount() + " (" + getBinderCallsPerEvent() + " per event)");
+        for (int i = 0; i < BINDER_COUNT; i++) {
+            writer.println("    " + BINDER_NAMES[i] + ": " + mBinderCalls[i]);
+        }
+        writer.println("  Latency (us):");
+        for (int i = 0; i < HISTOGRAM_COUNT; i++) {
+            writer.println("    " + HISTOGRAM_NAMES[i] + ": count=" + getHistogramCount(i)
+                    + " p50<=" + getPercentileMicros(i, 50) + " p90<=" + getPercentileMicros(i, 90)
+                    + " p99<=" + getPercentileMicros(i, 99));
+        }
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter();
+        dump(new PrintWriter(writer));
+        return writer.toString();
+    }
+}
@@ -1,12 +1,7 @@
 package com.seagle.android.net.monitor;
 
-import android.content.Context;
 import android.content.Intent;
-import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
-import android.net.NetworkRequest;
-import android.os.Build;
-import android.support.annotation.RequiresApi;
 import android.telephony.TelephonyManager;
 import android.util.Log;
 
@@ -41,10 +36,8 @@ public class MobileNetworkMonitor extends NetStateMachine {
      */
     public static final String ACTION_MOBILE_STATE_CHANGED = "com.seagle.android.net.monitor.ACTION_MOBILE_STATE_CONNECTED";
 
-    private volatile TelephonyManager mTelephonyManager;
-
-    MobileNetworkMonitor(Context context) {
-        super(context);
+    MobileNetworkMonitor(Platform platform, NetworkMonitor monitor) {
+        super(platform, monitor, NetworkMonitor.TRANSPORT_MOBILE);
     }
 
     /**
@@ -53,50 +46,41 @@ public class MobileNetworkMonitor extends NetStateMachine {
      * @return TelephonyManager
      */
     public TelephonyManager getTelephonyManager() {
-        if (mTelephonyManager == null) {
-            synchronized (this) {
-                if (mTelephonyManager == null) {
-                    mTelephonyManager = (TelephonyManager) mContext.getSystemService(Context.TELEPHONY_SERVICE);
-                }
-            }
-        }
-        return mTelephonyManager;
+        return mMonitor.getPlatform().getTelephonyManager();
     }
 
-    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     @Override
-    protected NetworkRequest getNetRequest() {
-        NetworkRequest.Builder builder = new NetworkRequest.Builder();
-        builder.addTransportType(NetworkCapabilities.TRANSPORT_CELLULAR);
-        return builder.build();
-    }
-
-    @Override
-    protected void notifyNetworkState(boolean connected, NetworkInfo networkInfo) {
-        if (connected) {
-            mNetworkInfo = networkInfo;
-            Intent broadCastIntent = new Intent(ACTION_MOBILE_STATE_CHANGED);
-            broadCastIntent.putExtra(EXTRA_NETWORK_STATE, true);
-            broadCastIntent.putExtra(EXTRA_NETWORK_INFO, mNetworkInfo);
-            mContext.sendStickyBroadcast(broadCastIntent);
-            Log.i(TAG, "Mobile network connected: " + mNetworkInfo);
+    protected void notifyStateChanged(NetworkSnapshot.TransportState previous, NetworkSnapshot.TransportState current) {
+        if (current.isConnected()) {
+            NetworkInfo networkInfo = current.getNetworkInfo();
+            dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_CONNECTED, mTransport, null, networkInfo, current.getNetwork(), null));
+            if (isBroadcastEnabled()) {
+                Intent broadCastIntent = new Intent(ACTION_MOBILE_STATE_CHANGED);
+                broadCastIntent.putExtra(EXTRA_NETWORK_STATE, true);
+                broadCastIntent.putExtra(EXTRA_NETWORK_INFO, networkInfo);
+                mPlatform.sendStickyBroadcast(broadCastIntent);
+            }
+            Log.i(TAG, "Mobile network connected: " + networkInfo);
         } else {
-            Log.i(TAG, "Mobile network disconnected: " + mNetworkInfo);
-            Intent broadCastIntent = new Intent(ACTION_MOBILE_STATE_CHANGED);
-            broadCastIntent.putExtra(EXTRA_NETWORK_STATE, false);
-            if (mNetworkInfo != null) {
-                broadCastIntent.putExtra(EXTRA_PRE_NETWORK_INFO, mNetworkInfo);
+            NetworkInfo preNetworkInfo = previous.getNetworkInfo();
+            Log.i(TAG, "Mobile network disconnected: " + preNetworkInfo);
+            dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_DISCONNECTED, mTransport, preNetworkInfo, null, null, null));
+            if (isBroadcastEnabled()) {
+                Intent broadCastIntent = new Intent(ACTION_MOBILE_STATE_CHANGED);
+                broadCastIntent.putExtra(EXTRA_NETWORK_STATE, false);
+                if (preNetworkInfo != null) {
+                    broadCastIntent.putExtra(EXTRA_PRE_NETWORK_INFO, preNetworkInfo);
+                }
+                mPlatform.sendStickyBroadcast(broadCastIntent);
             }
-            mContext.sendStickyBroadcast(broadCastIntent);
-            mNetworkInfo = null;
         }
     }
 
     @Override
     void stop() {
-        if (mContext != null) {
+        if (isBroadcastEnabled()) {
             Intent broadCastIntent = new Intent(ACTION_MOBILE_STATE_CHANGED);
-            mContext.removeStickyBroadcast(broadCastIntent);
+            mPlatform.removeStickyBroadcast(broadCastIntent);
         }
         super.stop();
     }
@@ -0,0 +1,130 @@
+package com.seagle.android.net.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hot path instrumentation of the monitor.
+ * <p>Counters and fixed-bucket latency histograms in atomic arrays,every record method returns
+ * after one volatile read when disabled,and never allocates when enabled.
+ */
+class MonitorMetrics {
+
+    private volatile boolean mEnabled;
+    private final AtomicLongArray mEvents = new AtomicLongArray(MetricsSnapshot.EVENT_TYPE_COUNT * MetricsSnapshot.TRANSPORT_SLOT_COUNT);
+    private final AtomicLongArray mSignals = new AtomicLongArray(MetricsSnapshot.SIGNAL_COUNT);
+    private final AtomicLongArray mBinderCalls = new AtomicLongArray(MetricsSnapshot.BINDER_COUNT);
+    private final AtomicLongArray mBuckets = new AtomicLongArray(MetricsSnapshot.HISTOGRAM_COUNT * MetricsSnapshot.BUCKET_COUNT);
+    private final AtomicLong mDroppedEvents = new AtomicLong();
+    private final AtomicLong mDroppedListeners = new AtomicLong();
+
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Return the timestamp for a later latency record,0 if disabled.
+     *
+     * @return nano time
+     */
+    long now() {
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    void countEvent(int type, int transport) {
+        if (mEnabled) {
+            mEvents.incrementAndGet((type - 1) * MetricsSnapshot.TRANSPORT_SLOT_COUNT + transport + 1);
+        }
+    }
+
+    void countSignal(int signal) {
+        if (mEnabled) {
+            mSignals.incrementAndGet(signal);
+        }
+    }
+
+    void countBinderCall(int call) {
+        if (mEnabled) {
+            mBinderCalls.incrementAndGet(call);
+        }
+    }
+
+    /**
+     * Count an event dropped from a listener mailbox,including the events conflated.
+     */
+    void countDroppedEvent() {
+        if (mEnabled) {
+            mDroppedEvents.incrementAndGet();
+        }
+    }
+
+    /**
+     * Count the events dropped with a listener mailbox.
+     *
+     * @param count event count
+     */
+    void countDroppedEvents(int count) {
+        if (mEnabled) {
+            mDroppedEvents.addAndGet(count);
+        }
+    }
+
+    /**
+     * Count a listener removed for its mailbox overflowed.
+     */
+    void countDroppedListener() {
+        if (mEnabled) {
+            mDroppedListeners.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record the latency since the start time.
+     *
+     * @param histogram      histogram
+     * @param startNanoTime  start time returned by {@link #now()},ignored if 0
+     */
+    void recordLatency(int histogram, long startNanoTime) {
+        if (!mEnabled || startNanoTime == 0) {
+            return;
+        }
+        long micros = (System.nanoTime() - startNanoTime) / 1000;
+        int bucket = micros <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        if (bucket >= MetricsSnapshot.BUCKET_COUNT) {
+            bucket = MetricsSnapshot.BUCKET_COUNT - 1;
+        }
+        mBuckets.incrementAndGet(histogram * MetricsSnapshot.BUCKET_COUNT + bucket);
+    }
+
+    MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(mEnabled, toArray(mEvents), toArray(mSignals), toArray(mBinderCalls), toArray(mBuckets),
+                mDroppedEvents.get(), mDroppedListeners.get());
+    }
+
+    void reset() {
+        clear(mEvents);
+        clear(mSignals);
+        clear(mBinderCalls);
+        clear(mBuckets);
+        mDroppedEvents.set(0);
+        mDroppedListeners.set(0);
+    }
+
+    private static long[] toArray(AtomicLongArray array) {
+        long[] values = new long[array.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.get(i);
+        }
+        return values;
+    }
+
+    private static void clear(AtomicLongArray array) {
+        for (int i = 0; i < array.length(); i++) {
+            array.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.seagle.android.net.monitor;
+
+/**
+ * The pending readiness of the monitoring started by {@link NetworkMonitor#startMonitoringAsync(android.content.Context)}.
+ * <p>The result is the first snapshot published after start,the state getters return unknown until then.
+ */
+public final class MonitorReadyFuture extends SettableFuture<NetworkSnapshot> {
+
+    MonitorReadyFuture() {
+    }
+
+    /**
+     * Add the ready callback.
+     * If the monitor already ready the callback will be called immediately,
+     * otherwise it will be called on the monitor thread.
+     *
+     * @param callback ReadyCallback
+     */
+    public void addCallback(final NetworkMonitor.ReadyCallback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("Callback should not be null!");
+        }
+        addListener(new Listener<NetworkSnapshot>() {
+            @Override
+            public void onComplete(NetworkSnapshot snapshot) {
+                callback.onReady(snapshot);
+            }
+        });
+    }
+}
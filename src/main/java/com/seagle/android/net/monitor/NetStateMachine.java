@@ -1,86 +1,642 @@
 package com.seagle.android.net.monitor;
 
-import android.content.Context;
-import android.net.ConnectivityManager;
+import android.net.LinkProperties;
 import android.net.Network;
+import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
-import android.net.NetworkRequest;
-import android.os.Build;
-import android.support.annotation.RequiresApi;
+
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * The parent class of network state monitor.
+ * <p>One transport could have several networks connected at the same time,such as the two SIM cards of a dual SIM
+ * handset or the IMS and internet networks of one SIM,each of them is tracked by its own state.
+ * The state of the transport in {@link NetworkSnapshot} is the state of the primary network,
+ * the transport is disconnected only when the last network lost.
  * <p>Created by seagle on 2018/4/23.
  *
  * @author yuanxiudong66@sina.com
  * @since 2018-4-23
  */
 abstract class NetStateMachine {
-    volatile NetworkInfo mNetworkInfo;
-    volatile Network mNetwork;
-    private ConnectivityManager.NetworkCallback mNetCallback;
-    private ConnectivityManager mConnectivityManager;
-    Context mContext;
+    private final ListenerRegistry mListeners;
+    private final SignalCoalescer mCoalescer;
+    private final TrackedSocketFactory mSocketFactory;
+    /**
+     * The latest signal of every network not applied yet,in arrival order,only accessed on the monitor thread.
+     */
+    private final Map<Network, PendingSignal> mPendingSignals = new LinkedHashMap<>();
+    /**
+     * The connected networks of this transport in connect order,replaced as a whole on the monitor thread.
+     */
+    private volatile Map<Network, NetworkSnapshot.TransportState> mNetworks = Collections.emptyMap();
+    final NetworkMonitor mMonitor;
+    final EventLoop mLoop;
+    final int mTransport;
+    final MonitorMetrics mMetrics;
+    final Platform mPlatform;
+    private volatile boolean mActive;
+    private volatile boolean mDisposed;
+
+    private final Runnable mActivateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            activate();
+        }
+    };
+
+    private final Runnable mReleaseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!hasDemand()) {
+                deactivate();
+            }
+        }
+    };
+
+    NetStateMachine(Platform platform, NetworkMonitor monitor, int transport) {
+        mPlatform = platform;
+        mMonitor = monitor;
+        mLoop = monitor.getEventLoop();
+        mTransport = transport;
+        mMetrics = monitor.getMetricsRecorder();
+        mListeners = new ListenerRegistry(mMetrics);
+        mSocketFactory = new TrackedSocketFactory(new TrackedSocketFactory.Route() {
+            @Override
+            public int getTransport() {
+                return mTransport;
+            }
+
+            @Override
+            public Network getConnectedNetwork() throws SocketException {
+                ensureActive();
+                NetworkSnapshot.TransportState state = getTransportState();
+                if (!state.isConnected()) {
+                    throw new SocketException("Network not connected!");
+                }
+                return state.getNetwork();
+            }
 
-    NetStateMachine(Context context) {
-        mContext = context;
-        mConnectivityManager = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+            @Override
+            public boolean isCurrent(Network network) {
+                NetworkSnapshot.TransportState state = getTransportState();
+                return state.isConnected() && (network == null || network.equals(state.getNetwork()));
+            }
+
+            @Override
+            public void releaseIfUnused() {
+                NetStateMachine.this.releaseIfUnused();
+            }
+        });
+        mCoalescer = new SignalCoalescer(mLoop, NetworkMonitor.DEFAULT_COALESCE_WINDOW, mMetrics,
+                new SignalCoalescer.Target() {
+                    @Override
+                    public boolean evaluate() {
+                        return applyPendingState();
+                    }
+                });
     }
 
-    void setNetworkInfo(NetworkInfo networkInfo) {
-        mNetworkInfo = networkInfo;
+    /**
+     * Start the monitor if it is not running.
+     * Called on the monitor thread.
+     */
+    void activate() {
+        if (mActive || mDisposed) {
+            return;
+        }
+        mActive = true;
+        start();
     }
 
     /**
-     * Start network state monitor
+     * Stop the monitor if it is running,the transport state is unknown until it starts again.
+     * Called on the monitor thread.
      */
-    void start() {
-        if (mNetworkInfo == null || mNetworkInfo.getState() != NetworkInfo.State.CONNECTED) {
-            notifyNetworkState(false, null);
+    void deactivate() {
+        if (mActive) {
+            stop();
+            mActive = false;
+            mMonitor.publishTransportStopped(mTransport);
         }
+    }
+
+    /**
+     * Stop the monitor for ever,called when the monitoring stopped.
+     * Called on the monitor thread.
+     */
+    void dispose() {
+        mDisposed = true;
+        deactivate();
+    }
+
+    /**
+     * Start the monitor on demand,such as the state is read.
+     * Wait it started unless the monitoring started asynchronously,where the state is unknown until then.
+     * Called on any thread.
+     */
+    void ensureActive() {
+        if (!mActive && !mDisposed) {
+            if (mMonitor.isStartAsync()) {
+                mLoop.execute(mActivateRunnable);
+            } else {
+                mLoop.runSync(mActivateRunnable);
+            }
+        }
+    }
+
+    /**
+     * Return is the monitor running.
+     *
+     * @return active
+     */
+    boolean isActive() {
+        return mActive;
+    }
+
+    /**
+     * Return is there anyone using this monitor besides the listeners,such as a running WiFi connect.
+     * The monitor is stopped when the last listener leaves only if no demand.
+     *
+     * @return has demand
+     */
+    boolean hasDemand() {
+        return !mListeners.isEmpty() || isBroadcastEnabled() || mMonitor.hasPendingJobs()
+                || mSocketFactory.hasOpenSockets() || mMonitor.hasOpenSelectorSockets();
+    }
+
+    /**
+     * Stop the monitor later if nobody uses it.
+     * Always posted,so a check requested in the middle of a transition runs after it published.
+     */
+    void releaseIfUnused() {
+        mLoop.remove(mReleaseRunnable);
+        mLoop.post(mReleaseRunnable);
+    }
+
+    /**
+     * Init the state of this transport from the connected networks,without notifying.
+     * Since android LOLLIPOP the networks are replayed by the {@link NetworkCallbackHub} on attach,
+     * which knows them since its callback registered,so no binder call is made per activation except NetworkInfo.
+     */
+    private void initState() {
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
-            mNetCallback = new ConnectivityManager.NetworkCallback() {
-                @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
-                @Override
-                public void onAvailable(Network network) {
-                    mNetwork = network;
-                    if (network != null) {
-                        NetworkInfo networkInfo = mConnectivityManager.getNetworkInfo(network);
-                        notifyNetworkState(true, networkInfo);
+            mMonitor.getCallbackHub().attach(this);
+            Network primary = selectPrimaryNetwork(null);
+            if (primary != null) {
+                mMonitor.publishTransportState(mTransport, mNetworks.get(primary), Transition.REASON_INIT);
+            }
+        } else {
+            mMetrics.countBinderCall(MetricsSnapshot.BINDER_ALL_NETWORKS);
+            NetworkInfo[] networkInfoArray = mPlatform.getAllNetworkInfo();
+            if (networkInfoArray != null) {
+                for (NetworkInfo networkInfo : networkInfoArray) {
+                    if (NetworkMonitor.toTransport(networkInfo.getType()) == mTransport) {
+                        // No Network object below android LOLLIPOP.
+                        mMonitor.publishTransportState(mTransport, new NetworkSnapshot.TransportState(networkInfo, null, null, null, null),
+                                Transition.REASON_INIT);
                     }
                 }
+            }
+        }
+    }
 
-                @Override
-                public void onLost(Network network) {
-                    mNetwork = network;
-                    notifyNetworkState(false, null);
-                }
-            };
-            mConnectivityManager.registerNetworkCallback(getNetRequest(), mNetCallback);
+    /**
+     * Add a network connected before this monitor started,nothing is notified.
+     * Called on the monitor thread by {@link NetworkCallbackHub#attach(NetStateMachine)}.
+     *
+     * @param network        Network
+     * @param capabilities   NetworkCapabilities
+     * @param linkProperties LinkProperties,null if not known
+     */
+    void onNetworkReplayed(Network network, NetworkCapabilities capabilities, LinkProperties linkProperties) {
+        NetworkSnapshot.TransportState state = queryConnectedState(network, new PendingSignal(true, capabilities, linkProperties));
+        if (state.isConnected()) {
+            Map<Network, NetworkSnapshot.TransportState> networks = new LinkedHashMap<>(mNetworks);
+            networks.put(network, state);
+            mNetworks = Collections.unmodifiableMap(networks);
+        }
+    }
+
+    /**
+     * Start network state monitor.
+     * Called on the monitor thread by {@link #activate()},the network signals are dispatched by the
+     * {@link NetworkCallbackHub} shared by all the transports.
+     */
+    void start() {
+        initState();
+        if (!getTransportState().isConnected()) {
+            updateState(false, null, null, null, null, Transition.REASON_INIT);
         }
     }
 
     /**
      * Stop network state monitor.
-     * Do some thing release.
+     * Called on the monitor thread by {@link #deactivate()}.
      */
     void stop() {
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
-            mConnectivityManager.unregisterNetworkCallback(mNetCallback);
+            mMonitor.getCallbackHub().detach(this);
+        }
+        mCoalescer.cancel();
+        mPendingSignals.clear();
+        mNetworks = Collections.emptyMap();
+    }
+
+    /**
+     * Record the latest platform signal of the network and hand it to the coalescer.
+     * Called on the monitor thread by the {@link NetworkCallbackHub}.
+     *
+     * @param available      network available or lost
+     * @param network        Network
+     * @param capabilities   the capabilities delivered with the available signal,null if lost
+     * @param linkProperties the link properties delivered with the available signal,null if lost
+     * @param signalTime     the time the signal arrived
+     */
+    void onNetworkSignal(boolean available, Network network, NetworkCapabilities capabilities, LinkProperties linkProperties,
+                         long signalTime) {
+        // Keep the arrival order of the networks signaled again.
+        mPendingSignals.remove(network);
+        mPendingSignals.put(network, new PendingSignal(available, capabilities, linkProperties));
+        mCoalescer.signal(signalTime);
+    }
+
+    /**
+     * Update the capabilities and link properties of a connected network,
+     * and notify the listeners subscribed the changed fields.
+     * Called on the monitor thread by the {@link NetworkCallbackHub},nothing is published if no field changed.
+     * The primary network is selected again,as the validation of the networks changes.
+     *
+     * @param network        Network
+     * @param capabilities   NetworkCapabilities
+     * @param linkProperties LinkProperties
+     */
+    void onPropertiesChanged(Network network, NetworkCapabilities capabilities, LinkProperties linkProperties) {
+        PendingSignal signal = mPendingSignals.get(network);
+        if (signal != null && signal.mAvailable) {
+            mPendingSignals.put(network, new PendingSignal(true, capabilities, linkProperties));
+        }
+        NetworkSnapshot.TransportState state = mNetworks.get(network);
+        if (!mActive || state == null) {
+            return;
+        }
+        int changedFields = state.diffProperties(capabilities, linkProperties);
+        if (changedFields == 0) {
+            return;
+        }
+        NetworkSnapshot.TransportState current = state.withProperties(capabilities, linkProperties);
+        Map<Network, NetworkSnapshot.TransportState> networks = new LinkedHashMap<>(mNetworks);
+        networks.put(network, current);
+        mNetworks = Collections.unmodifiableMap(networks);
+        updatePrimaryNetwork();
+        dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_PROPERTIES_CHANGED, mTransport, null, current.getNetworkInfo(),
+                network, current.getWifiInfo(), capabilities, linkProperties, changedFields));
+    }
+
+    /**
+     * Apply the latest signals of the networks and notify the net transitions.
+     *
+     * @return true if a transition was notified
+     */
+    private boolean applyPendingState() {
+        if (!mActive || mPendingSignals.isEmpty()) {
+            mPendingSignals.clear();
+            return false;
+        }
+        Map<Network, NetworkSnapshot.TransportState> networks = new LinkedHashMap<>(mNetworks);
+        List<NetworkSnapshot.TransportState> added = new ArrayList<>();
+        List<NetworkSnapshot.TransportState> removed = new ArrayList<>();
+        for (Map.Entry<Network, PendingSignal> entry : mPendingSignals.entrySet()) {
+            Network network = entry.getKey();
+            PendingSignal signal = entry.getValue();
+            if (!signal.mAvailable) {
+                NetworkSnapshot.TransportState lost = networks.remove(network);
+                if (lost != null) {
+                    removed.add(lost);
+                }
+            } else if (!networks.containsKey(network)) {
+                NetworkSnapshot.TransportState state = queryConnectedState(network, signal);
+                if (state.isConnected()) {
+                    networks.put(network, state);
+                    added.add(state);
+                }
+            }
+        }
+        mPendingSignals.clear();
+        mNetworks = Collections.unmodifiableMap(networks);
+        boolean notified = updatePrimaryNetwork();
+        for (NetworkSnapshot.TransportState state : removed) {
+            mSocketFactory.closeSockets(state.getNetwork());
+            dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_NETWORK_LOST, mTransport, state.getNetworkInfo(), null,
+                    state.getNetwork(), state.getWifiInfo(), null, null, NetworkEvent.FIELD_NETWORKS));
+        }
+        for (NetworkSnapshot.TransportState state : added) {
+            dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_NETWORK_AVAILABLE, mTransport, null, state.getNetworkInfo(),
+                    state.getNetwork(), state.getWifiInfo(), state.getCapabilities(), state.getLinkProperties(),
+                    NetworkEvent.FIELD_NETWORKS));
+        }
+        return notified || !added.isEmpty() || !removed.isEmpty();
+    }
+
+    /**
+     * Query the state of a network available,the properties not delivered with the signal are queried too.
+     *
+     * @param network Network
+     * @param signal  PendingSignal
+     * @return TransportState,not connected if the network is gone
+     */
+    private NetworkSnapshot.TransportState queryConnectedState(Network network, PendingSignal signal) {
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_NETWORK_INFO);
+        NetworkInfo networkInfo = mPlatform.getNetworkInfo(network);
+        NetworkCapabilities capabilities = signal.mCapabilities;
+        if (capabilities == null) {
+            mMetrics.countBinderCall(MetricsSnapshot.BINDER_NETWORK_CAPABILITIES);
+            capabilities = mPlatform.getNetworkCapabilities(network);
+        }
+        LinkProperties linkProperties = signal.mLinkProperties;
+        if (linkProperties == null) {
+            mMetrics.countBinderCall(MetricsSnapshot.BINDER_LINK_PROPERTIES);
+            linkProperties = mPlatform.getLinkProperties(network);
+        }
+        return createConnectedState(networkInfo, network, capabilities, linkProperties);
+    }
+
+    /**
+     * Select the primary network and publish it as the state of this transport.
+     * Notify the transport connected or disconnected if the primary network changed,
+     * a new primary network is notified as connected.
+     * Called on the monitor thread,such as the default network changed.
+     *
+     * @return true if a transition was notified
+     */
+    boolean updatePrimaryNetwork() {
+        if (!mActive) {
+            return false;
+        }
+        NetworkSnapshot.TransportState previous = getTransportState();
+        Network primary = selectPrimaryNetwork(previous.getNetwork());
+        if (primary == null) {
+            if (previous.getNetwork() == null && !previous.isConnected()) {
+                return false;
+            }
+            updateState(false, null, null, null, null, Transition.REASON_CALLBACK);
+            return true;
+        }
+        NetworkSnapshot.TransportState current = mNetworks.get(primary);
+        if (current == previous) {
+            return false;
+        }
+        mMonitor.publishTransportState(mTransport, current, Transition.REASON_CALLBACK);
+        if (primary.equals(previous.getNetwork()) && previous.isConnected()) {
+            // Only the properties of the primary network changed.
+            return false;
+        }
+        closeReplacedSockets(previous, current);
+        notifyStateChanged(previous, current);
+        return true;
+    }
+
+    /**
+     * Select the primary network of this transport:
+     * the default network of the system if it is one of this transport,otherwise the validated network,
+     * the current primary network is kept if no better one,otherwise the earliest connected.
+     *
+     * @param current current primary network
+     * @return primary network or null if no network connected
+     */
+    private Network selectPrimaryNetwork(Network current) {
+        Map<Network, NetworkSnapshot.TransportState> networks = mNetworks;
+        Network defaultNetwork = mMonitor.getDefaultNetwork();
+        if (defaultNetwork != null && networks.containsKey(defaultNetwork)) {
+            return defaultNetwork;
+        }
+        Network best = null;
+        boolean bestValidated = false;
+        for (Map.Entry<Network, NetworkSnapshot.TransportState> entry : networks.entrySet()) {
+            boolean validated = entry.getValue().isValidated();
+            if (best == null || (validated && !bestValidated)) {
+                best = entry.getKey();
+                bestValidated = validated;
+            }
+        }
+        NetworkSnapshot.TransportState currentState = current == null ? null : networks.get(current);
+        if (currentState != null && currentState.isValidated() == bestValidated) {
+            return current;
+        }
+        return best;
+    }
+
+    /**
+     * Notify the network state changed.
+     * Used below android LOLLIPOP version,where the state is driven by the connectivity broadcast.
+     *
+     * @param connected   Is network connected
+     * @param networkInfo NetworkInfo
+     */
+    void notifyNetworkState(boolean connected, NetworkInfo networkInfo) {
+        updateState(connected, networkInfo, null, null, null, Transition.REASON_BROADCAST);
+    }
+
+    /**
+     * Publish the new transport state to the snapshot and notify.
+     * Called on the monitor thread.
+     *
+     * @param connected      Is network connected
+     * @param networkInfo    NetworkInfo
+     * @param network        Network
+     * @param capabilities   NetworkCapabilities
+     * @param linkProperties LinkProperties
+     * @param reason         transition reason recorded in the history
+     */
+    private void updateState(boolean connected, NetworkInfo networkInfo, Network network, NetworkCapabilities capabilities,
+                             LinkProperties linkProperties, int reason) {
+        NetworkSnapshot.TransportState previous = getTransportState();
+        NetworkSnapshot.TransportState current = connected
+                ? createConnectedState(networkInfo, network, capabilities, linkProperties) : NetworkSnapshot.TransportState.DISCONNECTED;
+        mMonitor.publishTransportState(mTransport, current, reason);
+        closeReplacedSockets(previous, current);
+        notifyStateChanged(previous, current);
+    }
+
+    /**
+     * Close the tracked sockets of the previous primary network if it is disconnected or replaced,
+     * before the listeners notified,so the callers reconnect over the new primary network.
+     * The sockets of the default network,such as below android LOLLIPOP or created before the network of the transport
+     * known,are closed only when the transport disconnected.
+     *
+     * @param previous previous transport state
+     * @param current  current transport state
+     */
+    private void closeReplacedSockets(NetworkSnapshot.TransportState previous, NetworkSnapshot.TransportState current) {
+        if (!previous.isConnected()) {
+            return;
         }
-        mContext = null;
-        mNetworkInfo = null;
-        mNetwork = null;
+        Network network = previous.getNetwork();
+        if (!current.isConnected()) {
+            mSocketFactory.closeSockets(network);
+            if (network != null) {
+                mSocketFactory.closeSockets(null);
+            }
+        } else if (network != null && !network.equals(current.getNetwork())) {
+            mSocketFactory.closeSockets(network);
+        }
+    }
+
+    /**
+     * Create the connected transport state.
+     *
+     * @param networkInfo    NetworkInfo
+     * @param network        Network
+     * @param capabilities   NetworkCapabilities
+     * @param linkProperties LinkProperties
+     * @return TransportState
+     */
+    NetworkSnapshot.TransportState createConnectedState(NetworkInfo networkInfo, Network network, NetworkCapabilities capabilities,
+                                                        LinkProperties linkProperties) {
+        return new NetworkSnapshot.TransportState(networkInfo, network, null, capabilities, linkProperties);
+    }
+
+    /**
+     * Return the state of this transport in current snapshot.
+     *
+     * @return TransportState
+     */
+    NetworkSnapshot.TransportState getTransportState() {
+        return mMonitor.getSnapshot().getTransportState(mTransport);
+    }
+
+    void setCoalesceWindow(long windowMillis) {
+        mCoalescer.setWindow(windowMillis);
+    }
+
+    /**
+     * Return the measured quality of this transport.
+     * Return null if not probing or not connected.
+     *
+     * @return NetworkQuality
+     * @see NetworkMonitor#startProbing(ProbeConfig)
+     */
+    public NetworkQuality getNetworkQuality() {
+        return mMonitor.getNetworkQuality(mTransport);
+    }
+
+    /**
+     * Return the count of raw platform signals received by this transport.
+     *
+     * @return raw signal count
+     */
+    public long getRawSignalCount() {
+        return mCoalescer.getRawCount();
+    }
+
+    /**
+     * Return the count of raw platform signals of this transport absorbed by coalescing.
+     *
+     * @return absorbed signal count
+     */
+    public long getAbsorbedSignalCount() {
+        return mCoalescer.getAbsorbedCount();
+    }
+
+    /**
+     * Add network state listener of this transport.
+     * If executor is null,listener will be called on the monitor thread,
+     * which should not be blocked.
+     *
+     * @param listener NetworkListener
+     * @param executor the executor to call listener
+     */
+    public void addListener(NetworkListener listener, Executor executor) {
+        mListeners.add(listener, executor);
+        ensureActive();
+    }
+
+    /**
+     * Add network state listener of this transport,which also receives the
+     * {@link NetworkEvent#TYPE_PROPERTIES_CHANGED} events of the subscribed fields,
+     * and the {@link NetworkEvent#TYPE_NETWORK_AVAILABLE}/{@link NetworkEvent#TYPE_NETWORK_LOST} events
+     * if {@link NetworkEvent#FIELD_NETWORKS} subscribed.
+     *
+     * @param listener NetworkListener
+     * @param executor the executor to call listener
+     * @param fields   subscribed fields,such as {@link NetworkEvent#FIELD_VALIDATED},{@link NetworkEvent#FIELD_ALL} for all
+     */
+    public void addListener(NetworkListener listener, Executor executor, int fields) {
+        mListeners.add(listener, executor, fields);
+        ensureActive();
+    }
+
+    /**
+     * Add network state listener of this transport with its own mailbox.
+     * The monitor thread never waits the listener,a slow listener falls behind alone
+     * and the policy decides which events it skips,such as {@link DeliveryPolicy#CONFLATE} for the latest state only.
+     *
+     * @param listener NetworkListener
+     * @param executor the executor to call listener,should not be null
+     * @param fields   subscribed fields,0 for the connection state events only
+     * @param policy   DeliveryPolicy
+     */
+    public void addListener(NetworkListener listener, Executor executor, int fields, DeliveryPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy should not be null!");
+        }
+        mListeners.add(listener, executor, fields, policy);
+        ensureActive();
+    }
+
+    /**
+     * Remove network state listener of this transport.
+     * The monitor stops when the last listener leaves,and starts again on the next listener or state read.
+     *
+     * @param listener NetworkListener
+     */
+    public void removeListener(NetworkListener listener) {
+        mListeners.remove(listener);
+        if (mListeners.isEmpty()) {
+            releaseIfUnused();
+        }
+    }
+
+    /**
+     * Return transport of this monitor.
+     *
+     * @return transport
+     * @see NetworkMonitor#TRANSPORT_WIFI
+     * @see NetworkMonitor#TRANSPORT_MOBILE
+     * @see NetworkMonitor#TRANSPORT_ETHERNET
+     */
+    public int getTransport() {
+        return mTransport;
+    }
+
+    /**
+     * Return the state of this transport.
+     *
+     * @return {@link Transition#STATE_UNKNOWN} if not monitored yet,
+     * {@link Transition#STATE_DISCONNECTED} or {@link Transition#STATE_CONNECTED}
+     */
+    public int getState() {
+        ensureActive();
+        return getTransportState().getState();
     }
 
     /**
      * Return is connected.
+     * The getters of this monitor read the published {@link NetworkSnapshot},
+     * use {@link NetworkMonitor#getSnapshot()} if several values should be consistent.
      *
      * @return network is connected
      */
     public boolean isConnected() {
-        NetworkInfo networkInfo = mNetworkInfo;
-        return (networkInfo != null && networkInfo.isConnected());
+        ensureActive();
+        return getTransportState().isConnected();
     }
 
     /**
@@ -89,31 +645,158 @@ abstract class NetStateMachine {
      * @return NetworkInfo
      */
     public NetworkInfo getNetworkInfo() {
-        return mNetworkInfo;
+        ensureActive();
+        return getTransportState().getNetworkInfo();
     }
 
     /**
-     * Return network.
-     * If wifi not connected or below android LOLLIPOP version return null.
+     * Return the primary network of this transport.
+     * If not connected or below android LOLLIPOP version return null.
      *
      * @return Network
      */
     public Network getNetwork() {
-        return mNetwork;
+        ensureActive();
+        return getTransportState().getNetwork();
+    }
+
+    /**
+     * Return the socket factory creating the sockets over the primary network of this transport.
+     * The sockets created are closed by the monitor when the network is lost or replaced by another primary network,
+     * so the callers fail fast and reconnect.
+     *
+     * @return TrackedSocketFactory
+     */
+    public TrackedSocketFactory getSocketFactory() {
+        return mSocketFactory;
+    }
+
+    /**
+     * Return all the connected networks of this transport in connect order,
+     * such as the networks of both SIM cards.
+     * Empty below android LOLLIPOP version.
+     *
+     * @return networks
+     */
+    public List<Network> getNetworks() {
+        ensureActive();
+        return new ArrayList<>(mNetworks.keySet());
     }
 
     /**
-     * Return NetworkRequest.
+     * Return the state of one connected network of this transport,null if not connected.
      *
-     * @return NetworkRequest
+     * @param network Network
+     * @return TransportState
      */
-    protected abstract NetworkRequest getNetRequest();
+    public NetworkSnapshot.TransportState getNetworkState(Network network) {
+        ensureActive();
+        return network == null ? null : mNetworks.get(network);
+    }
+
+    /**
+     * Return network capabilities or null.
+     * Kept up to date by the network callback,no binder call is made.
+     *
+     * @return NetworkCapabilities
+     */
+    public NetworkCapabilities getCapabilities() {
+        ensureActive();
+        return getTransportState().getCapabilities();
+    }
+
+    /**
+     * Return link properties or null.
+     * Kept up to date by the network callback,no binder call is made.
+     *
+     * @return LinkProperties
+     */
+    public LinkProperties getLinkProperties() {
+        ensureActive();
+        return getTransportState().getLinkProperties();
+    }
+
+    /**
+     * Return is the network metered.
+     *
+     * @return metered
+     */
+    public boolean isMetered() {
+        ensureActive();
+        return getTransportState().isMetered();
+    }
+
+    /**
+     * Return is the internet access of the network validated by the system.
+     *
+     * @return validated
+     */
+    public boolean isValidated() {
+        ensureActive();
+        return getTransportState().isValidated();
+    }
+
+    /**
+     * Return the interface name of the network or null.
+     *
+     * @return interface name
+     */
+    public String getInterfaceName() {
+        ensureActive();
+        return getTransportState().getInterfaceName();
+    }
+
+    /**
+     * Return the DNS servers of the network,empty if unknown.
+     *
+     * @return DNS servers
+     */
+    public List<InetAddress> getDnsServers() {
+        ensureActive();
+        return getTransportState().getDnsServers();
+    }
+
+    /**
+     * Return is the broadcast compatibility mode enabled.
+     *
+     * @return broadcast enabled
+     */
+    boolean isBroadcastEnabled() {
+        return mMonitor.isBroadcastEnabled();
+    }
+
+    /**
+     * Dispatch event to the listeners of this transport.
+     *
+     * @param event NetworkEvent
+     */
+    void dispatchEvent(NetworkEvent event) {
+        mMetrics.countEvent(event.getType(), mTransport);
+        if (mListeners.dispatch(event) && mListeners.isEmpty()) {
+            releaseIfUnused();
+        }
+    }
 
     /**
      * Notify the network state changed.
      *
-     * @param connected   Is network connected
-     * @param networkInfo NetworkInfo
+     * @param previous previous transport state
+     * @param current  current transport state
+     */
+    protected abstract void notifyStateChanged(NetworkSnapshot.TransportState previous, NetworkSnapshot.TransportState current);
+
+    /**
+     * The latest signal of a network.
      */
-    protected abstract void notifyNetworkState(boolean connected, NetworkInfo networkInfo);
+    private static class PendingSignal {
+        private final boolean mAvailable;
+        private final NetworkCapabilities mCapabilities;
+        private final LinkProperties mLinkProperties;
+
+        PendingSignal(boolean available, NetworkCapabilities capabilities, LinkProperties linkProperties) {
+            mAvailable = available;
+            mCapabilities = capabilities;
+            mLinkProperties = linkProperties;
+        }
+    }
 }
@@ -0,0 +1,306 @@
+package com.seagle.android.net.monitor;
+
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The single network callback of all the transports.
+ * <p>One callback is registered for all the networks instead of one per transport monitor,
+ * every network is dispatched to the monitor of its transport by the transport of its capabilities.
+ * The capabilities and link properties of every network are cached and kept up to date by
+ * onCapabilitiesChanged/onLinkPropertiesChanged,the changes are handed to the monitor of the transport.
+ * Since android O onAvailable is always followed by onCapabilitiesChanged and onLinkPropertiesChanged,
+ * so the network is dispatched once both delivered and no binder call is needed,
+ * below O they are queried once per network.
+ * The callback is registered while any transport monitor is attached.
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+class NetworkCallbackHub {
+
+    private final Platform mPlatform;
+    private final EventLoop mLoop;
+    private final MonitorMetrics mMetrics;
+    private final NetStateMachine[] mMachines = new NetStateMachine[NetworkSnapshot.TRANSPORT_COUNT];
+    private final Map<Network, NetworkCapabilities> mNetworks = new HashMap<>();
+    private final Map<Network, LinkProperties> mLinkProperties = new HashMap<>();
+    /**
+     * The networks available but not dispatched yet,with the time the available signal arrived.
+     */
+    private final Map<Network, Long> mPendingNetworks = new HashMap<>();
+    private ConnectivityManager.NetworkCallback mCallback;
+
+    NetworkCallbackHub(Platform platform, EventLoop loop, MonitorMetrics metrics) {
+        mPlatform = platform;
+        mLoop = loop;
+        mMetrics = metrics;
+    }
+
+    /**
+     * Replay the known networks of the transport to the monitor,register the callback if it is the first one.
+     * Called on the monitor thread.
+     *
+     * @param machine NetStateMachine
+     */
+    void attach(NetStateMachine machine) {
+        mMachines[machine.getTransport()] = machine;
+        if (mCallback == null) {
+            mCallback = createCallback();
+            mPlatform.registerNetworkCallback(new NetworkRequest.Builder().build(), mCallback, mLoop.getHandler());
+            queryNetworks();
+        }
+        for (Map.Entry<Network, NetworkCapabilities> entry : mNetworks.entrySet()) {
+            Network network = entry.getKey();
+            if (getTransport(entry.getValue()) == machine.getTransport() && !mPendingNetworks.containsKey(network)) {
+                machine.onNetworkReplayed(network, entry.getValue(), mLinkProperties.get(network));
+            }
+        }
+    }
+
+    /**
+     * Query the current networks once when the callback registered,
+     * the registration reports them later,so the first state of the transports is known at once.
+     * The networks reported later are known already and not dispatched again.
+     */
+    private void queryNetworks() {
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_ALL_NETWORKS);
+        Network[] networks = mPlatform.getAllNetworks();
+        if (networks == null) {
+            return;
+        }
+        for (Network network : networks) {
+            mMetrics.countBinderCall(MetricsSnapshot.BINDER_NETWORK_CAPABILITIES);
+            NetworkCapabilities capabilities = mPlatform.getNetworkCapabilities(network);
+            if (capabilities == null || getTransport(capabilities) == NetworkMonitor.TRANSPORT_NONE) {
+                continue;
+            }
+            mMetrics.countBinderCall(MetricsSnapshot.BINDER_LINK_PROPERTIES);
+            LinkProperties linkProperties = mPlatform.getLinkProperties(network);
+            if (linkProperties != null) {
+                mLinkProperties.put(network, linkProperties);
+            }
+            mNetworks.put(network, capabilities);
+        }
+    }
+
+    /**
+     * Stop dispatching to the monitor,unregister the callback if it is the last one.
+     * Called on the monitor thread.
+     *
+     * @param machine NetStateMachine
+     */
+    void detach(NetStateMachine machine) {
+        if (mMachines[machine.getTransport()] != machine) {
+            return;
+        }
+        mMachines[machine.getTransport()] = null;
+        for (NetStateMachine attached : mMachines) {
+            if (attached != null) {
+                return;
+            }
+        }
+        if (mCallback != null) {
+            mPlatform.unregisterNetworkCallback(mCallback);
+            mCallback = null;
+        }
+        mNetworks.clear();
+        mLinkProperties.clear();
+        mPendingNetworks.clear();
+    }
+
+    private ConnectivityManager.NetworkCallback createCallback() {
+        return new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(final Network network) {
+                if (network == null) {
+                    return;
+                }
+                mMetrics.countSignal(MetricsSnapshot.SIGNAL_AVAILABLE);
+                final long signalTime = mMetrics.now();
+                final ConnectivityManager.NetworkCallback callback = this;
+                mLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mCallback == callback) {
+                            onNetworkAvailable(network, signalTime);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onCapabilitiesChanged(final Network network, final NetworkCapabilities capabilities) {
+                if (network == null || capabilities == null) {
+                    return;
+                }
+                mMetrics.countSignal(MetricsSnapshot.SIGNAL_CAPABILITIES_CHANGED);
+                final long signalTime = mMetrics.now();
+                final ConnectivityManager.NetworkCallback callback = this;
+                mLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mCallback == callback) {
+                            onNetworkCapabilities(network, capabilities, signalTime);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onLinkPropertiesChanged(final Network network, final LinkProperties linkProperties) {
+                if (network == null || linkProperties == null) {
+                    return;
+                }
+                mMetrics.countSignal(MetricsSnapshot.SIGNAL_LINK_PROPERTIES_CHANGED);
+                final ConnectivityManager.NetworkCallback callback = this;
+                mLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mCallback == callback) {
+                            onNetworkLinkProperties(network, linkProperties);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onLost(final Network network) {
+                if (network == null) {
+                    return;
+                }
+                mMetrics.countSignal(MetricsSnapshot.SIGNAL_LOST);
+                final long signalTime = mMetrics.now();
+                final ConnectivityManager.NetworkCallback callback = this;
+                mLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mCallback == callback) {
+                            onNetworkLost(network, signalTime);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    private void onNetworkAvailable(Network network, long signalTime) {
+        if (mNetworks.containsKey(network) || mPendingNetworks.containsKey(network)) {
+            return;
+        }
+        mPendingNetworks.put(network, signalTime);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // Wait the capabilities and link properties delivered right after.
+            return;
+        }
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_NETWORK_CAPABILITIES);
+        NetworkCapabilities capabilities = mPlatform.getNetworkCapabilities(network);
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_LINK_PROPERTIES);
+        LinkProperties linkProperties = mPlatform.getLinkProperties(network);
+        if (capabilities == null || getTransport(capabilities) == NetworkMonitor.TRANSPORT_NONE) {
+            mPendingNetworks.remove(network);
+            return;
+        }
+        if (linkProperties != null) {
+            mLinkProperties.put(network, linkProperties);
+        }
+        mNetworks.put(network, capabilities);
+        dispatchAvailable(network);
+    }
+
+    private void onNetworkCapabilities(Network network, NetworkCapabilities capabilities, long signalTime) {
+        if (getTransport(capabilities) == NetworkMonitor.TRANSPORT_NONE) {
+            return;
+        }
+        boolean known = mNetworks.containsKey(network);
+        mNetworks.put(network, capabilities);
+        if (mPendingNetworks.containsKey(network)) {
+            if (mLinkProperties.containsKey(network) || Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+                dispatchAvailable(network);
+            }
+        } else if (!known) {
+            // The available signal was missed,such as the callback registered while the network connecting.
+            mPendingNetworks.put(network, signalTime);
+            dispatchAvailable(network);
+        } else {
+            dispatchProperties(network);
+        }
+    }
+
+    private void onNetworkLinkProperties(Network network, LinkProperties linkProperties) {
+        mLinkProperties.put(network, linkProperties);
+        if (!mNetworks.containsKey(network)) {
+            return;
+        }
+        if (mPendingNetworks.containsKey(network)) {
+            dispatchAvailable(network);
+        } else {
+            dispatchProperties(network);
+        }
+    }
+
+    private void onNetworkLost(Network network, long signalTime) {
+        boolean dispatched = mPendingNetworks.remove(network) == null;
+        mLinkProperties.remove(network);
+        NetworkCapabilities capabilities = mNetworks.remove(network);
+        if (capabilities == null || !dispatched) {
+            return;
+        }
+        NetStateMachine machine = mMachines[getTransport(capabilities)];
+        if (machine != null) {
+            machine.onNetworkSignal(false, network, null, null, signalTime);
+        }
+    }
+
+    /**
+     * Dispatch the pending network to the monitor of its transport as available.
+     *
+     * @param network Network
+     */
+    private void dispatchAvailable(Network network) {
+        long signalTime = mPendingNetworks.remove(network);
+        NetworkCapabilities capabilities = mNetworks.get(network);
+        NetStateMachine machine = mMachines[getTransport(capabilities)];
+        if (machine != null) {
+            machine.onNetworkSignal(true, network, capabilities, mLinkProperties.get(network), signalTime);
+        }
+    }
+
+    /**
+     * Hand the changed properties of a dispatched network to the monitor of its transport.
+     *
+     * @param network Network
+     */
+    private void dispatchProperties(Network network) {
+        NetworkCapabilities capabilities = mNetworks.get(network);
+        NetStateMachine machine = mMachines[getTransport(capabilities)];
+        if (machine != null) {
+            machine.onPropertiesChanged(network, capabilities, mLinkProperties.get(network));
+        }
+    }
+
+    /**
+     * Return the transport of the network,VPN is not dispatched to the transport it runs over.
+     *
+     * @param capabilities NetworkCapabilities
+     * @return transport or {@link NetworkMonitor#TRANSPORT_NONE}
+     */
+    static int getTransport(NetworkCapabilities capabilities) {
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN)) {
+            return NetworkMonitor.TRANSPORT_NONE;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            return NetworkMonitor.TRANSPORT_WIFI;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            return NetworkMonitor.TRANSPORT_MOBILE;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            return NetworkMonitor.TRANSPORT_ETHERNET;
+        }
+        return NetworkMonitor.TRANSPORT_NONE;
+    }
+}
@@ -0,0 +1,101 @@
+package com.seagle.android.net.monitor;
+
+/**
+ * The network constraint of a {@link NetworkJob}.
+ * <p>A transport satisfies the constraint if it is connected,is one of the allowed transports,
+ * and its network has the required capabilities.Below android LOLLIPOP the capabilities are unknown,
+ * only the mobile network is metered,no network is validated and the bandwidth is unknown.
+ */
+public final class NetworkConstraint {
+
+    /**
+     * Require the network not metered.
+     */
+    public static final int FLAG_UNMETERED = 1;
+
+    /**
+     * Require the internet access of the network validated by the system.
+     */
+    public static final int FLAG_VALIDATED = 1 << 1;
+
+    /**
+     * Any connected network.
+     */
+    public static final NetworkConstraint ANY = new NetworkConstraint(0, 0);
+
+    /**
+     * Any unmetered network,such as WiFi or ethernet.
+     */
+    public static final NetworkConstraint UNMETERED = new NetworkConstraint(FLAG_UNMETERED, 0);
+
+    private final int mTransportMask;
+    private final int mFlags;
+    private final int mMinBandwidthKbps;
+
+    /**
+     * Create network constraint.
+     *
+     * @param flags            required capabilities,such as {@link #FLAG_UNMETERED}
+     * @param minBandwidthKbps minimum estimated downstream bandwidth in kbps,0 for no requirement
+     * @param transports       allowed transports,such as {@link NetworkMonitor#TRANSPORT_WIFI},empty for all
+     */
+    public NetworkConstraint(int flags, int minBandwidthKbps, int... transports) {
+        if (minBandwidthKbps < 0) {
+            throw new IllegalArgumentException("Bandwidth should not be negative!");
+        }
+        int mask = 0;
+        for (int transport : transports) {
+            if (transport < 0 || transport >= NetworkSnapshot.TRANSPORT_COUNT) {
+                throw new IllegalArgumentException("Unknown transport: " + transport);
+            }
+            mask |= 1 << transport;
+        }
+        mTransportMask = mask == 0 ? (1 << NetworkSnapshot.TRANSPORT_COUNT) - 1 : mask;
+        mFlags = flags;
+        mMinBandwidthKbps = minBandwidthKbps;
+    }
+
+    /**
+     * Return is the transport allowed.
+     *
+     * @param transport transport
+     * @return allowed
+     */
+    public boolean isTransportAllowed(int transport) {
+        return transport >= 0 && transport < NetworkSnapshot.TRANSPORT_COUNT && (mTransportMask & (1 << transport)) != 0;
+    }
+
+    public int getFlags() {
+        return mFlags;
+    }
+
+    public int getMinBandwidthKbps() {
+        return mMinBandwidthKbps;
+    }
+
+    /**
+     * Return is the constraint satisfied by the state of the transport.
+     *
+     * @param transport transport
+     * @param state     transport state
+     * @return satisfied
+     */
+    boolean isSatisfiedBy(int transport, NetworkSnapshot.TransportState state) {
+        if (!state.isConnected() || !isTransportAllowed(transport)) {
+            return false;
+        }
+        if ((mFlags & FLAG_UNMETERED) != 0 && state.isMetered()) {
+            return false;
+        }
+        if ((mFlags & FLAG_VALIDATED) != 0 && !state.isValidated()) {
+            return false;
+        }
+        return mMinBandwidthKbps == 0 || state.getLinkDownstreamBandwidthKbps() >= mMinBandwidthKbps;
+    }
+
+    @Override
+    public String toString() {
+        return "{transports=" + Integer.toBinaryString(mTransportMask) + ", flags=" + mFlags
+                + ", minBandwidthKbps=" + mMinBandwidthKbps + "}";
+    }
+}
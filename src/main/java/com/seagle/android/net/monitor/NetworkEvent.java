@@ -0,0 +1,225 @@
+package com.seagle.android.net.monitor;
+
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.wifi.WifiInfo;
+
+/**
+ * Network state change event delivered to {@link NetworkListener}.
+ * <p>The event is an immutable value object and is delivered in process,no broadcast and no parcel is involved.
+ */
+public final class NetworkEvent {
+
+    /**
+     * Network connected.
+     * {@link #getNetworkInfo()} return the current network info.
+     */
+    public static final int TYPE_CONNECTED = 1;
+
+    /**
+     * Network disconnected.
+     * {@link #getPreNetworkInfo()} return the previous network info or null if previous state is disconnected.
+     */
+    public static final int TYPE_DISCONNECTED = 2;
+
+    /**
+     * Network type changed,such as network changed form wifi to mobile.
+     * Only dispatched by {@link NetworkMonitor},the previous and current network info are carried in one event.
+     */
+    public static final int TYPE_CHANGED = 3;
+
+    /**
+     * The properties of the connected network changed,such as it became validated or its DNS servers changed.
+     * Only dispatched by the transport monitors to the listeners added with the changed fields,
+     * {@link #getChangedFields()} return the changed fields.
+     */
+    public static final int TYPE_PROPERTIES_CHANGED = 4;
+
+    /**
+     * One network of the transport connected,while the transport may be connected by another network already,
+     * such as the second SIM card connected.
+     * Only dispatched by the transport monitors to the listeners added with {@link #FIELD_NETWORKS}.
+     */
+    public static final int TYPE_NETWORK_AVAILABLE = 5;
+
+    /**
+     * One network of the transport lost,while the transport may be still connected by another network.
+     * {@link #getNetwork()} return the lost network and {@link #getPreNetworkInfo()} return its network info.
+     * Only dispatched by the transport monitors to the listeners added with {@link #FIELD_NETWORKS}.
+     */
+    public static final int TYPE_NETWORK_LOST = 6;
+
+    /**
+     * Field: the network became metered or not metered.
+     */
+    public static final int FIELD_METERED = 1;
+
+    /**
+     * Field: the network became validated or not validated.
+     */
+    public static final int FIELD_VALIDATED = 1 << 1;
+
+    /**
+     * Field: the estimated link bandwidth changed.
+     */
+    public static final int FIELD_BANDWIDTH = 1 << 2;
+
+    /**
+     * Field: the link properties changed,such as the interface,the addresses or the DNS servers.
+     */
+    public static final int FIELD_LINK_PROPERTIES = 1 << 3;
+
+    /**
+     * Field: the networks of the transport,subscribe the {@link #TYPE_NETWORK_AVAILABLE}/{@link #TYPE_NETWORK_LOST} events.
+     */
+    public static final int FIELD_NETWORKS = 1 << 4;
+
+    /**
+     * All the fields.
+     */
+    public static final int FIELD_ALL = FIELD_METERED | FIELD_VALIDATED | FIELD_BANDWIDTH | FIELD_LINK_PROPERTIES | FIELD_NETWORKS;
+
+    private final int mType;
+    private final int mTransport;
+    private final NetworkInfo mPreNetworkInfo;
+    private final NetworkInfo mNetworkInfo;
+    private final Network mNetwork;
+    private final WifiInfo mWifiInfo;
+    private final NetworkCapabilities mCapabilities;
+    private final LinkProperties mLinkProperties;
+    private final int mChangedFields;
+
+    NetworkEvent(int type, int transport, NetworkInfo preNetworkInfo, NetworkInfo networkInfo, Network network, WifiInfo wifiInfo) {
+        this(type, transport, preNetworkInfo, networkInfo, network, wifiInfo, null, null, 0);
+    }
+
+    NetworkEvent(int type, int transport, NetworkInfo preNetworkInfo, NetworkInfo networkInfo, Network network, WifiInfo wifiInfo,
+                 NetworkCapabilities capabilities, LinkProperties linkProperties, int changedFields) {
+        mType = type;
+        mTransport = transport;
+        mPreNetworkInfo = preNetworkInfo;
+        mNetworkInfo = networkInfo;
+        mNetwork = network;
+        mWifiInfo = wifiInfo;
+        mCapabilities = capabilities;
+        mLinkProperties = linkProperties;
+        mChangedFields = changedFields;
+    }
+
+    /**
+     * Return event type.
+     *
+     * @return event type
+     * @see #TYPE_CONNECTED
+     * @see #TYPE_DISCONNECTED
+     * @see #TYPE_CHANGED
+     * @see #TYPE_PROPERTIES_CHANGED
+     * @see #TYPE_NETWORK_AVAILABLE
+     * @see #TYPE_NETWORK_LOST
+     */
+    public int getType() {
+        return mType;
+    }
+
+    /**
+     * Return the transport of the event.
+     *
+     * @return transport,{@link NetworkMonitor#TRANSPORT_NONE} if unknown
+     * @see NetworkMonitor#TRANSPORT_WIFI
+     * @see NetworkMonitor#TRANSPORT_MOBILE
+     * @see NetworkMonitor#TRANSPORT_ETHERNET
+     */
+    public int getTransport() {
+        return mTransport;
+    }
+
+    /**
+     * Return is connected after this event.
+     *
+     * @return connected state
+     */
+    public boolean isConnected() {
+        return mType != TYPE_DISCONNECTED && mType != TYPE_NETWORK_LOST;
+    }
+
+    /**
+     * Return previous network info or null.
+     *
+     * @return NetworkInfo
+     */
+    public NetworkInfo getPreNetworkInfo() {
+        return mPreNetworkInfo;
+    }
+
+    /**
+     * Return current network info or null if disconnected.
+     *
+     * @return NetworkInfo
+     */
+    public NetworkInfo getNetworkInfo() {
+        return mNetworkInfo;
+    }
+
+    /**
+     * Return current network,or the lost network of a {@link #TYPE_NETWORK_LOST} event.
+     * Return null if disconnected or below android LOLLIPOP version.
+     *
+     * @return Network
+     */
+    public Network getNetwork() {
+        return mNetwork;
+    }
+
+    /**
+     * Return WiFi info.
+     * Only available for WiFi events.
+     *
+     * @return WifiInfo
+     */
+    public WifiInfo getWifiInfo() {
+        return mWifiInfo;
+    }
+
+    /**
+     * Return current network capabilities.
+     * Only available for {@link #TYPE_PROPERTIES_CHANGED} and {@link #TYPE_NETWORK_AVAILABLE} events.
+     *
+     * @return NetworkCapabilities
+     */
+    public NetworkCapabilities getCapabilities() {
+        return mCapabilities;
+    }
+
+    /**
+     * Return current link properties.
+     * Only available for {@link #TYPE_PROPERTIES_CHANGED} and {@link #TYPE_NETWORK_AVAILABLE} events.
+     *
+     * @return LinkProperties
+     */
+    public LinkProperties getLinkProperties() {
+        return mLinkProperties;
+    }
+
+    /**
+     * Return the changed fields of a {@link #TYPE_PROPERTIES_CHANGED} event,
+     * {@link #FIELD_NETWORKS} for the network events and 0 for the transport events.
+     * The listener receives the event only if it subscribed one of the fields.
+     *
+     * @return changed fields,such as {@link #FIELD_VALIDATED}
+     */
+    public int getChangedFields() {
+        return mChangedFields;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkEvent{type=" + mType
+                + ", transport=" + mTransport
+                + ", preNetworkInfo=" + mPreNetworkInfo
+                + ", networkInfo=" + mNetworkInfo
+                + ", network=" + mNetwork
+                + ", changedFields=" + mChangedFields + "}";
+    }
+}
@@ -0,0 +1,20 @@
+package com.seagle.android.net.monitor;
+
+import android.net.Network;
+
+/**
+ * Deferred work run by the {@link NetworkJobScheduler} on a network satisfying its constraint.
+ * <p>Register by {@link NetworkJobScheduler#schedule(NetworkJob, NetworkConstraint, int)}.
+ */
+public interface NetworkJob {
+
+    /**
+     * Run the job on a worker thread.
+     * The traffic should be sent over the network,such as by {@link Network#getSocketFactory()} or
+     * {@link Network#openConnection(java.net.URL)}.
+     *
+     * @param network the network satisfying the constraint,null below android LOLLIPOP for the default network
+     * @return true if finished,false to run again on the next network satisfying the constraint
+     */
+    boolean run(Network network);
+}
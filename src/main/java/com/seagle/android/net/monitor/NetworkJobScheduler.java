@@ -0,0 +1,295 @@
+package com.seagle.android.net.monitor;
+
+import android.net.Network;
+import android.util.Log;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Connectivity constrained job scheduler.
+ * <p>The deferred jobs wait in one queue ordered by priority then by schedule order,
+ * every time the network snapshot changes the queue is drained once on the monitor thread:
+ * each job satisfied by a connected transport is released to the worker threads with the network of that transport,
+ * up to the concurrency cap,the other jobs keep waiting without blocking the lower priority ones.
+ * A job returning false is queued again and runs on the next satisfying network.
+ * Scheduling,a finished job and a new concurrency cap only post the drain to the monitor thread as well.
+ * <p>The transport monitors are kept running while any job is waiting or running,
+ * and released once the last job finished or cancelled.
+ * A job scheduled before monitoring started,or before a restart disposed the monitors,
+ * starts them on the first drain after the start.
+ * <p>The features share the scheduler instead of each listening to the network state,
+ * so a network coming up wakes one drain instead of every feature.
+ */
+public final class NetworkJobScheduler {
+
+    private static final String TAG = "NetworkJobScheduler";
+
+    public static final int PRIORITY_LOW = -1;
+    public static final int PRIORITY_DEFAULT = 0;
+    public static final int PRIORITY_HIGH = 1;
+
+    /**
+     * Default count of the jobs running at the same time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 2;
+
+    private final NetworkMonitor mMonitor;
+    private final Executor mExecutor;
+    private final TreeSet<Entry> mPending = new TreeSet<>(new Comparator<Entry>() {
+        @Override
+        public int compare(Entry left, Entry right) {
+            if (left.mPriority != right.mPriority) {
+                return left.mPriority > right.mPriority ? -1 : 1;
+            }
+            return left.mSequence < right.mSequence ? -1 : (left.mSequence == right.mSequence ? 0 : 1);
+        }
+    });
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    private long mSequence;
+    private int mRunning;
+    private int mMaxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    NetworkJobScheduler(NetworkMonitor monitor) {
+        this(monitor, Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    NetworkJobScheduler(NetworkMonitor monitor, Executor executor) {
+        mMonitor = monitor;
+        mExecutor = executor;
+    }
+
+    /**
+     * Schedule the job,it runs as soon as a network satisfies the constraint and a worker is free.
+     * The future is completed with true after the job finished,false if it threw.
+     * Cancel the future removes the waiting job,a running job is not interrupted but not queued again.
+     *
+     * @param job        NetworkJob
+     * @param constraint NetworkConstraint
+     * @param priority   priority,such as {@link #PRIORITY_DEFAULT},the higher runs first
+     * @return the pending result
+     */
+    public Future<Boolean> schedule(NetworkJob job, NetworkConstraint constraint, int priority) {
+        if (job == null || constraint == null) {
+            throw new IllegalArgumentException("Job and constraint should not be null!");
+        }
+        final Entry entry;
+        synchronized (this) {
+            entry = new Entry(job, constraint, priority, mSequence++);
+            mPending.add(entry);
+        }
+        mMonitor.acquireAllStateMachines();
+        entry.mFuture.setCanceller(new SettableFuture.Canceller() {
+            @Override
+            public void cancel() {
+                boolean idle;
+                synchronized (NetworkJobScheduler.this) {
+                    idle = mPending.remove(entry) && isIdle();
+                }
+                if (idle) {
+                    mMonitor.releaseStateMachinesIfUnused();
+                }
+            }
+        });
+        requestDrain();
+        return entry.mFuture;
+    }
+
+    /**
+     * Set the count of the jobs running at the same time.
+     *
+     * @param maxConcurrency max concurrency
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency should be positive!");
+        }
+        synchronized (this) {
+            mMaxConcurrency = maxConcurrency;
+        }
+        requestDrain();
+    }
+
+    public synchronized int getMaxConcurrency() {
+        return mMaxConcurrency;
+    }
+
+    /**
+     * Return the count of the jobs waiting a network or a worker.
+     *
+     * @return pending job count
+     */
+    public synchronized int getPendingJobCount() {
+        return mPending.size();
+    }
+
+    /**
+     * Return the count of the jobs running.
+     *
+     * @return running job count
+     */
+    public synchronized int getRunningJobCount() {
+        return mRunning;
+    }
+
+    /**
+     * Return is no job waiting or running.
+     *
+     * @return idle
+     */
+    synchronized boolean isIdle() {
+        return mPending.isEmpty() && mRunning == 0;
+    }
+
+    /**
+     * The network snapshot changed,drain the queue once after the current transition published.
+     * Called on the monitor thread.
+     */
+    void onSnapshotChanged() {
+        if (getPendingJobCount() > 0) {
+            requestDrain();
+        }
+    }
+
+    /**
+     * Drain the queue once on the monitor thread,the requests before the drain runs are merged.
+     * Nothing to drain before monitoring started,the first snapshot published drains.
+     */
+    private void requestDrain() {
+        EventLoop loop = mMonitor.getEventLoop();
+        if (loop != null) {
+            loop.remove(mDrainRunnable);
+            loop.post(mDrainRunnable);
+        }
+    }
+
+    /**
+     * Release the waiting jobs satisfied by the current networks.
+     * Called on the monitor thread.
+     */
+    private void drain() {
+        if (getPendingJobCount() > 0) {
+            // The monitors acquired on schedule are not created before start and disposed by a stop.
+            mMonitor.acquireAllStateMachines();
+        }
+        NetworkSnapshot snapshot = mMonitor.getSnapshot();
+        if (snapshot.isProvisional()) {
+            // The jobs are bound to the confirmed networks only.
+            return;
+        }
+        synchronized (this) {
+            Iterator<Entry> iterator = mPending.iterator();
+            while (mRunning < mMaxConcurrency && iterator.hasNext()) {
+                final Entry entry = iterator.next();
+                // A job gave up waits the next network,below android LOLLIPOP the next snapshot.
+                Network excluded = entry.mRetried ? entry.mNetwork : null;
+                if (entry.mRetried && excluded == null && snapshot.getSequence() == entry.mSnapshotSequence) {
+                    continue;
+                }
+                int transport = selectTransport(snapshot, entry.mConstraint, excluded);
+                if (transport == NetworkMonitor.TRANSPORT_NONE) {
+                    continue;
+                }
+                final Network network = snapshot.getTransportState(transport).getNetwork();
+                iterator.remove();
+                mRunning++;
+                entry.mNetwork = network;
+                entry.mSnapshotSequence = snapshot.getSequence();
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runJob(entry, network);
+                    }
+                });
+            }
+        }
+    }
+
+    private void runJob(Entry entry, Network network) {
+        boolean finished = true;
+        boolean failed = false;
+        try {
+            finished = entry.mJob.run(network);
+        } catch (RuntimeException ex) {
+            Log.w(TAG, "Job failed!", ex);
+            failed = true;
+        }
+        boolean idle;
+        synchronized (this) {
+            mRunning--;
+            if (!finished && !entry.mFuture.isDone()) {
+                entry.mRetried = true;
+                mPending.add(entry);
+            }
+            idle = isIdle();
+        }
+        if (finished) {
+            entry.mFuture.complete(!failed);
+        }
+        if (idle) {
+            mMonitor.releaseStateMachinesIfUnused();
+        } else {
+            requestDrain();
+        }
+    }
+
+    /**
+     * Select the transport satisfying the constraint,the active transport first.
+     *
+     * @param excluded the network the job gave up on or null
+     * @return transport or {@link NetworkMonitor#TRANSPORT_NONE}
+     */
+    private static int selectTransport(NetworkSnapshot snapshot, NetworkConstraint constraint, Network excluded) {
+        int active = snapshot.getActiveTransport();
+        if (active != NetworkMonitor.TRANSPORT_NONE && isUsable(snapshot, active, constraint, excluded)) {
+            return active;
+        }
+        for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+            if (isUsable(snapshot, transport, constraint, excluded)) {
+                return transport;
+            }
+        }
+        return NetworkMonitor.TRANSPORT_NONE;
+    }
+
+    private static boolean isUsable(NetworkSnapshot snapshot, int transport, NetworkConstraint constraint, Network excluded) {
+        NetworkSnapshot.TransportState state = snapshot.getTransportState(transport);
+        return constraint.isSatisfiedBy(transport, state) && (excluded == null || !excluded.equals(state.getNetwork()));
+    }
+
+    private static final class Entry {
+        private final NetworkJob mJob;
+        private final NetworkConstraint mConstraint;
+        private final int mPriority;
+        private final long mSequence;
+        private final SettableFuture<Boolean> mFuture = new SettableFuture<>();
+        // The network and the snapshot sequence of the last run,guarded by the scheduler.
+        private Network mNetwork;
+        private long mSnapshotSequence;
+        private boolean mRetried;
+
+        Entry(NetworkJob job, NetworkConstraint constraint, int priority, long sequence) {
+            mJob = job;
+            mConstraint = constraint;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.seagle.android.net.monitor;
+
+/**
+ * Network state listener.
+ * <p>Register by {@link NetworkMonitor#addListener(NetworkListener, java.util.concurrent.Executor)}
+ * or the addListener method of each transport monitor.
+ */
+public interface NetworkListener {
+
+    /**
+     * Network state changed.
+     *
+     * @param event NetworkEvent
+     */
+    void onNetworkEvent(NetworkEvent event);
+}
@@ -9,10 +9,15 @@ import android.net.Network;
 import android.net.NetworkInfo;
 import android.util.Log;
 
-import java.lang.ref.SoftReference;
+import java.io.File;
+import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Android system network monitor.
@@ -74,17 +79,106 @@ public class NetworkMonitor {
      */
     public static final String EXTRA_PRE_NETWORK_INFO = "preNetworkInfo";
 
-    private SoftReference<Context> mContext;
+    /**
+     * Transport: none or unknown.
+     */
+    public static final int TRANSPORT_NONE = -1;
+
+    /**
+     * Transport: WiFi.
+     */
+    public static final int TRANSPORT_WIFI = 0;
+
+    /**
+     * Transport: mobile.
+     */
+    public static final int TRANSPORT_MOBILE = 1;
+
+    /**
+     * Transport: ethernet.
+     */
+    public static final int TRANSPORT_ETHERNET = 2;
+
+    /**
+     * Default coalesce window: signals are processed immediately.
+     */
+    public static final long DEFAULT_COALESCE_WINDOW = 0;
+
+    /**
+     * The file of the data usage rollups in the app files dir.
+     */
+    private static final String USAGE_FILE_NAME = "network_monitor_usage.bin";
+
+    /**
+     * The file of the warm start state in the app files dir.
+     */
+    private static final String STATE_FILE_NAME = "network_monitor_state.bin";
+
+    /**
+     * The delay to persist the warm start state,the changes within it are written once.
+     */
+    private static final long PERSIST_DELAY = 1000;
+
+    private volatile Platform mPlatform;
     private volatile boolean mStarted;
-    private volatile NetworkInfo mActiveNetworkInfo;
-    private ConnectivityManager mConnectivityManager;
+    private volatile boolean mStartAsync;
+    private volatile MonitorReadyFuture mReadyFuture;
+    private volatile boolean mBroadcastEnabled;
+    private volatile boolean mWarmStartEnabled;
+    private volatile WarmStartCache mWarmStartCache;
+    /**
+     * The qualities to persist,reused on the monitor thread.
+     */
+    private final NetworkQuality[] mPersistQualities = new NetworkQuality[NetworkSnapshot.TRANSPORT_COUNT];
+    /**
+     * The selectors created,referenced weakly,guarded by itself.
+     */
+    private final Set<NetworkSelector> mSelectors = Collections.newSetFromMap(new WeakHashMap<NetworkSelector, Boolean>());
+    private volatile long mCoalesceWindow = DEFAULT_COALESCE_WINDOW;
+    private volatile EventLoop mEventLoop;
+    private volatile SignalCoalescer mCoalescer;
+    private volatile NetworkSnapshot mSnapshot = NetworkSnapshot.EMPTY;
+    private volatile NetworkProber mProber;
+    private final AtomicLong mProbeStamp = new AtomicLong();
+    private volatile DataUsageRecorder mUsageRecorder;
+    private volatile NetworkJobScheduler mJobScheduler;
+    private final TransitionHistory mHistory = new TransitionHistory();
+    private final MonitorMetrics mMetrics = new MonitorMetrics();
+    private final ListenerRegistry mListeners = new ListenerRegistry(mMetrics);
     private final ConnectionChangeReceiver mConnectionChangeReceiver;
-    private WiFiNetworkMonitor mWifiStateMachine;
-    private MobileNetworkMonitor mMobileStateMachine;
-    private EthernetNetworkMonitor mEthernetStateMachine;
+    private volatile NetworkCallbackHub mCallbackHub;
+    private ConnectivityManager.NetworkCallback mDefaultNetworkCallback;
+    /**
+     * The default network tracked by the default network callback,only accessed on the monitor thread.
+     */
+    private Network mDefaultNetwork;
+    private final Object mStateMachineLock = new Object();
+    private volatile WiFiNetworkMonitor mWifiStateMachine;
+    private volatile MobileNetworkMonitor mMobileStateMachine;
+    private volatile EthernetNetworkMonitor mEthernetStateMachine;
 
     private static NetworkMonitor sInstance;
 
+    private final Runnable mUsageSampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            DataUsageRecorder recorder = mUsageRecorder;
+            if (recorder != null) {
+                recorder.sample(mSnapshot.getActiveTransport());
+                mEventLoop.postDelayed(this, DataUsageRecorder.DEFAULT_SAMPLE_INTERVAL);
+            }
+        }
+    };
+
+    private final Runnable mPersistRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mStarted && mSnapshot.isKnown()) {
+                persistWarmStartState();
+            }
+        }
+    };
+
     public synchronized static NetworkMonitor getInstance() {
         if (sInstance == null) {
             sInstance = new NetworkMonitor();
@@ -98,40 +192,172 @@ public class NetworkMonitor {
 
     /**
      * Start monitor network state.
+     * The initialization runs on the monitor thread and this method returns after it finished.
+     * <p>Only the active network is monitored at start,each transport monitor is started on demand:
+     * by its getter,its first listener or a state read,and stopped when its last listener leaves.
+     * In broadcast compatibility mode all the transport monitors are started at once.
      *
      * @param context Android Context
+     * @see #startMonitoringAsync(Context)
      */
     public synchronized void startMonitoring(Context context) {
         if (!mStarted) {
             if (context == null) {
                 throw new IllegalArgumentException("Context should not be null!");
             }
+            startMonitoring(new AndroidPlatform(context));
+        }
+    }
 
-            mWifiStateMachine = new WiFiNetworkMonitor(context.getApplicationContext());
-            mMobileStateMachine = new MobileNetworkMonitor(context.getApplicationContext());
-            mEthernetStateMachine = new EthernetNetworkMonitor(context.getApplicationContext());
+    /**
+     * Start monitor network state without blocking.
+     * <p>Returns immediately,the initialization binder calls run on the monitor thread.
+     * Until the returned future completed the state getters return unknown,
+     * such as {@link #getState()} returns {@link Transition#STATE_UNKNOWN} and {@link #isConnected()} returns false,
+     * the transport monitors started on demand report unknown until they started instead of blocking the caller.
+     * Return the pending future if already started.
+     *
+     * @param context Android Context
+     * @return the future of the first snapshot
+     */
+    public synchronized MonitorReadyFuture startMonitoringAsync(Context context) {
+        if (!mStarted) {
+            if (context == null) {
+                throw new IllegalArgumentException("Context should not be null!");
+            }
+            startMonitoring(new AndroidPlatform(context), true);
+        }
+        return mReadyFuture;
+    }
 
-            mStarted = true;
-            mContext = new SoftReference<>(context.getApplicationContext());
-            IntentFilter filter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
-            context.registerReceiver(mConnectionChangeReceiver, filter);
-            mConnectivityManager = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
-            if (mConnectivityManager == null) {
-                throw new NullPointerException("Get system connectivity service failed!");
+    /**
+     * Start monitor network state on the platform and wait the initialization finished.
+     * Used to run the monitor on a simulated connectivity stack off device.
+     *
+     * @param platform Platform
+     */
+    synchronized void startMonitoring(Platform platform) {
+        startMonitoring(platform, false);
+        // Wait the initialization,including the one posted by an earlier async start.
+        mEventLoop.runSync(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * Start monitor network state on the platform,the initialization is posted to the monitor thread.
+     *
+     * @param platform Platform
+     * @param async    started by {@link #startMonitoringAsync(Context)}
+     */
+    synchronized void startMonitoring(final Platform platform, boolean async) {
+        if (!mStarted) {
+            if (platform == null) {
+                throw new IllegalArgumentException("Platform should not be null!");
+            }
+            mPlatform = platform;
+            mEventLoop = new EventLoop(TAG);
+            mCoalescer = new SignalCoalescer(mEventLoop, mCoalesceWindow, mMetrics, new SignalCoalescer.Target() {
+                @Override
+                public boolean evaluate() {
+                    return mStarted && updateActiveNetwork();
+                }
+            });
+            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
+                mCallbackHub = new NetworkCallbackHub(platform, mEventLoop, mMetrics);
             }
-            mActiveNetworkInfo = mConnectivityManager.getActiveNetworkInfo();
-            if (mActiveNetworkInfo == null || mActiveNetworkInfo.getState() != NetworkInfo.State.CONNECTED) {
-                notifyNetworkDisconnected(context, mActiveNetworkInfo);
-            } else {
-                notifyNetworkConnected(context, mActiveNetworkInfo);
+            final MonitorReadyFuture readyFuture = new MonitorReadyFuture();
+            mReadyFuture = readyFuture;
+            mStartAsync = async;
+            if (mWarmStartEnabled) {
+                restoreWarmStartState(platform);
             }
-            initNetwork();
-            mWifiStateMachine.start();
-            mMobileStateMachine.start();
-            mEthernetStateMachine.start();
+
+            mStarted = true;
+            mEventLoop.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isDefaultNetworkTracked()) {
+                        mDefaultNetworkCallback = createDefaultNetworkCallback();
+                        platform.registerDefaultNetworkCallback(mDefaultNetworkCallback, mEventLoop.getHandler());
+                    } else {
+                        IntentFilter filter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
+                        platform.registerReceiver(mConnectionChangeReceiver, filter, mEventLoop.getHandler());
+                    }
+                    mMetrics.countBinderCall(MetricsSnapshot.BINDER_ACTIVE_NETWORK_INFO);
+                    NetworkInfo activeNetworkInfo = platform.getActiveNetworkInfo();
+                    publishActiveNetworkInfo(activeNetworkInfo);
+                    if (activeNetworkInfo == null || activeNetworkInfo.getState() != NetworkInfo.State.CONNECTED) {
+                        notifyNetworkDisconnected(activeNetworkInfo);
+                    } else {
+                        notifyNetworkConnected(activeNetworkInfo);
+                    }
+                    if (mBroadcastEnabled) {
+                        // The broadcast receivers of the app can not be counted as listeners.
+                        acquireAllStateMachines();
+                    }
+                    readyFuture.complete(mSnapshot);
+                }
+            });
+        }
+    }
+
+    /**
+     * Serve the state persisted by the last process as provisional.
+     * Runs on the calling thread,the file is a few pages mapped once.
+     *
+     * @param platform Platform
+     */
+    private void restoreWarmStartState(Platform platform) {
+        WarmStartCache cache = mWarmStartCache;
+        if (cache == null) {
+            cache = mWarmStartCache = new WarmStartCache(new File(platform.getFilesDir(), STATE_FILE_NAME));
+        }
+        NetworkSnapshot snapshot = cache.load(mSnapshot.getSequence() + 1);
+        if (snapshot != null) {
+            mSnapshot = snapshot;
         }
     }
 
+    /**
+     * Persist the live snapshot and the probed qualities for the next warm start.
+     * Called on the monitor thread.
+     */
+    private void persistWarmStartState() {
+        WarmStartCache cache = mWarmStartCache;
+        if (cache == null || !mWarmStartEnabled) {
+            return;
+        }
+        NetworkQuality[] qualities = mPersistQualities;
+        NetworkProber prober = mProber;
+        for (int transport = 0; transport < qualities.length; transport++) {
+            qualities[transport] = prober == null ? null : prober.getQuality(transport);
+        }
+        cache.persist(mSnapshot, qualities);
+    }
+
+    /**
+     * Persist the warm start state after {@link #PERSIST_DELAY},the requests before that are merged.
+     * Called on the monitor thread.
+     */
+    private void schedulePersist() {
+        if (mWarmStartCache != null) {
+            mEventLoop.remove(mPersistRunnable);
+            mEventLoop.postDelayed(mPersistRunnable, PERSIST_DELAY);
+        }
+    }
+
+    /**
+     * Return is the monitoring started by {@link #startMonitoringAsync(Context)},
+     * where the state getters never block.
+     *
+     * @return started asynchronously
+     */
+    boolean isStartAsync() {
+        return mStartAsync;
+    }
 
     /**
      * Stop monitor network.
@@ -140,46 +366,429 @@ public class NetworkMonitor {
     public synchronized void stopMonitoring() {
         if (mStarted) {
             mStarted = false;
-            if (mContext != null) {
-                Context context = mContext.get();
-                if (context != null) {
-                    Intent broadCastIntent = new Intent(ACTION_NETWORK_STATE_CHANGED);
-                    context.removeStickyBroadcast(broadCastIntent);
-                    context.unregisterReceiver(mConnectionChangeReceiver);
+            stopProbing();
+            mEventLoop.runSync(new Runnable() {
+                @Override
+                public void run() {
+                    if (mBroadcastEnabled) {
+                        Intent broadCastIntent = new Intent(ACTION_NETWORK_STATE_CHANGED);
+                        mPlatform.removeStickyBroadcast(broadCastIntent);
+                    }
+                    if (mDefaultNetworkCallback != null) {
+                        mPlatform.unregisterNetworkCallback(mDefaultNetworkCallback);
+                        mDefaultNetworkCallback = null;
+                        mDefaultNetwork = null;
+                    } else {
+                        mPlatform.unregisterReceiver(mConnectionChangeReceiver);
+                    }
+                    mCoalescer.cancel();
+                    stopUsageRecorder();
+                    // Write the pending warm start state before the snapshot cleared.
+                    mEventLoop.remove(mPersistRunnable);
+                    persistWarmStartState();
+                    disposeStateMachines();
+                    mSnapshot = mSnapshot.cleared();
+                    for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+                        mHistory.record(transport, Transition.STATE_UNKNOWN, Transition.REASON_STOP);
+                    }
                 }
+            });
+            mEventLoop.quit();
+        }
+    }
+
+    /**
+     * Return the network callback shared by the transport monitors,null if not started or below android LOLLIPOP.
+     *
+     * @return NetworkCallbackHub
+     */
+    NetworkCallbackHub getCallbackHub() {
+        return mCallbackHub;
+    }
+
+    /**
+     * Return is the active network tracked by the default network callback instead of the connectivity broadcast.
+     * The default network callback is available since android N.
+     *
+     * @return default network tracked
+     */
+    private static boolean isDefaultNetworkTracked() {
+        return android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N;
+    }
+
+    /**
+     * Create the default network callback,the signals are coalesced like the connectivity broadcast.
+     *
+     * @return NetworkCallback
+     */
+    private ConnectivityManager.NetworkCallback createDefaultNetworkCallback() {
+        return new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                onDefaultNetworkSignal(this, network, true);
+            }
+
+            @Override
+            public void onLost(Network network) {
+                onDefaultNetworkSignal(this, network, false);
             }
-            mWifiStateMachine.stop();
-            mMobileStateMachine.stop();
-            mEthernetStateMachine.stop();
-            mActiveNetworkInfo = null;
+        };
+    }
+
+    /**
+     * Record the default network and hand the signal to the coalescer.
+     * Called on any thread,the callbacks queued before a restart are ignored.
+     *
+     * @param callback  the callback delivered the signal
+     * @param network   Network
+     * @param available default network available or lost
+     */
+    private void onDefaultNetworkSignal(final ConnectivityManager.NetworkCallback callback, final Network network,
+                                        final boolean available) {
+        if (network == null) {
+            return;
         }
+        mMetrics.countSignal(MetricsSnapshot.SIGNAL_DEFAULT_NETWORK);
+        final long signalTime = mMetrics.now();
+        mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mDefaultNetworkCallback != callback) {
+                    return;
+                }
+                if (available) {
+                    mDefaultNetwork = network;
+                } else if (network.equals(mDefaultNetwork)) {
+                    mDefaultNetwork = null;
+                } else {
+                    return;
+                }
+                // The default network is the primary network of its transport.
+                for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+                    NetStateMachine machine = getStateMachine(transport);
+                    if (machine != null) {
+                        machine.updatePrimaryNetwork();
+                    }
+                }
+                mCoalescer.signal(signalTime);
+            }
+        });
+    }
+
+    /**
+     * Return the default network tracked by the default network callback,null if not tracked or no default network.
+     * Called on the monitor thread.
+     *
+     * @return Network
+     */
+    Network getDefaultNetwork() {
+        return mDefaultNetwork;
+    }
+
+    /**
+     * Return the info of the active network.
+     * If the default network is tracked,the info published by its transport monitor is reused,
+     * otherwise it is queried from the platform.
+     *
+     * @return NetworkInfo or null
+     */
+    private NetworkInfo queryActiveNetworkInfo() {
+        if (mDefaultNetworkCallback == null) {
+            mMetrics.countBinderCall(MetricsSnapshot.BINDER_ACTIVE_NETWORK_INFO);
+            return mPlatform.getActiveNetworkInfo();
+        }
+        Network network = mDefaultNetwork;
+        if (network == null) {
+            return null;
+        }
+        NetworkSnapshot snapshot = mSnapshot;
+        for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+            NetworkSnapshot.TransportState state = snapshot.getTransportState(transport);
+            if (network.equals(state.getNetwork()) && state.getNetworkInfo() != null) {
+                return state.getNetworkInfo();
+            }
+        }
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_NETWORK_INFO);
+        return mPlatform.getNetworkInfo(network);
     }
 
     /**
-     * Return WiFiNetworkMonitor.
+     * Return the monitor event loop,null if not started.
+     *
+     * @return EventLoop
+     */
+    EventLoop getEventLoop() {
+        return mEventLoop;
+    }
+
+    /**
+     * Enable the broadcast compatibility mode.
+     * <p>Network state is delivered to {@link NetworkListener} in process by default,
+     * the {@link #ACTION_NETWORK_STATE_CHANGED}/{@link #ACTION_NETWORK_TYPE_CHANGED} broadcasts and the
+     * broadcasts of each transport monitor are only sent if enabled.
+     * Should be called before {@link #startMonitoring(Context)}.
+     *
+     * @param enabled send broadcast or not
+     */
+    public void setBroadcastEnabled(boolean enabled) {
+        mBroadcastEnabled = enabled;
+    }
+
+    /**
+     * Return is the broadcast compatibility mode enabled.
+     *
+     * @return broadcast enabled
+     */
+    public boolean isBroadcastEnabled() {
+        return mBroadcastEnabled;
+    }
+
+    /**
+     * Enable the warm start.
+     * <p>The snapshot and the probed qualities are persisted on every change,and on the next start
+     * the persisted state is served at once as provisional,see {@link NetworkSnapshot#isProvisional()},
+     * until the platform answered,so the state getters do not return unknown right after
+     * {@link #startMonitoringAsync(Context)}.The provisional state has no NetworkInfo and WifiInfo.
+     * Should be called before {@link #startMonitoring(Context)}.
+     *
+     * @param enabled warm start or not
+     */
+    public void setWarmStartEnabled(boolean enabled) {
+        mWarmStartEnabled = enabled;
+    }
+
+    /**
+     * Return is the warm start enabled.
+     *
+     * @return warm start enabled
+     */
+    public boolean isWarmStartEnabled() {
+        return mWarmStartEnabled;
+    }
+
+    /**
+     * Set the signal coalesce window.
+     * <p>During roaming or AP reboot the platform reports several changes in a short time,
+     * all the signals received inside the window are collapsed into the net transition,
+     * such as wifi->none->wifi becomes no change.The window starts at the first signal and is never extended,
+     * so a transition is notified at most windowMillis later.0 means no coalescing.
+     *
+     * @param windowMillis coalesce window in milliseconds
+     */
+    public void setCoalesceWindow(long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("Coalesce window should not be negative!");
+        }
+        mCoalesceWindow = windowMillis;
+        SignalCoalescer coalescer = mCoalescer;
+        if (coalescer != null) {
+            coalescer.setWindow(windowMillis);
+        }
+        NetStateMachine[] machines = {mWifiStateMachine, mMobileStateMachine, mEthernetStateMachine};
+        for (NetStateMachine machine : machines) {
+            if (machine != null) {
+                machine.setCoalesceWindow(windowMillis);
+            }
+        }
+    }
+
+    /**
+     * Return the signal coalesce window.
+     *
+     * @return coalesce window in milliseconds
+     */
+    public long getCoalesceWindow() {
+        return mCoalesceWindow;
+    }
+
+    /**
+     * Return the count of raw platform signals received,including all the transport monitors.
+     *
+     * @return raw signal count
+     */
+    public long getRawSignalCount() {
+        SignalCoalescer coalescer = mCoalescer;
+        long count = coalescer == null ? 0 : coalescer.getRawCount();
+        NetStateMachine[] machines = {mWifiStateMachine, mMobileStateMachine, mEthernetStateMachine};
+        for (NetStateMachine machine : machines) {
+            if (machine != null) {
+                count += machine.getRawSignalCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the count of raw platform signals absorbed by coalescing,including all the transport monitors.
+     * A signal is absorbed if it did not produce a notification.
+     *
+     * @return absorbed signal count
+     */
+    public long getAbsorbedSignalCount() {
+        SignalCoalescer coalescer = mCoalescer;
+        long count = coalescer == null ? 0 : coalescer.getAbsorbedCount();
+        NetStateMachine[] machines = {mWifiStateMachine, mMobileStateMachine, mEthernetStateMachine};
+        for (NetStateMachine machine : machines) {
+            if (machine != null) {
+                count += machine.getAbsorbedSignalCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Add system network state listener.
+     * If executor is null,listener will be called on the monitor thread,
+     * which should not be blocked.
+     *
+     * @param listener NetworkListener
+     * @param executor the executor to call listener
+     */
+    public void addListener(NetworkListener listener, Executor executor) {
+        mListeners.add(listener, executor);
+    }
+
+    /**
+     * Add system network state listener with its own mailbox.
+     * The monitor thread never waits the listener,a slow listener falls behind alone
+     * and the policy decides which events it skips,such as {@link DeliveryPolicy#CONFLATE} for the latest state only.
+     *
+     * @param listener NetworkListener
+     * @param executor the executor to call listener,should not be null
+     * @param policy   DeliveryPolicy
+     */
+    public void addListener(NetworkListener listener, Executor executor, DeliveryPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy should not be null!");
+        }
+        mListeners.add(listener, executor, 0, policy);
+    }
+
+    /**
+     * Remove system network state listener.
+     *
+     * @param listener NetworkListener
+     */
+    public void removeListener(NetworkListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Return WiFiNetworkMonitor,started on the first call.
+     * Return null if monitoring not started.
      *
      * @return WiFiNetworkMonitor
      */
     public WiFiNetworkMonitor getWiFiNetworkMonitor() {
-        return mWifiStateMachine;
+        return (WiFiNetworkMonitor) acquireStateMachine(TRANSPORT_WIFI);
     }
 
     /**
-     * Return MobileNetworkMonitor.
+     * Return MobileNetworkMonitor,started on the first call.
+     * Return null if monitoring not started.
      *
      * @return MobileNetworkMonitor
      */
     public MobileNetworkMonitor getMobileNetworkMonitor() {
-        return mMobileStateMachine;
+        return (MobileNetworkMonitor) acquireStateMachine(TRANSPORT_MOBILE);
     }
 
     /**
-     * Return EthernetNetworkMonitor.
+     * Return EthernetNetworkMonitor,started on the first call.
+     * Return null if monitoring not started.
      *
      * @return EthernetNetworkMonitor
      */
     public EthernetNetworkMonitor getEthernetNetworkMonitor() {
-        return mEthernetStateMachine;
+        return (EthernetNetworkMonitor) acquireStateMachine(TRANSPORT_ETHERNET);
+    }
+
+    /**
+     * Return the state machine of the transport,create and start it if needed.
+     *
+     * @param transport transport
+     * @return NetStateMachine,null if monitoring not started
+     */
+    private NetStateMachine acquireStateMachine(int transport) {
+        NetStateMachine machine = getStateMachine(transport);
+        if (machine == null) {
+            synchronized (mStateMachineLock) {
+                machine = getStateMachine(transport);
+                if (machine == null && mStarted) {
+                    machine = createStateMachine(transport);
+                }
+            }
+        }
+        if (machine != null) {
+            machine.ensureActive();
+        }
+        return machine;
+    }
+
+    /**
+     * Start all the transport monitors,used by the features which compare the transports.
+     */
+    void acquireAllStateMachines() {
+        for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+            acquireStateMachine(transport);
+        }
+    }
+
+    /**
+     * Stop the transport monitors nobody uses,after a feature comparing the transports finished.
+     */
+    void releaseStateMachinesIfUnused() {
+        for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+            NetStateMachine machine = getStateMachine(transport);
+            if (machine != null) {
+                machine.releaseIfUnused();
+            }
+        }
+    }
+
+    /**
+     * Create the state machine of the transport.
+     * Called with the state machine lock held.
+     *
+     * @param transport transport
+     * @return NetStateMachine
+     */
+    private NetStateMachine createStateMachine(int transport) {
+        NetStateMachine machine;
+        switch (transport) {
+            case TRANSPORT_WIFI:
+                machine = mWifiStateMachine = new WiFiNetworkMonitor(mPlatform, this);
+                break;
+            case TRANSPORT_MOBILE:
+                machine = mMobileStateMachine = new MobileNetworkMonitor(mPlatform, this);
+                break;
+            case TRANSPORT_ETHERNET:
+                machine = mEthernetStateMachine = new EthernetNetworkMonitor(mPlatform, this);
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid transport: " + transport);
+        }
+        machine.setCoalesceWindow(mCoalesceWindow);
+        return machine;
+    }
+
+    /**
+     * Stop all the state machines and forget them,they are created again after restart.
+     * Called on the monitor thread.
+     */
+    private void disposeStateMachines() {
+        NetStateMachine[] machines;
+        synchronized (mStateMachineLock) {
+            machines = new NetStateMachine[]{mWifiStateMachine, mMobileStateMachine, mEthernetStateMachine};
+            mWifiStateMachine = null;
+            mMobileStateMachine = null;
+            mEthernetStateMachine = null;
+        }
+        for (NetStateMachine machine : machines) {
+            if (machine != null) {
+                machine.dispose();
+            }
+        }
     }
 
     /**
@@ -188,16 +797,37 @@ public class NetworkMonitor {
      * @return ConnectivityManager
      */
     public ConnectivityManager getConnectivityManager() {
-        return mConnectivityManager;
+        Platform platform = mPlatform;
+        return platform == null ? null : platform.getConnectivityManager();
+    }
+
+    /**
+     * Return the platform services,null if never started.
+     *
+     * @return Platform
+     */
+    Platform getPlatform() {
+        return mPlatform;
+    }
+
+    /**
+     * Return the state of current system network.
+     *
+     * @return {@link Transition#STATE_UNKNOWN} before the monitor ready or after stopped,
+     * {@link Transition#STATE_DISCONNECTED} or {@link Transition#STATE_CONNECTED}
+     */
+    public int getState() {
+        return mSnapshot.getState();
     }
 
     /**
      * Current system network is connected.
+     * Return false if the state is unknown.
      *
      * @return network connected state.
      */
     public boolean isConnected() {
-        return (mActiveNetworkInfo != null && mActiveNetworkInfo.isConnected());
+        return mSnapshot.isConnected();
     }
 
     /**
@@ -207,162 +837,623 @@ public class NetworkMonitor {
      * @return NetworkInfo
      */
     public NetworkInfo getNetworkInfo() {
-        return mActiveNetworkInfo;
+        return mSnapshot.getActiveNetworkInfo();
+    }
+
+    /**
+     * Return current network state snapshot of all the transports.
+     * The snapshot is immutable,read it once and use the same object if several values should be consistent,
+     * {@link NetworkSnapshot#getSequence()} changes every time the state changes.
+     *
+     * @return NetworkSnapshot
+     */
+    public NetworkSnapshot getSnapshot() {
+        return mSnapshot;
     }
 
     /**
-     * Init network status.
+     * Start probing the latency of every connected transport over its own network.
+     * <p>The probes run on a dedicated thread,restart with the new config if already probing.
+     *
+     * @param config ProbeConfig
+     * @see #getNetworkQuality(int)
      */
-    private void initNetwork() {
-        List<NetworkInfo> networkInfoList = new ArrayList<>();
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
-            Network[] networks = mConnectivityManager.getAllNetworks();
-            for (Network network : networks) {
-                NetworkInfo networkInfo = mConnectivityManager.getNetworkInfo(network);
-                if (networkInfo != null) {
-                    networkInfoList.add(networkInfo);
+    public synchronized void startProbing(ProbeConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("Config should not be null!");
+        }
+        if (!mStarted) {
+            throw new IllegalStateException("Monitoring not started!");
+        }
+        stopProbing();
+        acquireAllStateMachines();
+        NetworkProber prober = new NetworkProber(this, config);
+        mProber = prober;
+        mProbeStamp.incrementAndGet();
+        prober.start();
+    }
+
+    /**
+     * Stop probing.
+     */
+    public synchronized void stopProbing() {
+        NetworkProber prober = mProber;
+        if (prober != null) {
+            mProber = null;
+            mProbeStamp.incrementAndGet();
+            prober.stop();
+        }
+    }
+
+    /**
+     * Return the measured quality of the transport.
+     * Return null if not probing or the transport is not connected.
+     * If not probed yet the quality persisted by the last process is returned while the snapshot is provisional,
+     * and after that only if the confirmed network of the transport is the same network.
+     *
+     * @param transport transport,such as {@link #TRANSPORT_WIFI}
+     * @return NetworkQuality
+     */
+    public NetworkQuality getNetworkQuality(int transport) {
+        NetworkProber prober = mProber;
+        NetworkQuality quality = prober == null ? null : prober.getQuality(transport);
+        WarmStartCache cache = mWarmStartCache;
+        if (quality == null && cache != null) {
+            NetworkSnapshot snapshot = mSnapshot;
+            quality = snapshot.isProvisional() ? cache.getQuality(transport)
+                    : cache.getQuality(transport, snapshot.getTransportState(transport).getNetwork());
+        }
+        return quality;
+    }
+
+    /**
+     * Start accounting the traffic of this app per transport.
+     * <p>The UID traffic counters are sampled every minute and on every active network change,
+     * the bytes are attributed to the active transport and rolled up hourly and daily.
+     * The rollups of the recent 48 hours and 92 days are persisted in the app files dir.
+     */
+    public void startDataUsageAccounting() {
+        final EventLoop loop = mEventLoop;
+        if (!mStarted || loop == null) {
+            throw new IllegalStateException("Monitoring not started!");
+        }
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mUsageRecorder != null || !mStarted) {
+                    return;
                 }
+                DataUsageRecorder recorder = new DataUsageRecorder(new File(mPlatform.getFilesDir(), USAGE_FILE_NAME));
+                recorder.start();
+                mUsageRecorder = recorder;
+                loop.postDelayed(mUsageSampleRunnable, DataUsageRecorder.DEFAULT_SAMPLE_INTERVAL);
             }
-        } else {
-            NetworkInfo[] networkInfoArray = mConnectivityManager.getAllNetworkInfo();
-            if (networkInfoArray != null && networkInfoArray.length > 0) {
-                networkInfoList.addAll(Arrays.asList(networkInfoArray));
+        });
+    }
+
+    /**
+     * Stop accounting the traffic,the recorded rollups are kept.
+     */
+    public void stopDataUsageAccounting() {
+        EventLoop loop = mEventLoop;
+        if (loop != null) {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    stopUsageRecorder();
+                }
+            });
+        }
+    }
+
+    /**
+     * Return the received bytes of this app over the transport in the local day which contains the time.
+     * Return 0 if not recorded.
+     *
+     * @param transport  transport,such as {@link #TRANSPORT_MOBILE}
+     * @param timeMillis wall clock time
+     * @return received bytes
+     */
+    public long getDailyRxBytes(int transport, long timeMillis) {
+        DataUsageRecorder recorder = mUsageRecorder;
+        return recorder == null ? 0 : recorder.getDailyBytes(transport, timeMillis, false);
+    }
+
+    /**
+     * Return the transmitted bytes of this app over the transport in the local day which contains the time.
+     * Return 0 if not recorded.
+     *
+     * @param transport  transport,such as {@link #TRANSPORT_MOBILE}
+     * @param timeMillis wall clock time
+     * @return transmitted bytes
+     */
+    public long getDailyTxBytes(int transport, long timeMillis) {
+        DataUsageRecorder recorder = mUsageRecorder;
+        return recorder == null ? 0 : recorder.getDailyBytes(transport, timeMillis, true);
+    }
+
+    /**
+     * Return the received bytes of this app over the transport in the hour which contains the time.
+     * Return 0 if not recorded.
+     *
+     * @param transport  transport,such as {@link #TRANSPORT_MOBILE}
+     * @param timeMillis wall clock time
+     * @return received bytes
+     */
+    public long getHourlyRxBytes(int transport, long timeMillis) {
+        DataUsageRecorder recorder = mUsageRecorder;
+        return recorder == null ? 0 : recorder.getHourlyBytes(transport, timeMillis, false);
+    }
+
+    /**
+     * Return the transmitted bytes of this app over the transport in the hour which contains the time.
+     * Return 0 if not recorded.
+     *
+     * @param transport  transport,such as {@link #TRANSPORT_MOBILE}
+     * @param timeMillis wall clock time
+     * @return transmitted bytes
+     */
+    public long getHourlyTxBytes(int transport, long timeMillis) {
+        DataUsageRecorder recorder = mUsageRecorder;
+        return recorder == null ? 0 : recorder.getHourlyBytes(transport, timeMillis, true);
+    }
+
+    /**
+     * Stop the usage recorder.
+     * Called on the monitor thread.
+     */
+    private void stopUsageRecorder() {
+        DataUsageRecorder recorder = mUsageRecorder;
+        if (recorder != null) {
+            mUsageRecorder = null;
+            mEventLoop.remove(mUsageSampleRunnable);
+            recorder.stop(mSnapshot.getActiveTransport());
+        }
+    }
+
+    /**
+     * Return the recorded state transitions in the window,oldest first.
+     * The recent 1024 transitions of all the transports are kept.
+     *
+     * @param transport    transport,{@link #TRANSPORT_NONE} for all the transports
+     * @param windowMillis window in milliseconds
+     * @return transitions
+     */
+    public List<Transition> getTransitionHistory(int transport, long windowMillis) {
+        return mHistory.query(transport, windowMillis);
+    }
+
+    /**
+     * Return the availability statistics of the transport in the window,
+     * such as uptime percentage,mean time between disconnects and outage duration percentiles.
+     *
+     * @param transport    transport,such as {@link #TRANSPORT_WIFI}
+     * @param windowMillis window in milliseconds
+     * @return TransportAvailability
+     */
+    public TransportAvailability getAvailability(int transport, long windowMillis) {
+        if (transport < 0 || transport >= NetworkSnapshot.TRANSPORT_COUNT) {
+            throw new IllegalArgumentException("Invalid transport: " + transport);
+        }
+        return mHistory.getAvailability(transport, windowMillis);
+    }
+
+    /**
+     * Enable the hot path metrics,such as event counters,binder call counters and dispatch latency histograms.
+     * Disabled by default,the instrumentation costs one volatile read per record when disabled.
+     *
+     * @param enabled enable metrics
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        mMetrics.setEnabled(enabled);
+    }
+
+    /**
+     * Return is the metrics enabled.
+     *
+     * @return enabled
+     */
+    public boolean isMetricsEnabled() {
+        return mMetrics.isEnabled();
+    }
+
+    /**
+     * Return a copy of current metrics.
+     *
+     * @return MetricsSnapshot
+     */
+    public MetricsSnapshot getMetrics() {
+        return mMetrics.snapshot();
+    }
+
+    /**
+     * Reset all the metrics to 0.
+     */
+    public void resetMetrics() {
+        mMetrics.reset();
+    }
+
+    /**
+     * Print current metrics in dumpsys style,such as from Service#dump.
+     *
+     * @param writer PrintWriter
+     */
+    public void dumpMetrics(PrintWriter writer) {
+        mMetrics.snapshot().dump(writer);
+    }
+
+    MonitorMetrics getMetricsRecorder() {
+        return mMetrics;
+    }
+
+    /**
+     * Dispatch the active network event to the listeners.
+     *
+     * @param event NetworkEvent
+     */
+    private void dispatchEvent(NetworkEvent event) {
+        mMetrics.countEvent(event.getType(), TRANSPORT_NONE);
+        mListeners.dispatch(event);
+    }
+
+    /**
+     * Return the stamp of the probed quality,changed after every probe round.
+     *
+     * @return probe stamp
+     */
+    long getProbeStamp() {
+        return mProbeStamp.get();
+    }
+
+    /**
+     * A probe round finished.
+     * Called on the probe thread.
+     */
+    void onProbeRoundFinished() {
+        mProbeStamp.incrementAndGet();
+        EventLoop loop = mEventLoop;
+        if (loop != null) {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    schedulePersist();
+                    closeDeselectedSockets();
+                }
+            });
+        }
+    }
+
+    /**
+     * Create a selector of the best network for the policy.
+     *
+     * @param policy selection policy,such as {@link NetworkSelector#POLICY_LOWEST_LATENCY}
+     * @return NetworkSelector
+     */
+    public NetworkSelector createNetworkSelector(int policy) {
+        acquireAllStateMachines();
+        return addSelector(new NetworkSelector(this, policy, TRANSPORT_NONE));
+    }
+
+    /**
+     * Create a selector which prefers the transport and falls back to the lowest latency network
+     * if it is disconnected or degraded.
+     *
+     * @param policy             selection policy,such as {@link NetworkSelector#POLICY_PREFER_TRANSPORT}
+     * @param preferredTransport preferred transport,such as {@link #TRANSPORT_WIFI}
+     * @return NetworkSelector
+     */
+    public NetworkSelector createNetworkSelector(int policy, int preferredTransport) {
+        acquireAllStateMachines();
+        return addSelector(new NetworkSelector(this, policy, preferredTransport));
+    }
+
+    private NetworkSelector addSelector(NetworkSelector selector) {
+        synchronized (mSelectors) {
+            mSelectors.add(selector);
+        }
+        return selector;
+    }
+
+    private List<NetworkSelector> getSelectors() {
+        synchronized (mSelectors) {
+            return new ArrayList<>(mSelectors);
+        }
+    }
+
+    /**
+     * Return is any socket of a selector open,the transport monitors are kept running for them.
+     *
+     * @return has open sockets
+     */
+    boolean hasOpenSelectorSockets() {
+        for (NetworkSelector selector : getSelectors()) {
+            if (selector.getSocketFactory().hasOpenSockets()) {
+                return true;
             }
         }
-        for (NetworkInfo networkInfo : networkInfoList) {
-            if (ConnectivityManager.TYPE_WIFI == networkInfo.getType()) {
-                mWifiStateMachine.setNetworkInfo(networkInfo);
-            } else if (ConnectivityManager.TYPE_MOBILE == networkInfo.getType()) {
-                mMobileStateMachine.setNetworkInfo(networkInfo);
-            } else if (ConnectivityManager.TYPE_ETHERNET == networkInfo.getType()) {
-                mEthernetStateMachine.setNetworkInfo(networkInfo);
+        return false;
+    }
+
+    /**
+     * The decision inputs changed,close the sockets of the networks the selectors no longer select.
+     * Called on the monitor thread.
+     */
+    private void closeDeselectedSockets() {
+        for (NetworkSelector selector : getSelectors()) {
+            selector.closeDeselectedSockets();
+        }
+    }
+
+    /**
+     * Return the scheduler of the jobs waiting a network satisfying their constraints,created on the first call.
+     * The jobs are released once monitoring started.
+     *
+     * @return NetworkJobScheduler
+     */
+    public NetworkJobScheduler getJobScheduler() {
+        NetworkJobScheduler scheduler = mJobScheduler;
+        if (scheduler == null) {
+            synchronized (this) {
+                scheduler = mJobScheduler;
+                if (scheduler == null) {
+                    scheduler = mJobScheduler = new NetworkJobScheduler(this);
+                }
             }
         }
+        return scheduler;
+    }
+
+    /**
+     * Return is any job waiting a network or running,the transport monitors are kept running for them.
+     *
+     * @return has pending job
+     */
+    boolean hasPendingJobs() {
+        NetworkJobScheduler scheduler = mJobScheduler;
+        return scheduler != null && !scheduler.isIdle();
+    }
+
+    /**
+     * The snapshot published,persist it later,close the sockets no longer selected and let the job scheduler drain.
+     * Called on the monitor thread.
+     */
+    private void onSnapshotPublished() {
+        schedulePersist();
+        closeDeselectedSockets();
+        NetworkJobScheduler scheduler = mJobScheduler;
+        if (scheduler != null) {
+            scheduler.onSnapshotChanged();
+        }
+    }
+
+    /**
+     * Publish the active network.
+     * Called on the monitor thread.
+     *
+     * @param activeNetworkInfo active network info
+     */
+    void publishActiveNetworkInfo(NetworkInfo activeNetworkInfo) {
+        DataUsageRecorder recorder = mUsageRecorder;
+        if (recorder != null) {
+            // Close the interval of the previous active transport.
+            recorder.sample(mSnapshot.getActiveTransport());
+        }
+        mSnapshot = mSnapshot.withActiveNetworkInfo(activeNetworkInfo);
+        onSnapshotPublished();
+    }
+
+    /**
+     * Publish the state of one transport.
+     * Called on the monitor thread.
+     *
+     * @param transport transport
+     * @param state     transport state
+     * @param reason    transition reason
+     */
+    void publishTransportState(int transport, NetworkSnapshot.TransportState state, int reason) {
+        mSnapshot = mSnapshot.withTransportState(transport, state);
+        mHistory.record(transport, state.isConnected() ? Transition.STATE_CONNECTED : Transition.STATE_DISCONNECTED, reason);
+        onSnapshotPublished();
+    }
+
+    /**
+     * The monitor of one transport stopped,its state is unknown and not counted in the availability.
+     * Called on the monitor thread.
+     *
+     * @param transport transport
+     */
+    void publishTransportStopped(int transport) {
+        mSnapshot = mSnapshot.withTransportState(transport, NetworkSnapshot.TransportState.UNKNOWN);
+        mHistory.record(transport, Transition.STATE_UNKNOWN, Transition.REASON_STOP);
     }
 
     /**
      * Notify network disconnected.
      *
-     * @param context        context
      * @param preNetworkInfo previous network info
      */
-    private void notifyNetworkDisconnected(Context context, NetworkInfo preNetworkInfo) {
-        Intent broadCastIntent = new Intent(ACTION_NETWORK_STATE_CHANGED);
-        broadCastIntent.putExtra(EXTRA_NETWORK_STATE, false);
-        broadCastIntent.putExtra(EXTRA_PRE_NETWORK_INFO, preNetworkInfo);
-        context.sendStickyBroadcast(broadCastIntent);
+    private void notifyNetworkDisconnected(NetworkInfo preNetworkInfo) {
+        int transport = preNetworkInfo == null ? TRANSPORT_NONE : toTransport(preNetworkInfo.getType());
+        dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_DISCONNECTED, transport, preNetworkInfo, null, null, null));
+        if (mBroadcastEnabled) {
+            Intent broadCastIntent = new Intent(ACTION_NETWORK_STATE_CHANGED);
+            broadCastIntent.putExtra(EXTRA_NETWORK_STATE, false);
+            broadCastIntent.putExtra(EXTRA_PRE_NETWORK_INFO, preNetworkInfo);
+            mPlatform.sendStickyBroadcast(broadCastIntent);
+        }
     }
 
     /**
      * Notify network connected.
      *
-     * @param context        context
      * @param curNetworkInfo current network info
      */
-    private void notifyNetworkConnected(Context context, NetworkInfo curNetworkInfo) {
-        Intent broadCastIntent = new Intent(ACTION_NETWORK_STATE_CHANGED);
-        broadCastIntent.putExtra(EXTRA_NETWORK_STATE, true);
-        broadCastIntent.putExtra(EXTRA_NETWORK_INFO, curNetworkInfo);
-        context.sendStickyBroadcast(broadCastIntent);
+    private void notifyNetworkConnected(NetworkInfo curNetworkInfo) {
+        int transport = toTransport(curNetworkInfo.getType());
+        dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_CONNECTED, transport, null, curNetworkInfo, null, null));
+        if (mBroadcastEnabled) {
+            Intent broadCastIntent = new Intent(ACTION_NETWORK_STATE_CHANGED);
+            broadCastIntent.putExtra(EXTRA_NETWORK_STATE, true);
+            broadCastIntent.putExtra(EXTRA_NETWORK_INFO, curNetworkInfo);
+            mPlatform.sendStickyBroadcast(broadCastIntent);
+        }
     }
 
     /**
      * Notify network changed.
+     * Listeners receive one {@link NetworkEvent#TYPE_CHANGED} event,
+     * in broadcast mode the type changed broadcast is followed by a connected broadcast.
      *
-     * @param context        context
      * @param preNetworkInfo previous network info
      * @param curNetworkInfo current network info
      */
-    private void notifyNetworkChanged(Context context, NetworkInfo preNetworkInfo, NetworkInfo curNetworkInfo) {
-        Intent broadCastIntent = new Intent(ACTION_NETWORK_TYPE_CHANGED);
-        broadCastIntent.putExtra(EXTRA_PRE_NETWORK_INFO, preNetworkInfo);
-        broadCastIntent.putExtra(EXTRA_NETWORK_INFO, curNetworkInfo);
-        context.sendBroadcast(broadCastIntent);
+    private void notifyNetworkChanged(NetworkInfo preNetworkInfo, NetworkInfo curNetworkInfo) {
+        int transport = toTransport(curNetworkInfo.getType());
+        dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_CHANGED, transport, preNetworkInfo, curNetworkInfo, null, null));
+        if (mBroadcastEnabled) {
+            Intent broadCastIntent = new Intent(ACTION_NETWORK_TYPE_CHANGED);
+            broadCastIntent.putExtra(EXTRA_PRE_NETWORK_INFO, preNetworkInfo);
+            broadCastIntent.putExtra(EXTRA_NETWORK_INFO, curNetworkInfo);
+            mPlatform.sendBroadcast(broadCastIntent);
 
-        Intent intent = new Intent(ACTION_NETWORK_STATE_CHANGED);
-        intent.putExtra(EXTRA_NETWORK_STATE, true);
-        intent.putExtra(EXTRA_NETWORK_INFO, curNetworkInfo);
-        context.sendStickyBroadcast(intent);
+            Intent intent = new Intent(ACTION_NETWORK_STATE_CHANGED);
+            intent.putExtra(EXTRA_NETWORK_STATE, true);
+            intent.putExtra(EXTRA_NETWORK_INFO, curNetworkInfo);
+            mPlatform.sendStickyBroadcast(intent);
+        }
     }
 
     /**
-     * The system connection change broadcast receiver.
+     * Convert {@link ConnectivityManager} network type to transport.
+     *
+     * @param networkType network type
+     * @return transport
      */
-    class ConnectionChangeReceiver extends BroadcastReceiver {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            NetworkInfo activeNetworkInfo = mConnectivityManager.getActiveNetworkInfo();
-            if (activeNetworkInfo == null) {
-                if (mActiveNetworkInfo != null) {
-                    if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.LOLLIPOP) {
-                        mWifiStateMachine.notifyNetworkState(false, null);
-                        mMobileStateMachine.notifyNetworkState(false, null);
-                        mEthernetStateMachine.notifyNetworkState(false, null);
-                    }
-                    notifyNetworkDisconnected(context, mActiveNetworkInfo);
-                    mActiveNetworkInfo = null;
-                    Log.i(TAG, "Network disconnected!");
-                }
-            } else if (mActiveNetworkInfo == null) {
-                Log.i(TAG, "Network connected: " + activeNetworkInfo);
-                if (ConnectivityManager.TYPE_MOBILE == activeNetworkInfo.getType()) {
-                    mActiveNetworkInfo = activeNetworkInfo;
-                    if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.LOLLIPOP) {
-                        mMobileStateMachine.notifyNetworkState(true, mActiveNetworkInfo);
-                    }
-                    notifyNetworkConnected(context, mActiveNetworkInfo);
-                } else if (ConnectivityManager.TYPE_WIFI == activeNetworkInfo.getType()) {
-                    mActiveNetworkInfo = activeNetworkInfo;
-                    if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.LOLLIPOP) {
-                        mWifiStateMachine.notifyNetworkState(true, mActiveNetworkInfo);
-                    }
-                    notifyNetworkConnected(context, mActiveNetworkInfo);
-                } else if (ConnectivityManager.TYPE_ETHERNET == activeNetworkInfo.getType()) {
-                    mActiveNetworkInfo = activeNetworkInfo;
-                    if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.LOLLIPOP) {
-                        mEthernetStateMachine.notifyNetworkState(true, mActiveNetworkInfo);
+    static int toTransport(int networkType) {
+        switch (networkType) {
+            case ConnectivityManager.TYPE_WIFI:
+                return TRANSPORT_WIFI;
+            case ConnectivityManager.TYPE_MOBILE:
+                return TRANSPORT_MOBILE;
+            case ConnectivityManager.TYPE_ETHERNET:
+                return TRANSPORT_ETHERNET;
+            default:
+                return TRANSPORT_NONE;
+        }
+    }
+
+    /**
+     * Update the active network and notify the transition.
+     *
+     * @return true if a transition was notified
+     */
+    private boolean updateActiveNetwork() {
+        NetworkInfo activeNetworkInfo = queryActiveNetworkInfo();
+        NetworkInfo preNetworkInfo = mSnapshot.getActiveNetworkInfo();
+        boolean legacy = android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.LOLLIPOP;
+        if (activeNetworkInfo == null) {
+            if (preNetworkInfo != null) {
+                if (legacy) {
+                    for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+                        notifyLegacyState(getStateMachine(transport), false, null);
                     }
-                    notifyNetworkConnected(context, mActiveNetworkInfo);
-                } else {
-                    Log.i(TAG, "Other Network connected!");
-                    mActiveNetworkInfo = null;
                 }
-            } else if (mActiveNetworkInfo.getType() != activeNetworkInfo.getType()) {
-                if (ConnectivityManager.TYPE_MOBILE == activeNetworkInfo.getType()) {
-                    Log.i(TAG, "Network change to mobile: " + activeNetworkInfo);
-                    if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.LOLLIPOP) {
-                        mMobileStateMachine.notifyNetworkState(true, activeNetworkInfo);
-                        mWifiStateMachine.notifyNetworkState(false, null);
-                        mEthernetStateMachine.notifyNetworkState(false, null);
-                    }
-                    NetworkInfo preNetworkInfo = mActiveNetworkInfo;
-                    mActiveNetworkInfo = activeNetworkInfo;
-                    notifyNetworkChanged(context, preNetworkInfo, mActiveNetworkInfo);
-                } else if (ConnectivityManager.TYPE_WIFI == activeNetworkInfo.getType()) {
-                    Log.i(TAG, "Network change to wifi: " + activeNetworkInfo);
-                    if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.LOLLIPOP) {
-                        mWifiStateMachine.notifyNetworkState(true, activeNetworkInfo);
-                        mMobileStateMachine.notifyNetworkState(false, null);
-                        mEthernetStateMachine.notifyNetworkState(false, null);
-                    }
-                    NetworkInfo preNetworkInfo = mActiveNetworkInfo;
-                    mActiveNetworkInfo = activeNetworkInfo;
-                    notifyNetworkChanged(context, preNetworkInfo, mActiveNetworkInfo);
-                } else if (ConnectivityManager.TYPE_ETHERNET == activeNetworkInfo.getType()) {
-                    Log.i(TAG, " Network change to ethernet: " + activeNetworkInfo);
-                    if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.LOLLIPOP) {
-                        mEthernetStateMachine.notifyNetworkState(true, activeNetworkInfo);
-                        mWifiStateMachine.notifyNetworkState(false, null);
-                        mMobileStateMachine.notifyNetworkState(false, null);
+                publishActiveNetworkInfo(null);
+                notifyNetworkDisconnected(preNetworkInfo);
+                Log.i(TAG, "Network disconnected!");
+                return true;
+            }
+            return false;
+        }
+        int activeTransport = toTransport(activeNetworkInfo.getType());
+        NetStateMachine machine = getStateMachine(activeTransport);
+        if (activeTransport == TRANSPORT_NONE) {
+            if (preNetworkInfo == null || preNetworkInfo.getType() != activeNetworkInfo.getType()) {
+                Log.i(TAG, "Other Network connected!");
+                publishActiveNetworkInfo(null);
+            }
+            return false;
+        }
+        if (preNetworkInfo == null) {
+            Log.i(TAG, "Network connected: " + activeNetworkInfo);
+            publishActiveNetworkInfo(activeNetworkInfo);
+            if (legacy) {
+                notifyLegacyState(machine, true, activeNetworkInfo);
+            }
+            notifyNetworkConnected(activeNetworkInfo);
+            return true;
+        } else if (preNetworkInfo.getType() != activeNetworkInfo.getType()) {
+            Log.i(TAG, "Network change to " + activeNetworkInfo.getTypeName() + ": " + activeNetworkInfo);
+            if (legacy) {
+                notifyLegacyState(machine, true, activeNetworkInfo);
+                for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+                    if (transport != activeTransport) {
+                        notifyLegacyState(getStateMachine(transport), false, null);
                     }
-                    NetworkInfo preNetworkInfo = mActiveNetworkInfo;
-                    mActiveNetworkInfo = activeNetworkInfo;
-                    notifyNetworkChanged(context, preNetworkInfo, mActiveNetworkInfo);
-                } else {
-                    Log.i(TAG, "Other Network connected!");
-                    mActiveNetworkInfo = null;
                 }
             }
+            publishActiveNetworkInfo(activeNetworkInfo);
+            notifyNetworkChanged(preNetworkInfo, activeNetworkInfo);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Notify the transport state driven by the connectivity broadcast below android LOLLIPOP version,
+     * the transports not monitored are skipped.
+     *
+     * @param machine     NetStateMachine or null
+     * @param connected   Is network connected
+     * @param networkInfo NetworkInfo
+     */
+    private static void notifyLegacyState(NetStateMachine machine, boolean connected, NetworkInfo networkInfo) {
+        if (machine != null && machine.isActive()) {
+            machine.notifyNetworkState(connected, networkInfo);
+        }
+    }
+
+    /**
+     * Return the state machine of the transport,null if not created.
+     *
+     * @param transport transport
+     * @return NetStateMachine or null
+     */
+    private NetStateMachine getStateMachine(int transport) {
+        switch (transport) {
+            case TRANSPORT_WIFI:
+                return mWifiStateMachine;
+            case TRANSPORT_MOBILE:
+                return mMobileStateMachine;
+            case TRANSPORT_ETHERNET:
+                return mEthernetStateMachine;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The callback of the monitor ready.
+     *
+     * @see MonitorReadyFuture#addCallback(ReadyCallback)
+     */
+    public interface ReadyCallback {
+        /**
+         * The first snapshot published after start.
+         *
+         * @param snapshot NetworkSnapshot
+         */
+        void onReady(NetworkSnapshot snapshot);
+    }
+
+    /**
+     * The system connection change broadcast receiver.
+     */
+    class ConnectionChangeReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            mMetrics.countSignal(MetricsSnapshot.SIGNAL_CONNECTIVITY_ACTION);
+            mCoalescer.signal();
         }
     }
 }
@@ -0,0 +1,226 @@
+package com.seagle.android.net.monitor;
+
+import android.net.Network;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Active latency probe engine.
+ * <p>Probe every connected transport periodically over its own network,keep the recent samples in a
+ * primitive ring buffer per transport and publish the {@link NetworkQuality} after each probe.
+ * The probes block on socket IO,so they run on a dedicated thread instead of the monitor thread.
+ */
+class NetworkProber {
+
+    private static final String TAG = "NetworkProber";
+
+    /**
+     * The count of recent probes kept per transport.
+     */
+    static final int WINDOW_SIZE = 20;
+
+    private final NetworkMonitor mMonitor;
+    private final ProbeConfig mConfig;
+    private final ScheduledExecutorService mExecutor;
+    private final AtomicReferenceArray<NetworkQuality> mQualities = new AtomicReferenceArray<>(NetworkSnapshot.TRANSPORT_COUNT);
+    private final ProbeWindow[] mWindows = new ProbeWindow[NetworkSnapshot.TRANSPORT_COUNT];
+    private final long[] mScratch = new long[WINDOW_SIZE];
+
+    NetworkProber(NetworkMonitor monitor, ProbeConfig config) {
+        mMonitor = monitor;
+        mConfig = config;
+        for (int i = 0; i < mWindows.length; i++) {
+            mWindows[i] = new ProbeWindow();
+        }
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    void start() {
+        mExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    probeAll();
+                    mMonitor.onProbeRoundFinished();
+                } catch (RuntimeException ex) {
+                    Log.w(TAG, "Probe failed!", ex);
+                }
+            }
+        }, 0, mConfig.getInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        mExecutor.shutdownNow();
+    }
+
+    NetworkQuality getQuality(int transport) {
+        if (transport < 0 || transport >= NetworkSnapshot.TRANSPORT_COUNT) {
+            return null;
+        }
+        return mQualities.get(transport);
+    }
+
+    /**
+     * Probe all the connected transports once.
+     * Called on the probe thread.
+     */
+    private void probeAll() {
+        NetworkSnapshot snapshot = mMonitor.getSnapshot();
+        for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+            NetworkSnapshot.TransportState state = snapshot.getTransportState(transport);
+            Network network = state.getNetwork();
+            boolean probeable = state.isConnected() && (network != null
+                    || (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP && snapshot.getActiveTransport() == transport));
+            ProbeWindow window = mWindows[transport];
+            if (!probeable) {
+                window.reset(null);
+                mQualities.set(transport, null);
+                continue;
+            }
+            if (window.mNetwork == null ? network != null : !window.mNetwork.equals(network)) {
+                window.reset(network);
+            }
+            probe(network, window);
+            mQualities.set(transport, window.toQuality(transport, mScratch));
+        }
+    }
+
+    /**
+     * Probe the endpoint over the network,the default network if null.
+     */
+    private void probe(Network network, ProbeWindow window) {
+        Socket socket = null;
+        long connectRtt = -1;
+        long requestLatency = -1;
+        try {
+            InetAddress address;
+            if (network != null) {
+                socket = network.getSocketFactory().createSocket();
+                address = network.getAllByName(mConfig.getHost())[0];
+            } else {
+                socket = new Socket();
+                address = InetAddress.getByName(mConfig.getHost());
+            }
+            socket.setSoTimeout(mConfig.getTimeout());
+            long start = SystemClock.elapsedRealtime();
+            socket.connect(new InetSocketAddress(address, mConfig.getPort()), mConfig.getTimeout());
+            connectRtt = SystemClock.elapsedRealtime() - start;
+            byte[] request = mConfig.getRequest();
+            if (request != null) {
+                OutputStream outputStream = socket.getOutputStream();
+                InputStream inputStream = socket.getInputStream();
+                start = SystemClock.elapsedRealtime();
+                outputStream.write(request);
+                outputStream.flush();
+                if (inputStream.read() < 0) {
+                    throw new IOException("Connection closed by peer!");
+                }
+                requestLatency = SystemClock.elapsedRealtime() - start;
+            }
+            window.add(connectRtt, requestLatency, false);
+        } catch (IOException | RuntimeException ex) {
+            Log.i(TAG, "Probe " + mConfig.getHost() + " over " + network + " failed: " + ex.getMessage());
+            window.add(-1, -1, true);
+        } finally {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Percentile of the first count values of the sorted array.
+     */
+    static long percentile(long[] sorted, int count, int percent) {
+        if (count == 0) {
+            return -1;
+        }
+        int index = (count * percent + 99) / 100 - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    /**
+     * Ring buffer of the recent probes of one transport.
+     */
+    static class ProbeWindow {
+        private final long[] mConnectRtts = new long[WINDOW_SIZE];
+        private final long[] mRequestLatencies = new long[WINDOW_SIZE];
+        private final boolean[] mLost = new boolean[WINDOW_SIZE];
+        private Network mNetwork;
+        private int mNext;
+        private int mCount;
+
+        void reset(Network network) {
+            mNetwork = network;
+            mNext = 0;
+            mCount = 0;
+        }
+
+        void add(long connectRtt, long requestLatency, boolean lost) {
+            mConnectRtts[mNext] = connectRtt;
+            mRequestLatencies[mNext] = requestLatency;
+            mLost[mNext] = lost;
+            mNext = (mNext + 1) % WINDOW_SIZE;
+            if (mCount < WINDOW_SIZE) {
+                mCount++;
+            }
+        }
+
+        NetworkQuality toQuality(int transport, long[] scratch) {
+            int lost = 0;
+            for (int i = 0; i < mCount; i++) {
+                if (mLost[i]) {
+                    lost++;
+                }
+            }
+            int count = collect(mConnectRtts, scratch);
+            long connectMedian = percentile(scratch, count, 50);
+            long connectP95 = percentile(scratch, count, 95);
+            count = collect(mRequestLatencies, scratch);
+            long requestMedian = percentile(scratch, count, 50);
+            long requestP95 = percentile(scratch, count, 95);
+            return new NetworkQuality(transport, mNetwork, mCount, mCount == 0 ? 0f : (float) lost / mCount,
+                    connectMedian, connectP95, requestMedian, requestP95, SystemClock.elapsedRealtime());
+        }
+
+        /**
+         * Copy the valid samples into the scratch array and sort them.
+         *
+         * @return the count of valid samples
+         */
+        private int collect(long[] samples, long[] scratch) {
+            int count = 0;
+            for (int i = 0; i < mCount; i++) {
+                if (samples[i] >= 0) {
+                    scratch[count++] = samples[i];
+                }
+            }
+            Arrays.sort(scratch, 0, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.seagle.android.net.monitor;
+
+import android.net.Network;
+
+/**
+ * The measured quality of one network over the recent probes.
+ * <p>Immutable,published once per probe,so reading it does not allocate.
+ * The latency values are -1 if no probe succeeded in the window.
+ */
+public final class NetworkQuality {
+
+    private final int mTransport;
+    private final Network mNetwork;
+    private final int mSampleCount;
+    private final float mLossRate;
+    private final long mConnectMedian;
+    private final long mConnectP95;
+    private final long mRequestMedian;
+    private final long mRequestP95;
+    private final long mUpdateTime;
+
+    NetworkQuality(int transport, Network network, int sampleCount, float lossRate, long connectMedian,
+                   long connectP95, long requestMedian, long requestP95, long updateTime) {
+        mTransport = transport;
+        mNetwork = network;
+        mSampleCount = sampleCount;
+        mLossRate = lossRate;
+        mConnectMedian = connectMedian;
+        mConnectP95 = connectP95;
+        mRequestMedian = requestMedian;
+        mRequestP95 = requestP95;
+        mUpdateTime = updateTime;
+    }
+
+    /**
+     * Return the transport of the network.
+     *
+     * @return transport
+     */
+    public int getTransport() {
+        return mTransport;
+    }
+
+    /**
+     * Return the probed network,null if probed over the default network before android L.
+     *
+     * @return Network
+     */
+    public Network getNetwork() {
+        return mNetwork;
+    }
+
+    /**
+     * Return the count of probes in the window.
+     *
+     * @return sample count
+     */
+    public int getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * Return the ratio of failed probes in the window.
+     *
+     * @return loss rate,0~1
+     */
+    public float getLossRate() {
+        return mLossRate;
+    }
+
+    /**
+     * Return the median TCP connect RTT in milliseconds.
+     *
+     * @return connect RTT median
+     */
+    public long getConnectMedian() {
+        return mConnectMedian;
+    }
+
+    /**
+     * Return the 95th percentile TCP connect RTT in milliseconds.
+     *
+     * @return connect RTT p95
+     */
+    public long getConnectP95() {
+        return mConnectP95;
+    }
+
+    /**
+     * Return the median request latency in milliseconds,from request sent to the first response byte.
+     * Return -1 if the probe sends no request.
+     *
+     * @return request latency median
+     */
+    public long getRequestMedian() {
+        return mRequestMedian;
+    }
+
+    /**
+     * Return the 95th percentile request latency in milliseconds.
+     *
+     * @return request latency p95
+     */
+    public long getRequestP95() {
+        return mRequestP95;
+    }
+
+    /**
+     * Return the elapsed realtime of the last probe.
+     *
+     * @return update time
+     */
+    public long getUpdateTime() {
+        return mUpdateTime;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkQuality{transport=" + mTransport + ", samples=" + mSampleCount + ", loss=" + mLossRate
+                + ", connect=" + mConnectMedian + "/" + mConnectP95 + "ms"
+                + ", request=" + mRequestMedian + "/" + mRequestP95 + "ms}";
+    }
+}
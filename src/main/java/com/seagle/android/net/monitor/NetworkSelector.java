@@ -0,0 +1,262 @@
+package com.seagle.android.net.monitor;
+
+import android.net.Network;
+import android.os.Build;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+
+import javax.net.SocketFactory;
+
+/**
+ * Best network selector.
+ * <p>Select the network which best fits the policy among the connected transports,
+ * and hand out the {@link SocketFactory} bound to it,so the traffic could be routed to it on a
+ * multi-network device.The decision is cached in an immutable object and re-evaluated only after the
+ * network snapshot or the probed quality changed,so the read is lock free.
+ * <p>The sockets created by {@link #getSocketFactory()} or bound by {@link #bindSocket(Socket)} are tracked,
+ * after every snapshot published or probe round finished the monitor closes the sockets of the network
+ * no longer selected,so the callers reconnect over the new network.
+ * <p>Before android L the sockets could not be bound and the default network is always selected.
+ */
+public final class NetworkSelector {
+
+    /**
+     * Select the network with the lowest probed latency.
+     */
+    public static final int POLICY_LOWEST_LATENCY = 1;
+
+    /**
+     * Select the unmetered network first,then the lowest latency.
+     */
+    public static final int POLICY_UNMETERED_FIRST = 2;
+
+    /**
+     * Select the preferred transport,fall back to the lowest latency if it is disconnected or degraded.
+     */
+    public static final int POLICY_PREFER_TRANSPORT = 3;
+
+    /**
+     * A network losing more probes than this is degraded.
+     */
+    private static final float DEGRADED_LOSS_RATE = 0.5f;
+
+    private final NetworkMonitor mMonitor;
+    private final int mPolicy;
+    private final int mPreferredTransport;
+    private final TrackedSocketFactory mSocketFactory;
+    private volatile Decision mDecision;
+    /**
+     * The transport selected when the last socket created.
+     */
+    private volatile int mSocketTransport = NetworkMonitor.TRANSPORT_NONE;
+
+    NetworkSelector(NetworkMonitor monitor, int policy, int preferredTransport) {
+        if (policy != POLICY_LOWEST_LATENCY && policy != POLICY_UNMETERED_FIRST && policy != POLICY_PREFER_TRANSPORT) {
+            throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+        mMonitor = monitor;
+        mPolicy = policy;
+        mPreferredTransport = preferredTransport;
+        mSocketFactory = new TrackedSocketFactory(new TrackedSocketFactory.Route() {
+            @Override
+            public int getTransport() {
+                return getDecision().mTransport;
+            }
+
+            @Override
+            public Network getConnectedNetwork() throws SocketException {
+                Decision decision = getActiveDecision();
+                if (decision.mTransport == NetworkMonitor.TRANSPORT_NONE) {
+                    throw new SocketException("Network not connected!");
+                }
+                mSocketTransport = decision.mTransport;
+                return decision.mNetwork;
+            }
+
+            @Override
+            public boolean isCurrent(Network network) {
+                Decision decision = getDecision();
+                return decision.mTransport != NetworkMonitor.TRANSPORT_NONE
+                        && (network == null ? decision.mNetwork == null : network.equals(decision.mNetwork));
+            }
+
+            @Override
+            public void releaseIfUnused() {
+                mMonitor.releaseStateMachinesIfUnused();
+            }
+        });
+    }
+
+    /**
+     * Return the selected network.
+     * Return null if the default network should be used,such as before android L.
+     *
+     * @return Network
+     */
+    public Network getNetwork() {
+        return getActiveDecision().mNetwork;
+    }
+
+    /**
+     * Return the transport of the selected network.
+     *
+     * @return transport or {@link NetworkMonitor#TRANSPORT_NONE} if no network connected
+     */
+    public int getTransport() {
+        return getActiveDecision().mTransport;
+    }
+
+    /**
+     * Return the socket factory creating the sockets over the selected network.
+     * The sockets created are closed by the monitor when the network is no longer selected.
+     *
+     * @return TrackedSocketFactory
+     */
+    public TrackedSocketFactory getSocketFactory() {
+        return mSocketFactory;
+    }
+
+    /**
+     * Bind the unconnected socket to the selected network.
+     * <p>A socket could be bound only since android M,below it the socket is left on the default network
+     * if the selected network is the default one,otherwise create the socket by {@link #getSocketFactory()}.
+     * The bound socket is closed by the monitor when the network is no longer selected.
+     *
+     * @param socket unconnected socket
+     * @throws IOException bind failed,or the selected network is not the default network below android M
+     */
+    public void bindSocket(Socket socket) throws IOException {
+        Decision decision = getActiveDecision();
+        if (decision.mNetwork == null) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            decision.mNetwork.bindSocket(socket);
+            mSocketFactory.track(decision.mNetwork, socket);
+        } else if (decision.mTransport != mMonitor.getSnapshot().getActiveTransport()) {
+            throw new IOException("Bind socket not supported below android M,create it by getSocketFactory()!");
+        }
+    }
+
+    /**
+     * Close the tracked sockets of the networks no longer selected.
+     * The sockets of the default network,below android L,are closed when the selected transport changed.
+     * Called on the monitor thread after the snapshot published or a probe round finished.
+     */
+    void closeDeselectedSockets() {
+        Decision decision = getDecision();
+        if (decision.mTransport == NetworkMonitor.TRANSPORT_NONE
+                || (decision.mNetwork == null && decision.mTransport != mSocketTransport)) {
+            mSocketFactory.closeAllSockets();
+        } else {
+            mSocketFactory.closeOtherSockets(decision.mNetwork);
+        }
+    }
+
+    /**
+     * Return the decision,start the transport monitors stopped since nobody used them.
+     */
+    private Decision getActiveDecision() {
+        mMonitor.acquireAllStateMachines();
+        return getDecision();
+    }
+
+    private Decision getDecision() {
+        NetworkSnapshot snapshot = mMonitor.getSnapshot();
+        long probeStamp = mMonitor.getProbeStamp();
+        Decision decision = mDecision;
+        if (decision == null || decision.mSequence != snapshot.getSequence() || decision.mProbeStamp != probeStamp) {
+            // Racing readers compute the same decision,the last write wins.
+            decision = select(snapshot, probeStamp);
+            mDecision = decision;
+        }
+        return decision;
+    }
+
+    private Decision select(NetworkSnapshot snapshot, long probeStamp) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return new Decision(snapshot.getSequence(), probeStamp, snapshot.getActiveTransport(), null);
+        }
+        int best = NetworkMonitor.TRANSPORT_NONE;
+        if (mPolicy == POLICY_PREFER_TRANSPORT && isUsable(snapshot, mPreferredTransport)
+                && !isDegraded(mMonitor.getNetworkQuality(mPreferredTransport))) {
+            best = mPreferredTransport;
+        } else {
+            for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+                if (isUsable(snapshot, transport) && (best == NetworkMonitor.TRANSPORT_NONE || compare(snapshot, transport, best) < 0)) {
+                    best = transport;
+                }
+            }
+        }
+        Network network = best == NetworkMonitor.TRANSPORT_NONE ? null : snapshot.getTransportState(best).getNetwork();
+        return new Decision(snapshot.getSequence(), probeStamp, best, network);
+    }
+
+    private static boolean isUsable(NetworkSnapshot snapshot, int transport) {
+        if (transport < 0 || transport >= NetworkSnapshot.TRANSPORT_COUNT) {
+            return false;
+        }
+        NetworkSnapshot.TransportState state = snapshot.getTransportState(transport);
+        return state.isConnected() && state.getNetwork() != null;
+    }
+
+    /**
+     * Compare two transports,the better one is smaller.
+     */
+    private int compare(NetworkSnapshot snapshot, int left, int right) {
+        if (mPolicy == POLICY_UNMETERED_FIRST) {
+            boolean leftMetered = snapshot.getTransportState(left).isMetered();
+            if (leftMetered != snapshot.getTransportState(right).isMetered()) {
+                return leftMetered ? 1 : -1;
+            }
+        }
+        int result = compare(latencyOf(mMonitor.getNetworkQuality(left)), latencyOf(mMonitor.getNetworkQuality(right)));
+        if (result == 0) {
+            // Equal or not measured,keep the system default network.
+            int active = snapshot.getActiveTransport();
+            result = left == active ? -1 : (right == active ? 1 : 0);
+        }
+        return result;
+    }
+
+    private static int compare(long left, long right) {
+        return left < right ? -1 : (left == right ? 0 : 1);
+    }
+
+    private static boolean isDegraded(NetworkQuality quality) {
+        return quality != null && quality.getLossRate() >= DEGRADED_LOSS_RATE;
+    }
+
+    /**
+     * The comparable latency of the quality,the loss inflates it,unmeasured is the worst.
+     */
+    private static long latencyOf(NetworkQuality quality) {
+        if (quality == null) {
+            return Long.MAX_VALUE;
+        }
+        long latency = quality.getRequestMedian() >= 0 ? quality.getRequestMedian() : quality.getConnectMedian();
+        if (latency < 0) {
+            return Long.MAX_VALUE - 1;
+        }
+        return (long) (latency * (1 + 4 * quality.getLossRate()));
+    }
+
+    /**
+     * Immutable selection decision.
+     */
+    private static final class Decision {
+        private final long mSequence;
+        private final long mProbeStamp;
+        private final int mTransport;
+        private final Network mNetwork;
+
+        Decision(long sequence, long probeStamp, int transport, Network network) {
+            mSequence = sequence;
+            mProbeStamp = probeStamp;
+            mTransport = transport;
+            mNetwork = network;
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package com.seagle.android.net.monitor;
+
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.wifi.WifiInfo;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable network state snapshot of all the transports.
+ * <p>The monitor publishes a new snapshot by one volatile write on every change,
+ * so the reader get a consistent view of the active network and every transport by one volatile read,
+ * and can detect change by comparing {@link #getSequence()}.
+ * <p>Until the monitor published the first state after start,and after stop,the state is unknown:
+ * {@link #getState()} returns {@link Transition#STATE_UNKNOWN} and {@link #isConnected()} returns false.
+ * If the warm start enabled,the state persisted by the last process is served as provisional instead,
+ * see {@link #isProvisional()},until the first live state replaces it as a whole.
+ */
+public final class NetworkSnapshot {
+
+    static final int TRANSPORT_COUNT = 3;
+
+    static final NetworkSnapshot EMPTY = new NetworkSnapshot(0, false, null, new TransportState[]{
+            TransportState.UNKNOWN, TransportState.UNKNOWN, TransportState.UNKNOWN});
+
+    private final long mSequence;
+    private final boolean mKnown;
+    private final NetworkInfo mActiveNetworkInfo;
+    private final int mActiveTransport;
+    private final TransportState[] mTransports;
+    private final long mPersistTime;
+
+    private NetworkSnapshot(long sequence, boolean known, NetworkInfo activeNetworkInfo, TransportState[] transports) {
+        this(sequence, known, activeNetworkInfo, activeNetworkInfo == null
+                ? NetworkMonitor.TRANSPORT_NONE : NetworkMonitor.toTransport(activeNetworkInfo.getType()), transports, 0);
+    }
+
+    private NetworkSnapshot(long sequence, boolean known, NetworkInfo activeNetworkInfo, int activeTransport,
+                            TransportState[] transports, long persistTime) {
+        mSequence = sequence;
+        mKnown = known;
+        mActiveNetworkInfo = activeNetworkInfo;
+        mActiveTransport = activeTransport;
+        mTransports = transports;
+        mPersistTime = persistTime;
+    }
+
+    /**
+     * Create the provisional snapshot restored from the warm start cache.
+     *
+     * @param sequence        sequence
+     * @param persistTime     the wall clock time the state was persisted
+     * @param activeTransport transport of the active network
+     * @param transports      the provisional transport states
+     * @return NetworkSnapshot
+     */
+    static NetworkSnapshot provisional(long sequence, long persistTime, int activeTransport, TransportState[] transports) {
+        return new NetworkSnapshot(sequence, true, null, activeTransport, transports, persistTime);
+    }
+
+    /**
+     * Return a new snapshot with the active network replaced.
+     * The provisional transport states are dropped.
+     *
+     * @param activeNetworkInfo active network info
+     * @return NetworkSnapshot
+     */
+    NetworkSnapshot withActiveNetworkInfo(NetworkInfo activeNetworkInfo) {
+        return new NetworkSnapshot(mSequence + 1, true, activeNetworkInfo, isProvisional() ? EMPTY.mTransports : mTransports);
+    }
+
+    /**
+     * Return a new snapshot with the state of one transport replaced.
+     * The provisional states are dropped.
+     *
+     * @param transport transport
+     * @param state     transport state
+     * @return NetworkSnapshot
+     */
+    NetworkSnapshot withTransportState(int transport, TransportState state) {
+        if (isProvisional()) {
+            return cleared().withTransportState(transport, state);
+        }
+        TransportState[] transports = mTransports.clone();
+        transports[transport] = state;
+        return new NetworkSnapshot(mSequence + 1, mKnown, mActiveNetworkInfo, transports);
+    }
+
+    /**
+     * Return a new unknown snapshot that keeps the sequence increasing.
+     *
+     * @return NetworkSnapshot
+     */
+    NetworkSnapshot cleared() {
+        return new NetworkSnapshot(mSequence + 1, false, null, EMPTY.mTransports);
+    }
+
+    /**
+     * Return the sequence number.
+     * Increased by every published change.
+     *
+     * @return sequence
+     */
+    public long getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * Return is the state of the system network known.
+     *
+     * @return known
+     */
+    public boolean isKnown() {
+        return mKnown;
+    }
+
+    /**
+     * Return is the state restored from the warm start cache and not confirmed by the platform yet.
+     * The provisional state has no NetworkInfo,WifiInfo and Network.
+     *
+     * @return provisional
+     */
+    public boolean isProvisional() {
+        return mPersistTime != 0;
+    }
+
+    /**
+     * Return the wall clock time the provisional state was persisted,0 if not provisional.
+     *
+     * @return persist time in milliseconds
+     */
+    public long getPersistTime() {
+        return mPersistTime;
+    }
+
+    /**
+     * Return the state of the system network.
+     *
+     * @return {@link Transition#STATE_UNKNOWN},{@link Transition#STATE_DISCONNECTED} or {@link Transition#STATE_CONNECTED}
+     */
+    public int getState() {
+        if (!mKnown) {
+            return Transition.STATE_UNKNOWN;
+        }
+        return isConnected() ? Transition.STATE_CONNECTED : Transition.STATE_DISCONNECTED;
+    }
+
+    /**
+     * Return is the system network connected.
+     *
+     * @return connected state
+     */
+    public boolean isConnected() {
+        if (isProvisional()) {
+            return mActiveTransport != NetworkMonitor.TRANSPORT_NONE && mTransports[mActiveTransport].isConnected();
+        }
+        return mActiveNetworkInfo != null && mActiveNetworkInfo.isConnected();
+    }
+
+    /**
+     * Return the active network info or null if not connected.
+     *
+     * @return NetworkInfo
+     */
+    public NetworkInfo getActiveNetworkInfo() {
+        return mActiveNetworkInfo;
+    }
+
+    /**
+     * Return the transport of the active network.
+     *
+     * @return transport or {@link NetworkMonitor#TRANSPORT_NONE}
+     */
+    public int getActiveTransport() {
+        return mActiveTransport;
+    }
+
+    /**
+     * Return the state of the transport.
+     *
+     * @param transport transport
+     * @return TransportState
+     * @see NetworkMonitor#TRANSPORT_WIFI
+     * @see NetworkMonitor#TRANSPORT_MOBILE
+     * @see NetworkMonitor#TRANSPORT_ETHERNET
+     */
+    public TransportState getTransportState(int transport) {
+        return mTransports[transport];
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkSnapshot{sequence=" + mSequence
+                + ", known=" + mKnown
+                + (isProvisional() ? ", provisional=" + mPersistTime : "")
+                + ", activeTransport=" + mActiveTransport
+                + ", wifi=" + mTransports[NetworkMonitor.TRANSPORT_WIFI]
+                + ", mobile=" + mTransports[NetworkMonitor.TRANSPORT_MOBILE]
+                + ", ethernet=" + mTransports[NetworkMonitor.TRANSPORT_ETHERNET] + "}";
+    }
+
+    /**
+     * Immutable state of one transport.
+     * The state is unknown while the transport is not monitored.
+     */
+    public static final class TransportState {
+
+        static final TransportState DISCONNECTED = new TransportState(null, null, null, null, null);
+
+        static final TransportState UNKNOWN = new TransportState();
+
+        private final boolean mKnown;
+        private final boolean mConnected;
+        private final Network mNetwork;
+        private final NetworkInfo mNetworkInfo;
+        private final WifiInfo mWifiInfo;
+        private final NetworkCapabilities mCapabilities;
+        private final LinkProperties mLinkProperties;
+        private final boolean mProvisional;
+        private final boolean mMetered;
+        private final boolean mValidated;
+        private final int mBandwidthKbps;
+        private final String mSSID;
+        private final String mBSSID;
+
+        private TransportState() {
+            this(null, null, null, null, null, false);
+        }
+
+        /**
+         * Create the provisional connected state restored from the warm start cache.
+         * The Network of the last process is not restored.
+         *
+         * @param metered       metered
+         * @param validated     validated
+         * @param bandwidthKbps estimated downstream bandwidth,0 if unknown
+         * @param ssid          SSID or null
+         * @param bssid         BSSID or null
+         */
+        TransportState(boolean metered, boolean validated, int bandwidthKbps, String ssid, String bssid) {
+            mKnown = true;
+            mConnected = true;
+            mNetworkInfo = null;
+            mNetwork = null;
+            mWifiInfo = null;
+            mCapabilities = null;
+            mLinkProperties = null;
+            mProvisional = true;
+            mMetered = metered;
+            mValidated = validated;
+            mBandwidthKbps = bandwidthKbps;
+            mSSID = ssid;
+            mBSSID = bssid;
+        }
+
+        TransportState(NetworkInfo networkInfo, Network network, WifiInfo wifiInfo, NetworkCapabilities capabilities,
+                       LinkProperties linkProperties) {
+            this(networkInfo, network, wifiInfo, capabilities, linkProperties, true);
+        }
+
+        private TransportState(NetworkInfo networkInfo, Network network, WifiInfo wifiInfo, NetworkCapabilities capabilities,
+                               LinkProperties linkProperties, boolean known) {
+            mKnown = known;
+            mConnected = networkInfo != null && networkInfo.isConnected();
+            mNetworkInfo = networkInfo;
+            mNetwork = network;
+            mWifiInfo = wifiInfo;
+            mCapabilities = capabilities;
+            mLinkProperties = linkProperties;
+            mProvisional = false;
+            mMetered = false;
+            mValidated = false;
+            mBandwidthKbps = 0;
+            mSSID = null;
+            mBSSID = null;
+        }
+
+        /**
+         * Return the state with the new capabilities and link properties of the same network.
+         *
+         * @param capabilities   NetworkCapabilities
+         * @param linkProperties LinkProperties
+         * @return TransportState
+         */
+        TransportState withProperties(NetworkCapabilities capabilities, LinkProperties linkProperties) {
+            return new TransportState(mNetworkInfo, mNetwork, mWifiInfo, capabilities, linkProperties, mKnown);
+        }
+
+        /**
+         * Return the fields changed between the properties of this state and the new properties.
+         *
+         * @param capabilities   new NetworkCapabilities
+         * @param linkProperties new LinkProperties
+         * @return changed fields,such as {@link NetworkEvent#FIELD_VALIDATED}
+         */
+        int diffProperties(NetworkCapabilities capabilities, LinkProperties linkProperties) {
+            int changed = 0;
+            if (mCapabilities == null || capabilities == null) {
+                if (mCapabilities != capabilities) {
+                    changed |= NetworkEvent.FIELD_METERED | NetworkEvent.FIELD_VALIDATED | NetworkEvent.FIELD_BANDWIDTH;
+                }
+            } else {
+                if (mCapabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)
+                        != capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)) {
+                    changed |= NetworkEvent.FIELD_METERED;
+                }
+                if (mCapabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)
+                        != capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)) {
+                    changed |= NetworkEvent.FIELD_VALIDATED;
+                }
+                if (mCapabilities.getLinkDownstreamBandwidthKbps() != capabilities.getLinkDownstreamBandwidthKbps()
+                        || mCapabilities.getLinkUpstreamBandwidthKbps() != capabilities.getLinkUpstreamBandwidthKbps()) {
+                    changed |= NetworkEvent.FIELD_BANDWIDTH;
+                }
+            }
+            if (mLinkProperties == null ? linkProperties != null : !mLinkProperties.equals(linkProperties)) {
+                changed |= NetworkEvent.FIELD_LINK_PROPERTIES;
+            }
+            return changed;
+        }
+
+        /**
+         * Return is the state known.
+         *
+         * @return known
+         */
+        public boolean isKnown() {
+            return mKnown;
+        }
+
+        /**
+         * Return is the state restored from the warm start cache.
+         *
+         * @return provisional
+         */
+        public boolean isProvisional() {
+            return mProvisional;
+        }
+
+        /**
+         * Return the state of the transport.
+         *
+         * @return {@link Transition#STATE_UNKNOWN},{@link Transition#STATE_DISCONNECTED} or {@link Transition#STATE_CONNECTED}
+         */
+        public int getState() {
+            if (!mKnown) {
+                return Transition.STATE_UNKNOWN;
+            }
+            return mConnected ? Transition.STATE_CONNECTED : Transition.STATE_DISCONNECTED;
+        }
+
+        /**
+         * Return is connected.
+         *
+         * @return connected state
+         */
+        public boolean isConnected() {
+            return mConnected;
+        }
+
+        /**
+         * Return network.
+         * Return null if not connected or below android LOLLIPOP version.
+         *
+         * @return Network
+         */
+        public Network getNetwork() {
+            return mNetwork;
+        }
+
+        /**
+         * Return network info or null.
+         *
+         * @return NetworkInfo
+         */
+        public NetworkInfo getNetworkInfo() {
+            return mNetworkInfo;
+        }
+
+        /**
+         * Return WiFi info.
+         * Only available for WiFi transport.
+         *
+         * @return WifiInfo
+         */
+        public WifiInfo getWifiInfo() {
+            return mWifiInfo;
+        }
+
+        /**
+         * Return network capabilities or null.
+         *
+         * @return NetworkCapabilities
+         */
+        public NetworkCapabilities getCapabilities() {
+            return mCapabilities;
+        }
+
+        /**
+         * Return link properties or null.
+         *
+         * @return LinkProperties
+         */
+        public LinkProperties getLinkProperties() {
+            return mLinkProperties;
+        }
+
+        /**
+         * Return is the network metered.
+         * Without the capabilities only the mobile network is metered.
+         *
+         * @return metered
+         */
+        public boolean isMetered() {
+            if (mCapabilities != null) {
+                return !mCapabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+            } else if (mProvisional) {
+                return mMetered;
+            }
+            return mNetworkInfo != null && NetworkMonitor.toTransport(mNetworkInfo.getType()) == NetworkMonitor.TRANSPORT_MOBILE;
+        }
+
+        /**
+         * Return is the internet access of the network validated by the system.
+         * Return false if not connected or below android LOLLIPOP version.
+         *
+         * @return validated
+         */
+        public boolean isValidated() {
+            if (mProvisional) {
+                return mValidated;
+            }
+            return mCapabilities != null && mCapabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        }
+
+        /**
+         * Return the estimated downstream bandwidth of the network.
+         *
+         * @return bandwidth in kbps,0 if unknown
+         */
+        public int getLinkDownstreamBandwidthKbps() {
+            if (mCapabilities != null) {
+                return mCapabilities.getLinkDownstreamBandwidthKbps();
+            }
+            return mBandwidthKbps;
+        }
+
+        /**
+         * Return the SSID of the WiFi network or null.
+         *
+         * @return SSID
+         */
+        public String getSSID() {
+            return mWifiInfo != null ? mWifiInfo.getSSID() : mSSID;
+        }
+
+        /**
+         * Return the BSSID of the WiFi network or null.
+         *
+         * @return BSSID
+         */
+        public String getBSSID() {
+            return mWifiInfo != null ? mWifiInfo.getBSSID() : mBSSID;
+        }
+
+        /**
+         * Return the interface name of the network or null.
+         *
+         * @return interface name,such as wlan0
+         */
+        public String getInterfaceName() {
+            return mLinkProperties == null ? null : mLinkProperties.getInterfaceName();
+        }
+
+        /**
+         * Return the DNS servers of the network,empty if unknown.
+         *
+         * @return DNS servers
+         */
+        public List<InetAddress> getDnsServers() {
+            return mLinkProperties == null ? Collections.<InetAddress>emptyList() : mLinkProperties.getDnsServers();
+        }
+
+        @Override
+        public String toString() {
+            if (!mKnown) {
+                return "{unknown}";
+            }
+            if (mProvisional) {
+                return "{connected=" + mConnected + ", provisional, ssid=" + mSSID + "}";
+            }
+            return "{connected=" + mConnected + ", network=" + mNetwork + ", networkInfo=" + mNetworkInfo + "}";
+        }
+    }
+}
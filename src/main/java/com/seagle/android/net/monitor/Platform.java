@@ -0,0 +1,125 @@
+package com.seagle.android.net.monitor;
+
+import android.content.BroadcastReceiver;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.telephony.TelephonyManager;
+
+import java.io.File;
+
+/**
+ * The platform services used by the monitor.
+ * <p>The monitor never touches {@link android.content.Context} or the connectivity service directly,
+ * so it could run on a simulated connectivity stack off device,such as the trace replay harness.
+ * {@link AndroidPlatform} is the implementation on device.
+ */
+interface Platform {
+
+    /**
+     * Return the active network info or null.
+     *
+     * @return NetworkInfo
+     */
+    NetworkInfo getActiveNetworkInfo();
+
+    /**
+     * Return the network info of the network or null.
+     *
+     * @param network Network
+     * @return NetworkInfo
+     */
+    NetworkInfo getNetworkInfo(Network network);
+
+    /**
+     * Return the capabilities of the network or null.
+     *
+     * @param network Network
+     * @return NetworkCapabilities
+     */
+    NetworkCapabilities getNetworkCapabilities(Network network);
+
+    /**
+     * Return the link properties of the network or null.
+     *
+     * @param network Network
+     * @return LinkProperties
+     */
+    LinkProperties getLinkProperties(Network network);
+
+    /**
+     * Return all the networks,since android LOLLIPOP.
+     *
+     * @return networks
+     */
+    Network[] getAllNetworks();
+
+    /**
+     * Return the network info of all the networks,below android LOLLIPOP.
+     *
+     * @return network infos,could be null
+     */
+    NetworkInfo[] getAllNetworkInfo();
+
+    /**
+     * Register the network callback,the callbacks are delivered on the handler.
+     *
+     * @param request  NetworkRequest
+     * @param callback NetworkCallback
+     * @param handler  the handler of the monitor thread
+     */
+    void registerNetworkCallback(NetworkRequest request, ConnectivityManager.NetworkCallback callback, Handler handler);
+
+    /**
+     * Register the callback of the system default network,since android N.
+     * The callbacks are delivered on the handler since android O.
+     *
+     * @param callback NetworkCallback
+     * @param handler  the handler of the monitor thread
+     */
+    void registerDefaultNetworkCallback(ConnectivityManager.NetworkCallback callback, Handler handler);
+
+    void unregisterNetworkCallback(ConnectivityManager.NetworkCallback callback);
+
+    /**
+     * Register the broadcast receiver,the broadcasts are delivered on the handler.
+     *
+     * @param receiver BroadcastReceiver
+     * @param filter   IntentFilter
+     * @param handler  the handler of the monitor thread
+     */
+    void registerReceiver(BroadcastReceiver receiver, IntentFilter filter, Handler handler);
+
+    void unregisterReceiver(BroadcastReceiver receiver);
+
+    void sendBroadcast(Intent intent);
+
+    void sendStickyBroadcast(Intent intent);
+
+    void removeStickyBroadcast(Intent intent);
+
+    /**
+     * Return the connectivity service,null if not on device.
+     *
+     * @return ConnectivityManager
+     */
+    ConnectivityManager getConnectivityManager();
+
+    WifiManager getWifiManager();
+
+    TelephonyManager getTelephonyManager();
+
+    /**
+     * Return the dir to persist the monitor files.
+     *
+     * @return files dir
+     */
+    File getFilesDir();
+}
@@ -0,0 +1,64 @@
+package com.seagle.android.net.monitor;
+
+import java.nio.charset.Charset;
+
+/**
+ * The config of the network latency probe.
+ * <p>Each probe opens a TCP connection to the endpoint over the network it measures,
+ * and if the request is not null sends it and waits the first byte of the response.
+ */
+public final class ProbeConfig {
+
+    /**
+     * Default config: probe the android connectivity check server every 30s with a 3s timeout.
+     */
+    public static final ProbeConfig DEFAULT = new ProbeConfig("connectivitycheck.gstatic.com", 80, 30000, 3000,
+            "HEAD /generate_204 HTTP/1.1\r\nHost: connectivitycheck.gstatic.com\r\nConnection: close\r\n\r\n"
+                    .getBytes(Charset.forName("US-ASCII")));
+
+    private final String mHost;
+    private final int mPort;
+    private final long mInterval;
+    private final int mTimeout;
+    private final byte[] mRequest;
+
+    /**
+     * Create probe config.
+     *
+     * @param host           endpoint host
+     * @param port           endpoint port
+     * @param intervalMillis probe interval in milliseconds
+     * @param timeoutMillis  connect and read timeout in milliseconds,a probe exceeds it is counted as lost
+     * @param request        the small request sent after connected,null to measure connect RTT only
+     */
+    public ProbeConfig(String host, int port, long intervalMillis, int timeoutMillis, byte[] request) {
+        if (host == null || port <= 0 || port > 65535 || intervalMillis <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Invalid probe config!");
+        }
+        mHost = host;
+        mPort = port;
+        mInterval = intervalMillis;
+        mTimeout = timeoutMillis;
+        mRequest = request == null ? null : request.clone();
+    }
+
+    public String getHost() {
+        return mHost;
+    }
+
+    public int getPort() {
+        return mPort;
+    }
+
+    public long getInterval() {
+        return mInterval;
+    }
+
+    public int getTimeout() {
+        return mTimeout;
+    }
+
+    byte[] getRequest() {
+        return mRequest;
+    }
+}
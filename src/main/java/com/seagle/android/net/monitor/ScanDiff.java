@@ -0,0 +1,74 @@
+package com.seagle.android.net.monitor;
+
+import android.net.wifi.ScanResult;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The incremental change of the cached WiFi scan results.
+ */
+public final class ScanDiff {
+
+    private final List<ScanResult> mAdded;
+    private final List<ScanResult> mRemoved;
+    private final List<ScanResult> mChanged;
+    private final List<ScanResult> mResults;
+
+    ScanDiff(List<ScanResult> added, List<ScanResult> removed, List<ScanResult> changed, List<ScanResult> results) {
+        mAdded = unmodifiable(added);
+        mRemoved = unmodifiable(removed);
+        mChanged = unmodifiable(changed);
+        mResults = results;
+    }
+
+    private static List<ScanResult> unmodifiable(List<ScanResult> list) {
+        return list == null ? Collections.<ScanResult>emptyList() : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Return the new access points.
+     *
+     * @return ScanResult list
+     */
+    public List<ScanResult> getAdded() {
+        return mAdded;
+    }
+
+    /**
+     * Return the access points expired from the cache.
+     *
+     * @return ScanResult list
+     */
+    public List<ScanResult> getRemoved() {
+        return mRemoved;
+    }
+
+    /**
+     * Return the access points whose RSSI changed beyond the threshold.
+     *
+     * @return ScanResult list
+     */
+    public List<ScanResult> getChanged() {
+        return mChanged;
+    }
+
+    /**
+     * Return all the cached access points after this change.
+     *
+     * @return ScanResult list
+     */
+    public List<ScanResult> getResults() {
+        return mResults;
+    }
+
+    boolean isEmpty() {
+        return mAdded.isEmpty() && mRemoved.isEmpty() && mChanged.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ScanDiff{added=" + mAdded.size() + ", removed=" + mRemoved.size()
+                + ", changed=" + mChanged.size() + ", total=" + mResults.size() + "}";
+    }
+}
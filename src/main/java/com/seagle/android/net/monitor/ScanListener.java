@@ -0,0 +1,16 @@
+package com.seagle.android.net.monitor;
+
+/**
+ * WiFi scan result listener.
+ * <p>Register by {@link WiFiNetworkMonitor#addScanListener(ScanListener, java.util.concurrent.Executor)}.
+ */
+public interface ScanListener {
+
+    /**
+     * The cached scan results changed.
+     * Only called if any access point added,removed or its RSSI changed beyond the threshold.
+     *
+     * @param diff ScanDiff
+     */
+    void onScanResultsChanged(ScanDiff diff);
+}
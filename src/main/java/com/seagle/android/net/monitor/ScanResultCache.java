@@ -0,0 +1,140 @@
+package com.seagle.android.net.monitor;
+
+import android.net.wifi.ScanResult;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BSSID -> ScanResult cache of {@link WiFiScanner}.
+ * <p>Merge the results of every scan,expire the entries not seen for the TTL and return the diff.
+ * The time is passed in by the caller,on the elapsed realtime clock.
+ * <p>Not thread safe,called on the monitor thread.
+ */
+class ScanResultCache {
+
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    private List<ScanResult> mResults = Collections.emptyList();
+    private long mNextExpireTime = Long.MAX_VALUE;
+
+    /**
+     * Merge the scan results into the cache and expire the old entries.
+     *
+     * @param results       scan results,null to expire only
+     * @param now           current elapsed realtime
+     * @param rssiThreshold min RSSI change to report an access point changed
+     * @param ttl           time to keep an access point not seen
+     * @return the diff,null if nothing changed
+     */
+    ScanDiff merge(List<ScanResult> results, long now, int rssiThreshold, long ttl) {
+        List<ScanResult> added = null;
+        List<ScanResult> removed = null;
+        List<ScanResult> changed = null;
+        if (results != null) {
+            for (ScanResult result : results) {
+                if (result.BSSID == null) {
+                    continue;
+                }
+                long seenAt = getSeenTime(result, now);
+                if (seenAt + ttl <= now) {
+                    // A stale cached result,it would be added and expired by the same merge.
+                    continue;
+                }
+                Entry entry = mEntries.get(result.BSSID);
+                if (entry == null) {
+                    mEntries.put(result.BSSID, new Entry(result, seenAt));
+                    added = add(added, result);
+                } else if (seenAt >= entry.mSeenAt) {
+                    entry.mSeenAt = seenAt;
+                    if (Math.abs(result.level - entry.mResult.level) >= rssiThreshold) {
+                        entry.mResult = result;
+                        changed = add(changed, result);
+                    }
+                }
+            }
+        }
+        mNextExpireTime = Long.MAX_VALUE;
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            long expireAt = entry.mSeenAt + ttl;
+            if (expireAt <= now) {
+                iterator.remove();
+                removed = add(removed, entry.mResult);
+            } else if (expireAt < mNextExpireTime) {
+                mNextExpireTime = expireAt;
+            }
+        }
+        if (added == null && removed == null && changed == null) {
+            return null;
+        }
+        List<ScanResult> snapshot = new ArrayList<>(mEntries.size());
+        for (Entry entry : mEntries.values()) {
+            snapshot.add(entry.mResult);
+        }
+        mResults = Collections.unmodifiableList(snapshot);
+        return new ScanDiff(added, removed, changed, mResults);
+    }
+
+    /**
+     * Return all the cached access points.
+     *
+     * @return unmodifiable ScanResult list
+     */
+    List<ScanResult> getResults() {
+        return mResults;
+    }
+
+    /**
+     * Return the time the next entry expires,Long.MAX_VALUE if the cache is empty.
+     *
+     * @return elapsed realtime
+     */
+    long getNextExpireTime() {
+        return mNextExpireTime;
+    }
+
+    void clear() {
+        mEntries.clear();
+        mResults = Collections.emptyList();
+        mNextExpireTime = Long.MAX_VALUE;
+    }
+
+    private static List<ScanResult> add(List<ScanResult> list, ScanResult result) {
+        if (list == null) {
+            list = new ArrayList<>();
+        }
+        list.add(result);
+        return list;
+    }
+
+    /**
+     * Return the time the access point was last seen,on the elapsed realtime clock.
+     */
+    private static long getSeenTime(ScanResult result, long now) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && result.timestamp > 0) {
+            // Microseconds since boot.
+            return Math.min(result.timestamp / 1000, now);
+        }
+        return now;
+    }
+
+    /**
+     * Cache entry.The result is replaced only if the RSSI changed beyond the threshold,
+     * so the slow drift is accumulated until reported.
+     */
+    private static class Entry {
+        private ScanResult mResult;
+        private long mSeenAt;
+
+        Entry(ScanResult result, long seenAt) {
+            mResult = result;
+            mSeenAt = seenAt;
+        }
+    }
+}
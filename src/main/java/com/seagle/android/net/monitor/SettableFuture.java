@@ -0,0 +1,166 @@
+package com.seagle.android.net.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future completed by the library.
+ * <p>The listeners are called on the thread which completed the future,
+ * or immediately if the future already completed.Listeners are not called if the future cancelled,
+ * the cancel listeners are called instead on the thread which cancelled it.
+ */
+class SettableFuture<V> implements Future<V> {
+
+    /**
+     * Cancel action of the pending operation.
+     */
+    interface Canceller {
+        void cancel();
+    }
+
+    /**
+     * Completion listener.
+     */
+    interface Listener<V> {
+        void onComplete(V result);
+    }
+
+    /**
+     * Cancellation listener.
+     */
+    interface CancelListener {
+        void onCancelled();
+    }
+
+    private final CountDownLatch mLatch = new CountDownLatch(1);
+    private final List<Listener<V>> mListeners = new ArrayList<>();
+    private final List<CancelListener> mCancelListeners = new ArrayList<>();
+    private Canceller mCanceller;
+    private boolean mDone;
+    private boolean mCancelled;
+    private V mResult;
+
+    synchronized void setCanceller(Canceller canceller) {
+        mCanceller = canceller;
+    }
+
+    void addListener(Listener<V> listener) {
+        V result;
+        synchronized (this) {
+            if (!mDone) {
+                mListeners.add(listener);
+                return;
+            }
+            if (mCancelled) {
+                return;
+            }
+            result = mResult;
+        }
+        listener.onComplete(result);
+    }
+
+    /**
+     * Add the listener called when the future cancelled,
+     * called immediately if already cancelled,never called if completed.
+     *
+     * @param listener CancelListener
+     */
+    void addCancelListener(CancelListener listener) {
+        synchronized (this) {
+            if (!mDone) {
+                mCancelListeners.add(listener);
+                return;
+            }
+            if (!mCancelled) {
+                return;
+            }
+        }
+        listener.onCancelled();
+    }
+
+    /**
+     * Set the result.
+     *
+     * @param result result
+     * @return false if already done
+     */
+    boolean complete(V result) {
+        List<Listener<V>> listeners;
+        synchronized (this) {
+            if (mDone) {
+                return false;
+            }
+            mDone = true;
+            mResult = result;
+            listeners = new ArrayList<>(mListeners);
+            mListeners.clear();
+            mCancelListeners.clear();
+        }
+        mLatch.countDown();
+        for (Listener<V> listener : listeners) {
+            listener.onComplete(result);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        Canceller canceller;
+        List<CancelListener> listeners;
+        synchronized (this) {
+            if (mDone) {
+                return false;
+            }
+            mDone = true;
+            mCancelled = true;
+            mListeners.clear();
+            listeners = new ArrayList<>(mCancelListeners);
+            mCancelListeners.clear();
+            canceller = mCanceller;
+        }
+        mLatch.countDown();
+        if (canceller != null) {
+            canceller.cancel();
+        }
+        for (CancelListener listener : listeners) {
+            listener.onCancelled();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mDone;
+    }
+
+    @Override
+    public V get() throws InterruptedException {
+        mLatch.await();
+        return getResult();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (!mLatch.await(timeout, unit)) {
+            throw new TimeoutException("Operation not finished!");
+        }
+        return getResult();
+    }
+
+    private synchronized V getResult() {
+        if (mCancelled) {
+            throw new CancellationException("Operation cancelled!");
+        }
+        return mResult;
+    }
+}
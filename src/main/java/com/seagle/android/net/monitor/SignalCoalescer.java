@@ -0,0 +1,134 @@
+package com.seagle.android.net.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Platform signal coalescer.
+ * <p>The first raw signal opens a window,the signals arrive inside the window are absorbed,
+ * and the target is evaluated once when the window closes,so a burst such as wifi->none->wifi
+ * collapses into the net transition.The window is bounded: later signals never extend it.
+ * If the window is 0 the target is evaluated immediately on the signal thread.
+ */
+class SignalCoalescer {
+
+    /**
+     * Coalesce target.
+     */
+    interface Target {
+        /**
+         * Evaluate the net state after the window closes.
+         *
+         * @return true if a transition was notified
+         */
+        boolean evaluate();
+    }
+
+    /**
+     * Schedules the end of the window,implemented by the {@link EventLoop}.
+     */
+    interface Scheduler {
+        void postDelayed(Runnable task, long delayMillis);
+
+        void remove(Runnable task);
+    }
+
+    private final Scheduler mScheduler;
+    private final Target mTarget;
+    private final MonitorMetrics mMetrics;
+    private long mWindowStart;
+    private volatile long mWindowMillis;
+    private boolean mScheduled;
+    private final AtomicLong mRawCount = new AtomicLong();
+    private final AtomicLong mEmittedCount = new AtomicLong();
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long windowStart;
+            synchronized (SignalCoalescer.this) {
+                mScheduled = false;
+                windowStart = mWindowStart;
+            }
+            evaluate(windowStart);
+        }
+    };
+
+    SignalCoalescer(Scheduler scheduler, long windowMillis, MonitorMetrics metrics, Target target) {
+        mScheduler = scheduler;
+        mWindowMillis = windowMillis;
+        mMetrics = metrics;
+        mTarget = target;
+    }
+
+    void setWindow(long windowMillis) {
+        mWindowMillis = windowMillis;
+    }
+
+    long getWindow() {
+        return mWindowMillis;
+    }
+
+    /**
+     * Receive one raw platform signal.
+     */
+    void signal() {
+        signal(mMetrics.now());
+    }
+
+    /**
+     * Receive one raw platform signal.
+     *
+     * @param signalTime the time the signal arrived by {@link MonitorMetrics#now()}
+     */
+    void signal(long signalTime) {
+        mRawCount.incrementAndGet();
+        long window = mWindowMillis;
+        if (window <= 0) {
+            evaluate(signalTime);
+            return;
+        }
+        synchronized (this) {
+            if (mScheduled) {
+                return;
+            }
+            mScheduled = true;
+            mWindowStart = signalTime;
+        }
+        mScheduler.postDelayed(mFlushRunnable, window);
+    }
+
+    /**
+     * Drop the pending window.
+     */
+    void cancel() {
+        mScheduler.remove(mFlushRunnable);
+        synchronized (this) {
+            mScheduled = false;
+        }
+    }
+
+    /**
+     * Return the count of raw signals received.
+     *
+     * @return raw signal count
+     */
+    long getRawCount() {
+        return mRawCount.get();
+    }
+
+    /**
+     * Return the count of raw signals that did not produce a notification.
+     *
+     * @return absorbed signal count
+     */
+    long getAbsorbedCount() {
+        return mRawCount.get() - mEmittedCount.get();
+    }
+
+    private void evaluate(long signalTime) {
+        if (mTarget.evaluate()) {
+            mEmittedCount.incrementAndGet();
+            mMetrics.recordLatency(MetricsSnapshot.HISTOGRAM_SIGNAL_TO_DISPATCH, signalTime);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.seagle.android.net.monitor;
+
+import android.net.Network;
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.net.SocketFactory;
+
+/**
+ * The socket factory of a transport or a {@link NetworkSelector} which tracks the sockets it created.
+ * <p>Every socket is created over the primary network of the transport,or the network selected,
+ * and registered against that network,when the network is lost or no longer the one to use the open sockets of it
+ * are closed by the monitor,so the blocked reads and writes fail at once instead of waiting the TCP timeout,
+ * and the caller reconnects over the new network.Below android LOLLIPOP,or before the network of the transport
+ * reported by the callback,the sockets are created over the default network and closed when the transport disconnected.
+ * <p>The sockets are referenced weakly,a socket neither closed nor referenced is dropped by the GC.
+ * The transport monitors keep running while a tracked socket is open,the sockets closed by the caller are purged
+ * on the release check of the monitors and by {@link #getOpenSocketCount()}.
+ */
+public final class TrackedSocketFactory extends SocketFactory {
+
+    private static final String TAG = "TrackedSocketFactory";
+
+    /**
+     * The owner deciding the network to create the sockets over.
+     */
+    interface Route {
+
+        /**
+         * Return the transport of the network.
+         *
+         * @return transport or {@link NetworkMonitor#TRANSPORT_NONE}
+         */
+        int getTransport();
+
+        /**
+         * Return the network to create the socket over.
+         *
+         * @return Network,null for the default network
+         * @throws SocketException no network connected
+         */
+        Network getConnectedNetwork() throws SocketException;
+
+        /**
+         * Return is the network still the one to create the sockets over.
+         *
+         * @param network Network,null for the default network
+         * @return current
+         */
+        boolean isCurrent(Network network);
+
+        /**
+         * The last tracked socket closed,stop the monitors nobody uses.
+         */
+        void releaseIfUnused();
+    }
+
+    private final Route mRoute;
+    /**
+     * The open sockets of every network,the null key for the sockets of the default network,guarded by this factory.
+     */
+    private final Map<Network, Set<Socket>> mSockets = new HashMap<>();
+
+    TrackedSocketFactory(Route route) {
+        mRoute = route;
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        Network network = mRoute.getConnectedNetwork();
+        return track(network, getDelegate(network).createSocket());
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Network network = mRoute.getConnectedNetwork();
+        return track(network, getDelegate(network).createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        Network network = mRoute.getConnectedNetwork();
+        return track(network, getDelegate(network).createSocket(host, port, localHost, localPort));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        Network network = mRoute.getConnectedNetwork();
+        return track(network, getDelegate(network).createSocket(host, port));
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        Network network = mRoute.getConnectedNetwork();
+        return track(network, getDelegate(network).createSocket(address, port, localAddress, localPort));
+    }
+
+    /**
+     * Return the transport of this factory,the transport selected for the factory of a {@link NetworkSelector}.
+     *
+     * @return transport
+     */
+    public int getTransport() {
+        return mRoute.getTransport();
+    }
+
+    /**
+     * Return the count of the tracked sockets not closed yet.
+     *
+     * @return open socket count
+     */
+    public int getOpenSocketCount() {
+        int count = 0;
+        boolean emptied;
+        synchronized (this) {
+            emptied = purgeClosedSockets();
+            for (Set<Socket> sockets : mSockets.values()) {
+                count += sockets.size();
+            }
+        }
+        if (emptied) {
+            mRoute.releaseIfUnused();
+        }
+        return count;
+    }
+
+    /**
+     * Return is there any tracked socket not closed yet.
+     * Called by the release check,so the purge never triggers another check.
+     *
+     * @return has open sockets
+     */
+    synchronized boolean hasOpenSockets() {
+        purgeClosedSockets();
+        return !mSockets.isEmpty();
+    }
+
+    /**
+     * Close the open sockets of the network.
+     * Called on the monitor thread after the new state of the transport published,closing a plain socket never blocks.
+     *
+     * @param network the network lost or replaced,null for the default network
+     */
+    void closeSockets(Network network) {
+        Set<Socket> sockets;
+        boolean emptied;
+        synchronized (this) {
+            sockets = mSockets.remove(network);
+            emptied = sockets != null && mSockets.isEmpty();
+        }
+        if (sockets == null) {
+            return;
+        }
+        closeAll(sockets, network);
+        if (emptied) {
+            mRoute.releaseIfUnused();
+        }
+    }
+
+    /**
+     * Close the open sockets of every network except the network.
+     * Called on the monitor thread.
+     *
+     * @param network the network to keep,null for the default network
+     */
+    void closeOtherSockets(Network network) {
+        Map<Network, Set<Socket>> others;
+        boolean emptied;
+        synchronized (this) {
+            others = new HashMap<>(mSockets);
+            others.remove(network);
+            mSockets.keySet().removeAll(others.keySet());
+            emptied = !others.isEmpty() && mSockets.isEmpty();
+        }
+        for (Map.Entry<Network, Set<Socket>> entry : others.entrySet()) {
+            closeAll(entry.getValue(), entry.getKey());
+        }
+        if (emptied) {
+            mRoute.releaseIfUnused();
+        }
+    }
+
+    /**
+     * Close the open sockets of every network.
+     * Called on the monitor thread.
+     */
+    void closeAllSockets() {
+        Map<Network, Set<Socket>> all;
+        synchronized (this) {
+            if (mSockets.isEmpty()) {
+                return;
+            }
+            all = new HashMap<>(mSockets);
+            mSockets.clear();
+        }
+        for (Map.Entry<Network, Set<Socket>> entry : all.entrySet()) {
+            closeAll(entry.getValue(), entry.getKey());
+        }
+        mRoute.releaseIfUnused();
+    }
+
+    /**
+     * Register the socket created or bound elsewhere against the network,
+     * close it if the network is no longer the one to use.
+     *
+     * @param network Network,null for the default network
+     * @param socket  Socket
+     * @return the socket
+     * @throws IOException the network is no longer the one to use
+     */
+    Socket track(Network network, Socket socket) throws IOException {
+        synchronized (this) {
+            Set<Socket> sockets = mSockets.get(network);
+            if (sockets == null) {
+                sockets = Collections.newSetFromMap(new WeakHashMap<Socket, Boolean>());
+                mSockets.put(network, sockets);
+            }
+            sockets.add(socket);
+        }
+        // The network could be replaced while creating,the monitor closed the sockets registered before that.
+        if (!mRoute.isCurrent(network)) {
+            closeSockets(network);
+            throw new SocketException("Network lost!");
+        }
+        return socket;
+    }
+
+    private static SocketFactory getDelegate(Network network) {
+        return network == null ? SocketFactory.getDefault() : network.getSocketFactory();
+    }
+
+    private static void closeAll(Set<Socket> sockets, Network network) {
+        List<Socket> open = new ArrayList<>(sockets);
+        for (Socket socket : open) {
+            closeQuietly(socket);
+        }
+        Log.i(TAG, "Closed " + open.size() + " sockets of network " + network);
+    }
+
+    /**
+     * Drop the sockets closed by the caller.
+     *
+     * @return true if the purge left no socket
+     */
+    private boolean purgeClosedSockets() {
+        if (mSockets.isEmpty()) {
+            return false;
+        }
+        Iterator<Set<Socket>> iterator = mSockets.values().iterator();
+        while (iterator.hasNext()) {
+            Set<Socket> sockets = iterator.next();
+            Iterator<Socket> socketIterator = sockets.iterator();
+            while (socketIterator.hasNext()) {
+                if (socketIterator.next().isClosed()) {
+                    socketIterator.remove();
+                }
+            }
+            if (sockets.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        return mSockets.isEmpty();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.seagle.android.net.monitor;
+
+/**
+ * One recorded state transition of a transport.
+ */
+public final class Transition {
+
+    /**
+     * State unknown,such as monitoring stopped.
+     */
+    public static final int STATE_UNKNOWN = 0;
+
+    /**
+     * State disconnected.
+     */
+    public static final int STATE_DISCONNECTED = 1;
+
+    /**
+     * State connected.
+     */
+    public static final int STATE_CONNECTED = 2;
+
+    /**
+     * Reason: initial state when monitoring started.
+     */
+    public static final int REASON_INIT = 1;
+
+    /**
+     * Reason: network callback.
+     */
+    public static final int REASON_CALLBACK = 2;
+
+    /**
+     * Reason: connectivity broadcast,below android LOLLIPOP version.
+     */
+    public static final int REASON_BROADCAST = 3;
+
+    /**
+     * Reason: monitoring stopped.
+     */
+    public static final int REASON_STOP = 4;
+
+    private final long mTime;
+    private final int mTransport;
+    private final int mOldState;
+    private final int mNewState;
+    private final int mReason;
+
+    Transition(long time, int transport, int oldState, int newState, int reason) {
+        mTime = time;
+        mTransport = transport;
+        mOldState = oldState;
+        mNewState = newState;
+        mReason = reason;
+    }
+
+    /**
+     * Return the time of the transition,in elapsed realtime.
+     *
+     * @return time
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    public int getTransport() {
+        return mTransport;
+    }
+
+    public int getOldState() {
+        return mOldState;
+    }
+
+    public int getNewState() {
+        return mNewState;
+    }
+
+    public int getReason() {
+        return mReason;
+    }
+
+    @Override
+    public String toString() {
+        return "Transition{time=" + mTime + ", transport=" + mTransport + ", " + mOldState + "->" + mNewState
+                + ", reason=" + mReason + "}";
+    }
+}
@@ -0,0 +1,166 @@
+package com.seagle.android.net.monitor;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded transition history of all the transports.
+ * <p>The transitions are kept in primitive ring buffers,so recording does not allocate,
+ * the oldest transitions are overwritten when full.
+ * Recorded on the monitor thread,queried on any thread.
+ */
+class TransitionHistory {
+
+    /**
+     * The count of transitions kept.
+     */
+    static final int CAPACITY = 1024;
+
+    private final long[] mTimes = new long[CAPACITY];
+    private final byte[] mTransports = new byte[CAPACITY];
+    private final byte[] mOldStates = new byte[CAPACITY];
+    private final byte[] mNewStates = new byte[CAPACITY];
+    private final byte[] mReasons = new byte[CAPACITY];
+    private final int[] mStates = new int[NetworkSnapshot.TRANSPORT_COUNT];
+    private int mNext;
+    private int mCount;
+
+    /**
+     * Record the state of the transport,ignored if the state not changed.
+     *
+     * @param transport transport
+     * @param state     new state
+     * @param reason    reason
+     */
+    void record(int transport, int state, int reason) {
+        record(transport, state, reason, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Record the state of the transport at the time.
+     *
+     * @param transport transport
+     * @param state     new state
+     * @param reason    reason
+     * @param time      elapsed realtime of the transition
+     */
+    synchronized void record(int transport, int state, int reason, long time) {
+        int oldState = mStates[transport];
+        if (oldState == state) {
+            return;
+        }
+        mStates[transport] = state;
+        mTimes[mNext] = time;
+        mTransports[mNext] = (byte) transport;
+        mOldStates[mNext] = (byte) oldState;
+        mNewStates[mNext] = (byte) state;
+        mReasons[mNext] = (byte) reason;
+        mNext = (mNext + 1) % CAPACITY;
+        if (mCount < CAPACITY) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Return the transitions of the transport in the window,oldest first.
+     *
+     * @param transport    transport,{@link NetworkMonitor#TRANSPORT_NONE} for all the transports
+     * @param windowMillis window
+     * @return transitions
+     */
+    List<Transition> query(int transport, long windowMillis) {
+        return query(transport, windowMillis, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Return the transitions of the transport in the window ending at the time.
+     *
+     * @param transport    transport,{@link NetworkMonitor#TRANSPORT_NONE} for all the transports
+     * @param windowMillis window
+     * @param now          elapsed realtime of the window end
+     * @return transitions
+     */
+    synchronized List<Transition> query(int transport, long windowMillis, long now) {
+        long since = now - windowMillis;
+        List<Transition> transitions = new ArrayList<>();
+        for (int i = 0; i < mCount; i++) {
+            int index = indexOf(i);
+            if (mTimes[index] >= since && (transport == NetworkMonitor.TRANSPORT_NONE || mTransports[index] == transport)) {
+                transitions.add(new Transition(mTimes[index], mTransports[index], mOldStates[index],
+                        mNewStates[index], mReasons[index]));
+            }
+        }
+        return transitions;
+    }
+
+    /**
+     * Compute the availability of the transport in the window.
+     *
+     * @param transport    transport
+     * @param windowMillis window
+     * @return TransportAvailability
+     */
+    TransportAvailability getAvailability(int transport, long windowMillis) {
+        return getAvailability(transport, windowMillis, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Compute the availability of the transport in the window ending at the time.
+     *
+     * @param transport    transport
+     * @param windowMillis window
+     * @param now          elapsed realtime of the window end
+     * @return TransportAvailability
+     */
+    synchronized TransportAvailability getAvailability(int transport, long windowMillis, long now) {
+        long since = now - windowMillis;
+        long[] durations = new long[Transition.STATE_CONNECTED + 1];
+        long[] outages = new long[mCount];
+        int outageCount = 0;
+        int disconnects = 0;
+        int state = Transition.STATE_UNKNOWN;
+        long stateSince = since;
+        long outageStart = -1;
+        for (int i = 0; i < mCount; i++) {
+            int index = indexOf(i);
+            if (mTransports[index] != transport) {
+                continue;
+            }
+            long time = mTimes[index];
+            int newState = mNewStates[index];
+            if (time < since) {
+                // The state at the beginning of the window.
+                state = newState;
+                continue;
+            }
+            durations[state] += time - stateSince;
+            if (outageStart >= 0 && newState != Transition.STATE_DISCONNECTED) {
+                if (newState == Transition.STATE_CONNECTED) {
+                    outages[outageCount++] = time - outageStart;
+                }
+                outageStart = -1;
+            }
+            if (state == Transition.STATE_CONNECTED && newState == Transition.STATE_DISCONNECTED) {
+                disconnects++;
+                outageStart = time;
+            }
+            state = newState;
+            stateSince = time;
+        }
+        durations[state] += now - stateSince;
+        long[] sortedOutages = Arrays.copyOf(outages, outageCount);
+        Arrays.sort(sortedOutages);
+        return new TransportAvailability(transport, durations[Transition.STATE_CONNECTED],
+                durations[Transition.STATE_DISCONNECTED], disconnects, sortedOutages);
+    }
+
+    /**
+     * Return the buffer index of the i-th oldest transition.
+     */
+    private int indexOf(int i) {
+        return (mNext - mCount + i + CAPACITY) % CAPACITY;
+    }
+}
@@ -0,0 +1,106 @@
+package com.seagle.android.net.monitor;
+
+/**
+ * The availability statistics of a transport over a time window.
+ * <p>Only the time the state is known is counted,the time monitoring stopped is excluded.
+ * An outage is a disconnected period following a connected period.
+ */
+public final class TransportAvailability {
+
+    private final int mTransport;
+    private final long mConnectedMillis;
+    private final long mDisconnectedMillis;
+    private final int mDisconnectCount;
+    private final long[] mOutages;
+
+    TransportAvailability(int transport, long connectedMillis, long disconnectedMillis, int disconnectCount, long[] sortedOutages) {
+        mTransport = transport;
+        mConnectedMillis = connectedMillis;
+        mDisconnectedMillis = disconnectedMillis;
+        mDisconnectCount = disconnectCount;
+        mOutages = sortedOutages;
+    }
+
+    public int getTransport() {
+        return mTransport;
+    }
+
+    /**
+     * Return the connected time in the window.
+     *
+     * @return milliseconds
+     */
+    public long getConnectedMillis() {
+        return mConnectedMillis;
+    }
+
+    /**
+     * Return the disconnected time in the window.
+     *
+     * @return milliseconds
+     */
+    public long getDisconnectedMillis() {
+        return mDisconnectedMillis;
+    }
+
+    /**
+     * Return the count of disconnects in the window.
+     *
+     * @return disconnect count
+     */
+    public int getDisconnectCount() {
+        return mDisconnectCount;
+    }
+
+    /**
+     * Return the uptime percentage of the known time.
+     *
+     * @return uptime percentage 0~100,-1 if the state is never known
+     */
+    public float getUptimePercentage() {
+        long known = mConnectedMillis + mDisconnectedMillis;
+        return known == 0 ? -1 : mConnectedMillis * 100f / known;
+    }
+
+    /**
+     * Return the mean connected time between two disconnects.
+     *
+     * @return milliseconds,-1 if never disconnected
+     */
+    public long getMeanTimeBetweenDisconnects() {
+        return mDisconnectCount == 0 ? -1 : mConnectedMillis / mDisconnectCount;
+    }
+
+    /**
+     * Return the count of finished outages in the window.
+     *
+     * @return outage count
+     */
+    public int getOutageCount() {
+        return mOutages.length;
+    }
+
+    /**
+     * Return the percentile of the outage duration.
+     *
+     * @param percent percentile,1~100
+     * @return milliseconds,-1 if no outage
+     */
+    public long getOutagePercentile(int percent) {
+        if (percent <= 0 || percent > 100) {
+            throw new IllegalArgumentException("Invalid percentile: " + percent);
+        }
+        if (mOutages.length == 0) {
+            return -1;
+        }
+        int index = (mOutages.length * percent + 99) / 100 - 1;
+        return mOutages[Math.max(0, index)];
+    }
+
+    @Override
+    public String toString() {
+        return "TransportAvailability{transport=" + mTransport + ", uptime=" + getUptimePercentage() + "%"
+                + ", disconnects=" + mDisconnectCount + ", mtbd=" + getMeanTimeBetweenDisconnects() + "ms"
+                + ", outageP50=" + (mOutages.length == 0 ? -1 : getOutagePercentile(50)) + "ms}";
+    }
+}
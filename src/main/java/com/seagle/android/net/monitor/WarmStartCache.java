@@ -0,0 +1,322 @@
+package com.seagle.android.net.monitor;
+
+import android.net.Network;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * The warm start cache of the network state.
+ * <p>The last snapshot and the probed qualities are persisted into a small memory-mapped file on every change,
+ * so the next process could serve them as provisional before the platform answered.
+ * The file has two slots written alternately,each with its sequence and CRC32,
+ * a write only touches the older slot and the reader takes the newest slot with a valid CRC,
+ * so a crash during the write leaves the previous state readable.
+ * The mapped pages belong to the system page cache,a process crash loses nothing written.
+ * <p>The Network of the last process is never restored,its handle could be reused by another network
+ * after the network lost or the device rebooted.The handle is only kept to tell whether a confirmed network
+ * is the one the restored quality was probed on,see {@link #getQuality(int, Network)}.
+ * <p>Written on the monitor thread,loaded once on start.
+ */
+class WarmStartCache {
+
+    private static final String TAG = "WarmStartCache";
+
+    private static final int FILE_MAGIC = 0x4e4d5753;
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int SLOT_SIZE = 1024;
+    private static final int SLOT_HEADER_SIZE = 16;
+    private static final int FILE_SIZE = HEADER_SIZE + SLOT_SIZE * 2;
+    private static final int MAX_STRING_BYTES = 64;
+
+    private static final int FLAG_METERED = 1;
+    private static final int FLAG_VALIDATED = 1 << 1;
+    private static final int FLAG_QUALITY = 1 << 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mFile;
+    private final byte[] mScratch = new byte[SLOT_SIZE - SLOT_HEADER_SIZE];
+    private final CRC32 mCrc = new CRC32();
+    private MappedByteBuffer mBuffer;
+    private long mSequence;
+    private NetworkQuality[] mQualities = new NetworkQuality[NetworkSnapshot.TRANSPORT_COUNT];
+    private long[] mNetworkHandles = new long[NetworkSnapshot.TRANSPORT_COUNT];
+
+    WarmStartCache(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Map the file and restore the newest valid state.
+     *
+     * @param sequence the sequence of the restored snapshot
+     * @return the provisional snapshot,null if nothing persisted
+     */
+    synchronized NetworkSnapshot load(long sequence) {
+        if (!map()) {
+            return null;
+        }
+        int slot = -1;
+        long newest = 0;
+        for (int i = 0; i < 2; i++) {
+            long slotSequence = readSlot(i);
+            if (slotSequence > newest) {
+                newest = slotSequence;
+                slot = i;
+            }
+        }
+        mSequence = newest;
+        if (slot < 0) {
+            return null;
+        }
+        readSlot(slot);
+        try {
+            return decode(ByteBuffer.wrap(mScratch), sequence);
+        } catch (BufferUnderflowException ex) {
+            Log.w(TAG, "Discard broken warm start state.");
+            return null;
+        }
+    }
+
+    /**
+     * Return the quality restored,null if not probed in the last process.
+     *
+     * @param transport transport
+     * @return NetworkQuality
+     */
+    synchronized NetworkQuality getQuality(int transport) {
+        return mQualities[transport];
+    }
+
+    /**
+     * Return the quality restored if it was probed on the network,null otherwise.
+     * The handles persisted before the device booted are dropped on load.
+     *
+     * @param transport transport
+     * @param network   the confirmed network of the transport
+     * @return NetworkQuality
+     */
+    synchronized NetworkQuality getQuality(int transport, Network network) {
+        long handle = mNetworkHandles[transport];
+        return handle != 0 && handle == getNetworkHandle(network) ? mQualities[transport] : null;
+    }
+
+    /**
+     * Persist the snapshot and the qualities into the older slot.
+     *
+     * @param snapshot  the live snapshot
+     * @param qualities the probed qualities of the transports,null element if not probed
+     */
+    synchronized void persist(NetworkSnapshot snapshot, NetworkQuality[] qualities) {
+        if (snapshot.isProvisional() || !snapshot.isKnown() || !map()) {
+            return;
+        }
+        ByteBuffer payload = ByteBuffer.wrap(mScratch);
+        encode(payload, snapshot, qualities);
+        int length = payload.position();
+        mCrc.reset();
+        mCrc.update(mScratch, 0, length);
+        long sequence = mSequence + 1;
+        int offset = HEADER_SIZE + (int) (sequence % 2) * SLOT_SIZE;
+        // Invalidate the slot first,so a torn write is never taken as the newest.
+        mBuffer.putLong(offset, 0);
+        mBuffer.position(offset + SLOT_HEADER_SIZE);
+        mBuffer.put(mScratch, 0, length);
+        mBuffer.putInt(offset + 8, length);
+        mBuffer.putInt(offset + 12, (int) mCrc.getValue());
+        mBuffer.putLong(offset, sequence);
+        mSequence = sequence;
+    }
+
+    private boolean map() {
+        if (mBuffer != null) {
+            return true;
+        }
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "rw");
+            boolean created = file.length() != FILE_SIZE;
+            if (created) {
+                file.setLength(0);
+                file.setLength(FILE_SIZE);
+            }
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            if (created || buffer.getInt(0) != FILE_MAGIC || buffer.getInt(4) != FILE_VERSION) {
+                for (int i = 0; i < FILE_SIZE; i += 8) {
+                    buffer.putLong(i, 0);
+                }
+                buffer.putInt(0, FILE_MAGIC);
+                buffer.putInt(4, FILE_VERSION);
+            }
+            mBuffer = buffer;
+            return true;
+        } catch (IOException ex) {
+            Log.w(TAG, "Map warm start file failed!", ex);
+            return false;
+        } finally {
+            // The mapping stays valid after the channel closed.
+            closeQuietly(file);
+        }
+    }
+
+    /**
+     * Copy the payload of the slot into the scratch.
+     *
+     * @return the sequence of the slot,0 if empty or broken
+     */
+    private long readSlot(int slot) {
+        int offset = HEADER_SIZE + slot * SLOT_SIZE;
+        long sequence = mBuffer.getLong(offset);
+        int length = mBuffer.getInt(offset + 8);
+        if (sequence <= 0 || length <= 0 || length > mScratch.length) {
+            return 0;
+        }
+        mBuffer.position(offset + SLOT_HEADER_SIZE);
+        mBuffer.get(mScratch, 0, length);
+        mCrc.reset();
+        mCrc.update(mScratch, 0, length);
+        return (int) mCrc.getValue() == mBuffer.getInt(offset + 12) ? sequence : 0;
+    }
+
+    private static void encode(ByteBuffer payload, NetworkSnapshot snapshot, NetworkQuality[] qualities) {
+        long now = System.currentTimeMillis();
+        payload.putLong(now);
+        payload.put((byte) snapshot.getActiveTransport());
+        for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+            NetworkSnapshot.TransportState state = snapshot.getTransportState(transport);
+            if (!state.isKnown() && transport == snapshot.getActiveTransport() && snapshot.isConnected()) {
+                // The transport monitor is not running,the active network is known anyway.
+                state = new NetworkSnapshot.TransportState(snapshot.getActiveNetworkInfo(), null, null, null, null);
+            }
+            NetworkQuality quality = qualities[transport];
+            payload.put((byte) state.getState());
+            payload.putLong(getNetworkHandle(state.getNetwork()));
+            int flags = (state.isMetered() ? FLAG_METERED : 0) | (state.isValidated() ? FLAG_VALIDATED : 0)
+                    | (quality != null ? FLAG_QUALITY : 0);
+            payload.put((byte) flags);
+            payload.putInt(state.getLinkDownstreamBandwidthKbps());
+            putString(payload, state.getSSID());
+            putString(payload, state.getBSSID());
+            if (quality != null) {
+                payload.putInt(quality.getSampleCount());
+                payload.putFloat(quality.getLossRate());
+                payload.putLong(quality.getConnectMedian());
+                payload.putLong(quality.getConnectP95());
+                payload.putLong(quality.getRequestMedian());
+                payload.putLong(quality.getRequestP95());
+                // The elapsed realtime restarts on reboot,keep the wall clock time.
+                payload.putLong(now - (SystemClock.elapsedRealtime() - quality.getUpdateTime()));
+            }
+        }
+    }
+
+    private NetworkSnapshot decode(ByteBuffer payload, long sequence) {
+        long persistTime = payload.getLong();
+        int activeTransport = payload.get();
+        NetworkSnapshot.TransportState[] transports = new NetworkSnapshot.TransportState[NetworkSnapshot.TRANSPORT_COUNT];
+        NetworkQuality[] qualities = new NetworkQuality[NetworkSnapshot.TRANSPORT_COUNT];
+        long[] handles = new long[NetworkSnapshot.TRANSPORT_COUNT];
+        long elapsedOffset = SystemClock.elapsedRealtime() - System.currentTimeMillis();
+        // The network handles are reused after reboot.
+        boolean sameBoot = persistTime + elapsedOffset >= 0;
+        for (int transport = 0; transport < NetworkSnapshot.TRANSPORT_COUNT; transport++) {
+            int state = payload.get();
+            long handle = payload.getLong();
+            int flags = payload.get();
+            int bandwidthKbps = payload.getInt();
+            String ssid = getString(payload);
+            String bssid = getString(payload);
+            handles[transport] = sameBoot ? handle : 0;
+            if (state == Transition.STATE_CONNECTED) {
+                transports[transport] = new NetworkSnapshot.TransportState((flags & FLAG_METERED) != 0,
+                        (flags & FLAG_VALIDATED) != 0, bandwidthKbps, ssid, bssid);
+            } else if (state == Transition.STATE_DISCONNECTED) {
+                transports[transport] = NetworkSnapshot.TransportState.DISCONNECTED;
+            } else {
+                transports[transport] = NetworkSnapshot.TransportState.UNKNOWN;
+            }
+            if ((flags & FLAG_QUALITY) != 0) {
+                int sampleCount = payload.getInt();
+                float lossRate = payload.getFloat();
+                long connectMedian = payload.getLong();
+                long connectP95 = payload.getLong();
+                long requestMedian = payload.getLong();
+                long requestP95 = payload.getLong();
+                long updateTime = payload.getLong() + elapsedOffset;
+                qualities[transport] = new NetworkQuality(transport, null, sampleCount, lossRate, connectMedian,
+                        connectP95, requestMedian, requestP95, updateTime);
+            }
+        }
+        if (activeTransport < 0 || activeTransport >= NetworkSnapshot.TRANSPORT_COUNT
+                || !transports[activeTransport].isConnected()) {
+            activeTransport = NetworkMonitor.TRANSPORT_NONE;
+        }
+        mQualities = qualities;
+        mNetworkHandles = handles;
+        return NetworkSnapshot.provisional(sequence, persistTime, activeTransport, transports);
+    }
+
+    /**
+     * Return the handle to compare the network,0 if unknown.
+     * The handle is available since android M.
+     */
+    private static long getNetworkHandle(Network network) {
+        if (network == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return 0;
+        }
+        return network.getNetworkHandle();
+    }
+
+    /**
+     * Put the string in UTF-8 up to {@link #MAX_STRING_BYTES},cut on a character boundary.
+     */
+    static void putString(ByteBuffer payload, String value) {
+        if (value == null) {
+            payload.put((byte) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        int length = bytes.length;
+        if (length > MAX_STRING_BYTES) {
+            length = MAX_STRING_BYTES;
+            // Back off the continuation bytes of the character cut.
+            while (length > 0 && (bytes[length] & 0xc0) == 0x80) {
+                length--;
+            }
+        }
+        payload.put((byte) length);
+        payload.put(bytes, 0, length);
+    }
+
+    static String getString(ByteBuffer payload) {
+        int length = payload.get();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
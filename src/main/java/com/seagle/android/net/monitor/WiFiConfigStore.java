@@ -0,0 +1,234 @@
+package com.seagle.android.net.monitor;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WiFi configuration store.
+ * <p>Keep an SSID -> WifiConfiguration index of the configured networks,so a connect request does not
+ * load and scan the whole configured network list.The index is loaded once,updated by the add/update/remove
+ * operations of this library and by the configured networks changed broadcast,and reloaded only if the
+ * broadcast reports multiple changes.
+ * <p>{@link WifiManager#saveConfiguration()} rewrites the supplicant config file,so it is deferred and
+ * the save requests of several operations are written once.
+ * <p>All the methods should be called on the monitor thread.
+ */
+class WiFiConfigStore extends BroadcastReceiver {
+
+    private static final String TAG = "WiFiConfigStore";
+
+    /**
+     * Hidden broadcast {@code WifiManager.CONFIGURED_NETWORKS_CHANGED_ACTION}.
+     */
+    private static final String ACTION_CONFIGURED_NETWORKS_CHANGED = "android.net.wifi.CONFIGURED_NETWORKS_CHANGE";
+    private static final String EXTRA_WIFI_CONFIGURATION = "wifiConfiguration";
+    private static final String EXTRA_MULTIPLE_NETWORKS_CHANGED = "multipleChanges";
+    private static final String EXTRA_CHANGE_REASON = "changeReason";
+    private static final int CHANGE_REASON_REMOVED = 1;
+
+    /**
+     * Default delay to save configuration.
+     */
+    static final long DEFAULT_SAVE_DELAY = 5000;
+
+    private final WifiManager mWifiManager;
+    private final EventLoop mLoop;
+    private final MonitorMetrics mMetrics;
+    private final Map<String, WifiConfiguration> mIndex = new HashMap<>();
+    private boolean mLoaded;
+    private boolean mRegistered;
+    private boolean mSavePending;
+    private long mSaveDelay = DEFAULT_SAVE_DELAY;
+
+    private final Runnable mSaveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    WiFiConfigStore(WifiManager wifiManager, EventLoop loop, MonitorMetrics metrics) {
+        mWifiManager = wifiManager;
+        mLoop = loop;
+        mMetrics = metrics;
+    }
+
+    WifiManager getWifiManager() {
+        return mWifiManager;
+    }
+
+    MonitorMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    void start(Platform platform) {
+        if (!mRegistered) {
+            IntentFilter filter = new IntentFilter(ACTION_CONFIGURED_NETWORKS_CHANGED);
+            platform.registerReceiver(this, filter, mLoop.getHandler());
+            mRegistered = true;
+        }
+    }
+
+    void stop(Platform platform) {
+        flush();
+        if (mRegistered) {
+            mRegistered = false;
+            platform.unregisterReceiver(this);
+        }
+        mIndex.clear();
+        mLoaded = false;
+    }
+
+    void setSaveDelay(long saveDelay) {
+        mSaveDelay = saveDelay;
+    }
+
+    /**
+     * Return the configuration of the SSID or null.
+     *
+     * @param ssid SSID,quoted or not
+     * @return WifiConfiguration
+     */
+    WifiConfiguration get(String ssid) {
+        ensureLoaded();
+        return mIndex.get(WiFiConnector.convertToQuotedString(ssid));
+    }
+
+    /**
+     * Add network.
+     *
+     * @param config WifiConfiguration
+     * @return network id,-1 if failed
+     */
+    int add(WifiConfiguration config) {
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_WIFI_CONFIG);
+        int netID = mWifiManager.addNetwork(config);
+        if (netID != -1) {
+            config.networkId = netID;
+            if (mLoaded) {
+                mIndex.put(config.SSID, config);
+            }
+        }
+        return netID;
+    }
+
+    /**
+     * Update network.
+     *
+     * @param config WifiConfiguration
+     * @return network id,-1 if failed
+     */
+    int update(WifiConfiguration config) {
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_WIFI_CONFIG);
+        int netID = mWifiManager.updateNetwork(config);
+        if (netID == -1) {
+            invalidate();
+        } else if (mLoaded) {
+            mIndex.put(config.SSID, config);
+        }
+        return netID;
+    }
+
+    /**
+     * Remove network.
+     *
+     * @param netID network id
+     * @return operation result
+     */
+    boolean remove(int netID) {
+        removeFromIndex(netID);
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_WIFI_CONFIG);
+        return mWifiManager.removeNetwork(netID);
+    }
+
+    /**
+     * Request to save configuration,the request is delayed and merged with the later requests.
+     */
+    void requestSave() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // The configuration is persisted by the system since android O.
+            return;
+        }
+        if (!mSavePending) {
+            mSavePending = true;
+            mLoop.postDelayed(mSaveRunnable, mSaveDelay);
+        }
+    }
+
+    /**
+     * Save configuration now if any save request pending.
+     */
+    void flush() {
+        mLoop.remove(mSaveRunnable);
+        if (mSavePending) {
+            mSavePending = false;
+            mMetrics.countBinderCall(MetricsSnapshot.BINDER_WIFI_CONFIG);
+            mWifiManager.saveConfiguration();
+        }
+    }
+
+    /**
+     * Drop the index,it will be reloaded on next query.
+     */
+    void invalidate() {
+        mIndex.clear();
+        mLoaded = false;
+    }
+
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_WIFI_CONFIG);
+        List<WifiConfiguration> configs = mWifiManager.getConfiguredNetworks();
+        mIndex.clear();
+        if (configs != null) {
+            for (WifiConfiguration config : configs) {
+                if (config.SSID != null) {
+                    mIndex.put(config.SSID, config);
+                }
+            }
+        }
+        mLoaded = true;
+    }
+
+    private void removeFromIndex(int netID) {
+        Iterator<WifiConfiguration> iterator = mIndex.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().networkId == netID) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!mLoaded) {
+            return;
+        }
+        WifiConfiguration config = intent.getParcelableExtra(EXTRA_WIFI_CONFIGURATION);
+        if (intent.getBooleanExtra(EXTRA_MULTIPLE_NETWORKS_CHANGED, false) || config == null || config.SSID == null) {
+            Log.i(TAG, "Configured networks changed,reload on next query.");
+            invalidate();
+            return;
+        }
+        if (intent.getIntExtra(EXTRA_CHANGE_REASON, -1) == CHANGE_REASON_REMOVED) {
+            removeFromIndex(config.networkId);
+        } else {
+            removeFromIndex(config.networkId);
+            mIndex.put(config.SSID, config);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.seagle.android.net.monitor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The pending result of a WiFi connect request.
+ * <p>The result is one of the connect result code of {@link WiFiNetworkMonitor}.
+ * Cancel the future will stop the connect request and remove the network added by it.
+ */
+public final class WiFiConnectFuture extends SettableFuture<Integer> {
+
+    private final String mSSID;
+    private final Executor mCallbackExecutor;
+
+    WiFiConnectFuture(String ssid, Executor callbackExecutor) {
+        mSSID = ssid;
+        mCallbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Return the SSID to connect.
+     *
+     * @return SSID
+     */
+    public String getSSID() {
+        return mSSID;
+    }
+
+    /**
+     * Add the result callback.
+     * The callback is called on the callback thread of the WiFi monitor,even if the request already finished.
+     * A cancelled request,by the caller or by stopping the WiFi monitor,
+     * calls {@link WiFiNetworkMonitor.WiFiConnectCallback#onConnectFailed(int, String)}
+     * with {@link WiFiNetworkMonitor#ERR_CONNECT_FAILED} like the synchronous connect returns.
+     *
+     * @param callback WiFiConnectCallback
+     */
+    public void addCallback(final WiFiNetworkMonitor.WiFiConnectCallback callback) {
+        addListener(new Listener<Integer>() {
+            @Override
+            public void onComplete(Integer resultCode) {
+                dispatchResult(callback, resultCode);
+            }
+        });
+        addCancelListener(new CancelListener() {
+            @Override
+            public void onCancelled() {
+                dispatchResult(callback, WiFiNetworkMonitor.ERR_CONNECT_FAILED);
+            }
+        });
+    }
+
+    private void dispatchResult(final WiFiNetworkMonitor.WiFiConnectCallback callback, final int resultCode) {
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (resultCode == WiFiNetworkMonitor.CONNECT_SUCCESS) {
+                    callback.onConnectSuccess();
+                } else {
+                    callback.onConnectFailed(resultCode, WiFiNetworkMonitor.getErrorMessage(mSSID, resultCode));
+                }
+            }
+        });
+    }
+}
@@ -7,8 +7,6 @@ import android.net.wifi.WifiConfiguration.KeyMgmt;
 import android.net.wifi.WifiConfiguration.AuthAlgorithm;
 import android.net.wifi.WifiManager;
 
-import java.util.List;
-
 /**
  * WiFi connector.
  * Created by seagle on 2018/4/23.
@@ -23,31 +21,65 @@ class WiFiConnector {
     private static final int SECURITY_EAP = 3;
 
     private final WifiManager mWifiManager;
+    private final WiFiConfigStore mConfigStore;
     private final ScanResult mScanResult;
     private final String mSSID;
     private final String mCapabilities;
     private final String mPassword;
+    private boolean mNewNetwork;
+    private int mNetID = -1;
 
-    WiFiConnector(ScanResult scanResult, String password, WifiManager wifiManager) {
+    WiFiConnector(ScanResult scanResult, String password, WiFiConfigStore configStore) {
         mScanResult = scanResult;
         mSSID = scanResult.SSID;
         mCapabilities = scanResult.capabilities;
         mPassword = password;
-        mWifiManager = wifiManager;
+        mConfigStore = configStore;
+        mWifiManager = configStore.getWifiManager();
     }
 
-    WiFiConnector(String SSID, String capabilities, String password, WifiManager wifiManager) {
+    WiFiConnector(String SSID, String capabilities, String password, WiFiConfigStore configStore) {
         mScanResult = null;
         mSSID = SSID;
         mCapabilities = capabilities;
         mPassword = password;
-        mWifiManager = wifiManager;
+        mConfigStore = configStore;
+        mWifiManager = configStore.getWifiManager();
     }
 
     public String getSSID() {
         return mSSID;
     }
 
+    /**
+     * Return the scan result or null if connect by SSID.
+     *
+     * @return ScanResult
+     */
+    public ScanResult getScanResult() {
+        return mScanResult;
+    }
+
+    /**
+     * Return is the access point secured by WEP or PSK.
+     *
+     * @param capabilities WiFi capabilities
+     * @return secured
+     */
+    public static boolean isSecured(String capabilities) {
+        int security = getSecurity(capabilities);
+        return security == SECURITY_WEP || security == SECURITY_PSK;
+    }
+
+    /**
+     * Return is the network added by this connector.
+     *
+     * @return added by this connector
+     */
+    public boolean isNewNetwork() {
+        return mNewNetwork;
+    }
+
     public static String convertToQuotedString(String ssid) {
         if (ssid.startsWith("\"") && ssid.endsWith("\"")) {
             return ssid;
@@ -66,38 +98,82 @@ class WiFiConnector {
         return SECURITY_NONE;
     }
 
-    public int connect() {
-        WifiConfiguration wifiConfiguration = getExistedConfiguration(mSSID);
+    /**
+     * Add or update the network configuration without enabling it.
+     * If no password provided the existing configuration is used as it is.
+     *
+     * @return network id,-1 if failed
+     */
+    public int prepare() {
+        if (mNetID != -1) {
+            return mNetID;
+        }
+        WifiConfiguration wifiConfiguration = mConfigStore.get(mSSID);
         if (wifiConfiguration == null) {
             wifiConfiguration = getConfig(null);
-            int netID = mWifiManager.addNetwork(wifiConfiguration);
-            if (netID > 0 && mWifiManager.enableNetwork(netID, true)) {
-                mWifiManager.saveConfiguration();
-                mWifiManager.reconnect();
-                return netID;
-            }
+            int netID = mConfigStore.add(wifiConfiguration);
+            mNewNetwork = netID != -1;
+            mNetID = netID;
+        } else if (mPassword == null) {
+            mNetID = wifiConfiguration.networkId;
         } else {
             wifiConfiguration = getConfig(wifiConfiguration);
-            mWifiManager.updateNetwork(wifiConfiguration);
-            if (mWifiManager.enableNetwork(wifiConfiguration.networkId, true)) {
-                mWifiManager.saveConfiguration();
-                mWifiManager.reconnect();
-                return wifiConfiguration.networkId;
-            }
+            mConfigStore.update(wifiConfiguration);
+            mNetID = wifiConfiguration.networkId;
         }
+        return mNetID;
+    }
+
+    /**
+     * Prepare the network configuration and enable it.
+     * If the indexed configuration could not be enabled the index is dropped and the lookup retried once.
+     * The configuration is saved later by {@link WiFiConfigStore}.
+     *
+     * @return network id,-1 if failed
+     */
+    public int connect() {
+        int netID = prepare();
+        boolean enabled = netID != -1 && enable(netID);
+        if (!enabled && netID != -1 && !mNewNetwork) {
+            // The indexed configuration could be removed by the user or another app,retry once with a fresh lookup.
+            mConfigStore.invalidate();
+            mNetID = -1;
+            netID = prepare();
+            enabled = netID != -1 && enable(netID);
+        }
+        if (enabled) {
+            mConfigStore.requestSave();
+            mConfigStore.getMetrics().countBinderCall(MetricsSnapshot.BINDER_WIFI_CONFIG);
+            mWifiManager.reconnect();
+            return netID;
+        }
+        removeIfNew();
         return -1;
     }
 
-    private WifiConfiguration getExistedConfiguration(String SSID) {
-        List<WifiConfiguration> existingConfigs = mWifiManager
-                .getConfiguredNetworks();
-        String ssid = convertToQuotedString(SSID);
-        for (WifiConfiguration existingConfig : existingConfigs) {
-            if (existingConfig.SSID.equals(ssid)) {
-                return existingConfig;
-            }
+    private boolean enable(int netID) {
+        mConfigStore.getMetrics().countBinderCall(MetricsSnapshot.BINDER_WIFI_CONFIG);
+        return mWifiManager.enableNetwork(netID, true);
+    }
+
+    /**
+     * Remove the network configuration.
+     */
+    public void remove() {
+        if (mNetID != -1) {
+            mConfigStore.remove(mNetID);
+            mNetID = -1;
+            mNewNetwork = false;
+        }
+    }
+
+    /**
+     * Remove the network configuration if it is added by this connector.
+     */
+    public void removeIfNew() {
+        if (mNewNetwork) {
+            remove();
         }
-        return null;
     }
 
     private WifiConfiguration getConfig(WifiConfiguration existConfig) {
@@ -108,6 +184,7 @@ class WiFiConnector {
         } else {
             config.SSID = convertToQuotedString(mScanResult.SSID);
         }
+        String password = mPassword == null ? "" : mPassword;
         int security = getSecurity(mCapabilities);
         switch (security) {
             case SECURITY_NONE: {
@@ -118,9 +195,8 @@ class WiFiConnector {
                 config.allowedKeyManagement.set(KeyMgmt.NONE);
                 config.allowedAuthAlgorithms.set(AuthAlgorithm.OPEN);
                 config.allowedAuthAlgorithms.set(AuthAlgorithm.SHARED);
-                if (mPassword.length() != 0) {
-                    int length = mPassword.length();
-                    String password = mPassword;
+                if (password.length() != 0) {
+                    int length = password.length();
                     if ((length == 10 || length == 26 || length == 58)
                             && password.matches("[0-9A-Fa-f]*")) {
                         config.wepKeys[0] = password;
@@ -132,8 +208,7 @@ class WiFiConnector {
             }
             case SECURITY_PSK:
                 config.allowedKeyManagement.set(KeyMgmt.WPA_PSK);
-                if (mPassword.length() != 0) {
-                    String password = mPassword;
+                if (password.length() != 0) {
                     if (password.matches("[0-9A-Fa-f]{64}")) {
                         config.preSharedKey = password;
                     } else {
@@ -4,19 +4,27 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.net.LinkProperties;
+import android.net.Network;
 import android.net.NetworkCapabilities;
 import android.net.NetworkInfo;
-import android.net.NetworkRequest;
 import android.net.wifi.ScanResult;
 import android.net.wifi.SupplicantState;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
-import android.os.Build;
-import android.support.annotation.RequiresApi;
 import android.util.Log;
 
-import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static com.seagle.android.net.monitor.NetworkMonitor.EXTRA_NETWORK_INFO;
@@ -75,6 +83,31 @@ public class WiFiNetworkMonitor extends NetStateMachine {
      */
     public static final int ERR_PASSWORD_WRONG = -3;
 
+    /**
+     * Connect WiFi error code: too many pending connect requests.
+     */
+    public static final int ERR_CONNECT_REJECTED = -4;
+
+    /**
+     * The max count of connect requests waiting in queue.
+     */
+    private static final int MAX_PENDING_CONNECTS = 8;
+
+    /**
+     * Connect phase: wait the supplicant associated with the access point.
+     */
+    private static final int PHASE_ASSOCIATING = 1;
+
+    /**
+     * Connect phase: wait the key handshake completed.
+     */
+    private static final int PHASE_AUTHENTICATING = 2;
+
+    /**
+     * Connect phase: wait the network connected,including obtain IP address.
+     */
+    private static final int PHASE_OBTAINING_IP = 3;
+
     /**
      * Capabilities:WEP.
      * For WEP or OPEN access point.
@@ -87,12 +120,33 @@ public class WiFiNetworkMonitor extends NetStateMachine {
      */
     private static final String SECURITY_PSK = "PSK";
 
-    private volatile WifiInfo mWifiInfo;
     private WifiManager mWifiManager;
+    private final WiFiConfigStore mConfigStore;
+    private final WiFiScanner mScanner;
+    private final Map<String, WiFiConnectFuture> mConnectFutures = new HashMap<>();
+    private final ArrayDeque<ConnectWiFiTask> mPendingTasks = new ArrayDeque<>();
+    private final Map<String, int[]> mConnectHistory = new HashMap<>();
+    private ConnectWiFiTask mCurrentTask;
+    /**
+     * Calls the connect result callbacks,so a callback blocking or connecting WiFi synchronously never stalls the monitor thread.
+     */
+    private final ThreadPoolExecutor mCallbackExecutor;
 
-    WiFiNetworkMonitor(Context context) {
-        super(context);
-        mWifiManager = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+    WiFiNetworkMonitor(Platform platform, NetworkMonitor monitor) {
+        super(platform, monitor, NetworkMonitor.TRANSPORT_WIFI);
+        mWifiManager = platform.getWifiManager();
+        mCallbackExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG + "-callback");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mCallbackExecutor.allowCoreThreadTimeOut(true);
+        mConfigStore = new WiFiConfigStore(mWifiManager, mLoop, mMetrics);
+        mScanner = new WiFiScanner(mWifiManager, mLoop, mMetrics);
     }
 
     /**
@@ -102,7 +156,8 @@ public class WiFiNetworkMonitor extends NetStateMachine {
      * @return WifiInfo
      */
     public WifiInfo getWiFiInfo() {
-        return mWifiInfo;
+        ensureActive();
+        return getTransportState().getWifiInfo();
     }
 
     /**
@@ -132,10 +187,92 @@ public class WiFiNetworkMonitor extends NetStateMachine {
         return mWifiManager.isWifiEnabled();
     }
 
+    /**
+     * Request a WiFi scan.
+     * <p>The requests of all callers are coalesced into one shared scan,a request inside the min scan interval
+     * of the {@link ScanPolicy} is delayed to the end of the interval.The results are delivered to the
+     * {@link ScanListener}s as diffs and could be read by {@link #getScanResults()}.
+     */
+    public void requestScan() {
+        ensureActive();
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                mScanner.requestScan();
+            }
+        });
+    }
+
+    /**
+     * Return the cached scan results,the access points not seen for the result TTL are excluded.
+     *
+     * @return unmodifiable ScanResult list
+     */
+    public List<ScanResult> getScanResults() {
+        return mScanner.getResults();
+    }
+
+    /**
+     * Add scan listener,it receives the current cached results as added at first.
+     *
+     * @param listener ScanListener
+     * @param executor the executor to call the listener,null to call it on the monitor thread
+     */
+    public void addScanListener(ScanListener listener, Executor executor) {
+        mScanner.addListener(listener, executor);
+        ensureActive();
+    }
+
+    /**
+     * Remove scan listener.
+     *
+     * @param listener ScanListener
+     */
+    public void removeScanListener(ScanListener listener) {
+        mScanner.removeListener(listener);
+        releaseIfUnused();
+    }
+
+    /**
+     * Set the scan policy.
+     *
+     * @param policy ScanPolicy
+     */
+    public void setScanPolicy(final ScanPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy should not be null!");
+        }
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                mScanner.setPolicy(policy);
+            }
+        });
+    }
+
+    /**
+     * Return the count of scans started by the library.
+     *
+     * @return scan count
+     */
+    public long getScanCount() {
+        return mScanner.getScanCount();
+    }
+
+    /**
+     * Return the count of scan requests,the difference to {@link #getScanCount()} is coalesced.
+     *
+     * @return scan request count
+     */
+    public long getScanRequestCount() {
+        return mScanner.getRequestCount();
+    }
+
     /**
      * Connect WiFi.
      * Support sync and async call method: <br>
-     * If callback is null,will block the call thread and return result by synchronous.<br>
+     * If callback is null,will block the call thread and return result by synchronous,
+     * which is not allowed on the monitor thread.<br>
      * If callback not null,this method return -1 immediately and the connection result return by callback.
      * <p>
      * Attention:not support connect new EAP network.
@@ -144,39 +281,17 @@ public class WiFiNetworkMonitor extends NetStateMachine {
      * @param password WiFi password if needed
      * @param callback Connect result callback
      * @return Connect result
+     * @see #connectWiFiAsync(ScanResult, String)
      */
     public int connectWiFi(ScanResult result, String password, final WiFiConnectCallback callback) {
-        final WiFiConnector connector = new WiFiConnector(result, password, mWifiManager);
-        final ConnectWiFiTask task = new ConnectWiFiTask(connector);
-        if (callback == null) {
-            return task.call();
-        } else {
-            Thread thread = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    int result = task.call();
-                    if (result == CONNECT_SUCCESS) {
-                        callback.onConnectSuccess();
-                    } else {
-                        String message = "Connect WiFi " + connector.getSSID() + " failed as unknown err!";
-                        if (ERR_CONNECT_TIMEOUT == result) {
-                            message = "Connect WiFi " + connector.getSSID() + " timeout!";
-                        } else if (ERR_PASSWORD_WRONG == result) {
-                            message = "Connect WiFi " + connector.getSSID() + " failed as password wrong!";
-                        }
-                        callback.onConnectFailed(result, message);
-                    }
-                }
-            });
-            thread.start();
-            return -1;
-        }
+        return connectWiFi(new WiFiConnector(result, password, mConfigStore), callback);
     }
 
     /**
      * Connect WiFi.
      * Support sync and async call method: <br>
-     * If callback is null,will block the call thread and return result by synchronous.<br>
+     * If callback is null,will block the call thread and return result by synchronous,
+     * which is not allowed on the monitor thread.<br>
      * If callback not null,this method return -1 immediately and the connection result return by callback.
      * <p>
      * Attention:not support connect new EAP network.
@@ -186,147 +301,692 @@ public class WiFiNetworkMonitor extends NetStateMachine {
      * @param password     WiFi password if needed
      * @param callback     Connect result callback
      * @return Connect result
+     * @see #connectWiFiAsync(String, String, String)
      */
     public int connectWiFi(String ssid, String capabilities, String password, final WiFiConnectCallback callback) {
-        final WiFiConnector connector = new WiFiConnector(ssid, capabilities, password, mWifiManager);
-        final ConnectWiFiTask task = new ConnectWiFiTask(connector);
-        if (callback == null) {
-            return task.call();
-        } else {
-            Thread thread = new Thread(new Runnable() {
+        return connectWiFi(new WiFiConnector(ssid, capabilities, password, mConfigStore), callback);
+    }
+
+    /**
+     * Connect WiFi asynchronously.
+     * <p>The connect requests are executed one by one on the monitor thread and no thread is blocked while waiting,
+     * a request for the SSID which is connecting returns the in-flight future.
+     * The result callbacks are called one by one on a library owned callback thread,never on the monitor thread.
+     * Cancel the future will stop the request and remove the network it added.
+     * <p>
+     * Attention:not support connect new EAP network.
+     *
+     * @param result   WiFi ScanResult
+     * @param password WiFi password if needed
+     * @return WiFiConnectFuture
+     */
+    public WiFiConnectFuture connectWiFiAsync(ScanResult result, String password) {
+        return connectWiFiAsync(result, password, ConnectTimeouts.DEFAULT);
+    }
+
+    /**
+     * Connect WiFi asynchronously with the timeout of each connect phase.
+     *
+     * @param result   WiFi ScanResult
+     * @param password WiFi password if needed
+     * @param timeouts connect phase timeouts
+     * @return WiFiConnectFuture
+     * @see #connectWiFiAsync(ScanResult, String)
+     */
+    public WiFiConnectFuture connectWiFiAsync(ScanResult result, String password, ConnectTimeouts timeouts) {
+        return submitConnect(new WiFiConnector(result, password, mConfigStore), timeouts);
+    }
+
+    /**
+     * Connect WiFi asynchronously.
+     * <p>The connect requests are executed one by one on the monitor thread and no thread is blocked while waiting,
+     * a request for the SSID which is connecting returns the in-flight future.
+     * The result callbacks are called one by one on a library owned callback thread,never on the monitor thread.
+     * Cancel the future will stop the request and remove the network it added.
+     * <p>
+     * Attention:not support connect new EAP network.
+     *
+     * @param ssid         WiFi SSID
+     * @param capabilities WiFi capabilities
+     * @param password     WiFi password if needed
+     * @return WiFiConnectFuture
+     */
+    public WiFiConnectFuture connectWiFiAsync(String ssid, String capabilities, String password) {
+        return connectWiFiAsync(ssid, capabilities, password, ConnectTimeouts.DEFAULT);
+    }
+
+    /**
+     * Connect WiFi asynchronously with the timeout of each connect phase.
+     *
+     * @param ssid         WiFi SSID
+     * @param capabilities WiFi capabilities
+     * @param password     WiFi password if needed
+     * @param timeouts     connect phase timeouts
+     * @return WiFiConnectFuture
+     * @see #connectWiFiAsync(String, String, String)
+     */
+    public WiFiConnectFuture connectWiFiAsync(String ssid, String capabilities, String password, ConnectTimeouts timeouts) {
+        return submitConnect(new WiFiConnector(ssid, capabilities, password, mConfigStore), timeouts);
+    }
+
+    private int connectWiFi(WiFiConnector connector, WiFiConnectCallback callback) {
+        if (callback == null && mLoop.inLoop()) {
+            throw new IllegalStateException("Should not connect WiFi synchronously on the monitor thread!");
+        }
+        WiFiConnectFuture future = submitConnect(connector, ConnectTimeouts.DEFAULT);
+        if (callback != null) {
+            future.addCallback(callback);
+            return -1;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return ERR_CONNECT_FAILED;
+        } catch (CancellationException ex) {
+            return ERR_CONNECT_FAILED;
+        }
+    }
+
+    WiFiConnectFuture submitConnect(WiFiConnector connector, ConnectTimeouts timeouts) {
+        return submitConnect(connector, timeouts, true);
+    }
+
+    /**
+     * Submit a connect attempt of {@link ConnectBestTask},
+     * it neither joins nor is joined by the request of the same SSID in flight.
+     *
+     * @param connector WiFiConnector
+     * @param timeouts  connect phase timeouts of the attempt
+     * @return WiFiConnectFuture
+     */
+    WiFiConnectFuture submitAttempt(WiFiConnector connector, ConnectTimeouts timeouts) {
+        return submitConnect(connector, timeouts, false);
+    }
+
+    private WiFiConnectFuture submitConnect(WiFiConnector connector, ConnectTimeouts timeouts, boolean shared) {
+        if (timeouts == null) {
+            throw new IllegalArgumentException("Timeouts should not be null!");
+        }
+        ensureActive();
+        final String ssid = connector.getSSID();
+        synchronized (mConnectFutures) {
+            WiFiConnectFuture inFlight = mConnectFutures.get(ssid);
+            if (shared && inFlight != null && !inFlight.isDone()) {
+                Log.i(TAG, "Connect WiFi " + ssid + " is in progress!");
+                return inFlight;
+            }
+            final WiFiConnectFuture future = new WiFiConnectFuture(ssid, mCallbackExecutor);
+            if (shared && mConnectFutures.size() >= MAX_PENDING_CONNECTS) {
+                Log.w(TAG, "Connect WiFi " + ssid + " rejected!");
+                future.complete(ERR_CONNECT_REJECTED);
+                return future;
+            }
+            final ConnectWiFiTask task = new ConnectWiFiTask(connector, future, timeouts);
+            future.setCanceller(new SettableFuture.Canceller() {
                 @Override
-                public void run() {
-                    int result = task.call();
-                    if (result == 0) {
-                        callback.onConnectSuccess();
-                    } else {
-                        String message = "Connect WiFi " + connector.getSSID() + " failed as unknown err!";
-                        if (ERR_CONNECT_TIMEOUT == result) {
-                            message = "Connect WiFi " + connector.getSSID() + " timeout!";
-                        } else if (ERR_PASSWORD_WRONG == result) {
-                            message = "Connect WiFi " + connector.getSSID() + " failed as password wrong!";
+                public void cancel() {
+                    mLoop.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            task.cancel();
                         }
-                        callback.onConnectFailed(result, message);
-                    }
+                    });
                 }
             });
-            thread.start();
-            return -1;
+            if (shared) {
+                mConnectFutures.put(ssid, future);
+            }
+            mLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mPendingTasks.add(task);
+                    scheduleNextTask();
+                }
+            });
+            return future;
+        }
+    }
+
+    /**
+     * Connect the best WiFi of the candidates.
+     * <p>The candidates are ranked by RSSI,5GHz band and the historical connect success rate of the SSID,
+     * only the best access point of each SSID is tried,the secured candidates without password in credentials
+     * or saved configuration are skipped.The configurations of all the candidates are prepared at first,
+     * then tried in order with the per-attempt timeouts of the policy,the next candidate is tried
+     * as soon as one fails,such as password wrong or association timeout.
+     * The configurations added for the failed candidates are removed.
+     *
+     * @param candidates  WiFi scan results
+     * @param credentials SSID -> password,could be null for open or saved networks
+     * @param policy      connect policy
+     * @return the future of the result,includes the winner and the timing of each attempt
+     */
+    public Future<ConnectBestResult> connectBest(List<ScanResult> candidates, Map<String, String> credentials, ConnectPolicy policy) {
+        if (candidates == null || policy == null) {
+            throw new IllegalArgumentException("Candidates and policy should not be null!");
+        }
+        ensureActive();
+        final ConnectBestTask task = new ConnectBestTask(this, mConfigStore, candidates, credentials, policy);
+        task.getFuture().setCanceller(new SettableFuture.Canceller() {
+            @Override
+            public void cancel() {
+                mLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        task.cancel();
+                    }
+                });
+            }
+        });
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                task.start();
+            }
+        });
+        return task.getFuture();
+    }
+
+    /**
+     * Return the historical connect success rate of the SSID.
+     * Called on the monitor thread.
+     *
+     * @param ssid SSID
+     * @return success rate,0.5 if no history
+     */
+    float getConnectSuccessRate(String ssid) {
+        int[] history = mConnectHistory.get(ssid);
+        if (history == null) {
+            return 0.5f;
+        }
+        return (history[0] + 1f) / (history[1] + 2f);
+    }
+
+    /**
+     * Record the connect result of the SSID.
+     * Called on the monitor thread.
+     *
+     * @param ssid    SSID
+     * @param success connect success
+     */
+    private void recordConnectResult(String ssid, boolean success) {
+        int[] history = mConnectHistory.get(ssid);
+        if (history == null) {
+            history = new int[2];
+            mConnectHistory.put(ssid, history);
+        }
+        if (success) {
+            history[0]++;
+        }
+        history[1]++;
+    }
+
+    /**
+     * Start the next pending connect task if no task running.
+     * Called on the monitor thread.
+     */
+    private void scheduleNextTask() {
+        while (mCurrentTask == null && !mPendingTasks.isEmpty()) {
+            ConnectWiFiTask task = mPendingTasks.poll();
+            mCurrentTask = task;
+            task.start();
         }
     }
 
+    /**
+     * The connect task finished.
+     * Called on the monitor thread.
+     *
+     * @param task ConnectWiFiTask
+     */
+    private void onTaskFinished(ConnectWiFiTask task) {
+        synchronized (mConnectFutures) {
+            if (mConnectFutures.get(task.mSSID) == task.mFuture) {
+                mConnectFutures.remove(task.mSSID);
+            }
+        }
+        if (mCurrentTask == task) {
+            mCurrentTask = null;
+            scheduleNextTask();
+        } else {
+            mPendingTasks.remove(task);
+        }
+    }
+
+    /**
+     * Return the error message of the connect result code.
+     *
+     * @param ssid       WiFi SSID
+     * @param resultCode connect result code
+     * @return error message
+     */
+    static String getErrorMessage(String ssid, int resultCode) {
+        if (ERR_CONNECT_TIMEOUT == resultCode) {
+            return "Connect WiFi " + ssid + " timeout!";
+        } else if (ERR_PASSWORD_WRONG == resultCode) {
+            return "Connect WiFi " + ssid + " failed as password wrong!";
+        } else if (ERR_CONNECT_REJECTED == resultCode) {
+            return "Connect WiFi " + ssid + " rejected as too many pending requests!";
+        }
+        return "Connect WiFi " + ssid + " failed as unknown err!";
+    }
+
+    /**
+     * Set the delay to save WiFi configuration.
+     * <p>Saving configuration rewrites the supplicant config file,
+     * the save requests of connect operations inside the delay are written once.
+     * Not used since android O,where the configuration is persisted by the system.
+     *
+     * @param delayMillis save delay in milliseconds
+     */
+    public void setConfigurationSaveDelay(final long delayMillis) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("Delay should not be negative!");
+        }
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                mConfigStore.setSaveDelay(delayMillis);
+            }
+        });
+    }
+
+    /**
+     * Save the pending WiFi configuration changes now.
+     */
+    public void saveConfiguration() {
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                mConfigStore.flush();
+            }
+        });
+    }
+
+    @Override
+    boolean hasDemand() {
+        return super.hasDemand() || mCurrentTask != null || !mPendingTasks.isEmpty() || mScanner.hasListeners();
+    }
+
+    @Override
+    void start() {
+        mConfigStore.start(mPlatform);
+        mScanner.start(mPlatform);
+        super.start();
+    }
+
     public WifiManager getWifiManager() {
         return mWifiManager;
     }
 
     @Override
-    protected void notifyNetworkState(boolean connected, NetworkInfo networkInfo) {
-        if (connected) {
-            mNetworkInfo = networkInfo;
-            mWifiInfo = mWifiManager.getConnectionInfo();
-            Intent broadCastIntent = new Intent(ACTION_WIFI_STATE_CHANGED);
-            broadCastIntent.putExtra(EXTRA_NETWORK_STATE, true);
-            broadCastIntent.putExtra(EXTRA_NETWORK_INFO, mNetworkInfo);
-            broadCastIntent.putExtra(EXTRA_WIFI_INFO, mWifiInfo);
-            mContext.sendStickyBroadcast(broadCastIntent);
-            Log.i(TAG, "WiFi network connected: " + mNetworkInfo);
-        } else {
-            Log.i(TAG, "WiFi network disconnected: " + mNetworkInfo);
-            Intent broadCastIntent = new Intent(ACTION_WIFI_STATE_CHANGED);
-            broadCastIntent.putExtra(EXTRA_NETWORK_STATE, false);
-            if (mNetworkInfo != null) {
-                broadCastIntent.putExtra(EXTRA_PRE_NETWORK_INFO, mNetworkInfo);
-                broadCastIntent.putExtra(EXTRA_WIFI_INFO, mWifiInfo);
-            }
-            mContext.sendStickyBroadcast(broadCastIntent);
-            mNetworkInfo = null;
-            mNetwork = null;
-        }
+    NetworkSnapshot.TransportState createConnectedState(NetworkInfo networkInfo, Network network, NetworkCapabilities capabilities,
+                                                        LinkProperties linkProperties) {
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_CONNECTION_INFO);
+        return new NetworkSnapshot.TransportState(networkInfo, network, mWifiManager.getConnectionInfo(), capabilities, linkProperties);
     }
 
-    @RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
     @Override
-    protected NetworkRequest getNetRequest() {
-        NetworkRequest.Builder builder = new NetworkRequest.Builder();
-        builder.addTransportType(NetworkCapabilities.TRANSPORT_WIFI);
-        return builder.build();
+    protected void notifyStateChanged(NetworkSnapshot.TransportState previous, NetworkSnapshot.TransportState current) {
+        if (current.isConnected()) {
+            NetworkInfo networkInfo = current.getNetworkInfo();
+            dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_CONNECTED, mTransport, null, networkInfo, current.getNetwork(), current.getWifiInfo()));
+            if (isBroadcastEnabled()) {
+                Intent broadCastIntent = new Intent(ACTION_WIFI_STATE_CHANGED);
+                broadCastIntent.putExtra(EXTRA_NETWORK_STATE, true);
+                broadCastIntent.putExtra(EXTRA_NETWORK_INFO, networkInfo);
+                broadCastIntent.putExtra(EXTRA_WIFI_INFO, current.getWifiInfo());
+                mPlatform.sendStickyBroadcast(broadCastIntent);
+            }
+            Log.i(TAG, "WiFi network connected: " + networkInfo);
+            if (mCurrentTask != null) {
+                mCurrentTask.onNetworkConnected(current.getWifiInfo());
+            }
+        } else {
+            NetworkInfo preNetworkInfo = previous.getNetworkInfo();
+            Log.i(TAG, "WiFi network disconnected: " + preNetworkInfo);
+            dispatchEvent(new NetworkEvent(NetworkEvent.TYPE_DISCONNECTED, mTransport, preNetworkInfo, null, null, previous.getWifiInfo()));
+            if (isBroadcastEnabled()) {
+                Intent broadCastIntent = new Intent(ACTION_WIFI_STATE_CHANGED);
+                broadCastIntent.putExtra(EXTRA_NETWORK_STATE, false);
+                if (preNetworkInfo != null) {
+                    broadCastIntent.putExtra(EXTRA_PRE_NETWORK_INFO, preNetworkInfo);
+                    broadCastIntent.putExtra(EXTRA_WIFI_INFO, previous.getWifiInfo());
+                }
+                mPlatform.sendStickyBroadcast(broadCastIntent);
+            }
+        }
     }
 
     @Override
     void stop() {
-        if (mContext != null) {
+        if (isBroadcastEnabled()) {
             Intent broadCastIntent = new Intent(ACTION_WIFI_STATE_CHANGED);
-            mContext.removeStickyBroadcast(broadCastIntent);
+            mPlatform.removeStickyBroadcast(broadCastIntent);
+        }
+        List<ConnectWiFiTask> tasks = new ArrayList<>(mPendingTasks);
+        if (mCurrentTask != null) {
+            tasks.add(mCurrentTask);
+        }
+        for (ConnectWiFiTask task : tasks) {
+            task.mFuture.cancel(true);
         }
+        mConfigStore.stop(mPlatform);
+        mScanner.stop(mPlatform);
         super.stop();
     }
 
-    private class ConnectWiFiTask extends BroadcastReceiver implements Callable<Integer> {
+    /**
+     * The connect task.
+     * <p>A state machine driven by the supplicant state broadcast on the monitor thread:
+     * associating -> authenticating -> obtaining IP,each phase has its own timeout,
+     * and a wrong password fails the task as soon as the supplicant reports the authentication error.
+     */
+    private class ConnectWiFiTask extends BroadcastReceiver {
         private final WiFiConnector mWiFiConnector;
-        private volatile int mNetID = -2;
-        private volatile boolean mConnecting;
-        private final CountDownLatch mLatch = new CountDownLatch(1);
-        private volatile int mResultCode;
+        private final WiFiConnectFuture mFuture;
+        private final ConnectTimeouts mTimeouts;
+        private final String mSSID;
+        private final String mQuotedSSID;
+        private int mNetID = -1;
+        private int mPhase;
+        private long mPhaseStart;
+        private boolean mRegistered;
+        private boolean mFinished;
 
-        public ConnectWiFiTask(WiFiConnector wiFiConnector) {
+        private final Runnable mTimeoutRunnable = new Runnable() {
+            @Override
+            public void run() {
+                onPhaseTimeout();
+            }
+        };
+
+        ConnectWiFiTask(WiFiConnector wiFiConnector, WiFiConnectFuture future, ConnectTimeouts timeouts) {
             mWiFiConnector = wiFiConnector;
+            mFuture = future;
+            mTimeouts = timeouts;
+            mSSID = wiFiConnector.getSSID();
+            mQuotedSSID = WiFiConnector.convertToQuotedString(mSSID);
         }
 
-        @Override
-        public Integer call() {
+        void start() {
+            if (mFuture.isDone()) {
+                finish(ERR_CONNECT_FAILED);
+                return;
+            }
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
+            mPlatform.registerReceiver(this, filter, mLoop.getHandler());
+            mRegistered = true;
             try {
-                if ((mNetID = mWiFiConnector.connect()) > 0) {
-                    IntentFilter filter = new IntentFilter();
-                    filter.addAction(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
-                    mContext.registerReceiver(this, filter);
-                    mConnecting = true;
-                    if (!mLatch.await(30, TimeUnit.SECONDS)) {
-                        WifiInfo wifiInfo = mWifiManager.getConnectionInfo();
-                        String ssid = WiFiConnector.convertToQuotedString(mWiFiConnector.getSSID());
-                        if (wifiInfo != null && ssid.equalsIgnoreCase(wifiInfo.getSSID())) {
-                            mResultCode = CONNECT_SUCCESS;
-                        } else {
-                            mResultCode = ERR_CONNECT_TIMEOUT;
-                        }
-                    }
-                }
+                mNetID = mWiFiConnector.connect();
             } catch (Exception ex) {
-                mResultCode = ERR_CONNECT_FAILED;
-            } finally {
-                mNetID = -2;
-                mConnecting = false;
-                mContext.unregisterReceiver(this);
+                Log.w(TAG, "Connect WiFi " + mSSID + " failed!", ex);
+                mNetID = -1;
+            }
+            if (mNetID == -1) {
+                finish(ERR_CONNECT_FAILED);
+                return;
+            }
+            enterPhase(PHASE_ASSOCIATING);
+        }
+
+        void cancel() {
+            if (!mFinished) {
+                Log.i(TAG, "Connect WiFi " + mSSID + " cancelled!");
+                finish(ERR_CONNECT_FAILED);
+            }
+        }
+
+        private void enterPhase(int phase) {
+            recordPhase();
+            mPhase = phase;
+            mPhaseStart = mMetrics.now();
+            long timeout;
+            if (phase == PHASE_ASSOCIATING) {
+                timeout = mTimeouts.getAssociationTimeout();
+            } else if (phase == PHASE_AUTHENTICATING) {
+                timeout = mTimeouts.getAuthenticationTimeout();
+            } else {
+                timeout = mTimeouts.getIpTimeout();
+            }
+            mLoop.remove(mTimeoutRunnable);
+            mLoop.postDelayed(mTimeoutRunnable, timeout);
+        }
+
+        /**
+         * Record the duration of the finished phase.
+         */
+        private void recordPhase() {
+            if (mPhase == PHASE_ASSOCIATING) {
+                mMetrics.recordLatency(MetricsSnapshot.HISTOGRAM_CONNECT_ASSOCIATING, mPhaseStart);
+            } else if (mPhase == PHASE_AUTHENTICATING) {
+                mMetrics.recordLatency(MetricsSnapshot.HISTOGRAM_CONNECT_AUTHENTICATING, mPhaseStart);
+            } else if (mPhase == PHASE_OBTAINING_IP) {
+                mMetrics.recordLatency(MetricsSnapshot.HISTOGRAM_CONNECT_OBTAINING_IP, mPhaseStart);
+            }
+        }
+
+        private void onPhaseTimeout() {
+            if (mFinished) {
+                return;
+            }
+            if (isTargetConnected(getWiFiInfo())) {
+                finish(CONNECT_SUCCESS);
+            } else {
+                Log.i(TAG, "Connect WiFi " + mSSID + " timeout in phase " + mPhase);
+                finish(ERR_CONNECT_TIMEOUT);
+            }
+        }
+
+        /**
+         * The WiFi network connected.
+         *
+         * @param wifiInfo WifiInfo
+         */
+        void onNetworkConnected(WifiInfo wifiInfo) {
+            if (!mFinished && mPhase == PHASE_OBTAINING_IP && isTargetConnected(wifiInfo)) {
+                finish(CONNECT_SUCCESS);
             }
-            return mResultCode;
+        }
+
+        private boolean isTargetConnected(WifiInfo wifiInfo) {
+            return wifiInfo != null && isConnected() && mQuotedSSID.equalsIgnoreCase(wifiInfo.getSSID());
         }
 
         @Override
         public void onReceive(Context context, Intent intent) {
-            if (mNetID > 0 && mConnecting) {
-                String action = intent.getAction();
-                if (WifiManager.SUPPLICANT_STATE_CHANGED_ACTION.equalsIgnoreCase(action) && mNetID != -2) {
-                    SupplicantState state = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
-                    Log.i(TAG, "State Changed: " + state);
-                    WifiInfo wifiInfo = mWifiManager.getConnectionInfo();
-                    String ssid = WiFiConnector.convertToQuotedString(mWiFiConnector.getSSID());
-                    if (wifiInfo != null && ssid.equalsIgnoreCase(wifiInfo.getSSID())) {
-                        SupplicantState wifiState = wifiInfo.getSupplicantState();
-                        if (SupplicantState.COMPLETED == state && SupplicantState.COMPLETED == wifiState) {
-                            mResultCode = CONNECT_SUCCESS;
-                            mLatch.countDown();
-                        } else if (SupplicantState.DISCONNECTED == state && SupplicantState.DISCONNECTED == wifiState) {
-                            int resultCode = intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, -1);
-                            if (resultCode == 1) {
-                                mResultCode = ERR_PASSWORD_WRONG;
-                            } else {
-                                mResultCode = ERR_CONNECT_FAILED;
-                            }
-                            mLatch.countDown();
-                            mWifiManager.removeNetwork(mNetID);
+            if (mFinished || mNetID == -1) {
+                return;
+            }
+            SupplicantState state = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
+            if (state == null) {
+                return;
+            }
+            Log.i(TAG, "State Changed: " + state);
+            switch (state) {
+                case ASSOCIATED:
+                case FOUR_WAY_HANDSHAKE:
+                case GROUP_HANDSHAKE:
+                    if (mPhase == PHASE_ASSOCIATING) {
+                        enterPhase(PHASE_AUTHENTICATING);
+                    }
+                    break;
+                case COMPLETED:
+                    if (mPhase != PHASE_OBTAINING_IP) {
+                        enterPhase(PHASE_OBTAINING_IP);
+                        onNetworkConnected(getWiFiInfo());
+                    }
+                    break;
+                case DISCONNECTED:
+                    if (intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, -1) == WifiManager.ERROR_AUTHENTICATING) {
+                        mWiFiConnector.remove();
+                        finish(ERR_PASSWORD_WRONG);
+                    } else if (mPhase != PHASE_ASSOCIATING) {
+                        // Only the disconnection of the target fails the task,not the one of the previous network.
+                        WifiInfo wifiInfo = mWifiManager.getConnectionInfo();
+                        if (wifiInfo != null && mQuotedSSID.equalsIgnoreCase(wifiInfo.getSSID())) {
+                            finish(ERR_CONNECT_FAILED);
                         }
                     }
-                }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void finish(int resultCode) {
+            if (mFinished) {
+                return;
+            }
+            mFinished = true;
+            if (resultCode == CONNECT_SUCCESS) {
+                recordPhase();
+            }
+            mLoop.remove(mTimeoutRunnable);
+            if (mRegistered) {
+                mRegistered = false;
+                mPlatform.unregisterReceiver(this);
+            }
+            if (mFuture.isCancelled()) {
+                mWiFiConnector.removeIfNew();
+            } else {
+                recordConnectResult(mSSID, resultCode == CONNECT_SUCCESS);
+            }
+            mFuture.complete(resultCode);
+            onTaskFinished(this);
+        }
+    }
+
+    /**
+     * The policy of the shared WiFi scan.
+     */
+    public static final class ScanPolicy {
+
+        /**
+         * Default policy: at most one scan every 30s,which is inside the throttling of android P,
+         * results expire after 90s,report RSSI changes of 5dBm.
+         */
+        public static final ScanPolicy DEFAULT = new ScanPolicy(30000, 90000, 5);
+
+        private final long mMinScanInterval;
+        private final long mResultTtl;
+        private final int mRssiThreshold;
+
+        /**
+         * Create scan policy.
+         *
+         * @param minScanInterval min interval between two scans in milliseconds
+         * @param resultTtl       the time an access point is cached since last seen in milliseconds
+         * @param rssiThreshold   the min RSSI change reported to the listeners in dBm
+         */
+        public ScanPolicy(long minScanInterval, long resultTtl, int rssiThreshold) {
+            if (minScanInterval < 0 || resultTtl <= 0 || rssiThreshold < 0) {
+                throw new IllegalArgumentException("Invalid scan policy!");
+            }
+            mMinScanInterval = minScanInterval;
+            mResultTtl = resultTtl;
+            mRssiThreshold = rssiThreshold;
+        }
+
+        public long getMinScanInterval() {
+            return mMinScanInterval;
+        }
+
+        public long getResultTtl() {
+            return mResultTtl;
+        }
+
+        public int getRssiThreshold() {
+            return mRssiThreshold;
+        }
+    }
+
+    /**
+     * The policy of {@link #connectBest(List, Map, ConnectPolicy)}.
+     */
+    public static final class ConnectPolicy {
+
+        /**
+         * Default policy: association 5s,authentication 3s,obtaining IP 10s per attempt,try all candidates,prefer 5GHz.
+         */
+        public static final ConnectPolicy DEFAULT = new ConnectPolicy(new ConnectTimeouts(5000, 3000, 10000), Integer.MAX_VALUE, true);
+
+        private final ConnectTimeouts mAttemptTimeouts;
+        private final int mMaxAttempts;
+        private final boolean mPrefer5GHz;
+
+        /**
+         * Create connect policy.
+         *
+         * @param attemptTimeouts the phase timeouts of each attempt
+         * @param maxAttempts     max count of candidates to try
+         * @param prefer5GHz      rank 5GHz access points higher
+         */
+        public ConnectPolicy(ConnectTimeouts attemptTimeouts, int maxAttempts, boolean prefer5GHz) {
+            if (attemptTimeouts == null || maxAttempts <= 0) {
+                throw new IllegalArgumentException("Invalid connect policy!");
+            }
+            mAttemptTimeouts = attemptTimeouts;
+            mMaxAttempts = maxAttempts;
+            mPrefer5GHz = prefer5GHz;
+        }
+
+        public ConnectTimeouts getAttemptTimeouts() {
+            return mAttemptTimeouts;
+        }
+
+        public int getMaxAttempts() {
+            return mMaxAttempts;
+        }
+
+        public boolean isPrefer5GHz() {
+            return mPrefer5GHz;
+        }
+    }
+
+    /**
+     * The timeout of each WiFi connect phase.
+     */
+    public static final class ConnectTimeouts {
+
+        /**
+         * Default timeouts: association 10s,authentication 5s,obtaining IP 15s.
+         */
+        public static final ConnectTimeouts DEFAULT = new ConnectTimeouts(10000, 5000, 15000);
+
+        private final long mAssociationTimeout;
+        private final long mAuthenticationTimeout;
+        private final long mIpTimeout;
+
+        /**
+         * Create connect timeouts.
+         *
+         * @param associationTimeout    milliseconds to wait the access point associated
+         * @param authenticationTimeout milliseconds to wait the key handshake completed
+         * @param ipTimeout             milliseconds to wait the network connected after handshake
+         */
+        public ConnectTimeouts(long associationTimeout, long authenticationTimeout, long ipTimeout) {
+            if (associationTimeout <= 0 || authenticationTimeout <= 0 || ipTimeout <= 0) {
+                throw new IllegalArgumentException("Timeout should be positive!");
             }
+            mAssociationTimeout = associationTimeout;
+            mAuthenticationTimeout = authenticationTimeout;
+            mIpTimeout = ipTimeout;
+        }
+
+        public long getAssociationTimeout() {
+            return mAssociationTimeout;
+        }
+
+        public long getAuthenticationTimeout() {
+            return mAuthenticationTimeout;
+        }
+
+        public long getIpTimeout() {
+            return mIpTimeout;
         }
     }
 
@@ -347,6 +1007,7 @@ public class WiFiNetworkMonitor extends NetStateMachine {
          * @see #ERR_CONNECT_FAILED
          * @see #ERR_CONNECT_TIMEOUT
          * @see #ERR_PASSWORD_WRONG
+         * @see #ERR_CONNECT_REJECTED
          */
         void onConnectFailed(int errorCode, String errorMessage);
     }
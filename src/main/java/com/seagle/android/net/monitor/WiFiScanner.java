@@ -0,0 +1,243 @@
+package com.seagle.android.net.monitor;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Shared WiFi scan scheduler and scan result cache.
+ * <p>The scan requests of all callers are coalesced: a request while a scan is running joins it,
+ * and a request inside the min scan interval is delayed to the end of the interval,
+ * so the platform scan throttling is never hit.The results of every scan,including the scans started
+ * by the system or other apps,are merged into a {@link ScanResultCache},the entries not seen for the TTL
+ * expire,and the listeners receive only the diff.
+ * <p>All the methods except the listener and query methods are called on the monitor thread.
+ */
+class WiFiScanner extends BroadcastReceiver {
+
+    private static final String TAG = "WiFiScanner";
+
+    /**
+     * Give up waiting the results of a scan after this time.
+     */
+    private static final long SCAN_RESULT_TIMEOUT = 10000;
+
+    private final WifiManager mWifiManager;
+    private final EventLoop mLoop;
+    private final MonitorMetrics mMetrics;
+    private final CopyOnWriteArrayList<Registration> mRegistrations = new CopyOnWriteArrayList<>();
+    private final ScanResultCache mCache = new ScanResultCache();
+    private WiFiNetworkMonitor.ScanPolicy mPolicy = WiFiNetworkMonitor.ScanPolicy.DEFAULT;
+    private volatile List<ScanResult> mResults = Collections.emptyList();
+    private volatile long mScanCount;
+    private volatile long mRequestCount;
+    private long mLastScanTime = -1;
+    private boolean mScanInFlight;
+    private boolean mScanScheduled;
+    private boolean mRegistered;
+
+    private final Runnable mScanRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mScanScheduled = false;
+            startScan();
+        }
+    };
+
+    private final Runnable mScanTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Log.w(TAG, "Scan results not available!");
+            mScanInFlight = false;
+        }
+    };
+
+    private final Runnable mExpireRunnable = new Runnable() {
+        @Override
+        public void run() {
+            merge(null);
+        }
+    };
+
+    WiFiScanner(WifiManager wifiManager, EventLoop loop, MonitorMetrics metrics) {
+        mWifiManager = wifiManager;
+        mLoop = loop;
+        mMetrics = metrics;
+    }
+
+    void start(Platform platform) {
+        if (!mRegistered) {
+            IntentFilter filter = new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION);
+            platform.registerReceiver(this, filter, mLoop.getHandler());
+            mRegistered = true;
+        }
+    }
+
+    void stop(Platform platform) {
+        if (mRegistered) {
+            mRegistered = false;
+            platform.unregisterReceiver(this);
+        }
+        mLoop.remove(mScanRunnable);
+        mLoop.remove(mScanTimeoutRunnable);
+        mLoop.remove(mExpireRunnable);
+        mScanScheduled = false;
+        mScanInFlight = false;
+        mCache.clear();
+        mResults = Collections.emptyList();
+    }
+
+    void setPolicy(WiFiNetworkMonitor.ScanPolicy policy) {
+        mPolicy = policy;
+    }
+
+    List<ScanResult> getResults() {
+        return mResults;
+    }
+
+    long getScanCount() {
+        return mScanCount;
+    }
+
+    long getRequestCount() {
+        return mRequestCount;
+    }
+
+    boolean hasListeners() {
+        return !mRegistrations.isEmpty();
+    }
+
+    void addListener(final ScanListener listener, Executor executor) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener should not be null!");
+        }
+        for (Registration registration : mRegistrations) {
+            if (registration.mListener == listener) {
+                return;
+            }
+        }
+        final Registration registration = new Registration(listener, executor);
+        mRegistrations.add(registration);
+        mLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Bring the new listener up to date with the cache.
+                List<ScanResult> results = mResults;
+                if (!results.isEmpty() && mRegistrations.contains(registration)) {
+                    registration.deliver(new ScanDiff(new ArrayList<>(results), null, null, results));
+                }
+            }
+        });
+    }
+
+    void removeListener(ScanListener listener) {
+        for (Registration registration : mRegistrations) {
+            if (registration.mListener == listener) {
+                mRegistrations.remove(registration);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Request a scan,coalesced with the running or scheduled scan.
+     */
+    void requestScan() {
+        mRequestCount++;
+        if (mScanInFlight || mScanScheduled) {
+            return;
+        }
+        long delay = mLastScanTime < 0 ? 0 : mLastScanTime + mPolicy.getMinScanInterval() - SystemClock.elapsedRealtime();
+        if (delay > 0) {
+            mScanScheduled = true;
+            mLoop.postDelayed(mScanRunnable, delay);
+        } else {
+            startScan();
+        }
+    }
+
+    private void startScan() {
+        mLastScanTime = SystemClock.elapsedRealtime();
+        mScanCount++;
+        mMetrics.countBinderCall(MetricsSnapshot.BINDER_WIFI_SCAN);
+        if (mWifiManager.startScan()) {
+            mScanInFlight = true;
+            mLoop.postDelayed(mScanTimeoutRunnable, SCAN_RESULT_TIMEOUT);
+        } else {
+            Log.w(TAG, "Start scan failed!");
+        }
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        mScanInFlight = false;
+        mLoop.remove(mScanTimeoutRunnable);
+        List<ScanResult> results;
+        try {
+            mMetrics.countBinderCall(MetricsSnapshot.BINDER_WIFI_SCAN);
+            results = mWifiManager.getScanResults();
+        } catch (SecurityException ex) {
+            Log.w(TAG, "Get scan results failed!", ex);
+            return;
+        }
+        merge(results);
+    }
+
+    /**
+     * Merge the scan results into the cache,expire the old entries and dispatch the diff.
+     *
+     * @param results scan results,null to expire only
+     */
+    private void merge(List<ScanResult> results) {
+        long now = SystemClock.elapsedRealtime();
+        ScanDiff diff = mCache.merge(results, now, mPolicy.getRssiThreshold(), mPolicy.getResultTtl());
+        mLoop.remove(mExpireRunnable);
+        long nextExpire = mCache.getNextExpireTime();
+        if (nextExpire != Long.MAX_VALUE) {
+            mLoop.postDelayed(mExpireRunnable, nextExpire - now);
+        }
+        if (diff == null) {
+            return;
+        }
+        mResults = diff.getResults();
+        if (!mRegistrations.isEmpty()) {
+            for (Registration registration : mRegistrations) {
+                registration.deliver(diff);
+            }
+        }
+    }
+
+    private static class Registration {
+        private final ScanListener mListener;
+        private final Executor mExecutor;
+
+        Registration(ScanListener listener, Executor executor) {
+            mListener = listener;
+            mExecutor = executor;
+        }
+
+        void deliver(final ScanDiff diff) {
+            if (mExecutor == null) {
+                mListener.onScanResultsChanged(diff);
+            } else {
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mListener.onScanResultsChanged(diff);
+                    }
+                });
+            }
+        }
+    }
+}
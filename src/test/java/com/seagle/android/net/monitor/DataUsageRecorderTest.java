@@ -0,0 +1,109 @@
+package com.seagle.android.net.monitor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of {@link DataUsageRecorder}.
+ */
+public class DataUsageRecorderTest {
+
+    private static final long HOUR = 3600000L;
+    private static final long NOW = 480000 * HOUR + 60000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private DataUsageRecorder mRecorder;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mFolder.getRoot(), "usage");
+        mRecorder = new DataUsageRecorder(mFile);
+    }
+
+    @Test
+    public void record_firstSampleIsBaseline() {
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 1000, 500, NOW);
+
+        assertEquals(0, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, false));
+        assertEquals(0, mRecorder.getDailyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, true));
+    }
+
+    @Test
+    public void record_attributesDeltaToTransport() {
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 1000, 500, NOW);
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 1300, 600, NOW + 1000);
+        mRecorder.record(NetworkMonitor.TRANSPORT_MOBILE, 1400, 900, NOW + 2000);
+
+        assertEquals(300, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, false));
+        assertEquals(100, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, true));
+        assertEquals(100, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_MOBILE, NOW, false));
+        assertEquals(300, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_MOBILE, NOW, true));
+        assertEquals(300, mRecorder.getDailyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, false));
+        assertEquals(300, mRecorder.getDailyBytes(NetworkMonitor.TRANSPORT_MOBILE, NOW, true));
+    }
+
+    @Test
+    public void record_splitsByHour() {
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 0, 0, NOW);
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 100, 0, NOW);
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 300, 0, NOW + HOUR);
+
+        assertEquals(100, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, false));
+        assertEquals(200, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW + HOUR, false));
+    }
+
+    @Test
+    public void record_dropsCounterReset() {
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 1000, 1000, NOW);
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 10, 10, NOW + 1000);
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 60, 30, NOW + 2000);
+
+        assertEquals(50, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, false));
+        assertEquals(20, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, true));
+    }
+
+    @Test
+    public void record_withoutTransportOnlyMovesBaseline() {
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 0, 0, NOW);
+        mRecorder.record(NetworkMonitor.TRANSPORT_NONE, 500, 500, NOW + 1000);
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 600, 500, NOW + 2000);
+
+        assertEquals(100, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, false));
+        assertEquals(0, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_NONE, NOW, false));
+    }
+
+    @Test
+    public void record_recyclesExpiredHourSlot() {
+        long later = NOW + DataUsageRecorder.HOUR_CAPACITY * HOUR;
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 0, 0, NOW);
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 100, 0, NOW);
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 150, 0, later);
+
+        assertEquals(0, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, false));
+        assertEquals(50, mRecorder.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, later, false));
+    }
+
+    @Test
+    public void record_persistsRollupsOncePerHour() {
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 0, 0, NOW);
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 100, 40, NOW + 1000);
+        assertTrue(mFile.exists());
+        // Not persisted again inside the same hour.
+        mRecorder.record(NetworkMonitor.TRANSPORT_WIFI, 200, 40, NOW + 2000);
+
+        DataUsageRecorder restored = new DataUsageRecorder(mFile);
+        restored.start();
+        assertEquals(100, restored.getHourlyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, false));
+        assertEquals(40, restored.getDailyBytes(NetworkMonitor.TRANSPORT_WIFI, NOW, true));
+    }
+}
@@ -0,0 +1,268 @@
+package com.seagle.android.net.monitor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of {@link ListenerRegistry}.
+ */
+public class ListenerRegistryTest {
+
+    private MonitorMetrics mMetrics;
+    private ListenerRegistry mRegistry;
+
+    @Before
+    public void setUp() {
+        mMetrics = new MonitorMetrics();
+        mMetrics.setEnabled(true);
+        mRegistry = new ListenerRegistry(mMetrics);
+    }
+
+    @Test
+    public void dispatch_deliversToEveryListener() {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        mRegistry.add(first, null);
+        mRegistry.add(second, null);
+
+        NetworkEvent event = event(NetworkEvent.TYPE_CONNECTED, 0);
+        mRegistry.dispatch(event);
+
+        assertEquals(1, first.mEvents.size());
+        assertSame(event, first.mEvents.get(0));
+        assertEquals(1, second.mEvents.size());
+    }
+
+    @Test
+    public void add_ignoresDuplicateListener() {
+        RecordingListener listener = new RecordingListener();
+        mRegistry.add(listener, null);
+        mRegistry.add(listener, null, NetworkEvent.FIELD_ALL);
+
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, 0));
+
+        assertEquals(1, listener.mEvents.size());
+    }
+
+    @Test
+    public void dispatch_filtersFieldEventsBySubscription() {
+        RecordingListener plain = new RecordingListener();
+        RecordingListener validated = new RecordingListener();
+        RecordingListener networks = new RecordingListener();
+        mRegistry.add(plain, null);
+        mRegistry.add(validated, null, NetworkEvent.FIELD_VALIDATED);
+        mRegistry.add(networks, null, NetworkEvent.FIELD_NETWORKS);
+
+        mRegistry.dispatch(event(NetworkEvent.TYPE_PROPERTIES_CHANGED, NetworkEvent.FIELD_VALIDATED | NetworkEvent.FIELD_METERED));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_NETWORK_LOST, NetworkEvent.FIELD_NETWORKS));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_DISCONNECTED, 0));
+
+        assertEquals(types(NetworkEvent.TYPE_DISCONNECTED), plain.types());
+        assertEquals(types(NetworkEvent.TYPE_PROPERTIES_CHANGED, NetworkEvent.TYPE_DISCONNECTED), validated.types());
+        assertEquals(types(NetworkEvent.TYPE_NETWORK_LOST, NetworkEvent.TYPE_DISCONNECTED), networks.types());
+    }
+
+    @Test
+    public void dispatch_usesExecutor() {
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        mRegistry.add(listener, executor);
+
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, 0));
+
+        assertTrue(listener.mEvents.isEmpty());
+        assertEquals(1, executor.runAll());
+        assertEquals(1, listener.mEvents.size());
+    }
+
+    @Test
+    public void remove_stopsDelivery() {
+        RecordingListener listener = new RecordingListener();
+        mRegistry.add(listener, null);
+        assertFalse(mRegistry.isEmpty());
+
+        mRegistry.remove(listener);
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, 0));
+
+        assertTrue(mRegistry.isEmpty());
+        assertTrue(listener.mEvents.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_rejectsNullListener() {
+        mRegistry.add(null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_rejectsPolicyWithoutExecutor() {
+        mRegistry.add(new RecordingListener(), null, 0, DeliveryPolicy.CONFLATE);
+    }
+
+    @Test
+    public void conflate_keepsLatestStateOfEachTransport() {
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        mRegistry.add(listener, executor, 0, DeliveryPolicy.CONFLATE);
+
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, NetworkMonitor.TRANSPORT_WIFI, 0));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, NetworkMonitor.TRANSPORT_MOBILE, 0));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_DISCONNECTED, NetworkMonitor.TRANSPORT_WIFI, 0));
+
+        assertEquals(1, executor.runAll());
+        assertEquals(types(NetworkEvent.TYPE_CONNECTED, NetworkEvent.TYPE_DISCONNECTED), listener.types());
+        assertEquals(NetworkMonitor.TRANSPORT_MOBILE, listener.mEvents.get(0).getTransport());
+        assertEquals(1, mMetrics.snapshot().getDroppedEventCount());
+    }
+
+    @Test
+    public void conflate_networkEventsNeverReplaceStateChange() {
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        mRegistry.add(listener, executor, NetworkEvent.FIELD_NETWORKS, DeliveryPolicy.CONFLATE);
+
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, 0));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_NETWORK_AVAILABLE, NetworkEvent.FIELD_NETWORKS));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_NETWORK_LOST, NetworkEvent.FIELD_NETWORKS));
+
+        executor.runAll();
+        assertEquals(types(NetworkEvent.TYPE_CONNECTED, NetworkEvent.TYPE_NETWORK_LOST), listener.types());
+    }
+
+    @Test
+    public void conflate_deliversEventsAfterDrain() {
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        mRegistry.add(listener, executor, 0, DeliveryPolicy.CONFLATE);
+
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, 0));
+        executor.runAll();
+        mRegistry.dispatch(event(NetworkEvent.TYPE_DISCONNECTED, 0));
+        executor.runAll();
+
+        assertEquals(types(NetworkEvent.TYPE_CONNECTED, NetworkEvent.TYPE_DISCONNECTED), listener.types());
+        assertEquals(0, mMetrics.snapshot().getDroppedEventCount());
+    }
+
+    @Test
+    public void dropOldest_keepsNewestEvents() {
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        mRegistry.add(listener, executor, 0, DeliveryPolicy.dropOldest(2));
+
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, 0));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_DISCONNECTED, 0));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CHANGED, 0));
+
+        assertEquals(1, executor.runAll());
+        assertEquals(types(NetworkEvent.TYPE_DISCONNECTED, NetworkEvent.TYPE_CHANGED), listener.types());
+        assertEquals(1, mMetrics.snapshot().getDroppedEventCount());
+    }
+
+    @Test
+    public void strict_keepsEveryEventInOrder() {
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+        mRegistry.add(listener, executor, 0, DeliveryPolicy.strict(3));
+
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, 0));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_CHANGED, 0));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_DISCONNECTED, 0));
+
+        executor.runAll();
+        assertEquals(types(NetworkEvent.TYPE_CONNECTED, NetworkEvent.TYPE_CHANGED, NetworkEvent.TYPE_DISCONNECTED),
+                listener.types());
+        assertEquals(0, mMetrics.snapshot().getDroppedEventCount());
+    }
+
+    @Test
+    public void strict_overflowRemovesListener() {
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener slow = new RecordingListener();
+        RecordingListener other = new RecordingListener();
+        mRegistry.add(slow, executor, 0, DeliveryPolicy.strict(2));
+        mRegistry.add(other, null);
+
+        assertFalse(mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, 0)));
+        assertFalse(mRegistry.dispatch(event(NetworkEvent.TYPE_DISCONNECTED, 0)));
+        assertTrue(mRegistry.dispatch(event(NetworkEvent.TYPE_CONNECTED, 0)));
+        mRegistry.dispatch(event(NetworkEvent.TYPE_DISCONNECTED, 0));
+
+        executor.runAll();
+        assertTrue(slow.mEvents.isEmpty());
+        assertEquals(4, other.mEvents.size());
+        assertEquals(1, mMetrics.snapshot().getDroppedListenerCount());
+        assertEquals(3, mMetrics.snapshot().getDroppedEventCount());
+
+        mRegistry.remove(other);
+        assertTrue(mRegistry.isEmpty());
+    }
+
+    @Test
+    public void strict_defaultCapacity() {
+        assertSame(DeliveryPolicy.STRICT, DeliveryPolicy.strict(DeliveryPolicy.DEFAULT_STRICT_CAPACITY));
+        assertEquals(DeliveryPolicy.DEFAULT_STRICT_CAPACITY, DeliveryPolicy.STRICT.getCapacity());
+    }
+
+    static NetworkEvent event(int type, int changedFields) {
+        return event(type, NetworkMonitor.TRANSPORT_WIFI, changedFields);
+    }
+
+    static NetworkEvent event(int type, int transport, int changedFields) {
+        return new NetworkEvent(type, transport, null, null, null, null, null, null, changedFields);
+    }
+
+    static List<Integer> types(int... types) {
+        List<Integer> list = new ArrayList<>();
+        for (int type : types) {
+            list.add(type);
+        }
+        return list;
+    }
+
+    static class RecordingListener implements NetworkListener {
+        final List<NetworkEvent> mEvents = new ArrayList<>();
+
+        @Override
+        public void onNetworkEvent(NetworkEvent event) {
+            mEvents.add(event);
+        }
+
+        List<Integer> types() {
+            List<Integer> list = new ArrayList<>();
+            for (NetworkEvent event : mEvents) {
+                list.add(event.getType());
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Executor running the tasks only when asked,so the test controls the listener thread.
+     */
+    static class QueueExecutor implements Executor {
+        final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task) {
+            mTasks.add(task);
+        }
+
+        int runAll() {
+            int count = 0;
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+                count++;
+            }
+            return count;
+        }
+    }
+}
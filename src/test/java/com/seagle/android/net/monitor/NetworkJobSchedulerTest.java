@@ -0,0 +1,272 @@
+package com.seagle.android.net.monitor;
+
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test of {@link NetworkJobScheduler}.
+ */
+public class NetworkJobSchedulerTest {
+
+    private NetworkMonitor mMonitor;
+    private EventLoop mEventLoop;
+    private ListenerRegistryTest.QueueExecutor mLoop;
+    private ListenerRegistryTest.QueueExecutor mWorkers;
+    private NetworkJobScheduler mScheduler;
+    private NetworkSnapshot mSnapshot;
+
+    @Before
+    public void setUp() {
+        mMonitor = mock(NetworkMonitor.class);
+        mLoop = new ListenerRegistryTest.QueueExecutor();
+        mWorkers = new ListenerRegistryTest.QueueExecutor();
+        EventLoop loop = mEventLoop = mock(EventLoop.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                mLoop.execute((Runnable) invocation.getArgument(0));
+                return null;
+            }
+        }).when(loop).post(any(Runnable.class));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                mLoop.mTasks.remove(invocation.getArgument(0));
+                return null;
+            }
+        }).when(loop).remove(any(Runnable.class));
+        when(mMonitor.getEventLoop()).thenReturn(loop);
+        when(mMonitor.getSnapshot()).thenAnswer(new Answer<NetworkSnapshot>() {
+            @Override
+            public NetworkSnapshot answer(InvocationOnMock invocation) {
+                return mSnapshot;
+            }
+        });
+        mSnapshot = NetworkSnapshot.EMPTY;
+        mScheduler = new NetworkJobScheduler(mMonitor, mWorkers);
+    }
+
+    @Test
+    public void schedule_drainsOnMonitorThreadOnce() {
+        connectWifi();
+        RecordingJob job = new RecordingJob("first");
+
+        mScheduler.schedule(job, NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+        mScheduler.schedule(job, NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+
+        assertTrue(mWorkers.mTasks.isEmpty());
+        assertEquals(1, mLoop.runAll());
+        assertEquals(2, mScheduler.getRunningJobCount());
+        // Once for each schedule and once by the drain.
+        verify(mMonitor, times(3)).acquireAllStateMachines();
+    }
+
+    @Test
+    public void schedule_beforeStartAcquiresMonitorsOnFirstDrain() {
+        when(mMonitor.getEventLoop()).thenReturn(null);
+        RecordingJob job = new RecordingJob("job");
+        Future<Boolean> future = mScheduler.schedule(job, NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+
+        // Not started,nothing posted and no monitor to acquire.
+        assertTrue(mLoop.mTasks.isEmpty());
+        verify(mMonitor, times(1)).acquireAllStateMachines();
+
+        // The start publishes the active network,then the monitors acquired by the drain publish their state.
+        when(mMonitor.getEventLoop()).thenReturn(mEventLoop);
+        mScheduler.onSnapshotChanged();
+        runUntilIdle();
+        verify(mMonitor, times(2)).acquireAllStateMachines();
+        assertEquals(0, job.mRuns);
+
+        connectWifi();
+        mScheduler.onSnapshotChanged();
+        runUntilIdle();
+
+        assertEquals(1, job.mRuns);
+        assertTrue(future.isDone());
+        assertTrue(mScheduler.isIdle());
+    }
+
+    @Test
+    public void drain_runsHigherPriorityFirstThenScheduleOrder() {
+        connectWifi();
+        mScheduler.setMaxConcurrency(1);
+        List<String> order = new ArrayList<>();
+        mScheduler.schedule(new RecordingJob("low", order), NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_LOW);
+        mScheduler.schedule(new RecordingJob("first", order), NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+        mScheduler.schedule(new RecordingJob("high", order), NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_HIGH);
+        mScheduler.schedule(new RecordingJob("second", order), NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+
+        runUntilIdle();
+
+        assertEquals(4, order.size());
+        assertEquals("high", order.get(0));
+        assertEquals("first", order.get(1));
+        assertEquals("second", order.get(2));
+        assertEquals("low", order.get(3));
+    }
+
+    @Test
+    public void drain_waitsForSatisfyingNetwork() {
+        RecordingJob job = new RecordingJob("job");
+        Future<Boolean> future = mScheduler.schedule(job, NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+
+        runUntilIdle();
+        assertEquals(0, job.mRuns);
+        assertEquals(1, mScheduler.getPendingJobCount());
+
+        connectWifi();
+        mScheduler.onSnapshotChanged();
+        runUntilIdle();
+
+        assertEquals(1, job.mRuns);
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void run_returningFalseRetriesOnNextSnapshot() throws Exception {
+        connectWifi();
+        RecordingJob job = new RecordingJob("job");
+        job.mResults = new boolean[]{false, true};
+        Future<Boolean> future = mScheduler.schedule(job, NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+
+        runUntilIdle();
+        assertEquals(1, job.mRuns);
+        assertEquals(1, mScheduler.getPendingJobCount());
+        assertFalse(future.isDone());
+
+        connectWifi();
+        mScheduler.onSnapshotChanged();
+        runUntilIdle();
+
+        assertEquals(2, job.mRuns);
+        assertTrue(future.get());
+        verify(mMonitor).releaseStateMachinesIfUnused();
+    }
+
+    @Test
+    public void run_failedJobCompletesFalse() throws Exception {
+        connectWifi();
+        Future<Boolean> future = mScheduler.schedule(new NetworkJob() {
+            @Override
+            public boolean run(Network network) {
+                throw new IllegalStateException("failed");
+            }
+        }, NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+
+        runUntilIdle();
+
+        assertFalse(future.get());
+        assertTrue(mScheduler.isIdle());
+    }
+
+    @Test
+    public void cancel_removesWaitingJobAndReleases() {
+        RecordingJob job = new RecordingJob("job");
+        Future<Boolean> future = mScheduler.schedule(job, NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+
+        assertTrue(future.cancel(false));
+
+        assertEquals(0, mScheduler.getPendingJobCount());
+        assertTrue(mScheduler.isIdle());
+        verify(mMonitor).releaseStateMachinesIfUnused();
+        connectWifi();
+        mScheduler.onSnapshotChanged();
+        runUntilIdle();
+        assertEquals(0, job.mRuns);
+    }
+
+    @Test
+    public void cancel_runningJobIsNotQueuedAgain() {
+        connectWifi();
+        RecordingJob job = new RecordingJob("job");
+        job.mResults = new boolean[]{false};
+        Future<Boolean> future = mScheduler.schedule(job, NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+        mLoop.runAll();
+
+        assertFalse(mScheduler.isIdle());
+        future.cancel(false);
+        verify(mMonitor, never()).releaseStateMachinesIfUnused();
+        runUntilIdle();
+
+        assertEquals(1, job.mRuns);
+        assertTrue(mScheduler.isIdle());
+        verify(mMonitor).releaseStateMachinesIfUnused();
+    }
+
+    @Test
+    public void isIdle_countsRunningJobs() {
+        connectWifi();
+        mScheduler.schedule(new RecordingJob("job"), NetworkConstraint.ANY, NetworkJobScheduler.PRIORITY_DEFAULT);
+        mLoop.runAll();
+
+        assertEquals(0, mScheduler.getPendingJobCount());
+        assertEquals(1, mScheduler.getRunningJobCount());
+        assertFalse(mScheduler.isIdle());
+
+        mWorkers.runAll();
+
+        assertTrue(mScheduler.isIdle());
+        verify(mMonitor).releaseStateMachinesIfUnused();
+    }
+
+    /**
+     * Publish a new snapshot with WiFi connected over the default network.
+     */
+    private void connectWifi() {
+        NetworkInfo networkInfo = mock(NetworkInfo.class);
+        when(networkInfo.isConnected()).thenReturn(true);
+        when(networkInfo.getType()).thenReturn(ConnectivityManager.TYPE_WIFI);
+        mSnapshot = mSnapshot.withTransportState(NetworkMonitor.TRANSPORT_WIFI,
+                new NetworkSnapshot.TransportState(networkInfo, null, null, null, null));
+    }
+
+    private void runUntilIdle() {
+        while (mLoop.runAll() + mWorkers.runAll() > 0) {
+            // Run the drains and the jobs they released.
+        }
+    }
+
+    private static class RecordingJob implements NetworkJob {
+        final String mName;
+        final List<String> mOrder;
+        boolean[] mResults = {true};
+        int mRuns;
+
+        RecordingJob(String name) {
+            this(name, new ArrayList<String>());
+        }
+
+        RecordingJob(String name, List<String> order) {
+            mName = name;
+            mOrder = order;
+        }
+
+        @Override
+        public boolean run(Network network) {
+            mOrder.add(mName);
+            return mResults[Math.min(mRuns++, mResults.length - 1)];
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.seagle.android.net.monitor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test of the probe ring buffer of {@link NetworkProber}.
+ */
+public class NetworkProberTest {
+
+    private NetworkProber.ProbeWindow mWindow;
+    private long[] mScratch;
+
+    @Before
+    public void setUp() {
+        mWindow = new NetworkProber.ProbeWindow();
+        mScratch = new long[NetworkProber.WINDOW_SIZE];
+    }
+
+    @Test
+    public void percentile_picksNearestRank() {
+        long[] sorted = {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+
+        assertEquals(50, NetworkProber.percentile(sorted, 10, 50));
+        assertEquals(100, NetworkProber.percentile(sorted, 10, 95));
+        assertEquals(10, NetworkProber.percentile(sorted, 1, 95));
+        assertEquals(-1, NetworkProber.percentile(sorted, 0, 50));
+    }
+
+    @Test
+    public void toQuality_emptyWindow() {
+        NetworkQuality quality = mWindow.toQuality(NetworkMonitor.TRANSPORT_WIFI, mScratch);
+
+        assertEquals(0, quality.getSampleCount());
+        assertEquals(0f, quality.getLossRate(), 0f);
+        assertEquals(-1, quality.getConnectMedian());
+        assertEquals(-1, quality.getRequestP95());
+        assertNull(quality.getNetwork());
+    }
+
+    @Test
+    public void toQuality_sortsSamplesOutOfOrder() {
+        mWindow.add(30, 300, false);
+        mWindow.add(10, 100, false);
+        mWindow.add(20, 200, false);
+
+        NetworkQuality quality = mWindow.toQuality(NetworkMonitor.TRANSPORT_WIFI, mScratch);
+
+        assertEquals(3, quality.getSampleCount());
+        assertEquals(20, quality.getConnectMedian());
+        assertEquals(30, quality.getConnectP95());
+        assertEquals(200, quality.getRequestMedian());
+        assertEquals(300, quality.getRequestP95());
+    }
+
+    @Test
+    public void toQuality_lostProbesCountOnlyInLossRate() {
+        mWindow.add(10, -1, false);
+        mWindow.add(-1, -1, true);
+        mWindow.add(30, -1, false);
+        mWindow.add(-1, -1, true);
+
+        NetworkQuality quality = mWindow.toQuality(NetworkMonitor.TRANSPORT_MOBILE, mScratch);
+
+        assertEquals(4, quality.getSampleCount());
+        assertEquals(0.5f, quality.getLossRate(), 0f);
+        assertEquals(10, quality.getConnectMedian());
+        assertEquals(30, quality.getConnectP95());
+        assertEquals(-1, quality.getRequestMedian());
+    }
+
+    @Test
+    public void add_overwritesOldestWhenFull() {
+        mWindow.add(-1, -1, true);
+        for (int i = 1; i <= NetworkProber.WINDOW_SIZE; i++) {
+            mWindow.add(i * 10, -1, false);
+        }
+
+        NetworkQuality quality = mWindow.toQuality(NetworkMonitor.TRANSPORT_WIFI, mScratch);
+
+        assertEquals(NetworkProber.WINDOW_SIZE, quality.getSampleCount());
+        assertEquals(0f, quality.getLossRate(), 0f);
+        assertEquals(100, quality.getConnectMedian());
+        assertEquals(190, quality.getConnectP95());
+    }
+
+    @Test
+    public void reset_dropsSamples() {
+        mWindow.add(10, 100, false);
+
+        mWindow.reset(null);
+
+        assertEquals(0, mWindow.toQuality(NetworkMonitor.TRANSPORT_WIFI, mScratch).getSampleCount());
+    }
+}
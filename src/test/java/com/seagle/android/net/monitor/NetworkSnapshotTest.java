@@ -0,0 +1,158 @@
+package com.seagle.android.net.monitor;
+
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test of {@link NetworkSnapshot}.
+ */
+public class NetworkSnapshotTest {
+
+    private static final int ALL_CAPABILITY_FIELDS =
+            NetworkEvent.FIELD_METERED | NetworkEvent.FIELD_VALIDATED | NetworkEvent.FIELD_BANDWIDTH;
+
+    @Test
+    public void diffProperties_sameValuesChangeNothing() {
+        LinkProperties linkProperties = mock(LinkProperties.class);
+        NetworkSnapshot.TransportState state = state(capabilities(true, true, 1000, 500), linkProperties);
+
+        assertEquals(0, state.diffProperties(capabilities(true, true, 1000, 500), linkProperties));
+    }
+
+    @Test
+    public void diffProperties_capabilitiesAppearedOrLostChangeEveryCapabilityField() {
+        NetworkSnapshot.TransportState without = state(null, null);
+        NetworkSnapshot.TransportState with = state(capabilities(true, true, 1000, 500), null);
+
+        assertEquals(ALL_CAPABILITY_FIELDS, without.diffProperties(capabilities(false, false, 0, 0), null));
+        assertEquals(ALL_CAPABILITY_FIELDS, with.diffProperties(null, null));
+        assertEquals(0, without.diffProperties(null, null));
+    }
+
+    @Test
+    public void diffProperties_reportsEachCapabilityField() {
+        NetworkSnapshot.TransportState state = state(capabilities(true, false, 1000, 500), null);
+
+        assertEquals(NetworkEvent.FIELD_METERED, state.diffProperties(capabilities(false, false, 1000, 500), null));
+        assertEquals(NetworkEvent.FIELD_VALIDATED, state.diffProperties(capabilities(true, true, 1000, 500), null));
+        assertEquals(NetworkEvent.FIELD_BANDWIDTH, state.diffProperties(capabilities(true, false, 2000, 500), null));
+        assertEquals(NetworkEvent.FIELD_BANDWIDTH, state.diffProperties(capabilities(true, false, 1000, 800), null));
+        assertEquals(NetworkEvent.FIELD_METERED | NetworkEvent.FIELD_VALIDATED,
+                state.diffProperties(capabilities(false, true, 1000, 500), null));
+    }
+
+    @Test
+    public void diffProperties_comparesLinkPropertiesByEquality() {
+        LinkProperties current = mock(LinkProperties.class);
+        LinkProperties different = mock(LinkProperties.class);
+        NetworkCapabilities capabilities = capabilities(true, true, 1000, 500);
+        NetworkSnapshot.TransportState state = state(capabilities, current);
+
+        assertEquals(0, state.diffProperties(capabilities, current));
+        assertEquals(NetworkEvent.FIELD_LINK_PROPERTIES, state.diffProperties(capabilities, different));
+        assertEquals(NetworkEvent.FIELD_LINK_PROPERTIES, state.diffProperties(capabilities, null));
+        assertEquals(NetworkEvent.FIELD_LINK_PROPERTIES, state(capabilities, null).diffProperties(capabilities, current));
+    }
+
+    @Test
+    public void withProperties_keepsNetworkAndReplacesProperties() {
+        NetworkInfo networkInfo = networkInfo(ConnectivityManager.TYPE_WIFI);
+        NetworkSnapshot.TransportState state = new NetworkSnapshot.TransportState(networkInfo, null, null,
+                capabilities(true, false, 1000, 500), null);
+        NetworkCapabilities capabilities = capabilities(false, true, 2000, 500);
+        LinkProperties linkProperties = mock(LinkProperties.class);
+
+        NetworkSnapshot.TransportState updated = state.withProperties(capabilities, linkProperties);
+
+        assertSame(networkInfo, updated.getNetworkInfo());
+        assertTrue(updated.isConnected());
+        assertTrue(updated.isKnown());
+        assertSame(capabilities, updated.getCapabilities());
+        assertSame(linkProperties, updated.getLinkProperties());
+        assertTrue(updated.isMetered());
+        assertTrue(updated.isValidated());
+        assertEquals(2000, updated.getLinkDownstreamBandwidthKbps());
+        assertEquals(0, updated.diffProperties(capabilities, linkProperties));
+    }
+
+    @Test
+    public void isMetered_fallsBackWithoutCapabilities() {
+        NetworkSnapshot.TransportState mobile = new NetworkSnapshot.TransportState(
+                networkInfo(ConnectivityManager.TYPE_MOBILE), null, null, null, null);
+        NetworkSnapshot.TransportState wifi = new NetworkSnapshot.TransportState(
+                networkInfo(ConnectivityManager.TYPE_WIFI), null, null, null, null);
+        NetworkSnapshot.TransportState provisional = new NetworkSnapshot.TransportState(true, true, 300, null, null);
+
+        assertTrue(mobile.isMetered());
+        assertFalse(wifi.isMetered());
+        assertFalse(NetworkSnapshot.TransportState.DISCONNECTED.isMetered());
+        assertTrue(provisional.isMetered());
+        assertTrue(provisional.isValidated());
+        assertEquals(300, provisional.getLinkDownstreamBandwidthKbps());
+        assertFalse(mobile.isValidated());
+        assertEquals(0, mobile.getLinkDownstreamBandwidthKbps());
+    }
+
+    @Test
+    public void withTransportState_increasesSequenceAndKeepsOtherTransports() {
+        NetworkSnapshot.TransportState wifi = state(null, null);
+
+        NetworkSnapshot first = NetworkSnapshot.EMPTY.withTransportState(NetworkMonitor.TRANSPORT_WIFI, wifi);
+        NetworkSnapshot second = first.withTransportState(NetworkMonitor.TRANSPORT_MOBILE,
+                NetworkSnapshot.TransportState.DISCONNECTED);
+
+        assertEquals(NetworkSnapshot.EMPTY.getSequence() + 1, first.getSequence());
+        assertEquals(first.getSequence() + 1, second.getSequence());
+        assertSame(wifi, second.getTransportState(NetworkMonitor.TRANSPORT_WIFI));
+        assertSame(NetworkSnapshot.TransportState.DISCONNECTED, second.getTransportState(NetworkMonitor.TRANSPORT_MOBILE));
+        assertSame(NetworkSnapshot.TransportState.UNKNOWN, first.getTransportState(NetworkMonitor.TRANSPORT_MOBILE));
+    }
+
+    @Test
+    public void withTransportState_dropsProvisionalStates() {
+        NetworkSnapshot.TransportState restored = new NetworkSnapshot.TransportState(false, true, 0, null, null);
+        NetworkSnapshot provisional = NetworkSnapshot.provisional(5, 1000, NetworkMonitor.TRANSPORT_WIFI,
+                new NetworkSnapshot.TransportState[]{restored, restored, restored});
+        NetworkSnapshot.TransportState wifi = state(null, null);
+
+        NetworkSnapshot live = provisional.withTransportState(NetworkMonitor.TRANSPORT_WIFI, wifi);
+
+        assertTrue(provisional.isProvisional());
+        assertFalse(live.isProvisional());
+        assertTrue(live.getSequence() > provisional.getSequence());
+        assertSame(wifi, live.getTransportState(NetworkMonitor.TRANSPORT_WIFI));
+        assertSame(NetworkSnapshot.TransportState.UNKNOWN, live.getTransportState(NetworkMonitor.TRANSPORT_MOBILE));
+    }
+
+    private static NetworkSnapshot.TransportState state(NetworkCapabilities capabilities, LinkProperties linkProperties) {
+        return new NetworkSnapshot.TransportState(networkInfo(ConnectivityManager.TYPE_WIFI), null, null,
+                capabilities, linkProperties);
+    }
+
+    private static NetworkInfo networkInfo(int type) {
+        NetworkInfo networkInfo = mock(NetworkInfo.class);
+        when(networkInfo.isConnected()).thenReturn(true);
+        when(networkInfo.getType()).thenReturn(type);
+        return networkInfo;
+    }
+
+    private static NetworkCapabilities capabilities(boolean notMetered, boolean validated, int downKbps, int upKbps) {
+        NetworkCapabilities capabilities = mock(NetworkCapabilities.class);
+        when(capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)).thenReturn(notMetered);
+        when(capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)).thenReturn(validated);
+        when(capabilities.getLinkDownstreamBandwidthKbps()).thenReturn(downKbps);
+        when(capabilities.getLinkUpstreamBandwidthKbps()).thenReturn(upKbps);
+        return capabilities;
+    }
+}
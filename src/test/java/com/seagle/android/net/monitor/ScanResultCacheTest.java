@@ -0,0 +1,143 @@
+package com.seagle.android.net.monitor;
+
+import android.net.wifi.ScanResult;
+import android.os.Build;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit test of {@link ScanResultCache}.
+ */
+public class ScanResultCacheTest {
+
+    private static final int RSSI_THRESHOLD = 5;
+    private static final long TTL = 90000;
+
+    private ScanResultCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new ScanResultCache();
+    }
+
+    @Test
+    public void merge_reportsNewAccessPointsAsAdded() {
+        ScanResult first = result("b1", -50);
+        ScanResult second = result("b2", -60);
+
+        ScanDiff diff = mCache.merge(list(first, second), 1000, RSSI_THRESHOLD, TTL);
+
+        assertEquals(2, diff.getAdded().size());
+        assertTrue(diff.getRemoved().isEmpty());
+        assertTrue(diff.getChanged().isEmpty());
+        assertEquals(2, mCache.getResults().size());
+        assertEquals(1000 + TTL, mCache.getNextExpireTime());
+    }
+
+    @Test
+    public void merge_sameResultsReturnsNull() {
+        mCache.merge(list(result("b1", -50)), 1000, RSSI_THRESHOLD, TTL);
+
+        assertNull(mCache.merge(list(result("b1", -52)), 2000, RSSI_THRESHOLD, TTL));
+        assertEquals(2000 + TTL, mCache.getNextExpireTime());
+    }
+
+    @Test
+    public void merge_reportsRssiChangeBeyondThreshold() {
+        mCache.merge(list(result("b1", -50)), 1000, RSSI_THRESHOLD, TTL);
+        ScanResult weaker = result("b1", -55);
+
+        ScanDiff diff = mCache.merge(list(weaker), 2000, RSSI_THRESHOLD, TTL);
+
+        assertEquals(1, diff.getChanged().size());
+        assertSame(weaker, diff.getChanged().get(0));
+        assertSame(weaker, mCache.getResults().get(0));
+    }
+
+    @Test
+    public void merge_accumulatesSlowDrift() {
+        mCache.merge(list(result("b1", -50)), 1000, RSSI_THRESHOLD, TTL);
+
+        assertNull(mCache.merge(list(result("b1", -53)), 2000, RSSI_THRESHOLD, TTL));
+        ScanDiff diff = mCache.merge(list(result("b1", -56)), 3000, RSSI_THRESHOLD, TTL);
+
+        assertEquals(1, diff.getChanged().size());
+    }
+
+    @Test
+    public void merge_expiresAccessPointsNotSeenForTtl() {
+        ScanResult first = result("b1", -50);
+        mCache.merge(list(first), 1000, RSSI_THRESHOLD, TTL);
+        mCache.merge(list(result("b2", -60)), 50000, RSSI_THRESHOLD, TTL);
+
+        ScanDiff diff = mCache.merge(null, 1000 + TTL, RSSI_THRESHOLD, TTL);
+
+        assertEquals(1, diff.getRemoved().size());
+        assertSame(first, diff.getRemoved().get(0));
+        assertEquals(1, diff.getResults().size());
+        assertEquals(50000 + TTL, mCache.getNextExpireTime());
+    }
+
+    @Test
+    public void merge_skipsResultsOlderThanTtl() {
+        // The scan timestamp is read since android JELLY_BEAN_MR1.
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1);
+        long now = 200000;
+        ScanResult stale = result("b1", -50);
+        stale.timestamp = (now - TTL) * 1000;
+        ScanResult fresh = result("b2", -60);
+        fresh.timestamp = (now - TTL + 1) * 1000;
+
+        assertNull(mCache.merge(list(stale), now, RSSI_THRESHOLD, TTL));
+        ScanDiff diff = mCache.merge(list(stale, fresh), now, RSSI_THRESHOLD, TTL);
+
+        assertEquals(1, diff.getAdded().size());
+        assertSame(fresh, diff.getAdded().get(0));
+        assertTrue(diff.getRemoved().isEmpty());
+        assertEquals(1, diff.getResults().size());
+        assertEquals(now + 1, mCache.getNextExpireTime());
+    }
+
+    @Test
+    public void merge_skipsResultsWithoutBssid() {
+        assertNull(mCache.merge(list(result(null, -50)), 1000, RSSI_THRESHOLD, TTL));
+        assertEquals(Long.MAX_VALUE, mCache.getNextExpireTime());
+    }
+
+    @Test
+    public void clear_dropsEverything() {
+        mCache.merge(list(result("b1", -50)), 1000, RSSI_THRESHOLD, TTL);
+
+        mCache.clear();
+
+        assertTrue(mCache.getResults().isEmpty());
+        assertEquals(1, mCache.merge(list(result("b1", -50)), 2000, RSSI_THRESHOLD, TTL).getAdded().size());
+    }
+
+    private static ScanResult result(String bssid, int level) {
+        ScanResult result = mock(ScanResult.class);
+        result.SSID = "ap";
+        result.BSSID = bssid;
+        result.level = level;
+        return result;
+    }
+
+    private static List<ScanResult> list(ScanResult... results) {
+        List<ScanResult> list = new ArrayList<>();
+        for (ScanResult result : results) {
+            list.add(result);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,105 @@
+package com.seagle.android.net.monitor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of {@link SettableFuture}.
+ */
+public class SettableFutureTest {
+
+    private SettableFuture<Integer> mFuture;
+    private List<String> mCalls;
+
+    @Before
+    public void setUp() {
+        mFuture = new SettableFuture<>();
+        mCalls = new ArrayList<>();
+    }
+
+    @Test
+    public void complete_notifiesListenersNotCancelListeners() throws Exception {
+        mFuture.addListener(new RecordingListener());
+        mFuture.addCancelListener(new RecordingCancelListener());
+
+        assertTrue(mFuture.complete(1));
+        assertFalse(mFuture.complete(2));
+
+        assertEquals(1, (int) mFuture.get());
+        assertEquals(listOf("complete 1"), mCalls);
+    }
+
+    @Test
+    public void cancel_notifiesCancelListenersAfterCanceller() {
+        mFuture.setCanceller(new SettableFuture.Canceller() {
+            @Override
+            public void cancel() {
+                mCalls.add("canceller");
+            }
+        });
+        mFuture.addListener(new RecordingListener());
+        mFuture.addCancelListener(new RecordingCancelListener());
+
+        assertTrue(mFuture.cancel(true));
+        assertFalse(mFuture.complete(1));
+
+        assertTrue(mFuture.isCancelled());
+        assertEquals(listOf("canceller", "cancelled"), mCalls);
+    }
+
+    @Test
+    public void addCancelListener_afterCancelCalledImmediately() {
+        mFuture.cancel(true);
+
+        mFuture.addListener(new RecordingListener());
+        mFuture.addCancelListener(new RecordingCancelListener());
+
+        assertEquals(listOf("cancelled"), mCalls);
+    }
+
+    @Test
+    public void addListener_afterCompleteCalledImmediately() {
+        mFuture.complete(3);
+
+        mFuture.addListener(new RecordingListener());
+        mFuture.addCancelListener(new RecordingCancelListener());
+
+        assertEquals(listOf("complete 3"), mCalls);
+    }
+
+    @Test(expected = CancellationException.class)
+    public void get_afterCancelThrows() throws Exception {
+        mFuture.cancel(false);
+        mFuture.get();
+    }
+
+    private static List<String> listOf(String... calls) {
+        List<String> list = new ArrayList<>();
+        for (String call : calls) {
+            list.add(call);
+        }
+        return list;
+    }
+
+    private class RecordingListener implements SettableFuture.Listener<Integer> {
+        @Override
+        public void onComplete(Integer result) {
+            mCalls.add("complete " + result);
+        }
+    }
+
+    private class RecordingCancelListener implements SettableFuture.CancelListener {
+        @Override
+        public void onCancelled() {
+            mCalls.add("cancelled");
+        }
+    }
+}
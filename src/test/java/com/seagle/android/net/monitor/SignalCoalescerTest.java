@@ -0,0 +1,145 @@
+package com.seagle.android.net.monitor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test of {@link SignalCoalescer}.
+ */
+public class SignalCoalescerTest {
+
+    private ManualScheduler mScheduler;
+    private CountingTarget mTarget;
+
+    @Before
+    public void setUp() {
+        mScheduler = new ManualScheduler();
+        mTarget = new CountingTarget();
+    }
+
+    @Test
+    public void signal_withoutWindowEvaluatesImmediately() {
+        SignalCoalescer coalescer = new SignalCoalescer(mScheduler, 0, new MonitorMetrics(), mTarget);
+
+        coalescer.signal();
+        coalescer.signal();
+
+        assertEquals(2, mTarget.mEvaluations);
+        assertNull(mScheduler.mTask);
+        assertEquals(2, coalescer.getRawCount());
+        assertEquals(0, coalescer.getAbsorbedCount());
+    }
+
+    @Test
+    public void signal_burstInsideWindowEvaluatesOnce() {
+        SignalCoalescer coalescer = new SignalCoalescer(mScheduler, 100, new MonitorMetrics(), mTarget);
+
+        coalescer.signal();
+        coalescer.signal();
+        coalescer.signal();
+
+        assertEquals(0, mTarget.mEvaluations);
+        assertEquals(1, mScheduler.mPostCount);
+        assertEquals(100, mScheduler.mDelay);
+
+        mScheduler.fire();
+
+        assertEquals(1, mTarget.mEvaluations);
+        assertEquals(3, coalescer.getRawCount());
+        assertEquals(2, coalescer.getAbsorbedCount());
+    }
+
+    @Test
+    public void signal_afterWindowClosedOpensNewWindow() {
+        SignalCoalescer coalescer = new SignalCoalescer(mScheduler, 100, new MonitorMetrics(), mTarget);
+
+        coalescer.signal();
+        mScheduler.fire();
+        coalescer.signal();
+
+        assertEquals(2, mScheduler.mPostCount);
+        assertNotNull(mScheduler.mTask);
+        mScheduler.fire();
+        assertEquals(2, mTarget.mEvaluations);
+    }
+
+    @Test
+    public void evaluate_withoutTransitionCountsAbsorbed() {
+        mTarget.mResult = false;
+        SignalCoalescer coalescer = new SignalCoalescer(mScheduler, 0, new MonitorMetrics(), mTarget);
+
+        coalescer.signal();
+        coalescer.signal();
+
+        assertEquals(2, coalescer.getAbsorbedCount());
+    }
+
+    @Test
+    public void cancel_dropsPendingWindow() {
+        SignalCoalescer coalescer = new SignalCoalescer(mScheduler, 100, new MonitorMetrics(), mTarget);
+
+        coalescer.signal();
+        coalescer.cancel();
+
+        assertNull(mScheduler.mTask);
+        assertEquals(0, mTarget.mEvaluations);
+
+        coalescer.signal();
+        assertEquals(2, mScheduler.mPostCount);
+    }
+
+    @Test
+    public void setWindow_appliesToNextSignal() {
+        SignalCoalescer coalescer = new SignalCoalescer(mScheduler, 0, new MonitorMetrics(), mTarget);
+
+        coalescer.setWindow(50);
+        coalescer.signal();
+
+        assertEquals(0, mTarget.mEvaluations);
+        assertEquals(50, mScheduler.mDelay);
+    }
+
+    private static class CountingTarget implements SignalCoalescer.Target {
+        int mEvaluations;
+        boolean mResult = true;
+
+        @Override
+        public boolean evaluate() {
+            mEvaluations++;
+            return mResult;
+        }
+    }
+
+    /**
+     * Scheduler holding the one pending task until fired by the test.
+     */
+    private static class ManualScheduler implements SignalCoalescer.Scheduler {
+        Runnable mTask;
+        long mDelay;
+        int mPostCount;
+
+        @Override
+        public void postDelayed(Runnable task, long delayMillis) {
+            mTask = task;
+            mDelay = delayMillis;
+            mPostCount++;
+        }
+
+        @Override
+        public void remove(Runnable task) {
+            if (mTask == task) {
+                mTask = null;
+            }
+        }
+
+        void fire() {
+            Runnable task = mTask;
+            mTask = null;
+            task.run();
+        }
+    }
+}
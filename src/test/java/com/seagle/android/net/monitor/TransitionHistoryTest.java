@@ -0,0 +1,120 @@
+package com.seagle.android.net.monitor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test of {@link TransitionHistory} and {@link TransportAvailability}.
+ */
+public class TransitionHistoryTest {
+
+    private static final int WIFI = NetworkMonitor.TRANSPORT_WIFI;
+    private static final int MOBILE = NetworkMonitor.TRANSPORT_MOBILE;
+
+    private TransitionHistory mHistory;
+
+    @Before
+    public void setUp() {
+        mHistory = new TransitionHistory();
+    }
+
+    @Test
+    public void record_ignoresSameState() {
+        mHistory.record(WIFI, Transition.STATE_CONNECTED, Transition.REASON_INIT, 100);
+        mHistory.record(WIFI, Transition.STATE_CONNECTED, Transition.REASON_CALLBACK, 200);
+
+        List<Transition> transitions = mHistory.query(WIFI, 1000, 1000);
+
+        assertEquals(1, transitions.size());
+        Transition transition = transitions.get(0);
+        assertEquals(100, transition.getTime());
+        assertEquals(Transition.STATE_UNKNOWN, transition.getOldState());
+        assertEquals(Transition.STATE_CONNECTED, transition.getNewState());
+        assertEquals(Transition.REASON_INIT, transition.getReason());
+    }
+
+    @Test
+    public void query_filtersByTransportAndWindow() {
+        mHistory.record(WIFI, Transition.STATE_CONNECTED, Transition.REASON_INIT, 100);
+        mHistory.record(MOBILE, Transition.STATE_CONNECTED, Transition.REASON_INIT, 200);
+        mHistory.record(WIFI, Transition.STATE_DISCONNECTED, Transition.REASON_CALLBACK, 900);
+
+        assertEquals(2, mHistory.query(WIFI, 1000, 1000).size());
+        assertEquals(1, mHistory.query(WIFI, 500, 1000).size());
+        assertEquals(3, mHistory.query(NetworkMonitor.TRANSPORT_NONE, 1000, 1000).size());
+        assertEquals(MOBILE, mHistory.query(MOBILE, 1000, 1000).get(0).getTransport());
+    }
+
+    @Test
+    public void query_overwritesOldestWhenFull() {
+        for (int i = 0; i < TransitionHistory.CAPACITY + 2; i++) {
+            int state = i % 2 == 0 ? Transition.STATE_CONNECTED : Transition.STATE_DISCONNECTED;
+            mHistory.record(WIFI, state, Transition.REASON_CALLBACK, i);
+        }
+
+        List<Transition> transitions = mHistory.query(WIFI, Long.MAX_VALUE / 2, TransitionHistory.CAPACITY + 2);
+
+        assertEquals(TransitionHistory.CAPACITY, transitions.size());
+        assertEquals(2, transitions.get(0).getTime());
+        assertEquals(TransitionHistory.CAPACITY + 1, transitions.get(transitions.size() - 1).getTime());
+    }
+
+    @Test
+    public void getAvailability_splitsTimeByState() {
+        mHistory.record(WIFI, Transition.STATE_CONNECTED, Transition.REASON_INIT, 0);
+        mHistory.record(WIFI, Transition.STATE_DISCONNECTED, Transition.REASON_CALLBACK, 600);
+        mHistory.record(WIFI, Transition.STATE_CONNECTED, Transition.REASON_CALLBACK, 700);
+        mHistory.record(WIFI, Transition.STATE_DISCONNECTED, Transition.REASON_CALLBACK, 900);
+
+        TransportAvailability availability = mHistory.getAvailability(WIFI, 1000, 1000);
+
+        assertEquals(800, availability.getConnectedMillis());
+        assertEquals(200, availability.getDisconnectedMillis());
+        assertEquals(80f, availability.getUptimePercentage(), 0.01f);
+        assertEquals(2, availability.getDisconnectCount());
+        assertEquals(400, availability.getMeanTimeBetweenDisconnects());
+        // The outage still open at the window end is not counted.
+        assertEquals(1, availability.getOutageCount());
+        assertEquals(100, availability.getOutagePercentile(50));
+    }
+
+    @Test
+    public void getAvailability_usesStateBeforeWindow() {
+        mHistory.record(WIFI, Transition.STATE_CONNECTED, Transition.REASON_INIT, 0);
+        mHistory.record(WIFI, Transition.STATE_DISCONNECTED, Transition.REASON_CALLBACK, 5000);
+
+        TransportAvailability availability = mHistory.getAvailability(WIFI, 1000, 5500);
+
+        assertEquals(500, availability.getConnectedMillis());
+        assertEquals(500, availability.getDisconnectedMillis());
+        assertEquals(1, availability.getDisconnectCount());
+    }
+
+    @Test
+    public void getAvailability_unknownStateIsNotCounted() {
+        TransportAvailability availability = mHistory.getAvailability(WIFI, 1000, 1000);
+
+        assertEquals(0, availability.getConnectedMillis());
+        assertEquals(-1f, availability.getUptimePercentage(), 0f);
+        assertEquals(-1, availability.getMeanTimeBetweenDisconnects());
+        assertEquals(-1, availability.getOutagePercentile(95));
+    }
+
+    @Test
+    public void getOutagePercentile_picksNearestRank() {
+        TransportAvailability availability = new TransportAvailability(WIFI, 0, 0, 4, new long[]{10, 20, 30, 40});
+
+        assertEquals(20, availability.getOutagePercentile(50));
+        assertEquals(40, availability.getOutagePercentile(95));
+        assertEquals(10, availability.getOutagePercentile(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getOutagePercentile_rejectsInvalidPercent() {
+        new TransportAvailability(WIFI, 0, 0, 0, new long[0]).getOutagePercentile(0);
+    }
+}
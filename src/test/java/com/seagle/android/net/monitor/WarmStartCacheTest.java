@@ -0,0 +1,216 @@
+package com.seagle.android.net.monitor;
+
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.wifi.WifiInfo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test of {@link WarmStartCache}.
+ */
+public class WarmStartCacheTest {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int SLOT_SIZE = 1024;
+    private static final int SLOT_HEADER_SIZE = 16;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private NetworkQuality[] mQualities;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mFolder.getRoot(), "state");
+        mQualities = new NetworkQuality[NetworkSnapshot.TRANSPORT_COUNT];
+    }
+
+    @Test
+    public void load_emptyFileRestoresNothing() {
+        assertNull(new WarmStartCache(mFile).load(1));
+    }
+
+    @Test
+    public void persist_loadRestoresProvisionalState() {
+        new WarmStartCache(mFile).persist(wifiSnapshot("\"home\""), mQualities);
+
+        NetworkSnapshot restored = new WarmStartCache(mFile).load(7);
+
+        assertNotNull(restored);
+        assertTrue(restored.isProvisional());
+        assertTrue(restored.getPersistTime() > 0);
+        assertEquals(7, restored.getSequence());
+        assertEquals(NetworkMonitor.TRANSPORT_WIFI, restored.getActiveTransport());
+        NetworkSnapshot.TransportState wifi = restored.getTransportState(NetworkMonitor.TRANSPORT_WIFI);
+        assertTrue(wifi.isConnected());
+        assertTrue(wifi.isProvisional());
+        assertFalse(wifi.isMetered());
+        assertEquals("\"home\"", wifi.getSSID());
+        assertEquals("00:11:22:33:44:55", wifi.getBSSID());
+        assertNull(wifi.getNetwork());
+        assertSame(NetworkSnapshot.TransportState.DISCONNECTED, restored.getTransportState(NetworkMonitor.TRANSPORT_MOBILE));
+        assertSame(NetworkSnapshot.TransportState.UNKNOWN, restored.getTransportState(NetworkMonitor.TRANSPORT_ETHERNET));
+    }
+
+    @Test
+    public void persist_loadRestoresQuality() {
+        mQualities[NetworkMonitor.TRANSPORT_WIFI] = new NetworkQuality(NetworkMonitor.TRANSPORT_WIFI, null, 12, 0.25f,
+                30, 80, 120, 400, 0);
+        new WarmStartCache(mFile).persist(wifiSnapshot("\"home\""), mQualities);
+
+        WarmStartCache cache = new WarmStartCache(mFile);
+        cache.load(1);
+        NetworkQuality quality = cache.getQuality(NetworkMonitor.TRANSPORT_WIFI);
+
+        assertNotNull(quality);
+        assertEquals(12, quality.getSampleCount());
+        assertEquals(0.25f, quality.getLossRate(), 0);
+        assertEquals(30, quality.getConnectMedian());
+        assertEquals(80, quality.getConnectP95());
+        assertEquals(120, quality.getRequestMedian());
+        assertEquals(400, quality.getRequestP95());
+        assertNull(quality.getNetwork());
+        assertNull(cache.getQuality(NetworkMonitor.TRANSPORT_MOBILE));
+        // No live network to compare the handle with.
+        assertNull(cache.getQuality(NetworkMonitor.TRANSPORT_WIFI, null));
+    }
+
+    @Test
+    public void persist_ignoresUnknownSnapshot() {
+        new WarmStartCache(mFile).persist(NetworkSnapshot.EMPTY, mQualities);
+
+        assertNull(new WarmStartCache(mFile).load(1));
+    }
+
+    @Test
+    public void load_takesNewestSlot() {
+        WarmStartCache cache = new WarmStartCache(mFile);
+        cache.persist(wifiSnapshot("\"first\""), mQualities);
+        cache.persist(wifiSnapshot("\"second\""), mQualities);
+        cache.persist(wifiSnapshot("\"third\""), mQualities);
+
+        NetworkSnapshot restored = new WarmStartCache(mFile).load(1);
+
+        assertEquals("\"third\"", restored.getTransportState(NetworkMonitor.TRANSPORT_WIFI).getSSID());
+    }
+
+    @Test
+    public void load_tornNewestSlotFallsBackToPrevious() throws Exception {
+        WarmStartCache cache = new WarmStartCache(mFile);
+        cache.persist(wifiSnapshot("\"first\""), mQualities);
+        cache.persist(wifiSnapshot("\"second\""), mQualities);
+
+        corruptSlot(newestSlot());
+        WarmStartCache reloaded = new WarmStartCache(mFile);
+        NetworkSnapshot restored = reloaded.load(1);
+
+        assertEquals("\"first\"", restored.getTransportState(NetworkMonitor.TRANSPORT_WIFI).getSSID());
+
+        // The next write goes to the slot after the valid one,keeping it readable.
+        reloaded.persist(wifiSnapshot("\"third\""), mQualities);
+        assertEquals("\"third\"", new WarmStartCache(mFile).load(1)
+                .getTransportState(NetworkMonitor.TRANSPORT_WIFI).getSSID());
+    }
+
+    @Test
+    public void load_allSlotsTornRestoresNothing() throws Exception {
+        WarmStartCache cache = new WarmStartCache(mFile);
+        cache.persist(wifiSnapshot("\"first\""), mQualities);
+        cache.persist(wifiSnapshot("\"second\""), mQualities);
+
+        corruptSlot(0);
+        corruptSlot(1);
+
+        assertNull(new WarmStartCache(mFile).load(1));
+    }
+
+    @Test
+    public void putString_cutsOnCharacterBoundary() {
+        StringBuilder ascii = new StringBuilder();
+        for (int i = 0; i < 63; i++) {
+            ascii.append('a');
+        }
+        StringBuilder wide = new StringBuilder();
+        for (int i = 0; i < 22; i++) {
+            wide.append('\u4e2d');
+        }
+
+        assertEquals(ascii.toString(), roundTrip(ascii + "\u00e9"));
+        assertEquals(wide.substring(0, 21), roundTrip(wide.toString()));
+        assertEquals("\u4e2d\u00e9", roundTrip("\u4e2d\u00e9"));
+        assertNull(roundTrip(null));
+    }
+
+    private static String roundTrip(String value) {
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        WarmStartCache.putString(buffer, value);
+        assertTrue(buffer.position() <= 65);
+        buffer.flip();
+        return WarmStartCache.getString(buffer);
+    }
+
+    private int newestSlot() throws Exception {
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            file.seek(HEADER_SIZE);
+            long first = file.readLong();
+            file.seek(HEADER_SIZE + SLOT_SIZE);
+            long second = file.readLong();
+            return second > first ? 1 : 0;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Flip a payload byte of the slot,as a write torn by a crash.
+     */
+    private void corruptSlot(int slot) throws Exception {
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            long offset = HEADER_SIZE + slot * SLOT_SIZE + SLOT_HEADER_SIZE + 4;
+            file.seek(offset);
+            int value = file.read();
+            file.seek(offset);
+            file.write(value ^ 0x5a);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static NetworkSnapshot wifiSnapshot(String ssid) {
+        NetworkInfo wifiInfo = networkInfo(ConnectivityManager.TYPE_WIFI, true);
+        WifiInfo connectionInfo = mock(WifiInfo.class);
+        when(connectionInfo.getSSID()).thenReturn(ssid);
+        when(connectionInfo.getBSSID()).thenReturn("00:11:22:33:44:55");
+        return NetworkSnapshot.EMPTY.withActiveNetworkInfo(wifiInfo)
+                .withTransportState(NetworkMonitor.TRANSPORT_WIFI,
+                        new NetworkSnapshot.TransportState(wifiInfo, null, connectionInfo, null, null))
+                .withTransportState(NetworkMonitor.TRANSPORT_MOBILE, NetworkSnapshot.TransportState.DISCONNECTED);
+    }
+
+    private static NetworkInfo networkInfo(int type, boolean connected) {
+        NetworkInfo networkInfo = mock(NetworkInfo.class);
+        when(networkInfo.isConnected()).thenReturn(connected);
+        when(networkInfo.getType()).thenReturn(type);
+        return networkInfo;
+    }
+}
@@ -0,0 +1,74 @@
+package com.seagle.android.net.monitor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit test of {@link WiFiConnectFuture}.
+ */
+public class WiFiConnectFutureTest {
+
+    private ListenerRegistryTest.QueueExecutor mExecutor;
+    private WiFiConnectFuture mFuture;
+    private WiFiNetworkMonitor.WiFiConnectCallback mCallback;
+
+    @Before
+    public void setUp() {
+        mExecutor = new ListenerRegistryTest.QueueExecutor();
+        mFuture = new WiFiConnectFuture("\"home\"", mExecutor);
+        mCallback = mock(WiFiNetworkMonitor.WiFiConnectCallback.class);
+    }
+
+    @Test
+    public void addCallback_resultCalledOnCallbackExecutor() {
+        mFuture.addCallback(mCallback);
+        mFuture.complete(WiFiNetworkMonitor.CONNECT_SUCCESS);
+
+        verify(mCallback, never()).onConnectSuccess();
+        assertEquals(1, mExecutor.runAll());
+        verify(mCallback).onConnectSuccess();
+        verify(mCallback, never()).onConnectFailed(anyInt(), anyString());
+    }
+
+    @Test
+    public void addCallback_failureCarriesResultCode() {
+        mFuture.addCallback(mCallback);
+        mFuture.complete(WiFiNetworkMonitor.ERR_CONNECT_TIMEOUT);
+        mExecutor.runAll();
+
+        verify(mCallback).onConnectFailed(WiFiNetworkMonitor.ERR_CONNECT_TIMEOUT,
+                WiFiNetworkMonitor.getErrorMessage("\"home\"", WiFiNetworkMonitor.ERR_CONNECT_TIMEOUT));
+    }
+
+    @Test
+    public void addCallback_cancelledRequestFails() {
+        mFuture.addCallback(mCallback);
+
+        assertTrue(mFuture.cancel(true));
+        assertEquals(1, mExecutor.runAll());
+
+        verify(mCallback).onConnectFailed(WiFiNetworkMonitor.ERR_CONNECT_FAILED,
+                WiFiNetworkMonitor.getErrorMessage("\"home\"", WiFiNetworkMonitor.ERR_CONNECT_FAILED));
+        verify(mCallback, never()).onConnectSuccess();
+    }
+
+    @Test
+    public void addCallback_afterCancelFailsOnce() {
+        mFuture.cancel(false);
+        mFuture.addCallback(mCallback);
+        mFuture.complete(WiFiNetworkMonitor.CONNECT_SUCCESS);
+        mExecutor.runAll();
+
+        verify(mCallback, times(1)).onConnectFailed(anyInt(), anyString());
+        verify(mCallback, never()).onConnectSuccess();
+    }
+}